@@ -8,13 +8,6 @@
 package org.xtreemfs.babudb;
 
 import static org.xtreemfs.babudb.BabuDBFactory.BABUDB_VERSION;
-import static org.xtreemfs.babudb.log.LogEntry.PAYLOAD_TYPE_COPY;
-import static org.xtreemfs.babudb.log.LogEntry.PAYLOAD_TYPE_CREATE;
-import static org.xtreemfs.babudb.log.LogEntry.PAYLOAD_TYPE_DELETE;
-import static org.xtreemfs.babudb.log.LogEntry.PAYLOAD_TYPE_INSERT;
-import static org.xtreemfs.babudb.log.LogEntry.PAYLOAD_TYPE_SNAP;
-import static org.xtreemfs.babudb.log.LogEntry.PAYLOAD_TYPE_SNAP_DELETE;
-import static org.xtreemfs.babudb.log.LogEntry.PAYLOAD_TYPE_TRANSACTION;
 
 import java.io.File;
 import java.io.FilenameFilter;
@@ -33,23 +26,24 @@ import org.xtreemfs.babudb.api.dev.DatabaseInternal;
 import org.xtreemfs.babudb.api.dev.DatabaseManagerInternal;
 import org.xtreemfs.babudb.api.dev.ResponseManagerInternal;
 import org.xtreemfs.babudb.api.dev.SnapshotManagerInternal;
-import org.xtreemfs.babudb.api.dev.transaction.InMemoryProcessing;
-import org.xtreemfs.babudb.api.dev.transaction.OperationInternal;
 import org.xtreemfs.babudb.api.dev.transaction.TransactionManagerInternal;
 import org.xtreemfs.babudb.api.exception.BabuDBException;
 import org.xtreemfs.babudb.api.exception.BabuDBException.ErrorCode;
 import org.xtreemfs.babudb.config.BabuDBConfig;
 import org.xtreemfs.babudb.conversion.AutoConverter;
-import org.xtreemfs.babudb.log.DiskLogIterator;
+import org.xtreemfs.babudb.index.reader.BlockCache;
+import org.xtreemfs.babudb.index.writer.WriteRateLimiter;
 import org.xtreemfs.babudb.log.DiskLogger;
 import org.xtreemfs.babudb.log.DiskLogger.SyncMode;
-import org.xtreemfs.babudb.log.LogEntry;
+import org.xtreemfs.babudb.log.LaneLogIterator;
+import org.xtreemfs.babudb.log.LogOptions;
 import org.xtreemfs.babudb.lsmdb.CheckpointerImpl;
 import org.xtreemfs.babudb.lsmdb.DBConfig;
 import org.xtreemfs.babudb.lsmdb.DatabaseManagerImpl;
 import org.xtreemfs.babudb.lsmdb.LSMDBWorker;
 import org.xtreemfs.babudb.lsmdb.LSMDatabase;
 import org.xtreemfs.babudb.lsmdb.LSN;
+import org.xtreemfs.babudb.lsmdb.SharedRequestQueue;
 import org.xtreemfs.babudb.snapshots.SnapshotManagerImpl;
 import org.xtreemfs.foundation.LifeCycleThread;
 import org.xtreemfs.foundation.VersionManagement;
@@ -73,6 +67,12 @@ public class BabuDBImpl implements BabuDBInternal {
     
     private LSMDBWorker[]                 worker;
     
+    /**
+     * queue of read requests shared by all workers; <code>null</code>, if
+     * reads are processed by the worker responsible for the database
+     */
+    private SharedRequestQueue            sharedRequests;
+    
     /**
      * the disk logger is used to write InsertRecordGroups persistently to disk
      */
@@ -80,6 +80,11 @@ public class BabuDBImpl implements BabuDBInternal {
     
     private TransactionManagerInternal    txnMan;
     
+    /**
+     * replays the database operations log at startup
+     */
+    private final LogReplayer             logReplayer;
+    
     /**
      * Checkpointer thread for automatic checkpointing
      */
@@ -110,6 +115,16 @@ public class BabuDBImpl implements BabuDBInternal {
      */
     private final DBConfig                dbConfigFile;
     
+    /**
+     * Cache for blocks of on-disk indices, shared by all databases.
+     */
+    private final BlockCache              blockCache;
+    
+    /**
+     * Rate limiter for writing on-disk indices, shared by all databases.
+     */
+    private final WriteRateLimiter        writeRateLimiter;
+    
     /**
      * Flag that shows the replication if babuDB is running at the moment.
      */
@@ -148,8 +163,15 @@ public class BabuDBImpl implements BabuDBInternal {
     BabuDBImpl(BabuDBConfig configuration) throws BabuDBException {
         
         this.configuration = configuration;
+        this.blockCache = configuration.getBlockCacheSize() > 0 ? new BlockCache(configuration
+                .getBlockCacheSize()) : null;
+        this.writeRateLimiter = configuration.getMaxWriteRate() > 0 ? new WriteRateLimiter(configuration
+                .getMaxWriteRate(), configuration.getTargetSyncLatencyMicros()) : null;
         this.responseManager = new ResponseManagerImpl(configuration.getMaxQueueLength());
-        this.txnMan = new TransactionManagerImpl(configuration.getSyncMode().equals(SyncMode.ASYNC));
+        TransactionManagerImpl txnMan = new TransactionManagerImpl(configuration.getSyncMode().equals(
+            SyncMode.ASYNC));
+        this.txnMan = txnMan;
+        this.logReplayer = new LogReplayer(txnMan, Runtime.getRuntime().availableProcessors());
         this.databaseManager = new DatabaseManagerImpl(this);
         this.dbConfigFile = new DBConfig(this);
         this.snapshotManager = new SnapshotManagerImpl(this);
@@ -201,9 +223,9 @@ public class BabuDBImpl implements BabuDBInternal {
             
             // set up and start the disk logger
             try {
-                logger = new DiskLogger(configuration.getDbLogDir(), nextLSN, configuration.getSyncMode(),
-                    configuration.getPseudoSyncWait(), configuration.getMaxQueueLength()
-                        * Math.max(1, configuration.getNumThreads()));
+                logger = new DiskLogger(configuration.getDbLogDir(), nextLSN, getLogOptions().setMaxQueueLength(
+                    configuration.getMaxQueueLength() * Math.max(1, configuration.getNumThreads())));
+                logger.setWriteRateLimiter(writeRateLimiter);
                 logger.setLifeCycleListener(this);
                 logger.start();
                 logger.waitForStartup();
@@ -214,9 +236,11 @@ public class BabuDBImpl implements BabuDBInternal {
             this.txnMan.setLogger(logger);
             
             if (configuration.getNumThreads() > 0) {
+                sharedRequests = configuration.getSharedReads() ? new SharedRequestQueue(configuration
+                        .getMaxQueueLength()) : null;
                 worker = new LSMDBWorker[configuration.getNumThreads()];
                 for (int i = 0; i < configuration.getNumThreads(); i++) {
-                    worker[i] = new LSMDBWorker(this, i, configuration.getMaxQueueLength());
+                    worker[i] = new LSMDBWorker(this, i, configuration.getMaxQueueLength(), sharedRequests);
                     worker[i].start();
                 }
             } else {
@@ -276,6 +300,8 @@ public class BabuDBImpl implements BabuDBInternal {
             if (stopped.get())
                 return;
             
+            if (sharedRequests != null)
+                sharedRequests.close();
             if (worker != null)
                 for (LSMDBWorker w : worker)
                     w.shutdown();
@@ -346,9 +372,9 @@ public class BabuDBImpl implements BabuDBInternal {
                     "log replay done, " + "using LSN: " + nextLSN);
             
             try {
-                logger = new DiskLogger(configuration.getDbLogDir(), nextLSN, configuration.getSyncMode(),
-                    configuration.getPseudoSyncWait(), configuration.getMaxQueueLength()
-                        * configuration.getNumThreads());
+                logger = new DiskLogger(configuration.getDbLogDir(), nextLSN, getLogOptions().setMaxQueueLength(
+                    configuration.getMaxQueueLength() * configuration.getNumThreads()));
+                logger.setWriteRateLimiter(writeRateLimiter);
                 logger.setLifeCycleListener(this);
                 logger.start();
                 logger.waitForStartup();
@@ -360,9 +386,11 @@ public class BabuDBImpl implements BabuDBInternal {
             this.txnMan.setLogger(logger);
             
             if (configuration.getNumThreads() > 0) {
+                sharedRequests = configuration.getSharedReads() ? new SharedRequestQueue(configuration
+                        .getMaxQueueLength()) : null;
                 worker = new LSMDBWorker[configuration.getNumThreads()];
                 for (int i = 0; i < configuration.getNumThreads(); i++) {
-                    worker[i] = new LSMDBWorker(this, i, configuration.getMaxQueueLength());
+                    worker[i] = new LSMDBWorker(this, i, configuration.getMaxQueueLength(), sharedRequests);
                     worker[i].start();
                 }
             } else {
@@ -399,6 +427,9 @@ public class BabuDBImpl implements BabuDBInternal {
         
         Logging.logMessage(Logging.LEVEL_INFO, Category.babudb, this, "shutting down ...");
         
+        if (sharedRequests != null) {
+            sharedRequests.close();
+        }
         if (worker != null) {
             for (LSMDBWorker w : worker) {
                 w.shutdown(graceful);
@@ -538,6 +569,26 @@ public class BabuDBImpl implements BabuDBInternal {
         return configuration;
     }
     
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.xtreemfs.babudb.api.dev.BabuDBInternal#getBlockCache()
+     */
+    @Override
+    public BlockCache getBlockCache() {
+        return blockCache;
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.xtreemfs.babudb.api.dev.BabuDBInternal#getWriteRateLimiter()
+     */
+    @Override
+    public WriteRateLimiter getWriteRateLimiter() {
+        return writeRateLimiter;
+    }
+    
     /*
      * (non-Javadoc)
      * 
@@ -554,6 +605,12 @@ public class BabuDBImpl implements BabuDBInternal {
 
         if (property.startsWith("diskLogger"))
             return logger.getRuntimeState(property);
+        
+        if (property.startsWith("logReplayer"))
+            return logReplayer.getRuntimeState(property);
+        
+        if (property.startsWith("writeRateLimiter") && writeRateLimiter != null)
+            return writeRateLimiter.getRuntimeState(property);
 
         return null;
     }
@@ -570,6 +627,11 @@ public class BabuDBImpl implements BabuDBInternal {
         info.putAll(dbCheckptr.getRuntimeState());
         info.putAll(databaseManager.getRuntimeState());
         info.putAll(logger.getRuntimeState());
+        info.putAll(logReplayer.getRuntimeState());
+        if (blockCache != null)
+            info.putAll(blockCache.getRuntimeState());
+        if (writeRateLimiter != null)
+            info.putAll(writeRateLimiter.getRuntimeState());
         
         return info;
     }
@@ -629,6 +691,22 @@ public class BabuDBImpl implements BabuDBInternal {
         return worker[dbId % worker.length];
     }
     
+    /**
+     * Returns the options of the database operations log, as defined by the
+     * configuration. The queue length is left to the caller.
+     * 
+     * @return the log options
+     */
+    private LogOptions getLogOptions() {
+        return new LogOptions()
+            .setSyncMode(configuration.getSyncMode())
+            .setPseudoSyncWait(configuration.getPseudoSyncWait())
+            .setBatching(configuration.getLogBatchMaxBytes(), configuration.getLogBatchMaxWaitMicros())
+            .setPreallocationSize(configuration.getLogPreallocationSize())
+            .setLaneDirs(configuration.getLogLaneDirs())
+            .setMappedWindowSize(configuration.getLogMappedWindowSize());
+    }
+    
     /**
      * Replays the database operations log.
      * 
@@ -642,95 +720,25 @@ public class BabuDBImpl implements BabuDBInternal {
     private LSN replayLogs(LSN from) throws BabuDBException {
         
         try {
-            File f = new File(configuration.getDbLogDir());
-            File[] logFiles = f.listFiles(new FilenameFilter() {
-                public boolean accept(File dir, String name) {
-                    return name.endsWith(".dbl");
-                }
-            });
-            
-            DiskLogIterator it = new DiskLogIterator(logFiles, from);
-            LSN nextLSN = null;
-            
-            // apply log entries to databases ...
-            while (it.hasNext()) {
-                LogEntry le = null;
-                try {
-                    le = it.next();
-                    byte type = le.getPayloadType();
-                    
-                    Logging.logMessage(Logging.LEVEL_DEBUG, Category.babudb, this,
-                        "Reading entry LSN(%s) of type (%d) with %d bytes payload from log.", le.getLSN()
-                                .toString(), (int) type, le.getPayload().remaining());
-                    
-                    // in normal there are only transactions to be replayed
-                    if (type == PAYLOAD_TYPE_TRANSACTION) {
-                        txnMan.replayTransaction(le);
-                        
-                        // create, copy and delete are not replayed (this block
-                        // is for backward
-                        // compatibility)
-                    } else if (type != PAYLOAD_TYPE_CREATE && type != PAYLOAD_TYPE_COPY
-                        && type != PAYLOAD_TYPE_DELETE) {
-                        
-                        // get the processing logic for the dedicated logEntry
-                        // type
-                        InMemoryProcessing processingLogic = txnMan.getProcessingLogic().get(type);
-                        
-                        // deserialize the arguments retrieved from the logEntry
-                        OperationInternal operation = processingLogic.convertToOperation(processingLogic
-                                .deserializeRequest(le.getPayload()));
-                        
-                        // execute the in-memory logic
-                        try {
-                            processingLogic.process(operation);
-                        } catch (BabuDBException be) {
-                            
-                            // there might be false positives if a snapshot to
-                            // delete has already been deleted, a snapshot to
-                            // create has already been created, or an insertion
-                            // has been applied to a database that has already
-                            // been deleted
-                            
-                            // FIXME: A clean solution needs to be provided that
-                            // is capable of distinguishing between a corrupted
-                            // database and a "false positive". False positives
-                            // may occur because management operations are
-                            // immediately applied to the persistent database
-                            // state rather than being applied when the log is
-                            // replayed.
-                            // A clean solution would involve a single immutable
-                            // configuration file per database/snapshot, which
-                            // resides in the database directory and is written
-                            // when the first checkpoint is created. When a
-                            // database/snapshot gets deleted, an additional
-                            // (empty) file is created that indicates the
-                            // deletion. When old log files are removed in
-                            // response to a checkpoint, the system disposes of
-                            // all directories of databases and snapshots that
-                            // were deleted in these log files.
-                            if (!(type == PAYLOAD_TYPE_SNAP && (be.getErrorCode() == ErrorCode.SNAP_EXISTS || be
-                                    .getErrorCode() == ErrorCode.NO_SUCH_DB))
-                                && !(type == PAYLOAD_TYPE_SNAP_DELETE && be.getErrorCode() == ErrorCode.NO_SUCH_SNAPSHOT)
-                                && !(type == PAYLOAD_TYPE_INSERT && be.getErrorCode().equals(
-                                    ErrorCode.NO_SUCH_DB))) {
-                                
-                                throw be;
-                            }
-                        }
+            // the logs of all lanes are replayed in the order of their LSNs
+            String[] laneDirs = configuration.getLogLaneDirs();
+            File[][] logFiles = new File[laneDirs.length + 1][];
+            for (int i = 0; i < logFiles.length; i++) {
+                File f = new File(i == 0 ? configuration.getDbLogDir() : laneDirs[i - 1]);
+                logFiles[i] = f.listFiles(new FilenameFilter() {
+                    public boolean accept(File dir, String name) {
+                        return name.endsWith(".dbl");
                     }
-                    
-                    // set LSN
-                    nextLSN = new LSN(le.getViewId(), le.getLogSequenceNo() + 1L);
-                } finally {
-                    if (le != null) {
-                        le.free();
-                    }
-                }
-                
+                });
             }
             
-            it.destroy();
+            LaneLogIterator it = new LaneLogIterator(logFiles, from);
+            LSN nextLSN;
+            try {
+                nextLSN = logReplayer.replay(it);
+            } finally {
+                it.destroy();
+            }
             
             if (nextLSN != null) {
                 return nextLSN;
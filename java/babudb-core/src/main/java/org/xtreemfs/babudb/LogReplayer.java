@@ -0,0 +1,345 @@
+/*
+ * Copyright (c) 2026, agent
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+package org.xtreemfs.babudb;
+
+import static org.xtreemfs.babudb.log.LogEntry.PAYLOAD_TYPE_TRANSACTION;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.xtreemfs.babudb.api.dev.transaction.InMemoryProcessing;
+import org.xtreemfs.babudb.api.dev.transaction.OperationInternal;
+import org.xtreemfs.babudb.api.dev.transaction.TransactionInternal;
+import org.xtreemfs.babudb.api.exception.BabuDBException;
+import org.xtreemfs.babudb.api.exception.BabuDBException.ErrorCode;
+import org.xtreemfs.babudb.api.transaction.Operation;
+import org.xtreemfs.babudb.log.LogEntry;
+import org.xtreemfs.babudb.lsmdb.LSN;
+import org.xtreemfs.foundation.logging.Logging;
+import org.xtreemfs.foundation.logging.Logging.Category;
+
+/**
+ * Replays the database operations log in a pipeline of three stages:
+ * <ol>
+ * <li>the calling thread reads and verifies log entries in the order of their
+ * LSNs,</li>
+ * <li>a pool of threads deserializes the entries in parallel,</li>
+ * <li>the deserialized operations are applied in LSN order, whereby
+ * insertions are partitioned by database and applied in parallel by a set of
+ * single-threaded executors.</li>
+ * </ol>
+ * All insertions into a database are applied by the same executor, so that
+ * insertions of the same key are applied in the order of their LSNs. Any
+ * other operation acts as a barrier: it is applied by the calling thread
+ * once all previously dispatched insertions have been applied.
+ *
+ * @author agent
+ */
+class LogReplayer {
+
+    private static final String                 RUNTIME_STATE_ENTRIES  = "logReplayer.replayedEntries";
+
+    private static final String                 RUNTIME_STATE_BYTES    = "logReplayer.replayedBytes";
+
+    private static final String                 RUNTIME_STATE_LSN      = "logReplayer.lastReplayedLSN";
+
+    private static final String                 RUNTIME_STATE_DURATION = "logReplayer.durationMillis";
+
+    /**
+     * the max. number of log entries that are read ahead of the apply stage
+     */
+    private static final int                    MAX_PENDING_ENTRIES    = 1024;
+
+    /**
+     * the number of replayed entries after which progress is logged
+     */
+    private static final int                    PROGRESS_INTERVAL      = 100000;
+
+    private final TransactionManagerImpl        txnMan;
+
+    private final int                           numThreads;
+
+    private final AtomicLong                    _replayedEntries       = new AtomicLong();
+
+    private final AtomicLong                    _replayedBytes         = new AtomicLong();
+
+    private final AtomicLong                    _duration              = new AtomicLong();
+
+    private final AtomicReference<LSN>          _lastLSN               = new AtomicReference<LSN>();
+
+    /**
+     * the first error that occurred while applying an insertion
+     */
+    private final AtomicReference<Exception>    failure                = new AtomicReference<Exception>();
+
+    private ExecutorService[]                   appliers;
+
+    /**
+     * Creates a new log replayer.
+     *
+     * @param txnMan
+     *            the transaction manager used to apply the operations
+     * @param numThreads
+     *            the number of threads used for deserialization and for
+     *            applying insertions
+     */
+    LogReplayer(TransactionManagerImpl txnMan, int numThreads) {
+        this.txnMan = txnMan;
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+    /**
+     * Replays all log entries returned by the given iterator.
+     *
+     * @param it
+     *            the log iterator
+     * @return the LSN following the last replayed entry, or <code>null</code>
+     *         if no entry was replayed
+     * @throws Exception
+     *             if an error occurred while reading or applying the log
+     */
+    LSN replay(Iterator<LogEntry> it) throws Exception {
+
+        long start = System.currentTimeMillis();
+        _replayedEntries.set(0);
+        _replayedBytes.set(0);
+        _lastLSN.set(null);
+        failure.set(null);
+
+        ExecutorService decoders = Executors.newFixedThreadPool(numThreads);
+        appliers = new ExecutorService[numThreads];
+        for (int i = 0; i < numThreads; i++)
+            appliers[i] = Executors.newSingleThreadExecutor();
+
+        LinkedList<Future<DecodedEntry>> pending = new LinkedList<Future<DecodedEntry>>();
+        LSN nextLSN = null;
+
+        try {
+
+            while (it.hasNext() || !pending.isEmpty()) {
+
+                // read the next entry and hand it over to the decoders
+                if (it.hasNext()) {
+                    final LogEntry le = it.next();
+                    pending.add(decoders.submit(new Callable<DecodedEntry>() {
+                        public DecodedEntry call() throws Exception {
+                            try {
+                                return decode(le);
+                            } finally {
+                                le.free();
+                            }
+                        }
+                    }));
+
+                    if (pending.size() < MAX_PENDING_ENTRIES && it.hasNext())
+                        continue;
+                }
+
+                // apply the oldest entry
+                DecodedEntry entry = get(pending.removeFirst());
+                apply(entry);
+
+                nextLSN = new LSN(entry.lsn.getViewId(), entry.lsn.getSequenceNo() + 1L);
+                _lastLSN.set(entry.lsn);
+                _replayedBytes.addAndGet(entry.size);
+                if (_replayedEntries.incrementAndGet() % PROGRESS_INTERVAL == 0)
+                    Logging.logMessage(Logging.LEVEL_INFO, Category.babudb, this,
+                        "replayed %d log entries (%d bytes), last LSN %s", _replayedEntries.get(),
+                        _replayedBytes.get(), entry.lsn.toString());
+            }
+
+            // wait for all insertions to be applied
+            awaitAppliers();
+
+        } finally {
+
+            // let pending decoders free their log entries
+            decoders.shutdown();
+            for (ExecutorService applier : appliers)
+                applier.shutdown();
+
+            _duration.set(System.currentTimeMillis() - start);
+        }
+
+        Logging.logMessage(Logging.LEVEL_INFO, Category.babudb, this,
+            "replayed %d log entries (%d bytes) in %d ms", _replayedEntries.get(), _replayedBytes.get(),
+            _duration.get());
+
+        return nextLSN;
+    }
+
+    public Object getRuntimeState(String property) {
+
+        if (RUNTIME_STATE_ENTRIES.equals(property))
+            return _replayedEntries.get();
+        if (RUNTIME_STATE_BYTES.equals(property))
+            return _replayedBytes.get();
+        if (RUNTIME_STATE_LSN.equals(property))
+            return String.valueOf(_lastLSN.get());
+        if (RUNTIME_STATE_DURATION.equals(property))
+            return _duration.get();
+
+        return null;
+    }
+
+    public Map<String, Object> getRuntimeState() {
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put(RUNTIME_STATE_ENTRIES, _replayedEntries.get());
+        map.put(RUNTIME_STATE_BYTES, _replayedBytes.get());
+        map.put(RUNTIME_STATE_LSN, String.valueOf(_lastLSN.get()));
+        map.put(RUNTIME_STATE_DURATION, _duration.get());
+        return map;
+    }
+
+    /**
+     * Deserializes a log entry. Invoked by the decoder threads.
+     *
+     * @param le
+     *            the log entry
+     * @return the deserialized entry
+     * @throws Exception
+     *             if the entry could not be deserialized
+     */
+    private DecodedEntry decode(LogEntry le) throws Exception {
+
+        byte type = le.getPayloadType();
+
+        Logging.logMessage(Logging.LEVEL_DEBUG, Category.babudb, this,
+            "Reading entry LSN(%s) of type (%d) with %d bytes payload from log.", le.getLSN().toString(),
+            (int) type, le.getPayload().remaining());
+
+        DecodedEntry entry = new DecodedEntry(le.getLSN(), le.getPayload().remaining());
+
+        // in normal there are only transactions to be replayed
+        if (type == PAYLOAD_TYPE_TRANSACTION) {
+            for (OperationInternal operation : TransactionInternal.deserialize(le.getPayload()))
+                entry.operations.add(operation);
+        }
+
+        // create, copy and delete are not replayed (this block is for backward
+        // compatibility)
+        else if (type != Operation.TYPE_CREATE_DB && type != Operation.TYPE_COPY_DB
+            && type != Operation.TYPE_DELETE_DB) {
+
+            // get the processing logic for the dedicated logEntry type
+            InMemoryProcessing processingLogic = txnMan.getProcessingLogic().get(type);
+
+            // deserialize the arguments retrieved from the logEntry
+            entry.operations.add(processingLogic.convertToOperation(processingLogic.deserializeRequest(le
+                    .getPayload())));
+        }
+
+        return entry;
+    }
+
+    /**
+     * Applies the operations of a deserialized log entry. Insertions into
+     * known databases are dispatched to the executor responsible for the
+     * database, all other operations are applied directly.
+     *
+     * @param entry
+     *            the deserialized entry
+     * @throws Exception
+     *             if an error occurred while applying the operations
+     */
+    private void apply(DecodedEntry entry) throws Exception {
+
+        checkFailure();
+
+        for (final OperationInternal operation : entry.operations) {
+
+            if (operation.getType() == Operation.TYPE_GROUP_INSERT && operation.getDatabaseName() != null) {
+
+                int partition = (operation.getDatabaseName().hashCode() & Integer.MAX_VALUE) % appliers.length;
+                appliers[partition].execute(new Runnable() {
+                    public void run() {
+                        if (failure.get() != null)
+                            return;
+                        try {
+                            txnMan.replayOperation(operation);
+                        } catch (Exception exc) {
+                            failure.compareAndSet(null, exc);
+                        }
+                    }
+                });
+
+            } else {
+
+                // operations other than insertions may depend on all
+                // preceding insertions
+                awaitAppliers();
+                txnMan.replayOperation(operation);
+            }
+        }
+    }
+
+    /**
+     * Waits until all insertions dispatched so far have been applied.
+     *
+     * @throws Exception
+     *             if an insertion failed
+     */
+    private void awaitAppliers() throws Exception {
+
+        List<Future<?>> barriers = new ArrayList<Future<?>>(appliers.length);
+        for (ExecutorService applier : appliers)
+            barriers.add(applier.submit(new Runnable() {
+                public void run() {
+                }
+            }));
+
+        for (Future<?> barrier : barriers)
+            get(barrier);
+
+        checkFailure();
+    }
+
+    private void checkFailure() throws Exception {
+        Exception exc = failure.get();
+        if (exc != null)
+            throw exc;
+    }
+
+    private static <T> T get(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException exc) {
+            if (exc.getCause() instanceof Exception)
+                throw (Exception) exc.getCause();
+            throw new BabuDBException(ErrorCode.INTERNAL_ERROR, "log replay failed", exc.getCause());
+        }
+    }
+
+    /**
+     * A deserialized log entry.
+     */
+    private static class DecodedEntry {
+
+        final LSN                     lsn;
+
+        final int                     size;
+
+        final List<OperationInternal> operations = new ArrayList<OperationInternal>(1);
+
+        DecodedEntry(LSN lsn, int size) {
+            this.lsn = lsn;
+            this.size = size;
+        }
+    }
+
+}
@@ -11,6 +11,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.xtreemfs.babudb.api.dev.transaction.InMemoryProcessing;
@@ -22,6 +23,7 @@ import org.xtreemfs.babudb.api.exception.BabuDBException.ErrorCode;
 import org.xtreemfs.babudb.api.transaction.Operation;
 import org.xtreemfs.babudb.api.transaction.TransactionListener;
 import org.xtreemfs.babudb.log.DiskLogger;
+import org.xtreemfs.babudb.log.DiskLogger.SyncMode;
 import org.xtreemfs.babudb.log.LogEntry;
 import org.xtreemfs.babudb.log.SyncListener;
 import org.xtreemfs.babudb.lsmdb.LSN;
@@ -94,13 +96,17 @@ class TransactionManagerImpl extends TransactionManagerInternal {
         
         try {
                     
+            // a durability requested for the transaction overrides the sync mode
+            final boolean async = (txn.getDurability() != null) ? 
+                    txn.getDurability() == SyncMode.ASYNC : isAsync;
+            
             Object[] result = inMemory(txn, payload);
-            LogEntry entry = generateLogEntry(txn, payload, future, result);
+            LogEntry entry = generateLogEntry(txn, payload, future, result, async);
                         
             onDisk(txn, entry);
                         
             // notify listeners (async)
-            if (isAsync) {
+            if (async) {
                 future.finished(result, null);
                 
                 for (TransactionListener l : listeners) {
@@ -119,12 +125,14 @@ class TransactionManagerImpl extends TransactionManagerInternal {
      * @param txn
      * @param payload
      * @param listener
+     * @param results
+     * @param async - true, if the listener has already been notified when the entry is appended.
      * 
      * @return a prepared logEntry. 
      */
    private final LogEntry generateLogEntry(final TransactionInternal txn, 
            ReusableBuffer payload, final BabuDBRequestResultImpl<Object> listener, 
-           final Object[] results) {
+           final Object[] results, final boolean async) {
         
         LogEntry result = new LogEntry(payload, new SyncListener() {
             
@@ -133,7 +141,7 @@ class TransactionManagerImpl extends TransactionManagerInternal {
         
                 try {
                     
-                    if (!isAsync) {
+                    if (!async) {
                         BabuDBException irregs = txn.getIrregularities();
                         
                         if (irregs == null) {
@@ -146,7 +154,7 @@ class TransactionManagerImpl extends TransactionManagerInternal {
                     }
                 } catch (BabuDBException error) {
                     
-                    if (!isAsync) {
+                    if (!async) {
                         listener.failed(error);
                     } else {
                         Logging.logError(Logging.LEVEL_WARN, this, error);
@@ -157,7 +165,7 @@ class TransactionManagerImpl extends TransactionManagerInternal {
                             txn.toString());
                     
                     // notify listeners (sync)
-                    if (!isAsync) {
+                    if (!async) {
                         for (TransactionListener l : listeners) {
                             l.transactionPerformed(txn);
                         }
@@ -167,13 +175,21 @@ class TransactionManagerImpl extends TransactionManagerInternal {
             
             @Override
             public void failed(Exception ex) {
-                if (!isAsync) {
+                if (!async) {
                     listener.failed((ex != null && ex instanceof BabuDBException) ? 
                             (BabuDBException) ex : new BabuDBException(
                                     ErrorCode.INTERNAL_ERROR, ex.getMessage()));
                 }
             }
         }, LogEntry.PAYLOAD_TYPE_TRANSACTION);
+        result.setDurability(txn.getDurability());
+        
+        // transactions that only insert into a single database are logged to the
+        // database's log lane, any other transaction is logged to the first lane
+        Set<String> databases = txn.databasesAffected();
+        if (databases.size() == 1 && txn.aggregateOperationTypes() == 1 << Operation.TYPE_GROUP_INSERT) {
+            result.setLaneKey(databases.iterator().next().hashCode());
+        }
         
         return result;
     }
@@ -261,38 +277,50 @@ class TransactionManagerImpl extends TransactionManagerInternal {
     public void replayTransaction(TransactionInternal txn) throws BabuDBException {
 
         for (OperationInternal operation : txn) {
+            replayOperation(operation);
+        }
+    } 
+    
+    /**
+     * Replays a single operation of a transaction. Database create/copy/delete
+     * operations are not replayed. May be invoked concurrently for operations
+     * that do not depend on each other.
+     * 
+     * @param operation
+     * @throws BabuDBException
+     */
+    void replayOperation(OperationInternal operation) throws BabuDBException {
+        
+        byte type = operation.getType();
+        
+        // exclude database create/copy/delete calls from replay
+        if (type != Operation.TYPE_COPY_DB && 
+            type != Operation.TYPE_CREATE_DB && 
+            type != Operation.TYPE_DELETE_DB) {
             
-            byte type = operation.getType();
+            // get processing logic
+            InMemoryProcessing processing = inMemoryProcessing.get(type);
             
-            // exclude database create/copy/delete calls from replay
-            if (type != Operation.TYPE_COPY_DB && 
-                type != Operation.TYPE_CREATE_DB && 
-                type != Operation.TYPE_DELETE_DB) {
-                
-                // get processing logic
-                InMemoryProcessing processing = inMemoryProcessing.get(type);
+            // replay in-memory changes
+            try {
+                processing.process(operation);   
+            } catch (BabuDBException be) {
                 
-                // replay in-memory changes
-                try {
-                    processing.process(operation);   
-                } catch (BabuDBException be) {
+                // there might be false positives if a snapshot to delete has already been 
+                // deleted or a snapshot to create has already been created.
+                // also there could be inserts for databases that have been deleted already.
+                if (!(type == Operation.TYPE_CREATE_SNAP && (be.getErrorCode() == ErrorCode.SNAP_EXISTS || be
+                        .getErrorCode() == ErrorCode.NO_SUCH_DB))
+                 && !(type == Operation.TYPE_DELETE_SNAP && 
+                        be.getErrorCode() == ErrorCode.NO_SUCH_SNAPSHOT)
+                 && !(type == Operation.TYPE_GROUP_INSERT &&
+                        be.getErrorCode().equals(ErrorCode.NO_SUCH_DB))){
                     
-                    // there might be false positives if a snapshot to delete has already been 
-                    // deleted or a snapshot to create has already been created.
-                    // also there could be inserts for databases that have been deleted already.
-                    if (!(type == Operation.TYPE_CREATE_SNAP && (be.getErrorCode() == ErrorCode.SNAP_EXISTS || be
-                            .getErrorCode() == ErrorCode.NO_SUCH_DB))
-                     && !(type == Operation.TYPE_DELETE_SNAP && 
-                            be.getErrorCode() == ErrorCode.NO_SUCH_SNAPSHOT)
-                     && !(type == Operation.TYPE_GROUP_INSERT &&
-                            be.getErrorCode().equals(ErrorCode.NO_SUCH_DB))){
-                        
-                        throw be;
-                    }
+                    throw be;
                 }
             }
         }
-    } 
+    }
 
     /* (non-Javadoc)
      * @see org.xtreemfs.babudb.api.dev.transaction.TransactionManagerInternal#lockService()
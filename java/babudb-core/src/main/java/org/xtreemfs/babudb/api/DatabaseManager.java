@@ -12,10 +12,12 @@ import java.io.IOException;
 import java.util.Map;
 
 import org.xtreemfs.babudb.api.database.Database;
+import org.xtreemfs.babudb.api.database.DatabaseRequestResult;
 import org.xtreemfs.babudb.api.exception.BabuDBException;
 import org.xtreemfs.babudb.api.index.ByteRangeComparator;
 import org.xtreemfs.babudb.api.transaction.Transaction;
 import org.xtreemfs.babudb.api.transaction.TransactionListener;
+import org.xtreemfs.babudb.log.DiskLogger.SyncMode;
 import org.xtreemfs.babudb.lsmdb.BabuDBInsertGroup;
 
 /**
@@ -144,6 +146,49 @@ public interface DatabaseManager {
      */
     public void executeTransaction(Transaction txn) throws BabuDBException;
     
+    /**
+     * Executes a lightweight database transaction with the given durability.
+     * The method returns once the transaction's log entry has been made
+     * persistent according to <code>durability</code>, regardless of the
+     * database-wide sync mode.
+     * 
+     * @param txn
+     *            the transaction to execute
+     * @param durability
+     *            the durability of the transaction, or <code>null</code> to
+     *            use the database-wide sync mode
+     * @throws BabuDBException
+     *             if an error occurred while executing the transaction
+     */
+    public void executeTransaction(Transaction txn, SyncMode durability) throws BabuDBException;
+    
+    /**
+     * Executes a lightweight database transaction asynchronously. The
+     * returned future is completed as soon as the transaction has been
+     * written to the database log. The calling thread neither waits for busy
+     * database workers nor for the log.
+     * 
+     * @param txn
+     *            the transaction to execute
+     * @return a future for the results of the transaction's operations
+     */
+    public DatabaseRequestResult<Object> executeTransactionAsync(Transaction txn);
+    
+    /**
+     * Executes a lightweight database transaction asynchronously with the
+     * given durability. The returned future is completed as soon as the
+     * transaction's log entry has been made persistent according to
+     * <code>durability</code>.
+     * 
+     * @param txn
+     *            the transaction to execute
+     * @param durability
+     *            the durability of the transaction, or <code>null</code> to
+     *            use the database-wide sync mode
+     * @return a future for the results of the transaction's operations
+     */
+    public DatabaseRequestResult<Object> executeTransactionAsync(Transaction txn, SyncMode durability);
+    
     /**
      * Adds a new transaction listener. The listener is notified after the
      * execution of a transaction.
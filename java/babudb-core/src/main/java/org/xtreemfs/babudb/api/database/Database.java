@@ -9,6 +9,7 @@
 package org.xtreemfs.babudb.api.database;
 
 import org.xtreemfs.babudb.api.index.ByteRangeComparator;
+import org.xtreemfs.babudb.log.DiskLogger.SyncMode;
 
 /**
  * This interface contains all methods on a database.
@@ -57,6 +58,27 @@ public interface Database extends DatabaseRO {
     public DatabaseRequestResult<Object> singleInsert(int indexId, byte[] key, 
             byte[] value, Object context);
     
+    /**
+     * Inserts a single key value pair with the given durability. The request
+     * is acknowledged once the log entry has been made persistent according
+     * to <code>durability</code>, regardless of the database-wide sync mode.
+     * 
+     * @param indexId
+     *            index id (0..NumIndices-1)
+     * @param key
+     *            the key
+     * @param value
+     *            the value
+     * @param durability
+     *            the durability of the insert, or <code>null</code> to use
+     *            the database-wide sync mode
+     * @param context
+     *            arbitrary context which is passed to the listener
+     * @return a future as proxy for the request result.
+     */
+    public DatabaseRequestResult<Object> singleInsert(int indexId, byte[] key, 
+            byte[] value, SyncMode durability, Object context);
+    
     /**
      * Inserts a group of key value pairs.
      * 
@@ -68,4 +90,22 @@ public interface Database extends DatabaseRO {
      */
     public DatabaseRequestResult<Object> insert(DatabaseInsertGroup irg, 
             Object context);
+    
+    /**
+     * Inserts a group of key value pairs with the given durability. The
+     * request is acknowledged once the log entry has been made persistent
+     * according to <code>durability</code>, regardless of the database-wide
+     * sync mode.
+     * 
+     * @param irg
+     *            the insert record group to execute
+     * @param durability
+     *            the durability of the inserts, or <code>null</code> to use
+     *            the database-wide sync mode
+     * @param context
+     *            arbitrary context which is passed to the listener
+     * @return a future as proxy for the request result.
+     */
+    public DatabaseRequestResult<Object> insert(DatabaseInsertGroup irg, 
+            SyncMode durability, Object context);
 }
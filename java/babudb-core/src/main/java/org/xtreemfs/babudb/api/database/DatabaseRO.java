@@ -34,6 +34,48 @@ public interface DatabaseRO {
     public DatabaseRequestResult<byte[]> lookup(int indexId, byte[] key, 
             Object context);
     
+    /**
+     * Performs a lookup for a single key that returns a read-only view on the
+     * value rather than a copy. The result object contains the view, or
+     * <code>null</code> if the key could not be found.
+     * <p>
+     * The view may refer to the on-disk block from which the value was read.
+     * It has to be freed by means of <code>ValueView.free()</code> once it is
+     * no longer needed, and it must not be accessed afterwards.
+     * </p>
+     * 
+     * @param indexId
+     *            index id (0..NumIndices-1)
+     * @param key
+     *            the key to look up
+     * @param context
+     *            arbitrary context which is passed to the listener.
+     * @return a future as proxy for the request result.
+     */
+    public DatabaseRequestResult<ValueView> lookupView(int indexId, byte[] key, 
+            Object context);
+    
+    /**
+     * Performs a lookup for multiple keys at once. The result object contains
+     * an array with the value of each key at the position of the key in
+     * <code>keys</code>, or <code>null</code> if the key could not be found.
+     * <p>
+     * Compared to a sequence of single-key lookups, a multi-lookup is
+     * processed as a single request, and each on-disk block containing
+     * requested keys is only read once.
+     * </p>
+     * 
+     * @param indexId
+     *            index id (0..NumIndices-1)
+     * @param keys
+     *            the keys to look up
+     * @param context
+     *            arbitrary context which is passed to the listener.
+     * @return a future as proxy for the request result.
+     */
+    public DatabaseRequestResult<byte[][]> multiLookup(int indexId, byte[][] keys, 
+            Object context);
+    
     /**
      * Executes a prefix lookup. The result object contains an iterator to the
      * database starting at the first matching key and returning key/value pairs
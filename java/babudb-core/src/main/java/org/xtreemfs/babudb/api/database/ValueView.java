@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2026, agent
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.babudb.api.database;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A read-only view on a value that has been looked up.
+ * 
+ * <p>
+ * Unlike the byte arrays returned by regular lookups, views are not
+ * necessarily copies of the values. A view may refer to the memory-mapped
+ * block file or the buffer from which the value was read, which is why it
+ * only remains valid until <code>free()</code> has been invoked. Applications
+ * should free views as soon as they are no longer needed, as the underlying
+ * index cannot be released while views on it exist.
+ * </p>
+ * 
+ * @author agent
+ * 
+ */
+public class ValueView {
+    
+    private final ByteBuffer value;
+    
+    /**
+     * Creates a view on a value.
+     * 
+     * @param value
+     *            a buffer containing the value between its position and its
+     *            limit
+     */
+    public ValueView(ByteBuffer value) {
+        this.value = value;
+    }
+    
+    /**
+     * Creates a view on a value stored in a byte array.
+     * 
+     * @param value
+     *            the value
+     */
+    public ValueView(byte[] value) {
+        this(ByteBuffer.wrap(value).asReadOnlyBuffer());
+    }
+    
+    /**
+     * Returns a read-only buffer containing the value between its position
+     * and its limit. The buffer must not be accessed after the view has been
+     * freed.
+     * 
+     * @return the buffer
+     */
+    public ByteBuffer getValue() {
+        return value;
+    }
+    
+    /**
+     * Copies the value to a new byte array.
+     * 
+     * @return the value
+     */
+    public byte[] toArray() {
+        byte[] array = new byte[value.remaining()];
+        value.duplicate().get(array);
+        return array;
+    }
+    
+    /**
+     * Frees any resources attached to the view.
+     */
+    public void free() {
+    }
+    
+}
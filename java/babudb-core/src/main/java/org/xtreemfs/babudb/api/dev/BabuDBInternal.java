@@ -12,6 +12,8 @@ import org.xtreemfs.babudb.api.StaticInitialization;
 import org.xtreemfs.babudb.api.dev.transaction.TransactionManagerInternal;
 import org.xtreemfs.babudb.api.exception.BabuDBException;
 import org.xtreemfs.babudb.config.BabuDBConfig;
+import org.xtreemfs.babudb.index.reader.BlockCache;
+import org.xtreemfs.babudb.index.writer.WriteRateLimiter;
 import org.xtreemfs.babudb.lsmdb.DBConfig;
 import org.xtreemfs.babudb.lsmdb.LSMDBWorker;
 import org.xtreemfs.babudb.lsmdb.LSN;
@@ -71,6 +73,24 @@ public interface BabuDBInternal extends BabuDB, LifeCycleListener {
      */
     public BabuDBConfig getConfig();
     
+    /**
+     * Returns the cache for blocks of on-disk indices that is shared by all
+     * databases.
+     * 
+     * @return the block cache, or <code>null</code> if block caching is
+     *         disabled
+     */
+    public BlockCache getBlockCache();
+    
+    /**
+     * Returns the rate limiter for writing on-disk indices that is shared by
+     * all databases.
+     * 
+     * @return the rate limiter, or <code>null</code> if the write rate is
+     *         unlimited
+     */
+    public WriteRateLimiter getWriteRateLimiter();
+    
     /**
      * May change during execution so always access the most common instance
      * by this method.
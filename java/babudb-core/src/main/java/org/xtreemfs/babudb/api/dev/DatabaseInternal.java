@@ -12,6 +12,7 @@ import org.xtreemfs.babudb.api.database.DatabaseRequestResult;
 import org.xtreemfs.babudb.api.database.ResultSet;
 import org.xtreemfs.babudb.api.exception.BabuDBException;
 import org.xtreemfs.babudb.log.DiskLogger;
+import org.xtreemfs.babudb.log.DiskLogger.SyncMode;
 import org.xtreemfs.babudb.log.LogEntry;
 import org.xtreemfs.babudb.lsmdb.BabuDBInsertGroup;
 import org.xtreemfs.babudb.lsmdb.LSMDBRequest;
@@ -61,6 +62,20 @@ public interface DatabaseInternal extends Database {
      */
     public DatabaseRequestResult<Object> insert(BabuDBInsertGroup irg, Object context);
     
+    /**
+     * Inserts a group of key value pairs with the given durability.
+     * 
+     * @param irg
+     *            the insert record group to execute
+     * @param durability
+     *            the durability of the inserts, or <code>null</code> to use
+     *            the database-wide sync mode
+     * @param context
+     *            arbitrary context which is passed to the listener
+     * @return a future as proxy for the request result.
+     */
+    public DatabaseRequestResult<Object> insert(BabuDBInsertGroup irg, SyncMode durability, Object context);
+    
 /*
  * snapshot specific operations
  */
@@ -97,6 +112,24 @@ public interface DatabaseInternal extends Database {
     public void proceedWriteSnapshot(int viewId, long sequenceNo, int[] snapIds) 
             throws BabuDBException;
     
+    /**
+     * Writes the snapshot of a single index to disk. Snapshots of different
+     * indices may be written concurrently.
+     * 
+     * @param viewId
+     *            current viewId (i.e. of the last write)
+     * @param sequenceNo
+     *            current sequenceNo (i.e. of the last write)
+     * @param snapIds
+     *            the snapshot Ids (obtained via createSnapshot).
+     * @param index
+     *            the index
+     * @throws BabuDBException
+     *             if the snapshot cannot be written
+     */
+    public void proceedWriteSnapshot(int viewId, long sequenceNo, int[] snapIds, int index) 
+            throws BabuDBException;
+    
     /**
      * Links the indices to the latest on-disk snapshot, cleans up any
      * unnecessary in-memory and on-disk data. 
@@ -158,6 +191,16 @@ public interface DatabaseInternal extends Database {
      */
     public byte[] directLookup(int indexId, int snapId, byte[] key) throws BabuDBException;
     
+    /**
+     * @param indexId
+     * @param snapId
+     * @param keys
+     * @return the values that have been looked up, in the order of the keys.
+     * @throws BabuDBException
+     */
+    public byte[][] directMultiLookup(int indexId, int snapId, byte[][] keys) 
+            throws BabuDBException;
+    
     /**
      * @param indexId
      * @param snapId
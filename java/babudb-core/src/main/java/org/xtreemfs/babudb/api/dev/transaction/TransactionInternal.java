@@ -19,6 +19,7 @@ import org.xtreemfs.babudb.api.exception.BabuDBException;
 import org.xtreemfs.babudb.api.index.ByteRangeComparator;
 import org.xtreemfs.babudb.api.transaction.Operation;
 import org.xtreemfs.babudb.api.transaction.Transaction;
+import org.xtreemfs.babudb.log.DiskLogger.SyncMode;
 import org.xtreemfs.babudb.lsmdb.BabuDBTransaction;
 import org.xtreemfs.babudb.lsmdb.InsertRecordGroup;
 import org.xtreemfs.babudb.lsmdb.LSMDatabase;
@@ -39,6 +40,12 @@ public abstract class TransactionInternal extends LinkedList<OperationInternal>
     
     private Map<String, DatabaseRequestResult<AtomicBoolean>> databaseLockFutureMap = null;
     
+    /**
+     * durability requested for this transaction; not serialized, null if the database-wide sync
+     * mode applies
+     */
+    private volatile SyncMode durability = null;
+    
     /* (non-Javadoc)
      * @see org.xtreemfs.babudb.api.transaction.Transaction#createSnapshot(java.lang.String, 
      *          org.xtreemfs.babudb.snapshots.SnapshotConfig)
@@ -273,6 +280,23 @@ public abstract class TransactionInternal extends LinkedList<OperationInternal>
      */
     public abstract BabuDBException getIrregularities();
     
+    /**
+     * Sets the durability with which this transaction is made persistent.
+     * 
+     * @param durability - the durability, or null to use the database-wide sync mode.
+     */
+    public final void setDurability(SyncMode durability) {
+        this.durability = durability;
+    }
+    
+    /**
+     * @return the durability with which this transaction is made persistent, or null if the
+     *         database-wide sync mode applies.
+     */
+    public final SyncMode getDurability() {
+        return durability;
+    }
+    
     /**
      * Deserializes the transaction.
      * 
@@ -9,9 +9,13 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
+import org.xtreemfs.babudb.index.BlockCodec;
+import org.xtreemfs.babudb.index.overlay.ArenaOverlayTree;
 import org.xtreemfs.babudb.log.DiskLogger.SyncMode;
 import org.xtreemfs.foundation.logging.Logging;
 
@@ -62,6 +66,13 @@ public class BabuDBConfig extends Config {
      */
     protected int      numThreads;
     
+    /**
+     * Specifies whether read requests are appended to a queue shared by all
+     * worker threads instead of the queue of the worker responsible for the
+     * database. Insertions are always processed by the responsible worker.
+     */
+    protected boolean  sharedReads;
+    
     /**
      * MaxLogfileSize a checkpoint is generated ,if maxLogfileSize is exceeded.
      */
@@ -109,6 +120,141 @@ public class BabuDBConfig extends Config {
      */
     protected int      mmapLimit;
     
+    /**
+     * Specifies the maximum number of bytes occupied by blocks of on-disk
+     * indices that are cached in memory. The cache is only used for block
+     * files that are not memory-mapped. If set to 0, no blocks will be cached.
+     */
+    protected long     blockCacheSize;
+    
+    /**
+     * Specifies the number of bits per key of the Bloom filters that are
+     * written with on-disk indices. If set to 0, no Bloom filters will be
+     * written.
+     */
+    protected int      bloomFilterBitsPerKey;
+    
+    /**
+     * Specifies the maximum number of delta runs that an on-disk index may
+     * consist of. As long as the limit has not been reached, checkpoints only
+     * write the changes since the last checkpoint as a new delta run instead
+     * of rewriting the entire index. If set to 0, each checkpoint rewrites the
+     * entire index.
+     */
+    protected int      maxDeltaRuns;
+    
+    /**
+     * Specifies the target size in bytes of the blocks of on-disk indices. A
+     * block is completed as soon as its size reaches the target size, or when
+     * it contains <code>maxNumRecordsPerBlock</code> entries. If set to 0,
+     * blocks are only limited by the number of entries.
+     */
+    protected int      maxBlockSize;
+    
+    /**
+     * Specifies the name of the codec that compresses the values of on-disk
+     * index blocks, if compression is enabled. Values are not compressed if
+     * set to "none".
+     */
+    protected String   blockCodec = BlockCodec.NAME_NONE;
+    
+    /**
+     * Codec names for individual indices, which override the default codec;
+     * keys have the form &lt;database name&gt;.&lt;index ID&gt;.
+     */
+    protected Map<String, String> indexBlockCodecs = new HashMap<String, String>();
+    
+    /**
+     * Specifies the number of keys between two restart points of front-coded
+     * key pages in on-disk index blocks. Keys between restart points only
+     * store the suffix that differs from their predecessor. If set to 0, keys
+     * are not front-coded.
+     */
+    protected int      keyRestartInterval;
+    
+    /**
+     * Specifies the max. estimated number of bytes occupied by the in-memory
+     * trees of all indices. A checkpoint is created as soon as the budget is
+     * exceeded, regardless of the size of the log. If set to 0, checkpoints
+     * are only triggered by the log size.
+     */
+    protected long     maxMemtableSize;
+    
+    /**
+     * Specifies the memory in which in-memory trees allocate their entries.
+     * With "heap" or "direct", keys and values are stored in large slabs on
+     * or outside the Java heap, respectively, which reduces the number of
+     * objects the garbage collector has to trace. If set to "none", entries
+     * are stored as individual objects.
+     */
+    protected String   memtableArena = "none";
+    
+    /**
+     * Specifies the maximum size in bytes of a batch of log entries that is
+     * written to the database log with a single sync. If set to 0, batches are
+     * limited by the number of entries instead.
+     */
+    protected int      logBatchMaxBytes;
+    
+    /**
+     * Specifies the maximum time in microseconds the disk logger waits for
+     * further log entries before writing an incomplete batch. If set to 0,
+     * batches are written as soon as log entries are available.
+     */
+    protected int      logBatchMaxWaitMicros;
+    
+    /**
+     * Specifies the size in bytes up to which database log files are filled
+     * with zeros when they are created, so that appending log entries does not
+     * change the file size. Log files deleted by checkpoints are recycled as
+     * new log files. If set to 0, log files are neither preallocated nor
+     * recycled.
+     */
+    protected int      logPreallocationSize;
+    
+    /**
+     * Specifies the size in bytes of the windows of database log files that
+     * are mapped into memory, so that log entries can be serialized directly
+     * into the log file. If set to 0, log entries are written with system
+     * calls.
+     */
+    protected int      logMappedWindowSize;
+    
+    /**
+     * Specifies the number of log lanes. Each lane writes its own log file
+     * and is synced independently of the other lanes. Insertions into a
+     * database are always logged to the same lane.
+     */
+    protected int      logLanes = 1;
+    
+    /**
+     * Specifies the directories of the log lanes following the first lane,
+     * which resides in <code>dbLogDir</code>.
+     */
+    protected String[] logLaneDirs = new String[0];
+    
+    /**
+     * Specifies the number of threads that concurrently write the indices of
+     * all databases when a checkpoint is created.
+     */
+    protected int      checkpointThreads = 1;
+    
+    /**
+     * Specifies the maximum number of bytes per second at which on-disk
+     * indices are written by checkpoints, persistent snapshots and database
+     * copies. The limit is shared by all databases. If set to 0, the write
+     * rate is unlimited.
+     */
+    protected long     maxWriteRate;
+    
+    /**
+     * Specifies the sync latency of the database log in microseconds that
+     * index writes should not push the log beyond. If a log sync takes longer,
+     * the index write rate is reduced below <code>maxWriteRate</code> until
+     * the latency recovers. If set to 0, the rate is not adjusted.
+     */
+    protected int      targetSyncLatencyMicros;
+    
     /**
      * Paths to plugins initialized on startup of BabuDB.
      */
@@ -259,8 +405,28 @@ public class BabuDBConfig extends Config {
     }
     
     public BabuDBConfig copy() {
-        return new BabuDBConfig(baseDir, dbLogDir, numThreads, maxLogfileSize, checkInterval, syncMode,
-            pseudoSyncWait, maxQueueLength, compression, maxNumRecordsPerBlock, maxBlockFileSize);
+        BabuDBConfig copy = new BabuDBConfig(baseDir, dbLogDir, numThreads, maxLogfileSize, checkInterval,
+            syncMode, pseudoSyncWait, maxQueueLength, compression, maxNumRecordsPerBlock, maxBlockFileSize);
+        copy.blockCacheSize = blockCacheSize;
+        copy.bloomFilterBitsPerKey = bloomFilterBitsPerKey;
+        copy.maxDeltaRuns = maxDeltaRuns;
+        copy.maxBlockSize = maxBlockSize;
+        copy.blockCodec = blockCodec;
+        copy.indexBlockCodecs.putAll(indexBlockCodecs);
+        copy.keyRestartInterval = keyRestartInterval;
+        copy.maxMemtableSize = maxMemtableSize;
+        copy.memtableArena = memtableArena;
+        copy.logBatchMaxBytes = logBatchMaxBytes;
+        copy.logBatchMaxWaitMicros = logBatchMaxWaitMicros;
+        copy.logPreallocationSize = logPreallocationSize;
+        copy.logMappedWindowSize = logMappedWindowSize;
+        copy.logLanes = logLanes;
+        copy.logLaneDirs = logLaneDirs.clone();
+        copy.checkpointThreads = checkpointThreads;
+        copy.maxWriteRate = maxWriteRate;
+        copy.targetSyncLatencyMicros = targetSyncLatencyMicros;
+        copy.sharedReads = sharedReads;
+        return copy;
     }
     
     /**
@@ -310,6 +476,8 @@ public class BabuDBConfig extends Config {
         
         this.maxQueueLength = this.readOptionalInt("babudb.worker.maxQueueLength", 0);
         
+        this.sharedReads = this.readOptionalBoolean("babudb.worker.sharedReads", false);
+        
         this.maxLogfileSize = this.readOptionalInt("babudb.maxLogfileSize", 1);
         
         this.checkInterval = this.readOptionalInt("babudb.checkInterval", 0);
@@ -327,6 +495,43 @@ public class BabuDBConfig extends Config {
         
         this.mmapLimit = this.readOptionalInt("babudb.mmapLimit", -1);
         
+        this.blockCacheSize = this.readOptionalLong("babudb.blockCacheSize", 0);
+        
+        this.bloomFilterBitsPerKey = this.readOptionalInt("babudb.bloomFilterBitsPerKey", 0);
+        
+        this.maxDeltaRuns = this.readOptionalInt("babudb.maxDeltaRuns", 0);
+        
+        this.maxBlockSize = this.readOptionalInt("babudb.maxBlockSize", 0);
+        
+        this.blockCodec = this.readOptionalString("babudb.blockCodec", BlockCodec.NAME_NONE);
+        
+        for (String key : props.stringPropertyNames())
+            if (key.startsWith("babudb.blockCodec."))
+                indexBlockCodecs.put(key.substring("babudb.blockCodec.".length()), props.getProperty(key)
+                        .trim());
+        
+        this.keyRestartInterval = this.readOptionalInt("babudb.keyRestartInterval", 0);
+        
+        this.maxMemtableSize = this.readOptionalLong("babudb.maxMemtableSize", 0);
+        
+        this.memtableArena = this.readOptionalString("babudb.memtableArena", "none");
+        
+        this.logBatchMaxBytes = this.readOptionalInt("babudb.logBatchMaxBytes", 0);
+        
+        this.logBatchMaxWaitMicros = this.readOptionalInt("babudb.logBatchMaxWaitMicros", 0);
+        
+        this.logPreallocationSize = this.readOptionalInt("babudb.logPreallocationSize", 0);
+        
+        this.logMappedWindowSize = this.readOptionalInt("babudb.logMappedWindowSize", 0);
+        
+        this.logLanes = this.readOptionalInt("babudb.logLanes", 1);
+        
+        this.checkpointThreads = this.readOptionalInt("babudb.checkpointThreads", 1);
+        
+        this.maxWriteRate = this.readOptionalLong("babudb.maxWriteRate", 0);
+        
+        this.targetSyncLatencyMicros = this.readOptionalInt("babudb.targetSyncLatencyMicros", 0);
+        
         int count = 0;
         String pluginConfigPath = null;
         while ((pluginConfigPath = readOptionalString("babudb.plugin." + count, null)) != null) {
@@ -337,6 +542,61 @@ public class BabuDBConfig extends Config {
         checkArgs(this.baseDir, this.dbLogDir, numThreads, maxLogfileSize, 
                 checkInterval, syncMode, pseudoSyncWait, maxQueueLength, 
                 compression, maxNumRecordsPerBlock, maxBlockFileSize, mmapLimit);
+        
+        if (blockCacheSize < 0)
+            throw new IllegalArgumentException("block cache size must be >= 0!");
+        
+        if (bloomFilterBitsPerKey < 0)
+            throw new IllegalArgumentException("number of Bloom filter bits per key must be >= 0!");
+        
+        if (maxDeltaRuns < 0)
+            throw new IllegalArgumentException("max. number of delta runs must be >= 0!");
+        
+        if (maxBlockSize < 0)
+            throw new IllegalArgumentException("max. block size must be >= 0!");
+        
+        // check whether all codecs exist
+        BlockCodec.getCodec(blockCodec);
+        for (String codec : indexBlockCodecs.values())
+            BlockCodec.getCodec(codec);
+        
+        if (keyRestartInterval < 0)
+            throw new IllegalArgumentException("key restart interval must be >= 0!");
+        
+        if (maxMemtableSize < 0)
+            throw new IllegalArgumentException("max. memtable size must be >= 0!");
+        
+        // check whether the arena type exists
+        getMemtableArena();
+        
+        if (logBatchMaxBytes < 0)
+            throw new IllegalArgumentException("max. log batch size must be >= 0!");
+        
+        if (logBatchMaxWaitMicros < 0)
+            throw new IllegalArgumentException("max. log batch wait time must be >= 0!");
+        
+        if (logPreallocationSize < 0)
+            throw new IllegalArgumentException("log preallocation size must be >= 0!");
+        
+        if (logMappedWindowSize < 0)
+            throw new IllegalArgumentException("log mapped window size must be >= 0!");
+        
+        if (logLanes < 1)
+            throw new IllegalArgumentException("number of log lanes must be > 0!");
+        
+        if (checkpointThreads < 1)
+            throw new IllegalArgumentException("number of checkpoint threads must be > 0!");
+        
+        if (maxWriteRate < 0)
+            throw new IllegalArgumentException("max. write rate must be >= 0!");
+        
+        if (targetSyncLatencyMicros < 0)
+            throw new IllegalArgumentException("target sync latency must be >= 0!");
+        
+        // lanes without a configured directory reside in the log directory
+        logLaneDirs = new String[logLanes - 1];
+        for (int i = 1; i < logLanes; i++)
+            logLaneDirs[i - 1] = readOptionalString("babudb.logLaneDir." + i, dbLogDir + "lane" + i);
     }
     
     public int getDebugLevel() {
@@ -371,6 +631,10 @@ public class BabuDBConfig extends Config {
         return numThreads;
     }
     
+    public boolean getSharedReads() {
+        return sharedReads;
+    }
+    
     public long getMaxLogfileSize() {
         return maxLogfileSize;
     }
@@ -403,6 +667,109 @@ public class BabuDBConfig extends Config {
         return this.mmapLimit;
     }
     
+    public long getBlockCacheSize() {
+        return blockCacheSize;
+    }
+    
+    public int getBloomFilterBitsPerKey() {
+        return bloomFilterBitsPerKey;
+    }
+    
+    public int getMaxDeltaRuns() {
+        return maxDeltaRuns;
+    }
+    
+    public int getMaxBlockSize() {
+        return maxBlockSize;
+    }
+    
+    public String getBlockCodec() {
+        return blockCodec;
+    }
+    
+    /**
+     * Returns the codecs for the values of all indices of a database.
+     * 
+     * @param dbName
+     *            the database name
+     * @param numIndices
+     *            the number of indices of the database
+     * @return an array containing the codec of each index; an entry is
+     *         <code>null</code> if the values of the index are not compressed
+     */
+    public BlockCodec[] getBlockCodecs(String dbName, int numIndices) {
+        
+        BlockCodec[] codecs = new BlockCodec[numIndices];
+        for (int i = 0; i < numIndices; i++) {
+            String codec = indexBlockCodecs.get(dbName + "." + i);
+            codecs[i] = BlockCodec.getCodec(codec != null ? codec : blockCodec);
+        }
+        
+        return codecs;
+    }
+    
+    public int getKeyRestartInterval() {
+        return keyRestartInterval;
+    }
+    
+    public long getMaxMemtableSize() {
+        return maxMemtableSize;
+    }
+    
+    /**
+     * Returns the memory in which in-memory trees allocate their entries.
+     * 
+     * @return the kind of memory, or <code>null</code>, if entries are stored
+     *         as individual objects
+     */
+    public ArenaOverlayTree.Allocation getMemtableArena() {
+        
+        if ("none".equalsIgnoreCase(memtableArena))
+            return null;
+        
+        try {
+            return ArenaOverlayTree.Allocation.valueOf(memtableArena.toUpperCase());
+        } catch (IllegalArgumentException exc) {
+            throw new IllegalArgumentException("unknown memtable arena: " + memtableArena);
+        }
+    }
+    
+    public int getLogBatchMaxBytes() {
+        return logBatchMaxBytes;
+    }
+    
+    public int getLogBatchMaxWaitMicros() {
+        return logBatchMaxWaitMicros;
+    }
+    
+    public int getLogPreallocationSize() {
+        return logPreallocationSize;
+    }
+    
+    public int getLogMappedWindowSize() {
+        return logMappedWindowSize;
+    }
+    
+    public int getLogLanes() {
+        return logLanes;
+    }
+    
+    public String[] getLogLaneDirs() {
+        return logLaneDirs;
+    }
+    
+    public int getCheckpointThreads() {
+        return checkpointThreads;
+    }
+    
+    public long getMaxWriteRate() {
+        return maxWriteRate;
+    }
+    
+    public int getTargetSyncLatencyMicros() {
+        return targetSyncLatencyMicros;
+    }
+    
     public List<String> getPlugins() {
         return plugins;
     }
@@ -417,6 +784,7 @@ public class BabuDBConfig extends Config {
             buf.append("#     pseudo sync interval: " + pseudoSyncWait + "\n");
         buf.append("#        max. queue length: " + maxQueueLength + "\n");
         buf.append("#             num. threads: " + numThreads + "\n");
+        buf.append("#             shared reads: " + sharedReads + "\n");
         buf.append("#   checkpointing interval: " + checkInterval + "\n");
         buf.append("#       max. log file size: " + maxLogfileSize + "\n");
         buf.append("#   num. records per block: " + maxNumRecordsPerBlock + "\n");
@@ -425,6 +793,28 @@ public class BabuDBConfig extends Config {
         buf.append("#            mmap disabled: " + disableMMap + "\n");
         if (!disableMMap)
             buf.append("#               mmap limit: " + mmapLimit + "\n");
+        buf.append("#         block cache size: " + blockCacheSize + "\n");
+        buf.append("#  bloom filter bits / key: " + bloomFilterBitsPerKey + "\n");
+        buf.append("#     max. delta runs / ix: " + maxDeltaRuns + "\n");
+        buf.append("#   max. block size (byte): " + maxBlockSize + "\n");
+        buf.append("#              block codec: " + blockCodec + "\n");
+        for (Map.Entry<String, String> codec : indexBlockCodecs.entrySet())
+            buf.append("#         block codec (ix): " + codec.getKey() + " = " + codec.getValue() + "\n");
+        buf.append("#     key restart interval: " + keyRestartInterval + "\n");
+        buf.append("#   memtable budget (byte): " + maxMemtableSize + "\n");
+        buf.append("#           memtable arena: " + memtableArena + "\n");
+        buf.append("#    max. log batch (byte): " + logBatchMaxBytes + "\n");
+        buf.append("# max. log batch wait (us): " + logBatchMaxWaitMicros + "\n");
+        buf.append("# log prealloc size (byte): " + logPreallocationSize + "\n");
+        buf.append("#   log mmap window (byte): " + logMappedWindowSize + "\n");
+        buf.append("#           num. log lanes: " + logLanes + "\n");
+        for (int i = 0; i < logLaneDirs.length; i++) {
+            buf.append("#               log lane-" + (i + 1) + ": " + logLaneDirs[i] + "\n");
+        }
+        buf.append("#  num. checkpoint threads: " + checkpointThreads + "\n");
+        buf.append("# max. write rate (byte/s): " + maxWriteRate + "\n");
+        if (maxWriteRate > 0)
+            buf.append("# target sync latency (us): " + targetSyncLatencyMicros + "\n");
         for (int i = 0; i < plugins.size(); i++) {
             buf.append("#               plugin-" + i + ": " + plugins.get(i) + "\n");
         }
@@ -107,6 +107,14 @@ abstract public class Config {
             return Integer.parseInt(tmp.trim());
     }
 
+    protected long readOptionalLong(String paramName, long defaultValue) {
+        String tmp = props.getProperty(paramName);
+        if (tmp == null)
+            return defaultValue;
+        else
+            return Long.parseLong(tmp.trim());
+    }
+
     protected InetAddress readOptionalInetAddr(String paramName,
         InetAddress defaultValue) throws UnknownHostException {
         String tmp = props.getProperty(paramName);
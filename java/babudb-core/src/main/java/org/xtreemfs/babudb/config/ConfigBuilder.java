@@ -95,6 +95,21 @@ public class ConfigBuilder {
         return this;
     }
     
+    /**
+     * Specifies whether read requests are processed by any worker thread or
+     * only by the worker thread responsible for the database.
+     * 
+     * @param sharedReads
+     *            if <code>true</code>, read requests will be appended to a
+     *            queue shared by all worker threads
+     * @return a reference to this object
+     */
+    public ConfigBuilder setSharedReads(boolean sharedReads) {
+        
+        changes.put("babudb.worker.sharedReads", sharedReads + "");
+        return this;
+    }
+    
     /**
      * Enables or disables compression of database contents.
      * 
@@ -122,6 +137,259 @@ public class ConfigBuilder {
         return this;
     }
     
+    /**
+     * Specifies the size of the cache for blocks of on-disk indices that are
+     * not memory-mapped.
+     * 
+     * @param size
+     *            the maximum size of the block cache in bytes; 0 disables the
+     *            cache
+     * @return a reference to this object
+     */
+    public ConfigBuilder setBlockCacheSize(long size) {
+        
+        changes.put("babudb.blockCacheSize", size + "");
+        return this;
+    }
+    
+    /**
+     * Specifies the number of bits per key of the Bloom filters written with
+     * on-disk indices.
+     * 
+     * @param bitsPerKey
+     *            the number of bits per key; 0 disables Bloom filters
+     * @return a reference to this object
+     */
+    public ConfigBuilder setBloomFilterBitsPerKey(int bitsPerKey) {
+        
+        changes.put("babudb.bloomFilterBitsPerKey", bitsPerKey + "");
+        return this;
+    }
+    
+    /**
+     * Specifies the maximum number of delta runs an on-disk index may consist
+     * of before a checkpoint rewrites the entire index.
+     * 
+     * @param maxRuns
+     *            the maximum number of delta runs per index; 0 disables
+     *            incremental checkpoints
+     * @return a reference to this object
+     */
+    public ConfigBuilder setMaxDeltaRuns(int maxRuns) {
+        
+        changes.put("babudb.maxDeltaRuns", maxRuns + "");
+        return this;
+    }
+    
+    /**
+     * Specifies the target size of the blocks of on-disk indices. Blocks are
+     * completed once they reach the target size or the max. number of records
+     * per block, whichever comes first.
+     * 
+     * @param maxBlockSize
+     *            the target block size in bytes; 0 limits blocks only by the
+     *            number of records
+     * @return a reference to this object
+     */
+    public ConfigBuilder setMaxBlockSize(int maxBlockSize) {
+        
+        changes.put("babudb.maxBlockSize", maxBlockSize + "");
+        return this;
+    }
+    
+    /**
+     * Specifies the codec that compresses the values of on-disk index blocks.
+     * Only takes effect if compression is enabled.
+     * 
+     * @param codec
+     *            the codec name, e.g. "deflate", or "none" to disable value
+     *            compression
+     * @return a reference to this object
+     */
+    public ConfigBuilder setBlockCodec(String codec) {
+        
+        changes.put("babudb.blockCodec", codec);
+        return this;
+    }
+    
+    /**
+     * Specifies the codec that compresses the values of a single index, which
+     * overrides the default codec. Only takes effect if compression is
+     * enabled.
+     * 
+     * @param dbName
+     *            the database name
+     * @param indexId
+     *            the index ID
+     * @param codec
+     *            the codec name, e.g. "deflate", or "none" to disable value
+     *            compression
+     * @return a reference to this object
+     */
+    public ConfigBuilder setBlockCodec(String dbName, int indexId, String codec) {
+        
+        changes.put("babudb.blockCodec." + dbName + "." + indexId, codec);
+        return this;
+    }
+    
+    /**
+     * Enables front coding of the keys in on-disk index blocks. Keys only
+     * store the suffix that differs from their predecessor, except for every
+     * n-th key, which is stored in full as a restart point for lookups.
+     * 
+     * @param interval
+     *            the number of keys between two restart points; 0 disables
+     *            front coding
+     * @return a reference to this object
+     */
+    public ConfigBuilder setKeyRestartInterval(int interval) {
+        
+        changes.put("babudb.keyRestartInterval", interval + "");
+        return this;
+    }
+    
+    /**
+     * Specifies a memory budget for the in-memory trees of all indices. A
+     * checkpoint is created as soon as the estimated size of all in-memory
+     * trees exceeds the budget, even if the log has not yet reached its max.
+     * size.
+     * 
+     * @param maxMemtableSize
+     *            the budget in bytes; 0 disables memory-triggered checkpoints
+     * @return a reference to this object
+     */
+    public ConfigBuilder setMaxMemtableSize(long maxMemtableSize) {
+        
+        changes.put("babudb.maxMemtableSize", maxMemtableSize + "");
+        return this;
+    }
+    
+    /**
+     * Specifies the memory in which in-memory trees allocate their entries.
+     * 
+     * @param arena
+     *            "heap" or "direct" to store entries in large slabs on or
+     *            outside the Java heap; "none" to store entries as individual
+     *            objects
+     * @return a reference to this object
+     */
+    public ConfigBuilder setMemtableArena(String arena) {
+        
+        changes.put("babudb.memtableArena", arena);
+        return this;
+    }
+    
+    /**
+     * Enables group commit of log entries by limiting batches of log entries
+     * by their total size rather than their number.
+     * 
+     * @param maxBytes
+     *            the maximum size of a batch of log entries written with a
+     *            single sync; 0 limits batches by the number of entries
+     * @param maxWaitMicros
+     *            the maximum time in microseconds to wait for further log
+     *            entries before an incomplete batch is written
+     * @return a reference to this object
+     */
+    public ConfigBuilder setLogBatching(int maxBytes, int maxWaitMicros) {
+        
+        changes.put("babudb.logBatchMaxBytes", maxBytes + "");
+        changes.put("babudb.logBatchMaxWaitMicros", maxWaitMicros + "");
+        return this;
+    }
+    
+    /**
+     * Enables preallocation and recycling of database log files.
+     * 
+     * @param size
+     *            the size in bytes up to which log files are preallocated; 0
+     *            disables preallocation
+     * @return a reference to this object
+     */
+    public ConfigBuilder setLogPreallocationSize(int size) {
+        
+        changes.put("babudb.logPreallocationSize", size + "");
+        return this;
+    }
+    
+    /**
+     * Enables memory-mapped writes of database log entries.
+     * 
+     * @param size
+     *            the size in bytes of the windows of log files that are mapped
+     *            into memory; 0 disables memory-mapped writes
+     * @return a reference to this object
+     */
+    public ConfigBuilder setLogMappedWindowSize(int size) {
+        
+        changes.put("babudb.logMappedWindowSize", size + "");
+        return this;
+    }
+    
+    /**
+     * Specifies the number of log lanes. Each lane writes its own log file and
+     * is synced independently of the other lanes.
+     * 
+     * @param numLanes
+     *            the number of log lanes
+     * @return a reference to this object
+     */
+    public ConfigBuilder setLogLanes(int numLanes) {
+        
+        changes.put("babudb.logLanes", numLanes + "");
+        return this;
+    }
+    
+    /**
+     * Specifies the directory of a log lane. By default, lanes reside in
+     * subdirectories of the database log directory.
+     * 
+     * @param lane
+     *            the number of the lane, starting at 1 for the lane following
+     *            the first lane in the database log directory
+     * @param dir
+     *            the directory of the lane
+     * @return a reference to this object
+     */
+    public ConfigBuilder setLogLaneDir(int lane, String dir) {
+        
+        changes.put("babudb.logLaneDir." + lane, dir);
+        return this;
+    }
+    
+    /**
+     * Specifies the number of threads that concurrently write the indices of
+     * all databases when a checkpoint is created.
+     * 
+     * @param numThreads
+     *            the number of threads
+     * @return a reference to this object
+     */
+    public ConfigBuilder setCheckpointThreads(int numThreads) {
+        
+        changes.put("babudb.checkpointThreads", numThreads + "");
+        return this;
+    }
+    
+    /**
+     * Limits the rate at which on-disk indices are written by checkpoints,
+     * persistent snapshots and database copies.
+     * 
+     * @param maxBytesPerSec
+     *            the max. number of bytes per second; 0 means unlimited
+     * @param targetSyncLatencyMicros
+     *            the max. desired latency of database log syncs in
+     *            microseconds, above which the write rate is temporarily
+     *            reduced; 0 disables the adjustment
+     * @return a reference to this object
+     */
+    public ConfigBuilder setWriteRateLimit(long maxBytesPerSec, int targetSyncLatencyMicros) {
+        
+        changes.put("babudb.maxWriteRate", maxBytesPerSec + "");
+        changes.put("babudb.targetSyncLatencyMicros", targetSyncLatencyMicros + "");
+        return this;
+    }
+    
     /**
      * Builds a BabuDB configuration instance.
      * 
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2026, agent
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+package org.xtreemfs.babudb.index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A codec that compresses the value pages of compressed on-disk index blocks.
+ * <p>
+ * Each codec has a unique ID, which is stored in the header of each block that
+ * has been compressed with the codec, so that blocks can be decompressed
+ * regardless of the codec currently configured for an index. The ID 0 is
+ * reserved for blocks with uncompressed values. Further codecs, such as fast
+ * LZ-style codecs, can be added by assigning a new ID and registering the
+ * codec in {@link #CODECS}.
+ * </p>
+ *
+ * @author agent
+ *
+ */
+public abstract class BlockCodec {
+
+    /**
+     * the ID of blocks with uncompressed value pages
+     */
+    public static final int           ID_NONE    = 0;
+
+    /**
+     * the ID of the Deflate codec
+     */
+    public static final int           ID_DEFLATE = 1;
+
+    /**
+     * the name used to configure uncompressed value pages
+     */
+    public static final String        NAME_NONE  = "none";
+
+    /**
+     * all known codecs, indexed by their IDs
+     */
+    private static final BlockCodec[] CODECS     = { null, new DeflateCodec() };
+
+    /**
+     * Returns the codec with the given ID.
+     *
+     * @param id
+     *            the codec ID
+     * @return the codec, or <code>null</code> if the ID is {@link #ID_NONE}
+     * @throws IOException
+     *             if the ID is unknown
+     */
+    public static BlockCodec getCodec(int id) throws IOException {
+
+        if (id < 0 || id >= CODECS.length)
+            throw new IOException("unknown block codec ID: " + id);
+
+        return CODECS[id];
+    }
+
+    /**
+     * Returns the codec with the given name.
+     *
+     * @param name
+     *            the codec name
+     * @return the codec, or <code>null</code> if the name is
+     *         {@link #NAME_NONE}
+     * @throws IllegalArgumentException
+     *             if the name is unknown
+     */
+    public static BlockCodec getCodec(String name) {
+
+        if (NAME_NONE.equalsIgnoreCase(name))
+            return null;
+
+        for (BlockCodec codec : CODECS)
+            if (codec != null && codec.getName().equalsIgnoreCase(name))
+                return codec;
+
+        throw new IllegalArgumentException("unknown block codec: " + name);
+    }
+
+    /**
+     * Returns the ID of the codec, which is stored in the headers of blocks.
+     *
+     * @return the ID
+     */
+    public abstract int getId();
+
+    /**
+     * Returns the name of the codec, which is used to configure the codec.
+     *
+     * @return the name
+     */
+    public abstract String getName();
+
+    /**
+     * Compresses a byte array.
+     *
+     * @param data
+     *            the data to compress
+     * @return the compressed data
+     */
+    public abstract byte[] compress(byte[] data);
+
+    /**
+     * Decompresses data from a buffer.
+     *
+     * @param buf
+     *            the buffer containing the compressed data; neither the
+     *            position nor the limit of the buffer will be changed
+     * @param offset
+     *            the offset of the compressed data in the buffer
+     * @param length
+     *            the length of the compressed data
+     * @param target
+     *            the array to which the decompressed data is written; the
+     *            array has to be exactly as large as the decompressed data
+     * @throws IOException
+     *             if the data is corrupted
+     */
+    public abstract void decompress(ByteBuffer buf, int offset, int length, byte[] target) throws IOException;
+
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2026, agent
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+package org.xtreemfs.babudb.index;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.xtreemfs.babudb.api.index.ByteRangeComparator;
+
+/**
+ * A Bloom filter over the keys of an on-disk index. The filter is used to
+ * answer lookups of keys that are definitely not contained in the index
+ * without having to access any block of the index.
+ * <p>
+ * Keys are hashed to 64-bit values, from which the bit positions are derived
+ * by means of double hashing. On disk, a filter is stored as the number of
+ * hash functions and the number of 64-bit words, followed by the words.
+ * </p>
+ *
+ * @author agent
+ *
+ */
+public class BloomFilter {
+
+    /**
+     * the name of the file in an index directory that contains the filter
+     */
+    public static final String FILTER_FILE_NAME = "bloomfilter.idx";
+
+    private static final int   MAX_HASHES       = 30;
+
+    private final long[]       bits;
+
+    private final long         numBits;
+
+    private final int          numHashes;
+
+    /**
+     * Creates an empty Bloom filter.
+     *
+     * @param numKeys
+     *            the number of keys that will be added to the filter
+     * @param bitsPerKey
+     *            the number of bits to reserve per key
+     */
+    public BloomFilter(long numKeys, int bitsPerKey) {
+
+        assert (bitsPerKey > 0);
+
+        long numWords = (Math.max(numKeys, 1) * bitsPerKey + 63) / 64;
+        this.bits = new long[(int) Math.min(numWords, Integer.MAX_VALUE)];
+        this.numBits = (long) bits.length * 64;
+
+        // k = ln(2) * m/n minimizes the false positive rate
+        this.numHashes = Math.max(1, Math.min(MAX_HASHES, (int) Math.round(bitsPerKey * Math.log(2))));
+    }
+
+    private BloomFilter(long[] bits, int numHashes) {
+        this.bits = bits;
+        this.numBits = (long) bits.length * 64;
+        this.numHashes = numHashes;
+    }
+
+    /**
+     * Checks whether Bloom filters may be used for an index with the given
+     * comparator. As keys are hashed by their raw bytes, filters can only be
+     * used if two keys are equal exactly if their bytes are equal, which is
+     * guaranteed by the default comparator, but not by arbitrary user-defined
+     * comparators.
+     *
+     * @param comp
+     *            the comparator of the index
+     * @return <code>true</code>, if a filter may be used, <code>false</code>,
+     *         otherwise
+     */
+    public static boolean isApplicable(ByteRangeComparator comp) {
+        return comp != null && comp.getClass() == DefaultByteRangeComparator.class;
+    }
+
+    /**
+     * Adds a key to the filter.
+     *
+     * @param hash
+     *            the hash of the key, as returned by <code>hash()</code>
+     */
+    public void add(long hash) {
+
+        for (int i = 0; i < numHashes; i++) {
+            long bit = getBit(hash, i);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Checks whether a key may be contained in the filter.
+     *
+     * @param key
+     *            the key
+     * @return <code>false</code>, if the key is definitely not contained,
+     *         <code>true</code>, if it may be contained
+     */
+    public boolean mightContain(byte[] key) {
+
+        long hash = hash(key);
+        for (int i = 0; i < numHashes; i++) {
+            long bit = getBit(hash, i);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0)
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Calculates the position of the i-th bit of a key by means of double
+     * hashing. The calculation is done with 64-bit arithmetic, so that all
+     * bits of filters with more than 2^31 bits are used.
+     *
+     * @param hash
+     *            the hash of the key
+     * @param i
+     *            the number of the hash function
+     * @return the bit position
+     */
+    private long getBit(long hash, int i) {
+        long h2 = Long.rotateLeft(hash, 32);
+        return ((hash + i * h2) & Long.MAX_VALUE) % numBits;
+    }
+
+    /**
+     * Writes the filter to a file.
+     *
+     * @param path
+     *            the path of the file
+     * @throws IOException
+     *             if an I/O error occurred
+     */
+    public void write(String path) throws IOException {
+
+        ByteBuffer buf = ByteBuffer.allocate(2 * Integer.SIZE / 8 + bits.length * Long.SIZE / 8);
+        buf.putInt(numHashes);
+        buf.putInt(bits.length);
+        for (long word : bits)
+            buf.putLong(word);
+        buf.flip();
+
+        FileOutputStream out = new FileOutputStream(path, false);
+        try {
+            FileChannel channel = out.getChannel();
+            while (buf.hasRemaining())
+                channel.write(buf);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads a filter from a file.
+     *
+     * @param path
+     *            the path of the file
+     * @return the filter, or <code>null</code>, if no such file exists
+     * @throws IOException
+     *             if an I/O error occurred
+     */
+    public static BloomFilter read(String path) throws IOException {
+
+        File file = new File(path);
+        if (!file.exists())
+            return null;
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            ByteBuffer buf = ByteBuffer.allocate((int) raf.length());
+            FileChannel channel = raf.getChannel();
+            while (buf.hasRemaining())
+                if (channel.read(buf) == -1)
+                    throw new IOException("truncated Bloom filter file: " + path);
+            buf.flip();
+
+            int numHashes = buf.getInt();
+            long[] bits = new long[buf.getInt()];
+            for (int i = 0; i < bits.length; i++)
+                bits[i] = buf.getLong();
+
+            return new BloomFilter(bits, numHashes);
+
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Calculates the hash of a key.
+     *
+     * @param key
+     *            the key
+     * @return the 64-bit hash
+     */
+    public static long hash(byte[] key) {
+
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length; i++)
+            h = (h ^ (key[i] & 0xFF)) * 0x100000001b3L;
+
+        return mix(h);
+    }
+
+    /**
+     * Calculates the hash of a key.
+     *
+     * @param key
+     *            the key, either a <code>byte[]</code> or a
+     *            <code>ByteRange</code>
+     * @return the 64-bit hash
+     */
+    public static long hash(Object key) {
+
+        if (key instanceof byte[])
+            return hash((byte[]) key);
+
+        ByteRange range = (ByteRange) key;
+        long h = 0xcbf29ce484222325L;
+
+        byte[] prefix = range.getPrefix();
+        if (prefix != null)
+            for (int i = 0; i < prefix.length; i++)
+                h = (h ^ (prefix[i] & 0xFF)) * 0x100000001b3L;
+
+        ByteBuffer buf = range.getBuf();
+        for (int i = range.getStartOffset(); i < range.getStartOffset() + range.getSize(); i++)
+            h = (h ^ (buf.get(i) & 0xFF)) * 0x100000001b3L;
+
+        return mix(h);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+}
@@ -8,11 +8,32 @@
 
 package org.xtreemfs.babudb.index;
 
-import org.xtreemfs.babudb.api.index.ByteRangeComparator;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
+import org.xtreemfs.babudb.api.index.ByteRangeComparator;
 
+/**
+ * The default comparator, which orders keys lexicographically by their
+ * (signed) bytes.
+ * <p>
+ * Keys of at least 32 bytes are compared eight
+ * bytes at a time, by reading them as big-endian longs. Only the first
+ * differing word and the remaining bytes of keys whose length is not a
+ * multiple of eight are compared byte by byte.
+ * </p>
+ */
 public class DefaultByteRangeComparator implements ByteRangeComparator {
     
+    /**
+     * the minimum number of bytes to compare for which words are compared
+     * instead of individual bytes; for shorter keys, the overhead of creating
+     * buffer views outweighs the gain
+     */
+    static final int                          MIN_WORDWISE_LENGTH = 32;
+    
+    private static final int                  WORD_SIZE           = Long.SIZE / 8;
+    
     private static DefaultByteRangeComparator instance;
     
     @Override
@@ -38,11 +59,17 @@ public class DefaultByteRangeComparator implements ByteRangeComparator {
     @Override
     public int compare(ByteRange rng, byte[] buf) {
         
-        int n = rng.getStartOffset() + Math.min(rng.getSize(), buf.length);
-        int j = 0;
-        for (int i = rng.getStartOffset(); i < n; i++, j++) {
-            assert (i < rng.getEndOffset()) : "i == " + i + ", endOffset == " + rng.getEndOffset();
-            byte v1 = rng.getBuf().get(i);
+        ByteBuffer rngBuf = rng.getBuf();
+        int offs = rng.getStartOffset();
+        int n = Math.min(rng.getSize(), buf.length);
+        
+        // skip equal words, as long as the range buffer is big-endian and
+        // thus yields the bytes in their natural order
+        int j = n >= MIN_WORDWISE_LENGTH && rngBuf.order() == ByteOrder.BIG_ENDIAN ? skipEqualWords(rngBuf,
+            offs, buf, n) : 0;
+        
+        for (; j < n; j++) {
+            byte v1 = rngBuf.get(offs + j);
             byte v2 = buf[j];
             if (v1 == v2)
                 continue;
@@ -58,9 +85,11 @@ public class DefaultByteRangeComparator implements ByteRangeComparator {
     public int compare(byte[] buf1, byte[] buf2) {
         
         int n = Math.min(buf1.length, buf2.length);
-        for (int i = 0, j = 0; i < n; i++, j++) {
+        int i = n >= MIN_WORDWISE_LENGTH ? skipEqualWords(buf1, buf2, n) : 0;
+        
+        for (; i < n; i++) {
             byte v1 = buf1[i];
-            byte v2 = buf2[j];
+            byte v2 = buf2[i];
             if (v1 == v2)
                 continue;
             if (v1 < v2)
@@ -71,6 +100,42 @@ public class DefaultByteRangeComparator implements ByteRangeComparator {
         return buf1.length - buf2.length;
     }
     
+    /**
+     * Compares the first <code>n</code> bytes of a range and an array word by
+     * word.
+     * 
+     * @return the offset of the first word that differs, or the offset of the
+     *         remaining bytes that do not form a complete word
+     */
+    private static int skipEqualWords(ByteBuffer rngBuf, int offs, byte[] buf, int n) {
+        
+        ByteBuffer arrayBuf = ByteBuffer.wrap(buf);
+        int j = 0;
+        for (; j <= n - WORD_SIZE; j += WORD_SIZE)
+            if (rngBuf.getLong(offs + j) != arrayBuf.getLong(j))
+                break;
+        
+        return j;
+    }
+    
+    /**
+     * Compares the first <code>n</code> bytes of two arrays word by word.
+     * 
+     * @return the offset of the first word that differs, or the offset of the
+     *         remaining bytes that do not form a complete word
+     */
+    private static int skipEqualWords(byte[] buf1, byte[] buf2, int n) {
+        
+        ByteBuffer b1 = ByteBuffer.wrap(buf1);
+        ByteBuffer b2 = ByteBuffer.wrap(buf2);
+        int i = 0;
+        for (; i <= n - WORD_SIZE; i += WORD_SIZE)
+            if (b1.getLong(i) != b2.getLong(i))
+                break;
+        
+        return i;
+    }
+    
     public static DefaultByteRangeComparator getInstance() {
         
         if (instance == null)
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2026, agent
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+package org.xtreemfs.babudb.index;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A block codec based on the Deflate implementation of the JDK. Data is
+ * stored in the zlib format, the checksum of which allows corrupted blocks to
+ * be detected. Deflaters and inflaters are kept per thread, as they hold
+ * native memory that is expensive to allocate for each block.
+ *
+ * @author agent
+ *
+ */
+public class DeflateCodec extends BlockCodec {
+
+    private static final ThreadLocal<Deflater> deflaters = new ThreadLocal<Deflater>() {
+                                                             protected Deflater initialValue() {
+                                                                 return new Deflater(Deflater.BEST_SPEED);
+                                                             }
+                                                         };
+
+    private static final ThreadLocal<Inflater> inflaters = new ThreadLocal<Inflater>() {
+                                                             protected Inflater initialValue() {
+                                                                 return new Inflater();
+                                                             }
+                                                         };
+
+    DeflateCodec() {
+    }
+
+    public int getId() {
+        return ID_DEFLATE;
+    }
+
+    public String getName() {
+        return "deflate";
+    }
+
+    public byte[] compress(byte[] data) {
+
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+        byte[] buf = new byte[Math.min(Math.max(data.length, 64), 64 * 1024)];
+        while (!deflater.finished()) {
+            int len = deflater.deflate(buf);
+            out.write(buf, 0, len);
+        }
+
+        return out.toByteArray();
+    }
+
+    public void decompress(ByteBuffer buf, int offset, int length, byte[] target) throws IOException {
+
+        byte[] input;
+        int inputOffset;
+        if (buf.hasArray()) {
+            input = buf.array();
+            inputOffset = buf.arrayOffset() + offset;
+        } else {
+            input = new byte[length];
+            ByteBuffer dup = buf.duplicate();
+            dup.position(offset);
+            dup.get(input);
+            inputOffset = 0;
+        }
+
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        inflater.setInput(input, inputOffset, length);
+
+        try {
+            int len = 0;
+            while (len < target.length) {
+                int n = inflater.inflate(target, len, target.length - len);
+                if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+                len += n;
+            }
+
+            if (len != target.length)
+                throw new IOException("corrupted block: expected " + target.length
+                    + " bytes of decompressed data, got " + len);
+
+        } catch (DataFormatException exc) {
+            throw new IOException("corrupted block: " + exc.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,442 @@
+/*
+ * Copyright (c) 2026, agent
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+package org.xtreemfs.babudb.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.xtreemfs.babudb.api.database.ResultSet;
+import org.xtreemfs.babudb.api.database.ValueView;
+import org.xtreemfs.babudb.api.index.ByteRangeComparator;
+import org.xtreemfs.babudb.index.reader.BlockCache;
+import org.xtreemfs.babudb.index.reader.DiskIndex;
+import org.xtreemfs.babudb.index.reader.InternalBufferUtil;
+import org.xtreemfs.babudb.index.reader.InternalDiskIndexIterator;
+
+/**
+ * An immutable on-disk run that contains the changes made to an LSM tree
+ * between two checkpoints. Delta runs are stored in subdirectories of the
+ * directory of the LSM tree's base index. Unlike base indices, delta runs
+ * also contain deletions, which is why each value is preceded by a tag byte
+ * that indicates whether the entry was inserted or deleted.
+ * <p>
+ * Each delta run covers a contiguous range of generations, where a
+ * generation corresponds to a single checkpoint. Runs that result from a
+ * merge of other runs cover the union of the generations of the merged runs.
+ * </p>
+ *
+ * @author agent
+ *
+ */
+class DeltaRun {
+
+    /**
+     * the name of the temporary directory to which new delta runs are written
+     */
+    static final String          TMP_DIR_NAME     = ".delta";
+
+    private static final Pattern DIR_NAME_PATTERN = Pattern.compile("delta_(\\d+)_(\\d+)");
+
+    private static final byte    TAG_DELETED      = 0;
+
+    private static final byte    TAG_INSERTED     = 1;
+
+    private final DiskIndex      index;
+
+    private final long           firstGeneration;
+
+    private final long           lastGeneration;
+
+    /**
+     * Opens a delta run.
+     *
+     * @param baseDir
+     *            the directory of the base index containing the run
+     * @param firstGeneration
+     *            the first generation covered by the run
+     * @param lastGeneration
+     *            the last generation covered by the run
+     * @param comp
+     *            the byte range comparator
+     * @param compressed
+     *            specifies whether the run is compressed
+     * @param mmaped
+     *            specifies whether block files are memory-mapped
+     * @param blockCache
+     *            the block cache - may be <code>null</code>
+     * @throws IOException
+     *             if an I/O error occurred while loading the run
+     */
+    DeltaRun(String baseDir, long firstGeneration, long lastGeneration, ByteRangeComparator comp,
+        boolean compressed, boolean mmaped, BlockCache blockCache) throws IOException {
+
+        this.firstGeneration = firstGeneration;
+        this.lastGeneration = lastGeneration;
+        this.index = new DiskIndex(getDirectory(baseDir, firstGeneration, lastGeneration), comp, compressed,
+            mmaped, blockCache);
+    }
+
+    long getFirstGeneration() {
+        return firstGeneration;
+    }
+
+    long getLastGeneration() {
+        return lastGeneration;
+    }
+
+    long getSize() {
+        return index.getSize();
+    }
+
+    long numKeys() {
+        return index.numKeys();
+    }
+
+    /**
+     * Checks whether the generations covered by this run include all
+     * generations of the given range.
+     *
+     * @param first
+     *            the first generation of the range
+     * @param last
+     *            the last generation of the range
+     * @return <code>true</code>, if this run supersedes any run covering the
+     *         given range
+     */
+    boolean covers(long first, long last) {
+        return firstGeneration <= first && last <= lastGeneration;
+    }
+
+    /**
+     * Performs a lookup.
+     *
+     * @param key
+     *            the key to look up
+     * @param nullValue
+     *            the value to return if the key was deleted
+     * @return the value associated with the key, <code>nullValue</code> if
+     *         the key was deleted, or <code>null</code> if the run does not
+     *         contain the key
+     */
+    byte[] lookup(byte[] key, byte[] nullValue) {
+
+        byte[] value = index.lookup(key);
+        if (value == null)
+            return null;
+
+        return value[0] == TAG_DELETED ? nullValue : Arrays.copyOfRange(value, 1, value.length);
+    }
+
+    /**
+     * Performs a lookup that returns a view on the value, as described in
+     * {@link DiskIndex#lookupView(byte[])}.
+     *
+     * @param key
+     *            the key to look up
+     * @param nullValue
+     *            the view to return if the key was deleted
+     * @return a view on the value associated with the key,
+     *         <code>nullValue</code> if the key was deleted, or
+     *         <code>null</code> if the run does not contain the key
+     */
+    ValueView lookupView(byte[] key, ValueView nullValue) {
+
+        final ValueView tagged = index.lookupView(key);
+        if (tagged == null)
+            return null;
+
+        ByteBuffer value = tagged.getValue();
+        if (value.get(value.position()) == TAG_DELETED) {
+            tagged.free();
+            return nullValue;
+        }
+
+        // strip the tag byte
+        value = value.duplicate();
+        value.position(value.position() + 1);
+
+        return new ValueView(value.slice()) {
+            public void free() {
+                tagged.free();
+            }
+        };
+    }
+
+    /**
+     * Looks up multiple keys at once.
+     *
+     * @param keys
+     *            the keys to look up
+     * @param nullValue
+     *            the value to return for deleted keys
+     * @return an array containing the result of {@link #lookup(byte[], byte[])}
+     *         for each key at the key's position
+     */
+    byte[][] lookup(byte[][] keys, byte[] nullValue) {
+
+        byte[][] values = index.lookup(keys);
+        for (int i = 0; i < values.length; i++)
+            if (values[i] != null)
+                values[i] = values[i][0] == TAG_DELETED ? nullValue : Arrays.copyOfRange(values[i], 1,
+                    values[i].length);
+
+        return values;
+    }
+
+    /**
+     * Performs a range lookup. Deleted entries are returned with
+     * <code>nullValue</code> as their value.
+     *
+     * @param from
+     *            the first key (inclusively)
+     * @param to
+     *            the last key (exclusively)
+     * @param ascending
+     *            the iteration order
+     * @param nullValue
+     *            the value for deleted entries
+     * @return an iterator with key-value pairs
+     */
+    ResultSet<byte[], byte[]> rangeLookup(byte[] from, byte[] to, boolean ascending, final byte[] nullValue) {
+
+        final ResultSet<byte[], byte[]> it = index.rangeLookup(from, to, ascending);
+
+        return new ResultSet<byte[], byte[]>() {
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Entry<byte[], byte[]> next() {
+
+                final Entry<byte[], byte[]> entry = it.next();
+                final byte[] value = entry.getValue()[0] == TAG_DELETED ? nullValue : Arrays.copyOfRange(entry
+                        .getValue(), 1, entry.getValue().length);
+
+                return new Entry<byte[], byte[]>() {
+
+                    @Override
+                    public byte[] getKey() {
+                        return entry.getKey();
+                    }
+
+                    @Override
+                    public byte[] getValue() {
+                        return value;
+                    }
+
+                    @Override
+                    public byte[] setValue(byte[] value) {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void free() {
+                it.free();
+            }
+        };
+    }
+
+    /**
+     * Performs a range lookup that returns references to internal buffers.
+     * Deleted entries are returned with a <code>null</code> value.
+     *
+     * @param from
+     *            the first key (inclusively)
+     * @param to
+     *            the last key (exclusively)
+     * @param ascending
+     *            the iteration order
+     * @return an iterator with references to internally used buffers
+     */
+    ResultSet<ByteRange, ByteRange> internalRangeLookup(byte[] from, byte[] to, boolean ascending) {
+
+        final InternalDiskIndexIterator it = index.internalRangeLookup(from, to, ascending);
+
+        return new ResultSet<ByteRange, ByteRange>() {
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Entry<ByteRange, ByteRange> next() {
+
+                final Entry<ByteRange, ByteRange> entry = it.next();
+                final ByteRange tagged = entry.getValue();
+                final ByteRange value;
+
+                if (tagged.getBuf().get(tagged.getStartOffset()) == TAG_DELETED) {
+                    // keep the attached buffer with the key, so that it
+                    // can be freed once the entry has been processed
+                    if (tagged.getReusableBuf() != null)
+                        entry.getKey().setReusableBuf(tagged.getReusableBuf());
+                    value = null;
+                } else {
+                    value = new ByteRange(tagged.getBuf(), tagged.getStartOffset() + 1, tagged.getEndOffset());
+                    value.setReusableBuf(tagged.getReusableBuf());
+                }
+
+                return new Entry<ByteRange, ByteRange>() {
+
+                    @Override
+                    public ByteRange getKey() {
+                        return entry.getKey();
+                    }
+
+                    @Override
+                    public ByteRange getValue() {
+                        return value;
+                    }
+
+                    @Override
+                    public ByteRange setValue(ByteRange value) {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void free() {
+                it.free();
+            }
+        };
+    }
+
+    void destroy() throws IOException {
+        index.destroy();
+    }
+
+    /**
+     * Returns the directory of a delta run.
+     *
+     * @param baseDir
+     *            the directory of the base index
+     * @param firstGeneration
+     *            the first generation covered by the run
+     * @param lastGeneration
+     *            the last generation covered by the run
+     * @return the directory of the run
+     */
+    static String getDirectory(String baseDir, long firstGeneration, long lastGeneration) {
+        return baseDir + File.separator + "delta_" + firstGeneration + "_" + lastGeneration;
+    }
+
+    /**
+     * Parses the name of a delta run directory.
+     *
+     * @param name
+     *            the directory name
+     * @return the first and last generation covered by the run, or
+     *         <code>null</code> if the name is not a valid delta run name
+     */
+    static long[] parseDirectoryName(String name) {
+
+        Matcher m = DIR_NAME_PATTERN.matcher(name);
+        if (!m.matches())
+            return null;
+
+        return new long[] { Long.valueOf(m.group(1)), Long.valueOf(m.group(2)) };
+    }
+
+    /**
+     * Wraps an iterator of key-value pairs in an iterator that returns the
+     * pairs with tagged values, as stored in delta runs. Entries with a
+     * <code>null</code> value or <code>nullValue</code> as their value are
+     * tagged as deleted.
+     *
+     * @param it
+     *            the iterator
+     * @param nullValue
+     *            the value of deleted entries
+     * @return an iterator with tagged key-value pairs
+     */
+    static ResultSet<Object, Object> tag(final Iterator<? extends Entry<?, ?>> it, final Object nullValue) {
+
+        return new ResultSet<Object, Object>() {
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Entry<Object, Object> next() {
+
+                final Entry<?, ?> entry = it.next();
+                final Object key = entry.getKey();
+                final byte[] value;
+
+                Object untagged = entry.getValue();
+                if (untagged == null || untagged == nullValue) {
+                    value = new byte[] { TAG_DELETED };
+                } else {
+                    value = new byte[InternalBufferUtil.size(untagged) + 1];
+                    value[0] = TAG_INSERTED;
+                    System.arraycopy(InternalBufferUtil.toBuffer(untagged), 0, value, 1, value.length - 1);
+                }
+
+                // hand over any attached buffer to the key, so that it will
+                // be freed when the key is written
+                if (untagged instanceof ByteRange && key instanceof ByteRange
+                    && ((ByteRange) untagged).getReusableBuf() != null)
+                    ((ByteRange) key).setReusableBuf(((ByteRange) untagged).getReusableBuf());
+
+                return new Entry<Object, Object>() {
+
+                    @Override
+                    public Object getKey() {
+                        return key;
+                    }
+
+                    @Override
+                    public Object getValue() {
+                        return value;
+                    }
+
+                    @Override
+                    public Object setValue(Object value) {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void free() {
+                if (it instanceof ResultSet<?, ?>)
+                    ((ResultSet<?, ?>) it).free();
+            }
+        };
+    }
+
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2026, agent
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.babudb.index;
+
+import org.xtreemfs.babudb.index.overlay.ArenaOverlayTree;
+import org.xtreemfs.babudb.index.reader.BlockCache;
+import org.xtreemfs.babudb.index.writer.WriteRateLimiter;
+
+/**
+ * The tuning options of an LSM tree, which determine how on-disk indices are
+ * written and read, and how in-memory trees store their entries. Options that
+ * are not set keep their defaults, which disable all optional features.
+ * <p>
+ * LSM trees copy the options when being created, so that an options object
+ * may be shared and modified afterwards.
+ *
+ * @author agent
+ *
+ */
+public class IndexOptions {
+
+    private boolean                     compressed         = false;
+
+    private int                         maxEntriesPerBlock = 64;
+
+    private int                         maxBlockFileSize   = 1024 * 1024 * 512;
+
+    private boolean                     useMMap            = true;
+
+    private int                         mmapLimit          = -1;
+
+    private BlockCache                  blockCache;
+
+    private int                         bloomFilterBitsPerKey;
+
+    private int                         maxDeltaRuns;
+
+    private int                         maxBlockSize;
+
+    private BlockCodec                  blockCodec;
+
+    private int                         keyRestartInterval;
+
+    private ArenaOverlayTree.Allocation memtableArena;
+
+    private WriteRateLimiter            rateLimiter;
+
+    /**
+     * Creates a copy of the options.
+     *
+     * @return the copy
+     */
+    public IndexOptions copy() {
+
+        IndexOptions copy = new IndexOptions();
+        copy.compressed = compressed;
+        copy.maxEntriesPerBlock = maxEntriesPerBlock;
+        copy.maxBlockFileSize = maxBlockFileSize;
+        copy.useMMap = useMMap;
+        copy.mmapLimit = mmapLimit;
+        copy.blockCache = blockCache;
+        copy.bloomFilterBitsPerKey = bloomFilterBitsPerKey;
+        copy.maxDeltaRuns = maxDeltaRuns;
+        copy.maxBlockSize = maxBlockSize;
+        copy.blockCodec = blockCodec;
+        copy.keyRestartInterval = keyRestartInterval;
+        copy.memtableArena = memtableArena;
+        copy.rateLimiter = rateLimiter;
+
+        return copy;
+    }
+
+    /**
+     * Specifies whether on-disk indices are compressed.
+     *
+     * @param compressed
+     *            <code>true</code>, if on-disk indices are compressed
+     * @return a reference to this object
+     */
+    public IndexOptions setCompressed(boolean compressed) {
+        this.compressed = compressed;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of entries per block in on-disk indices.
+     *
+     * @param maxEntriesPerBlock
+     *            the maximum number of entries
+     * @return a reference to this object
+     */
+    public IndexOptions setMaxEntriesPerBlock(int maxEntriesPerBlock) {
+        this.maxEntriesPerBlock = maxEntriesPerBlock;
+        return this;
+    }
+
+    /**
+     * Sets the maximum size of a block file of an on-disk index.
+     *
+     * @param maxBlockFileSize
+     *            the maximum size in bytes
+     * @return a reference to this object
+     */
+    public IndexOptions setMaxBlockFileSize(int maxBlockFileSize) {
+        this.maxBlockFileSize = maxBlockFileSize;
+        return this;
+    }
+
+    /**
+     * Specifies whether block files are memory-mapped.
+     *
+     * @param useMMap
+     *            <code>true</code>, if block files are memory-mapped
+     * @param mmapLimit
+     *            the size of all on-disk indices in MB above which block files
+     *            are no longer memory-mapped; -1 means no limit
+     * @return a reference to this object
+     */
+    public IndexOptions setMMap(boolean useMMap, int mmapLimit) {
+        this.useMMap = useMMap;
+        this.mmapLimit = mmapLimit;
+        return this;
+    }
+
+    /**
+     * Sets the cache for blocks of block files that are not memory-mapped.
+     *
+     * @param blockCache
+     *            a block cache shared with other LSM trees - may be
+     *            <code>null</code>
+     * @return a reference to this object
+     */
+    public IndexOptions setBlockCache(BlockCache blockCache) {
+        this.blockCache = blockCache;
+        return this;
+    }
+
+    /**
+     * Sets the number of Bloom filter bits per key in newly written on-disk
+     * indices. Bloom filters are never used with comparators other than the
+     * default comparator.
+     *
+     * @param bloomFilterBitsPerKey
+     *            the number of bits; 0 disables Bloom filters
+     * @return a reference to this object
+     */
+    public IndexOptions setBloomFilterBitsPerKey(int bloomFilterBitsPerKey) {
+        this.bloomFilterBitsPerKey = bloomFilterBitsPerKey;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of delta runs on top of an on-disk index.
+     *
+     * @param maxDeltaRuns
+     *            the maximum number of delta runs; 0 disables delta runs
+     * @return a reference to this object
+     */
+    public IndexOptions setMaxDeltaRuns(int maxDeltaRuns) {
+        this.maxDeltaRuns = maxDeltaRuns;
+        return this;
+    }
+
+    /**
+     * Sets the target size of blocks in newly written on-disk indices.
+     *
+     * @param maxBlockSize
+     *            the target size in bytes; 0 limits blocks only by the
+     *            maximum number of entries per block
+     * @return a reference to this object
+     */
+    public IndexOptions setMaxBlockSize(int maxBlockSize) {
+        this.maxBlockSize = maxBlockSize;
+        return this;
+    }
+
+    /**
+     * Sets the codec for the values of newly written compressed on-disk
+     * indices.
+     *
+     * @param blockCodec
+     *            the codec - may be <code>null</code>
+     * @return a reference to this object
+     */
+    public IndexOptions setBlockCodec(BlockCodec blockCodec) {
+        this.blockCodec = blockCodec;
+        return this;
+    }
+
+    /**
+     * Sets the number of keys between two restart points of front-coded key
+     * pages in newly written on-disk indices.
+     *
+     * @param keyRestartInterval
+     *            the number of keys; 0 disables front coding
+     * @return a reference to this object
+     */
+    public IndexOptions setKeyRestartInterval(int keyRestartInterval) {
+        this.keyRestartInterval = keyRestartInterval;
+        return this;
+    }
+
+    /**
+     * Sets the kind of memory in which in-memory trees allocate their
+     * entries.
+     *
+     * @param memtableArena
+     *            the kind of memory - may be <code>null</code>, in which case
+     *            entries are stored as individual objects
+     * @return a reference to this object
+     */
+    public IndexOptions setMemtableArena(ArenaOverlayTree.Allocation memtableArena) {
+        this.memtableArena = memtableArena;
+        return this;
+    }
+
+    /**
+     * Sets the rate limiter for writing on-disk indices.
+     *
+     * @param rateLimiter
+     *            a rate limiter shared with other LSM trees - may be
+     *            <code>null</code>
+     * @return a reference to this object
+     */
+    public IndexOptions setRateLimiter(WriteRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+        return this;
+    }
+
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    public int getMaxEntriesPerBlock() {
+        return maxEntriesPerBlock;
+    }
+
+    public int getMaxBlockFileSize() {
+        return maxBlockFileSize;
+    }
+
+    public boolean getUseMMap() {
+        return useMMap;
+    }
+
+    public int getMMapLimit() {
+        return mmapLimit;
+    }
+
+    public BlockCache getBlockCache() {
+        return blockCache;
+    }
+
+    public int getBloomFilterBitsPerKey() {
+        return bloomFilterBitsPerKey;
+    }
+
+    public int getMaxDeltaRuns() {
+        return maxDeltaRuns;
+    }
+
+    public int getMaxBlockSize() {
+        return maxBlockSize;
+    }
+
+    public BlockCodec getBlockCodec() {
+        return blockCodec;
+    }
+
+    public int getKeyRestartInterval() {
+        return keyRestartInterval;
+    }
+
+    public ArenaOverlayTree.Allocation getMemtableArena() {
+        return memtableArena;
+    }
+
+    public WriteRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+}
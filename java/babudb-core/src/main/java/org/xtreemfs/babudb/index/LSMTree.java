@@ -11,22 +11,27 @@ package org.xtreemfs.babudb.index;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.xtreemfs.babudb.api.database.ResultSet;
+import org.xtreemfs.babudb.api.database.ValueView;
 import org.xtreemfs.babudb.api.index.ByteRangeComparator;
 import org.xtreemfs.babudb.index.overlay.MultiOverlayBufferTree;
+import org.xtreemfs.babudb.index.reader.BlockCache;
 import org.xtreemfs.babudb.index.reader.DiskIndex;
 import org.xtreemfs.babudb.index.reader.InternalBufferUtil;
-import org.xtreemfs.babudb.index.reader.InternalDiskIndexIterator;
 import org.xtreemfs.babudb.index.reader.InternalMergeIterator;
 import org.xtreemfs.babudb.index.writer.DiskIndexWriter;
 import org.xtreemfs.babudb.snapshots.SnapshotConfig;
 import org.xtreemfs.foundation.logging.Logging;
 import org.xtreemfs.foundation.logging.Logging.Category;
+import org.xtreemfs.foundation.util.FSUtils;
 import org.xtreemfs.foundation.util.OutputUtils;
 
 public class LSMTree {
@@ -35,24 +40,103 @@ public class LSMTree {
     
     private static final byte[]       NULL_ELEMENT    = new byte[0];
     
+    private static final ValueView    NULL_VIEW       = new ValueView(NULL_ELEMENT);
+    
+    /**
+     * the minimum number of delta runs of a similar size that are merged
+     */
+    private static final int          MIN_MERGE_RUNS  = 4;
+    
+    /**
+     * the maximum size ratio between delta runs that are merged
+     */
+    private static final int          TIER_SIZE_RATIO = 4;
+    
+    /**
+     * the size up to which delta runs are considered to be of a similar size
+     */
+    private static final long         MIN_TIER_SIZE   = 64 * 1024;
+    
+    /**
+     * the estimated memory overhead of an in-memory entry, in addition to the
+     * key and value bytes
+     */
+    private static final int          ENTRY_OVERHEAD  = 64;
+    
     private MultiOverlayBufferTree    overlay;
     
     private DiskIndex                 index;
     
+    /**
+     * the directory of the on-disk index - may be <code>null</code>
+     */
+    private String                    indexDir;
+    
+    /**
+     * the delta runs on top of the on-disk index, from the newest to the
+     * oldest one; the list is never modified but replaced
+     */
+    private List<DeltaRun>            runs;
+    
+    /**
+     * a delta run that has been written but not yet been linked
+     */
+    private DeltaRun                  pendingRun;
+    
     private final ByteRangeComparator comp;
     
     private final Object              lock;
     
-    private boolean                   compressed;
+    /**
+     * held while delta runs are merged, and while delta runs are read or
+     * destroyed by other operations, so that no run is destroyed while being
+     * read
+     */
+    private final Object              mergeLock       = new Object();
     
-    private final int                 maxEntriesPerBlock;
+    /**
+     * the number of threads waiting for <code>mergeLock</code>; an ongoing
+     * merge is aborted as soon as this number becomes positive
+     */
+    private final AtomicInteger       mergeWaiters    = new AtomicInteger();
     
-    private final int                 maxBlockFileSize;
+    private boolean                   compressed;
     
     private final boolean             useMMap;
     
     private final int                 mmapLimitBytes;
     
+    private final BlockCache          blockCache;
+    
+    private final int                 maxDeltaRuns;
+    
+    /**
+     * the options with which on-disk indices and delta runs are written
+     */
+    private final IndexOptions        writerOptions;
+    
+    /**
+     * the estimated number of bytes in the writable in-memory overlay
+     */
+    private volatile long             overlayBytes;
+    
+    /**
+     * the estimated number of bytes in read-only in-memory snapshots
+     */
+    private volatile long             snapshotBytes;
+    
+    /**
+     * the number of entries inserted into the writable in-memory overlay,
+     * including overwritten entries
+     */
+    private volatile long             overlayEntries;
+    
+    /**
+     * the number of entries in read-only in-memory snapshots, including
+     * overwritten entries
+     */
+    private volatile long             snapshotEntries;
+    
     /**
      * Creates a new LSM tree.
      * 
@@ -67,17 +151,44 @@ public class LSMTree {
      */
     public LSMTree(String indexFile, ByteRangeComparator comp, boolean compressed, int maxEntriesPerBlock,
         int maxBlockFileSize, boolean useMMap, int mmapLimit) throws IOException {
+        this(indexFile, comp, new IndexOptions().setCompressed(compressed).setMaxEntriesPerBlock(
+            maxEntriesPerBlock).setMaxBlockFileSize(maxBlockFileSize).setMMap(useMMap, mmapLimit));
+    }
+    
+    /**
+     * Creates a new LSM tree with the given tuning options, which may enable a
+     * block cache for non-memory-mapped on-disk indices, Bloom filters, and
+     * snapshots written as delta runs on top of the on-disk index.
+     * 
+     * @param indexFile
+     *            the on-disk index file - may be <code>null</code>
+     * @param comp
+     *            a comparator for byte ranges
+     * @param options
+     *            the tuning options
+     * @throws IOException
+     *             if an I/O error occurs when accessing the on-disk index file
+     */
+    public LSMTree(String indexFile, ByteRangeComparator comp, IndexOptions options) throws IOException {
         
         this.comp = comp;
-        this.compressed = compressed;
-        this.maxEntriesPerBlock = maxEntriesPerBlock;
-        this.maxBlockFileSize = maxBlockFileSize;
-        this.useMMap = useMMap;
-        this.mmapLimitBytes = mmapLimit * 1024 * 1024;
+        this.compressed = options.isCompressed();
+        this.useMMap = options.getUseMMap();
+        this.mmapLimitBytes = options.getMMapLimit() * 1024 * 1024;
+        this.blockCache = options.getBlockCache();
+        this.maxDeltaRuns = options.getMaxDeltaRuns();
+        this.writerOptions = options.copy();
+        // filters hash the raw bytes of keys, which only works if the
+        // comparator does not consider different byte strings equal
+        if (!BloomFilter.isApplicable(comp))
+            writerOptions.setBloomFilterBitsPerKey(0);
         
-        overlay = new MultiOverlayBufferTree(NULL_ELEMENT, comp);
+        overlay = new MultiOverlayBufferTree(NULL_ELEMENT, comp, options.getMemtableArena());
         totalOnDiskSize += indexFile == null ? 0 : getTotalDirSize(new File(indexFile));
-        index = indexFile == null ? null : new DiskIndex(indexFile, comp, compressed, useMmap());
+        index = indexFile == null ? null : new DiskIndex(indexFile, comp, compressed, useMmap(),
+            blockCache);
+        indexDir = indexFile;
+        runs = indexFile == null ? Collections.<DeltaRun> emptyList() : loadRuns(indexFile);
         lock = new Object();
     }
     
@@ -98,7 +209,44 @@ public class LSMTree {
         if (result != null)
             return result;
         
-        return index == null ? null : index.lookup(key);
+        return diskLookup(key);
+    }
+    
+    /**
+     * Performs a lookup that returns a read-only view on the value. Values
+     * from the overlay trees are wrapped without being copied; values from
+     * the delta runs and the on-disk index refer to the buffers from which
+     * they were read, as described in {@link DiskIndex#lookupView(byte[])}.
+     * The view has to be freed once it is no longer needed.
+     * 
+     * @param key
+     *            the key to look up
+     * @return a view on the value associated with the key, or
+     *         <code>null</code> if the key is not contained
+     */
+    public ValueView lookupView(byte[] key) {
+        
+        byte[] result = overlay.lookup(key);
+        
+        if (result == NULL_ELEMENT)
+            return null;
+        
+        if (result != null)
+            return new ValueView(result);
+        
+        for (DeltaRun run : runs) {
+            
+            ValueView view = run.lookupView(key, NULL_VIEW);
+            
+            if (view == NULL_VIEW)
+                return null;
+            
+            if (view != null)
+                return view;
+        }
+        
+        DiskIndex index = this.index;
+        return index == null ? null : index.lookupView(key);
     }
     
     /**
@@ -120,7 +268,47 @@ public class LSMTree {
         if (result != null)
             return result;
         
-        return index == null ? null : index.lookup(key);
+        return diskLookup(key);
+    }
+    
+    /**
+     * Performs a lookup for multiple keys. Keys that are not contained in
+     * the overlay trees are looked up in the delta runs and the on-disk index
+     * in a single pass, so that each on-disk block is only decoded once.
+     * 
+     * @param keys
+     *            the keys to look up
+     * @return an array containing the value associated with each key at the
+     *         key's position
+     */
+    public byte[][] lookup(byte[][] keys) {
+        
+        byte[][] results = new byte[keys.length][];
+        for (int i = 0; i < keys.length; i++)
+            results[i] = overlay.lookup(keys[i]);
+        
+        diskLookup(keys, results);
+        return results;
+    }
+    
+    /**
+     * Performs a lookup for multiple keys in a given snapshot.
+     * 
+     * @param keys
+     *            the keys to look up
+     * @param snapId
+     *            the snapshot ID
+     * @return an array containing the value associated with each key in the
+     *         snapshot at the key's position
+     */
+    public byte[][] lookup(byte[][] keys, int snapId) {
+        
+        byte[][] results = new byte[keys.length][];
+        for (int i = 0; i < keys.length; i++)
+            results[i] = overlay.lookup(keys[i], snapId);
+        
+        diskLookup(keys, results);
+        return results;
     }
     
     /**
@@ -205,12 +393,10 @@ public class LSMTree {
         if (prefix != null && prefix.length == 0)
             prefix = null;
         
-        List<Iterator<Entry<byte[], byte[]>>> list = new ArrayList<Iterator<Entry<byte[], byte[]>>>(2);
+        List<Iterator<Entry<byte[], byte[]>>> list = new ArrayList<Iterator<Entry<byte[], byte[]>>>();
         list.add(overlay.prefixLookup(prefix, true, ascending));
-        if (index != null) {
-            byte[][] rng = comp.prefixToRange(prefix, ascending);
-            list.add(index.rangeLookup(rng[0], rng[1], ascending));
-        }
+        byte[][] rng = comp.prefixToRange(prefix, ascending);
+        addDiskIterators(list, rng[0], rng[1], ascending);
         
         return new OverlayMergeIterator<byte[], byte[]>(list, comp, NULL_ELEMENT, ascending);
     }
@@ -249,12 +435,10 @@ public class LSMTree {
         if (prefix != null && prefix.length == 0)
             prefix = null;
         
-        List<Iterator<Entry<byte[], byte[]>>> list = new ArrayList<Iterator<Entry<byte[], byte[]>>>(2);
+        List<Iterator<Entry<byte[], byte[]>>> list = new ArrayList<Iterator<Entry<byte[], byte[]>>>();
         list.add(overlay.prefixLookup(prefix, snapId, true, ascending));
-        if (index != null) {
-            byte[][] rng = comp.prefixToRange(prefix, ascending);
-            list.add(index.rangeLookup(rng[0], rng[1], ascending));
-        }
+        byte[][] rng = comp.prefixToRange(prefix, ascending);
+        addDiskIterators(list, rng[0], rng[1], ascending);
         
         return new OverlayMergeIterator<byte[], byte[]>(list, comp, NULL_ELEMENT, ascending);
     }
@@ -298,10 +482,9 @@ public class LSMTree {
         if (to.length == 0)
             to = null;
         
-        List<Iterator<Entry<byte[], byte[]>>> list = new ArrayList<Iterator<Entry<byte[], byte[]>>>(2);
+        List<Iterator<Entry<byte[], byte[]>>> list = new ArrayList<Iterator<Entry<byte[], byte[]>>>();
         list.add(overlay.rangeLookup(from, to, true, ascending));
-        if (index != null)
-            list.add(index.rangeLookup(from, to, ascending));
+        addDiskIterators(list, from, to, ascending);
         
         return new OverlayMergeIterator<byte[], byte[]>(list, comp, NULL_ELEMENT, ascending);
     }
@@ -349,10 +532,9 @@ public class LSMTree {
         if (to.length == 0)
             to = null;
         
-        List<Iterator<Entry<byte[], byte[]>>> list = new ArrayList<Iterator<Entry<byte[], byte[]>>>(2);
+        List<Iterator<Entry<byte[], byte[]>>> list = new ArrayList<Iterator<Entry<byte[], byte[]>>>();
         list.add(overlay.rangeLookup(from, to, snapId, true, ascending));
-        if (index != null)
-            list.add(index.rangeLookup(from, to, ascending));
+        addDiskIterators(list, from, to, ascending);
         
         return new OverlayMergeIterator<byte[], byte[]>(list, comp, NULL_ELEMENT, ascending);
     }
@@ -368,6 +550,8 @@ public class LSMTree {
     public void insert(byte[] key, byte[] value) {
         synchronized (lock) {
             overlay.insert(key, value);
+            overlayBytes += key.length + (value == null ? 0 : value.length) + ENTRY_OVERHEAD;
+            overlayEntries++;
         }
     }
     
@@ -381,6 +565,8 @@ public class LSMTree {
     public void delete(byte[] key) {
         synchronized (lock) {
             overlay.insert(key, null);
+            overlayBytes += key.length + ENTRY_OVERHEAD;
+            overlayEntries++;
         }
     }
     
@@ -390,7 +576,24 @@ public class LSMTree {
      * @return the snapshot ID
      */
     public int createSnapshot() {
-        return overlay.newOverlay();
+        synchronized (lock) {
+            snapshotBytes += overlayBytes;
+            overlayBytes = 0;
+            snapshotEntries += overlayEntries;
+            overlayEntries = 0;
+            return overlay.newOverlay();
+        }
+    }
+    
+    /**
+     * Returns the estimated number of bytes occupied by in-memory entries,
+     * including read-only snapshots that have not yet been written to disk.
+     * Entries that were overwritten in memory are counted repeatedly.
+     * 
+     * @return the estimated in-memory size in bytes
+     */
+    public long getInMemorySize() {
+        return overlayBytes + snapshotBytes;
     }
     
     /**
@@ -405,12 +608,19 @@ public class LSMTree {
      */
     public void materializeSnapshot(String targetFile, int snapId) throws IOException {
         
-        DiskIndexWriter writer = new DiskIndexWriter(targetFile, maxEntriesPerBlock, compressed,
-            maxBlockFileSize);
-        
-        InternalMergeIterator it = internalPrefixLookup(null, snapId, true);
-        writer.writeIndex(it);
-        it.free();
+        mergeWaiters.incrementAndGet();
+        try {
+            synchronized (mergeLock) {
+                
+                DiskIndexWriter writer = new DiskIndexWriter(targetFile, writerOptions);
+                
+                InternalMergeIterator it = internalPrefixLookup(null, snapId, true);
+                writer.writeIndex(it, getMaxNumKeys());
+                it.free();
+            }
+        } finally {
+            mergeWaiters.decrementAndGet();
+        }
     }
     
     /**
@@ -430,93 +640,224 @@ public class LSMTree {
     public void materializeSnapshot(String targetFile, final int snapId, final int indexId,
         final SnapshotConfig snap) throws IOException {
         
-        DiskIndexWriter writer = new DiskIndexWriter(targetFile, maxEntriesPerBlock, compressed,
-            maxBlockFileSize);
-        writer.writeIndex(new ResultSet<Object, Object>() {
-            
-            private ResultSet<Object, Object>[] iterators;
-            
-            private Entry<Object, Object>             next;
-            
-            private int                               currentIt;
-            
-            {
-                byte[][] prefixes = snap.getPrefixes(indexId);
-                
-                currentIt = 0;
-                
-                if (prefixes != null) {
-                    iterators = new ResultSet[prefixes.length];
-                    for (int i = 0; i < prefixes.length; i++)
-                        iterators[i] = internalPrefixLookup(prefixes[i], snapId, true);
-                } else {
-                    iterators = new ResultSet[] { prefixLookup(null, snapId, true) };
-                }
-                
-                getNextElement();
-                
-            }
-            
-            @Override
-            public boolean hasNext() {
-                return (next != null);
-            }
-            
-            @Override
-            public Entry<Object, Object> next() {
-                
-                if (next == null)
-                    throw new NoSuchElementException();
+        mergeWaiters.incrementAndGet();
+        try {
+            synchronized (mergeLock) {
                 
-                Entry<Object, Object> tmp = next;
-                getNextElement();
-                
-                return tmp;
-            }
-            
-            @Override
-            public void remove() {
-                throw new UnsupportedOperationException();
-            }
-            
-            @Override
-            public void free() {
-                for (ResultSet<Object, Object> it : iterators)
-                    it.free();
-            }
-            
-            private void getNextElement() {
-                
-                for (;;) {
+                DiskIndexWriter writer = new DiskIndexWriter(targetFile, writerOptions);
+                writer.writeIndex(new ResultSet<Object, Object>() {
+                    
+                    private ResultSet<Object, Object>[] iterators;
+                    
+                    private Entry<Object, Object>             next;
                     
-                    // get the next iterator w/ elements
-                    while (currentIt < iterators.length && !iterators[currentIt].hasNext())
-                        currentIt++;
+                    private int                               currentIt;
                     
-                    // if there is no such iterator, set next to null and return
-                    if (currentIt >= iterators.length) {
-                        next = null;
-                        return;
+                    {
+                        byte[][] prefixes = snap.getPrefixes(indexId);
+                        
+                        currentIt = 0;
+                        
+                        if (prefixes != null) {
+                            iterators = new ResultSet[prefixes.length];
+                            for (int i = 0; i < prefixes.length; i++)
+                                iterators[i] = internalPrefixLookup(prefixes[i], snapId, true);
+                        } else {
+                            iterators = new ResultSet[] { prefixLookup(null, snapId, true) };
+                        }
+                        
+                        getNextElement();
+                        
                     }
                     
-                    // otherwise, next is the next element from the current
-                    // iterator
-                    next = iterators[currentIt].next();
+                    @Override
+                    public boolean hasNext() {
+                        return (next != null);
+                    }
                     
-                    // if this element is explicitly excluded, skip it
-                    byte[] tmp = InternalBufferUtil.toBuffer(next.getKey());
-                    if (snap.containsKey(indexId, tmp))
-                        break;
-                }
+                    @Override
+                    public Entry<Object, Object> next() {
+                        
+                        if (next == null)
+                            throw new NoSuchElementException();
+                        
+                        Entry<Object, Object> tmp = next;
+                        getNextElement();
+                        
+                        return tmp;
+                    }
+                    
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                    
+                    @Override
+                    public void free() {
+                        for (ResultSet<Object, Object> it : iterators)
+                            it.free();
+                    }
+                    
+                    private void getNextElement() {
+                        
+                        for (;;) {
+                            
+                            // get the next iterator w/ elements
+                            while (currentIt < iterators.length && !iterators[currentIt].hasNext())
+                                currentIt++;
+                            
+                            // if there is no such iterator, set next to null and return
+                            if (currentIt >= iterators.length) {
+                                next = null;
+                                return;
+                            }
+                            
+                            // otherwise, next is the next element from the current
+                            // iterator
+                            next = iterators[currentIt].next();
+                            
+                            // if this element is explicitly excluded, skip it
+                            byte[] tmp = InternalBufferUtil.toBuffer(next.getKey());
+                            if (snap.containsKey(indexId, tmp))
+                                break;
+                        }
+                    }
+                    
+                }, getMaxNumKeys());
             }
+        } finally {
+            mergeWaiters.decrementAndGet();
+        }
+    }
+    
+    /**
+     * Checks whether the in-memory snapshots are empty, i.e. no entries have
+     * been inserted or deleted between the last invocation of
+     * <code>linkToSnapshot()</code> and the last invocation of
+     * <code>createSnapshot()</code>. In this case, the on-disk index already
+     * reflects the latest snapshot and does not need to be rewritten.
+     * 
+     * @return <code>true</code>, if <code>carryForward()</code> may be used
+     *         to write the next snapshot
+     */
+    public boolean canCarryForward() {
+        synchronized (lock) {
+            return snapshotBytes == 0 && indexDir != null && new File(indexDir).exists();
+        }
+    }
+    
+    /**
+     * Moves the unchanged on-disk index to the given target directory instead
+     * of rewriting it. The index remains open, so that it can be linked with
+     * the next invocation of <code>linkToSnapshot()</code> with the target
+     * directory.
+     * 
+     * @param targetDir
+     *            the directory to which to move the on-disk index
+     * @throws IOException
+     *             if the on-disk index cannot be moved
+     */
+    public void carryForward(String targetDir) throws IOException {
+        
+        synchronized (lock) {
+        
+            assert (indexDir != null);
+        
+            File target = new File(targetDir);
+            if (!new File(indexDir).renameTo(target))
+                throw new IOException("could not rename '" + indexDir + "' to " + target);
+        
+            indexDir = targetDir;
+        }
+    }
+    
+    /**
+     * Checks whether the next snapshot can be written as a delta run on top
+     * of the current on-disk index, rather than as an entirely new index. This
+     * is the case if delta runs are enabled, and neither the maximum number of
+     * delta runs has been reached, nor have the delta runs grown larger than
+     * half the size of the on-disk index.
+     * 
+     * @return <code>true</code>, if <code>materializeDelta()</code> may be
+     *         used to write the next snapshot
+     */
+    public boolean canMaterializeDelta() {
+        
+        if (maxDeltaRuns <= 0 || index == null || indexDir == null || !new File(indexDir).isDirectory())
+            return false;
+        
+        List<DeltaRun> runs = this.runs;
+        if (runs.size() >= maxDeltaRuns)
+            return false;
+        
+        long deltaSize = 0;
+        for (DeltaRun run : runs)
+            deltaSize += run.getSize();
+        
+        return 2 * deltaSize <= index.getSize();
+    }
+    
+    /**
+     * Writes the changes contained in an in-memory snapshot as a new delta
+     * run on top of the current on-disk index, and moves the directory of the
+     * on-disk index to the given target directory. The delta run becomes
+     * visible with the next invocation of <code>linkToSnapshot()</code> with
+     * the target directory.
+     * 
+     * @param targetDir
+     *            the directory to which to move the on-disk index
+     * @param snapId
+     *            the snapshot ID
+     * @throws IOException
+     *             if an I/O error occurs while writing the delta run
+     */
+    public void materializeDelta(String targetDir, int snapId) throws IOException {
+        
+        assert (indexDir != null);
+        
+        long generation = pendingRun == null ? 1 : pendingRun.getLastGeneration() + 1;
+        for (DeltaRun run : runs)
+            generation = Math.max(generation, run.getLastGeneration() + 1);
+        
+        File tmpDir = new File(indexDir, DeltaRun.TMP_DIR_NAME);
+        File runDir = new File(DeltaRun.getDirectory(indexDir, generation, generation));
+        
+        // clean up incomplete delta runs if necessary
+        if (tmpDir.exists())
+            FSUtils.delTree(tmpDir);
+        if (runDir.exists())
+            FSUtils.delTree(runDir);
+        
+        // write all changes, including deletions, to the delta run
+        DiskIndexWriter writer = new DiskIndexWriter(tmpDir.getAbsolutePath(), writerOptions);
+        writer.writeIndex(DeltaRun.tag(overlay.prefixLookup(null, snapId, true, true), NULL_ELEMENT),
+            snapshotEntries);
+        
+        if (!tmpDir.renameTo(runDir))
+            throw new IOException("could not rename '" + tmpDir + "' to " + runDir);
+        
+        // move the directory while holding the lock, so that no merged run is
+        // added to it at the same time
+        synchronized (lock) {
             
-        });
+            File target = new File(targetDir);
+            if (!new File(indexDir).renameTo(target))
+                throw new IOException("could not rename '" + indexDir + "' to " + target);
+            
+            indexDir = targetDir;
+            if (pendingRun != null)
+                pendingRun.destroy();
+            pendingRun = new DeltaRun(targetDir, generation, generation, comp, compressed, useMmap(), blockCache);
+        }
     }
     
     /**
-     * Links the LSM tree to a new snapshot file. The on-disk index is replaced
-     * with the index stored in the given snapshot file, and all in-memory
-     * snapshots are discarded.
+     * Links the LSM tree to a new snapshot file. If the snapshot was written
+     * as a delta run, the delta run is added on top of the on-disk index.
+     * Otherwise, the on-disk index and all delta runs are replaced with the
+     * index stored in the given snapshot file. In both cases, all in-memory
+     * snapshots are discarded. If the snapshot file is the current on-disk
+     * index, in-memory snapshots are only discarded if they are empty.
      * 
      * @param snapshotFile
      *            the snapshot file
@@ -524,17 +865,227 @@ public class LSMTree {
      *             if an I/O error occurred while reading the snapshot file
      */
     public void linkToSnapshot(String snapshotFile) throws IOException {
+        
+        if (indexDir != null
+            && new File(snapshotFile).getAbsoluteFile().equals(new File(indexDir).getAbsoluteFile())) {
+            link(snapshotFile);
+            return;
+        }
+        
+        // the delta runs are replaced; abort any ongoing merge, as runs must
+        // not be destroyed while being merged
+        mergeWaiters.incrementAndGet();
+        try {
+            synchronized (mergeLock) {
+                link(snapshotFile);
+            }
+        } finally {
+            mergeWaiters.decrementAndGet();
+        }
+    }
+    
+    /**
+     * Links the LSM tree to a new snapshot file, as described in
+     * <code>linkToSnapshot()</code>.
+     */
+    private void link(String snapshotFile) throws IOException {
         final DiskIndex oldIndex = index;
         synchronized (lock) {
+            
+            if (pendingRun != null && indexDir != null
+                && new File(snapshotFile).getAbsoluteFile().equals(new File(indexDir).getAbsoluteFile())) {
+                
+                List<DeltaRun> newRuns = new ArrayList<DeltaRun>(runs.size() + 1);
+                newRuns.add(pendingRun);
+                newRuns.addAll(runs);
+                
+                totalOnDiskSize += pendingRun.getSize();
+                runs = newRuns;
+                pendingRun = null;
+                overlay.cleanup();
+                snapshotBytes = 0;
+                snapshotEntries = 0;
+                return;
+            }
+            
+            // the unchanged on-disk index has been carried forward to the
+            // snapshot file, or the snapshot was not written because a
+            // checkpoint with the same LSN existed already
+            if (indexDir != null
+                && new File(snapshotFile).getAbsoluteFile().equals(new File(indexDir).getAbsoluteFile())) {
+                
+                // in the latter case, the in-memory snapshots may contain
+                // changes that are not on disk yet, e.g. of entries that had
+                // not been assigned an LSN when the checkpoint was created;
+                // they are retained and written with the next snapshot
+                if (snapshotBytes == 0) {
+                    overlay.cleanup();
+                    snapshotEntries = 0;
+                }
+                return;
+            }
+            
+            final List<DeltaRun> oldRuns = runs;
+            
             totalOnDiskSize -= index == null ? 0 : index.getSize();
-            index = new DiskIndex(snapshotFile, comp, this.compressed, useMmap());
+            for (DeltaRun run : oldRuns)
+                totalOnDiskSize -= run.getSize();
+            
+            index = new DiskIndex(snapshotFile, comp, this.compressed, useMmap(), blockCache);
+            indexDir = snapshotFile;
+            runs = loadRuns(snapshotFile);
+            
             totalOnDiskSize += index.getSize();
+            for (DeltaRun run : runs)
+                totalOnDiskSize += run.getSize();
+            
             if (oldIndex != null)
                 oldIndex.destroy();
+            for (DeltaRun run : oldRuns)
+                run.destroy();
+            if (pendingRun != null) {
+                pendingRun.destroy();
+                pendingRun = null;
+            }
             overlay.cleanup();
+            snapshotBytes = 0;
+            snapshotEntries = 0;
+        }
+    }
+    
+    /**
+     * Merges the most recent delta runs into a single delta run, provided
+     * that enough runs of a similar size have accumulated. Runs are grouped
+     * in size tiers, so that the number of times an entry is rewritten only
+     * grows logarithmically with the number of checkpoints.
+     * <p>
+     * The merge may take place while new delta runs are written and linked.
+     * It is aborted if the delta runs are read or replaced by a different
+     * thread in the meantime, e.g. because the entire tree is rewritten.
+     * </p>
+     * 
+     * @param tmpDir
+     *            the directory to which the merged run is written before it
+     *            is moved to the on-disk index; it must reside on the same
+     *            file system as the on-disk index
+     * @return <code>true</code>, if delta runs were merged,
+     *         <code>false</code>, otherwise
+     * @throws IOException
+     *             if an I/O error occurs while merging the runs
+     */
+    public boolean compactRuns(String tmpDir) throws IOException {
+        
+        synchronized (mergeLock) {
+            
+            final List<DeltaRun> oldRuns = runs;
+            
+            if (indexDir == null || oldRuns.size() < MIN_MERGE_RUNS || mergeWaiters.get() > 0)
+                return false;
+            
+            // determine the number of the most recent runs that belong to the
+            // same size tier as the newest run
+            long tierLimit = Math.max(oldRuns.get(0).getSize(), MIN_TIER_SIZE) * TIER_SIZE_RATIO;
+            int numRuns = 1;
+            while (numRuns < oldRuns.size() && oldRuns.get(numRuns).getSize() <= tierLimit)
+                numRuns++;
+            
+            if (numRuns < MIN_MERGE_RUNS)
+                return false;
+            
+            List<DeltaRun> mergedRuns = oldRuns.subList(0, numRuns);
+            long first = mergedRuns.get(numRuns - 1).getFirstGeneration();
+            long last = mergedRuns.get(0).getLastGeneration();
+            
+            Logging.logMessage(Logging.LEVEL_INFO, Category.babudb, this, "merging " + numRuns
+                + " delta runs of index '" + indexDir + "'...");
+            
+            // the merged run is written outside of the index directory, as the
+            // directory is moved whenever a new delta run is written
+            File tmp = new File(tmpDir);
+            if (tmp.exists())
+                FSUtils.delTree(tmp);
+            
+            // merge the runs, retaining deletions, as these may still refer to
+            // entries of older runs or the on-disk index
+            List<ResultSet<ByteRange, ByteRange>> its = new ArrayList<ResultSet<ByteRange, ByteRange>>(numRuns);
+            long numKeys = 0;
+            for (DeltaRun run : mergedRuns) {
+                its.add(run.internalRangeLookup(null, null, true));
+                numKeys += run.numKeys();
+            }
+            
+            final InternalMergeIterator it = new InternalMergeIterator(Collections
+                    .<Entry<byte[], byte[]>> emptyList().iterator(), its, comp, null, true);
+            
+            DiskIndexWriter writer = new DiskIndexWriter(tmp.getAbsolutePath(), writerOptions);
+            writer.writeIndex(DeltaRun.tag(new Iterator<Entry<Object, Object>>() {
+                
+                // end the merge prematurely if another thread waits for it
+                public boolean hasNext() {
+                    return mergeWaiters.get() == 0 && it.hasNext();
+                }
+                
+                public Entry<Object, Object> next() {
+                    return it.next();
+                }
+                
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            }, null), numKeys);
+            
+            synchronized (lock) {
+                
+                // discard the merged run if the merge was aborted, or if any
+                // of the merged runs has been replaced in the meantime; runs
+                // that have been added in the meantime precede the merged runs
+                int offset = runs.size() - oldRuns.size();
+                if (it.hasNext() || offset < 0 || !runs.subList(offset, runs.size()).equals(oldRuns)) {
+                    it.free();
+                    FSUtils.delTree(tmp);
+                    Logging.logMessage(Logging.LEVEL_INFO, Category.babudb, this, "... aborted");
+                    return false;
+                }
+                it.free();
+                
+                File runDir = new File(DeltaRun.getDirectory(indexDir, first, last));
+                if (!tmp.renameTo(runDir))
+                    throw new IOException("could not rename '" + tmp + "' to " + runDir);
+                
+                DeltaRun mergedRun = new DeltaRun(indexDir, first, last, comp, compressed, useMmap(),
+                    blockCache);
+                
+                List<DeltaRun> newRuns = new ArrayList<DeltaRun>(runs.size() - numRuns + 1);
+                newRuns.addAll(runs.subList(0, offset));
+                newRuns.add(mergedRun);
+                newRuns.addAll(oldRuns.subList(numRuns, oldRuns.size()));
+                runs = newRuns;
+                
+                totalOnDiskSize += mergedRun.getSize();
+                for (DeltaRun run : mergedRuns) {
+                    totalOnDiskSize -= run.getSize();
+                    run.destroy();
+                    FSUtils.delTree(new File(DeltaRun.getDirectory(indexDir, run.getFirstGeneration(), run
+                            .getLastGeneration())));
+                }
+            }
+            
+            Logging.logMessage(Logging.LEVEL_INFO, Category.babudb, this, "... done (" + numRuns
+                + " delta runs merged)");
+            
+            return true;
         }
     }
     
+    /**
+     * Returns the number of delta runs on top of the on-disk index.
+     * 
+     * @return the number of delta runs
+     */
+    public int getNumDeltaRuns() {
+        return runs.size();
+    }
+    
     /**
      * Checks if files containing index data are memory-mapped.
      * 
@@ -558,12 +1109,32 @@ public class LSMTree {
      */
     public void destroy() throws IOException {
         
-        synchronized (lock) {
-            if (index != null) {
-                totalOnDiskSize -= index.getSize();
-                index.destroy();
+        // abort any ongoing merge, as runs must not be destroyed while being
+        // merged
+        mergeWaiters.incrementAndGet();
+        try {
+            synchronized (mergeLock) {
+                synchronized (lock) {
+                    if (index != null) {
+                        totalOnDiskSize -= index.getSize();
+                        index.destroy();
+                    }
+                    for (DeltaRun run : runs) {
+                        totalOnDiskSize -= run.getSize();
+                        run.destroy();
+                    }
+                    runs = Collections.emptyList();
+                    if (pendingRun != null)
+                        pendingRun.destroy();
+                    overlay.cleanup();
+                    overlayBytes = 0;
+                    snapshotBytes = 0;
+                    overlayEntries = 0;
+                    snapshotEntries = 0;
+                }
             }
-            overlay.cleanup();
+        } finally {
+            mergeWaiters.decrementAndGet();
         }
     }
     
@@ -597,13 +1168,173 @@ public class LSMTree {
         
         Iterator<Entry<byte[], byte[]>> overlayIterator = overlay.prefixLookup(prefix, snapId, true,
             ascending);
-        InternalDiskIndexIterator diskIndexIterator = null;
-        if (index != null) {
-            byte[][] rng = comp.prefixToRange(prefix, ascending);
-            diskIndexIterator = index.internalRangeLookup(rng[0], rng[1], ascending);
+        
+        byte[][] rng = comp.prefixToRange(prefix, ascending);
+        List<DeltaRun> runs = this.runs;
+        List<ResultSet<ByteRange, ByteRange>> diskIterators = new ArrayList<ResultSet<ByteRange, ByteRange>>(
+            runs.size() + 1);
+        for (DeltaRun run : runs)
+            diskIterators.add(run.internalRangeLookup(rng[0], rng[1], ascending));
+        if (index != null)
+            diskIterators.add(index.internalRangeLookup(rng[0], rng[1], ascending));
+        
+        return new InternalMergeIterator(overlayIterator, diskIterators, comp, NULL_ELEMENT, ascending);
+    }
+    
+    /**
+     * Looks up a key in the delta runs and the on-disk index.
+     */
+    private byte[] diskLookup(byte[] key) {
+        
+        for (DeltaRun run : runs) {
+            
+            byte[] result = run.lookup(key, NULL_ELEMENT);
+            
+            if (result == NULL_ELEMENT)
+                return null;
+            
+            if (result != null)
+                return result;
+        }
+        
+        return index == null ? null : index.lookup(key);
+    }
+    
+    /**
+     * Looks up all keys without a result in the delta runs and the on-disk
+     * index. Each run and the index is searched for the remaining keys at
+     * once. Deleted keys are reported as <code>null</code>.
+     */
+    private void diskLookup(byte[][] keys, byte[][] results) {
+        
+        List<DeltaRun> runs = this.runs;
+        DiskIndex index = this.index;
+        
+        for (int src = 0; src <= runs.size(); src++) {
+            
+            // determine the keys that have not been found so far
+            int count = 0;
+            for (byte[] result : results)
+                if (result == null)
+                    count++;
+            
+            if (count == 0)
+                break;
+            
+            int[] positions = new int[count];
+            byte[][] remaining = new byte[count][];
+            for (int i = 0, j = 0; i < keys.length; i++)
+                if (results[i] == null) {
+                    positions[j] = i;
+                    remaining[j++] = keys[i];
+                }
+            
+            byte[][] values;
+            if (src < runs.size())
+                values = runs.get(src).lookup(remaining, NULL_ELEMENT);
+            else if (index != null)
+                values = index.lookup(remaining);
+            else
+                break;
+            
+            for (int j = 0; j < count; j++)
+                results[positions[j]] = values[j];
         }
         
-        return new InternalMergeIterator(overlayIterator, diskIndexIterator, comp, NULL_ELEMENT, ascending);
+        for (int i = 0; i < results.length; i++)
+            if (results[i] == NULL_ELEMENT)
+                results[i] = null;
+    }
+    
+    /**
+     * Adds iterators for a range of the delta runs and the on-disk index to
+     * the given list, from the newest to the oldest one.
+     */
+    private void addDiskIterators(List<Iterator<Entry<byte[], byte[]>>> list, byte[] from, byte[] to,
+        boolean ascending) {
+        
+        for (DeltaRun run : runs)
+            list.add(run.rangeLookup(from, to, ascending, NULL_ELEMENT));
+        if (index != null)
+            list.add(index.rangeLookup(from, to, ascending));
+    }
+    
+    /**
+     * Checks whether a subdirectory of an on-disk index directory contains a
+     * complete delta run, as opposed to a temporary directory of a delta run
+     * that is being written.
+     * 
+     * @param name
+     *            the name of the subdirectory
+     * @return <code>true</code>, if the subdirectory contains a delta run,
+     *         <code>false</code>, otherwise
+     */
+    public static boolean isDeltaRunDirectory(String name) {
+        return DeltaRun.parseDirectoryName(name) != null;
+    }
+    
+    /**
+     * Loads all delta runs from the given on-disk index directory. Incomplete
+     * runs and runs that have been superseded by merged runs are removed.
+     */
+    private List<DeltaRun> loadRuns(String dir) throws IOException {
+        
+        List<long[]> ranges = new ArrayList<long[]>();
+        
+        File[] files = new File(dir).listFiles();
+        if (files != null)
+            for (File file : files) {
+                
+                if (!file.isDirectory())
+                    continue;
+                
+                long[] range = DeltaRun.parseDirectoryName(file.getName());
+                if (range != null)
+                    ranges.add(range);
+                else if (file.getName().equals(DeltaRun.TMP_DIR_NAME))
+                    FSUtils.delTree(file);
+            }
+        
+        List<DeltaRun> result = new ArrayList<DeltaRun>(ranges.size());
+        for (long[] range : ranges) {
+            
+            // if the run has been merged with other runs, but was not deleted
+            // afterwards, delete it now
+            boolean superseded = false;
+            for (long[] other : ranges)
+                if (other != range && other[0] <= range[0] && range[1] <= other[1])
+                    superseded = true;
+            
+            if (superseded)
+                FSUtils.delTree(new File(DeltaRun.getDirectory(dir, range[0], range[1])));
+            else
+                result.add(new DeltaRun(dir, range[0], range[1], comp, compressed, useMmap(), blockCache));
+        }
+        
+        // sort the runs from the newest to the oldest one
+        Collections.sort(result, new Comparator<DeltaRun>() {
+            public int compare(DeltaRun o1, DeltaRun o2) {
+                return o1.getLastGeneration() < o2.getLastGeneration() ? 1
+                    : o1.getLastGeneration() > o2.getLastGeneration() ? -1 : 0;
+            }
+        });
+        
+        return result;
+    }
+    
+    /**
+     * Returns an estimate of the max. number of keys of a snapshot of the
+     * entire tree, which is used to size the Bloom filter of the snapshot.
+     */
+    private long getMaxNumKeys() {
+        
+        long numKeys = overlayEntries + snapshotEntries;
+        if (index != null)
+            numKeys += index.numKeys();
+        for (DeltaRun run : runs)
+            numKeys += run.numKeys();
+        
+        return numKeys;
     }
     
     private static long getTotalDirSize(File dir) {
@@ -0,0 +1,375 @@
+/*
+ * Copyright (c) 2026, agent
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.babudb.index.overlay;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.xtreemfs.babudb.api.index.ByteRangeComparator;
+import org.xtreemfs.babudb.index.ByteRange;
+
+/**
+ * An overlay tree that stores keys and values in large memory slabs rather
+ * than in individual objects. Entries are indexed by a skip list, the nodes
+ * of which are stored in arrays of longs and reference each other by their
+ * int offsets. Hence, the number of objects that need to be traced by the
+ * garbage collector does not depend on the number of entries.
+ * <p>
+ * Each key and value is stored in a slab, preceded by its length. A node
+ * consists of the address of its key, the address of its value, its height
+ * and the offsets of its successors on each level. Slab addresses contain
+ * the slab index in the upper and the offset in the lower 32 bits.
+ * </p>
+ * <p>
+ * Only a single thread may insert entries at a time; lookups and iterations
+ * may be carried out concurrently to insertions. Nodes are fully written
+ * before they are linked into the list, and links are published by volatile
+ * writes.
+ * </p>
+ * 
+ * @author agent
+ * 
+ */
+public class ArenaOverlayTree extends OverlayTree<byte[], byte[]> {
+    
+    /**
+     * the kinds of memory in which slabs can be allocated
+     */
+    public static enum Allocation {
+        /**
+         * slabs are allocated as byte arrays on the Java heap
+         */
+        HEAP,
+        /**
+         * slabs are allocated as direct buffers outside the Java heap
+         */
+        DIRECT
+    }
+    
+    private static final int          MAX_HEIGHT          = 12;
+    
+    private static final int          MIN_SLAB_SIZE       = 64 * 1024;
+    
+    private static final int          MAX_SLAB_SIZE       = 1024 * 1024;
+    
+    private static final int          NODE_CHUNK_BITS     = 16;
+    
+    private static final int          MIN_NODE_CHUNK_SIZE = 1024;
+    
+    private static final int          MAX_NODE_CHUNK_SIZE = 1 << NODE_CHUNK_BITS;
+    
+    // node fields
+    private static final int          KEY                 = 0;
+    
+    private static final int          VALUE               = 1;
+    
+    private static final int          NEXT                = 2;
+    
+    /**
+     * the offset of the head node, which is also used as the successor of the
+     * last node on each level
+     */
+    private static final int          HEAD                = 0;
+    
+    /**
+     * the value address of deleted entries
+     */
+    private static final long         DELETED             = -1;
+    
+    private final ByteRangeComparator comp;
+    
+    private final byte[]              nullValue;
+    
+    private final Allocation          allocation;
+    
+    private final Random              random              = new Random();
+    
+    /**
+     * all slabs; replaced when a slab is added
+     */
+    private volatile ByteBuffer[]     slabs               = new ByteBuffer[0];
+    
+    /**
+     * the slab to which entries are currently written
+     */
+    private ByteBuffer                slab;
+    
+    /**
+     * all node chunks; replaced when a chunk is added
+     */
+    private volatile AtomicLongArray[] nodeChunks         = new AtomicLongArray[0];
+    
+    /**
+     * the offset of the next node in the last node chunk
+     */
+    private int                       nodeOffset;
+    
+    /**
+     * Creates a new arena overlay tree.
+     * 
+     * @param nullValue
+     *            the value that marks entries as deleted
+     * @param comp
+     *            the comparator for keys
+     * @param allocation
+     *            the kind of memory for slabs
+     */
+    public ArenaOverlayTree(byte[] nullValue, ByteRangeComparator comp, Allocation allocation) {
+        
+        this.nullValue = nullValue;
+        this.comp = comp;
+        this.allocation = allocation;
+        
+        int head = allocateNode(MAX_HEIGHT);
+        assert (head == HEAD);
+    }
+    
+    @Override
+    public OverlayTree<byte[], byte[]> newTree() {
+        return new ArenaOverlayTree(nullValue, comp, allocation);
+    }
+    
+    @Override
+    public byte[] get(byte[] key) {
+        
+        int node = findGreaterOrEqual(key, null);
+        if (node == HEAD || comp.compare(getKey(node), key) != 0)
+            return null;
+        
+        return getValue(node);
+    }
+    
+    @Override
+    public void put(byte[] key, byte[] value) {
+        
+        int[] prev = new int[MAX_HEIGHT];
+        int node = findGreaterOrEqual(key, prev);
+        long valueAddr = value == nullValue ? DELETED : append(value);
+        
+        // replace the value of an existing entry
+        if (node != HEAD && comp.compare(getKey(node), key) == 0) {
+            set(node, VALUE, valueAddr);
+            return;
+        }
+        
+        int height = 1;
+        while (height < MAX_HEIGHT && random.nextInt(4) == 0)
+            height++;
+        
+        node = allocateNode(height);
+        set(node, KEY, append(key));
+        set(node, VALUE, valueAddr);
+        
+        // link the node bottom-up, after it has been completely written
+        for (int level = 0; level < height; level++) {
+            set(node, NEXT + level, getNext(prev[level], level));
+            set(prev[level], NEXT + level, node);
+        }
+    }
+    
+    @Override
+    public Iterator<Entry<byte[], byte[]>> iterator(final byte[] from, final byte[] to, final boolean ascending) {
+        
+        return new Iterator<Entry<byte[], byte[]>>() {
+            
+            private int node = ascending ? (from == null ? getNext(HEAD, 0) : findGreaterOrEqual(from, null))
+                : (from == null ? findLast() : findLess(from, true));
+            
+            public boolean hasNext() {
+                
+                if (node == HEAD)
+                    return false;
+                if (to == null)
+                    return true;
+                
+                int cmp = comp.compare(getKey(node), to);
+                return ascending ? cmp < 0 : cmp > 0;
+            }
+            
+            public Entry<byte[], byte[]> next() {
+                
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                
+                byte[] key = read(get(node, KEY));
+                byte[] value = getValue(node);
+                node = ascending ? getNext(node, 0) : findLess(key, false);
+                
+                return new SimpleImmutableEntry<byte[], byte[]>(key, value);
+            }
+            
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+    
+    /**
+     * Finds the first node with a key greater than or equal to the given key.
+     * 
+     * @param key
+     *            the key
+     * @param prev
+     *            an array that receives the last node with a smaller key on
+     *            each level - may be <code>null</code>
+     * @return the node, or <code>HEAD</code> if all keys are smaller
+     */
+    private int findGreaterOrEqual(byte[] key, int[] prev) {
+        
+        int node = HEAD;
+        for (int level = MAX_HEIGHT - 1;;) {
+            
+            int next = getNext(node, level);
+            if (next != HEAD && comp.compare(getKey(next), key) < 0) {
+                node = next;
+                continue;
+            }
+            
+            if (prev != null)
+                prev[level] = node;
+            if (level == 0)
+                return next;
+            level--;
+        }
+    }
+    
+    /**
+     * Finds the last node with a key smaller than (or equal to) the given key.
+     * 
+     * @return the node, or <code>HEAD</code> if there is no such node
+     */
+    private int findLess(byte[] key, boolean inclusive) {
+        
+        int node = HEAD;
+        for (int level = MAX_HEIGHT - 1; level >= 0; level--) {
+            for (;;) {
+                int next = getNext(node, level);
+                if (next == HEAD)
+                    break;
+                int cmp = comp.compare(getKey(next), key);
+                if (cmp > 0 || cmp == 0 && !inclusive)
+                    break;
+                node = next;
+            }
+        }
+        
+        return node;
+    }
+    
+    /**
+     * Finds the last node.
+     * 
+     * @return the node, or <code>HEAD</code> if the tree is empty
+     */
+    private int findLast() {
+        
+        int node = HEAD;
+        for (int level = MAX_HEIGHT - 1; level >= 0; level--)
+            for (int next = getNext(node, level); next != HEAD; next = getNext(node, level))
+                node = next;
+        
+        return node;
+    }
+    
+    private ByteRange getKey(int node) {
+        
+        long addr = get(node, KEY);
+        ByteBuffer buf = slabs[(int) (addr >>> 32)];
+        int offset = (int) addr + Integer.SIZE / 8;
+        
+        return new ByteRange(buf, offset, offset + buf.getInt((int) addr));
+    }
+    
+    private byte[] getValue(int node) {
+        long addr = get(node, VALUE);
+        return addr == DELETED ? nullValue : read(addr);
+    }
+    
+    private int getNext(int node, int level) {
+        return (int) get(node, NEXT + level);
+    }
+    
+    private long get(int node, int field) {
+        return nodeChunks[node >>> NODE_CHUNK_BITS].get((node & (MAX_NODE_CHUNK_SIZE - 1)) + field);
+    }
+    
+    private void set(int node, int field, long value) {
+        nodeChunks[node >>> NODE_CHUNK_BITS].set((node & (MAX_NODE_CHUNK_SIZE - 1)) + field, value);
+    }
+    
+    /**
+     * Copies the data at the given slab address to a new array.
+     */
+    private byte[] read(long addr) {
+        
+        ByteBuffer buf = slabs[(int) (addr >>> 32)].duplicate();
+        byte[] data = new byte[buf.getInt((int) addr)];
+        buf.position((int) addr + Integer.SIZE / 8);
+        buf.get(data);
+        
+        return data;
+    }
+    
+    /**
+     * Appends data to the current slab.
+     * 
+     * @return the slab address of the data
+     */
+    private long append(byte[] data) {
+        
+        int size = data.length + Integer.SIZE / 8;
+        if (slab == null || slab.remaining() < size) {
+            
+            int slabSize = slab == null ? MIN_SLAB_SIZE : Math.min(slab.capacity() * 2, MAX_SLAB_SIZE);
+            slabSize = Math.max(slabSize, size);
+            slab = allocation == Allocation.DIRECT ? ByteBuffer.allocateDirect(slabSize) : ByteBuffer
+                    .allocate(slabSize);
+            
+            ByteBuffer[] newSlabs = Arrays.copyOf(slabs, slabs.length + 1);
+            newSlabs[slabs.length] = slab;
+            slabs = newSlabs;
+        }
+        
+        long addr = (long) (slabs.length - 1) << 32 | slab.position();
+        slab.putInt(data.length);
+        slab.put(data);
+        
+        return addr;
+    }
+    
+    /**
+     * Allocates a new node in the last node chunk.
+     * 
+     * @return the offset of the node
+     */
+    private int allocateNode(int height) {
+        
+        int size = NEXT + height;
+        AtomicLongArray chunk = nodeChunks.length == 0 ? null : nodeChunks[nodeChunks.length - 1];
+        if (chunk == null || chunk.length() - nodeOffset < size) {
+            
+            AtomicLongArray[] newChunks = Arrays.copyOf(nodeChunks, nodeChunks.length + 1);
+            newChunks[nodeChunks.length] = new AtomicLongArray(chunk == null ? MIN_NODE_CHUNK_SIZE : Math.min(
+                chunk.length() * 2, MAX_NODE_CHUNK_SIZE));
+            nodeChunks = newChunks;
+            nodeOffset = 0;
+        }
+        
+        int node = (nodeChunks.length - 1) << NODE_CHUNK_BITS | nodeOffset;
+        nodeOffset += size;
+        
+        return node;
+    }
+    
+}
@@ -16,7 +16,24 @@ public class MultiOverlayBufferTree extends MultiOverlayTree<byte[], byte[]> {
     private ByteRangeComparator comp;
     
     public MultiOverlayBufferTree(byte[] markerElement, ByteRangeComparator comp) {
-        super(markerElement, comp);
+        this(markerElement, comp, null);
+    }
+    
+    /**
+     * Creates a new multi-overlay tree that stores the entries of its overlays
+     * in memory arenas.
+     * 
+     * @param markerElement
+     *            the value that marks entries as deleted
+     * @param comp
+     *            the comparator for keys
+     * @param arena
+     *            the kind of memory for arenas; if <code>null</code>,
+     *            overlays are stored in skip lists of individual objects
+     */
+    public MultiOverlayBufferTree(byte[] markerElement, ByteRangeComparator comp,
+        ArenaOverlayTree.Allocation arena) {
+        super(markerElement, comp, arena == null ? null : new ArenaOverlayTree(markerElement, comp, arena));
         this.comp = comp;
     }
     
@@ -17,7 +17,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.Map.Entry;
-import java.util.concurrent.ConcurrentSkipListMap;
 
 import org.xtreemfs.babudb.api.database.ResultSet;
 import org.xtreemfs.babudb.index.OverlayMergeIterator;
@@ -32,11 +31,11 @@ public class MultiOverlayTree<K, V> {
     
     static class OverlayTreeList<K, V> {
         
-        public ConcurrentSkipListMap<K, V> tree;
+        public OverlayTree<K, V>     tree;
 
         public OverlayTreeList<K, V> next;
         
-        public OverlayTreeList(ConcurrentSkipListMap<K, V> tree, OverlayTreeList<K, V> next) {
+        public OverlayTreeList(OverlayTree<K, V> tree, OverlayTreeList<K, V> next) {
             this.tree = tree;
             this.next = next;
         }
@@ -91,6 +90,25 @@ public class MultiOverlayTree<K, V> {
      *            defined.
      */
     public MultiOverlayTree(V nullValue, Comparator<K> comparator) {
+        this(nullValue, comparator, null);
+    }
+    
+    /**
+     * Creates a new multi-overlay tree with overlays of the given kind.
+     * 
+     * @param nullValue
+     *            A value that will never be inserted in the tree. This value
+     *            will be used to mark entries as deleted.
+     * @param comparator
+     *            The comparator for the keys. If a <code>null</code> comparator
+     *            is provided, the natural ordering of the keys will be used if
+     *            defined.
+     * @param tree
+     *            An empty tree for the first overlay; further overlays are
+     *            created as trees of the same kind. If <code>null</code>,
+     *            overlays are stored in skip lists.
+     */
+    MultiOverlayTree(V nullValue, Comparator<K> comparator, OverlayTree<K, V> tree) {
         
         if (comparator == null) {
             this.comparator = new Comparator<K>() {
@@ -102,7 +120,8 @@ public class MultiOverlayTree<K, V> {
         } else
             this.comparator = comparator;
         
-        treeList = new OverlayTreeList<K, V>(new ConcurrentSkipListMap<K, V>(comparator), null);
+        treeList = new OverlayTreeList<K, V>(tree != null ? tree : new SkipListOverlayTree<K, V>(
+            this.comparator), null);
         overlayMap = Collections.synchronizedMap(new HashMap<Integer, OverlayTreeList<K, V>>());
         
         this.nullValue = nullValue;
@@ -115,7 +134,7 @@ public class MultiOverlayTree<K, V> {
      */
     public int newOverlay() {
         overlayMap.put(overlayId, treeList);
-        treeList = new OverlayTreeList<K, V>(new ConcurrentSkipListMap<K, V>(comparator), treeList);
+        treeList = new OverlayTreeList<K, V>(treeList.tree.newTree(), treeList);
         return overlayId++;
     }
     
@@ -244,33 +263,8 @@ public class MultiOverlayTree<K, V> {
         
         // initialize a final list w/ submap iterators of all overlays
         final List<Iterator<Entry<K, V>>> itList = new ArrayList<Iterator<Entry<K, V>>>();
-        for (OverlayTreeList<K, V> list = treeList; list != null; list = list.next) {
-            if (from != null && to != null) {
-                // both boundaries are provided
-                if (ascending)
-                    itList.add(list.tree.subMap(from, to).entrySet().iterator());
-                else
-                    itList.add(list.tree.descendingMap().subMap(from, to).entrySet().iterator());
-            } else if (from == null && to == null) {
-                // no boundary is provided
-                if (ascending)
-                    itList.add(list.tree.entrySet().iterator());
-                else
-                    itList.add(list.tree.descendingMap().entrySet().iterator());
-            } else if (from != null && to == null) {
-                // only 'from' obundary is provided
-                if (ascending)
-                    itList.add(list.tree.tailMap(from).entrySet().iterator());
-                else
-                    itList.add(list.tree.descendingMap().tailMap(from).entrySet().iterator());
-            } else {
-                // only 'to' boundary is provided
-                if (ascending)
-                    itList.add(list.tree.headMap(to).entrySet().iterator());
-                else
-                    itList.add(list.tree.descendingMap().headMap(to).entrySet().iterator());
-            }
-        }
+        for (OverlayTreeList<K, V> list = treeList; list != null; list = list.next)
+            itList.add(list.tree.iterator(from, to, ascending));
         
         return new OverlayMergeIterator<K, V>(itList, comparator, includeDeletedEntries ? null : nullValue,
             ascending);
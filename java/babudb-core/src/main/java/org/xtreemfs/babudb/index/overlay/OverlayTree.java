@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2026, agent
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.babudb.index.overlay;
+
+import java.util.Iterator;
+import java.util.Map.Entry;
+
+/**
+ * A sorted in-memory map that forms a single overlay of a
+ * {@link MultiOverlayTree}. Lookups may be carried out concurrently to
+ * insertions.
+ * 
+ * @author agent
+ * 
+ */
+abstract class OverlayTree<K, V> {
+    
+    /**
+     * Creates a new, empty tree of the same kind.
+     * 
+     * @return the new tree
+     */
+    public abstract OverlayTree<K, V> newTree();
+    
+    /**
+     * Returns the value associated with a key.
+     * 
+     * @param key
+     *            the key
+     * @return the value, or <code>null</code>, if the key is not contained
+     */
+    public abstract V get(K key);
+    
+    /**
+     * Associates a key with a value, replacing any previous value.
+     * 
+     * @param key
+     *            the key
+     * @param value
+     *            the value
+     */
+    public abstract void put(K key, V value);
+    
+    /**
+     * Returns an iterator over all entries with keys between <code>from</code>
+     * (inclusively) and <code>to</code> (exclusively). In descending order,
+     * <code>from</code> is the largest and <code>to</code> the smallest key.
+     * 
+     * @param from
+     *            the first key; if <code>null</code>, the iterator starts at
+     *            the first key in the tree
+     * @param to
+     *            the key at which the iterator stops; if <code>null</code>,
+     *            the iterator stops after the last key in the tree
+     * @param ascending
+     *            the iteration order
+     * @return an iterator over the entries
+     */
+    public abstract Iterator<Entry<K, V>> iterator(K from, K to, boolean ascending);
+    
+}
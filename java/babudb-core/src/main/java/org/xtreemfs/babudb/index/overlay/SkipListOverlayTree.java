@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2026, agent
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.babudb.index.overlay;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * An overlay tree that stores its entries in a
+ * <code>ConcurrentSkipListMap</code>.
+ * 
+ * @author agent
+ * 
+ */
+class SkipListOverlayTree<K, V> extends OverlayTree<K, V> {
+    
+    private final Comparator<K>               comparator;
+    
+    private final ConcurrentSkipListMap<K, V> tree;
+    
+    SkipListOverlayTree(Comparator<K> comparator) {
+        this.comparator = comparator;
+        this.tree = new ConcurrentSkipListMap<K, V>(comparator);
+    }
+    
+    @Override
+    public OverlayTree<K, V> newTree() {
+        return new SkipListOverlayTree<K, V>(comparator);
+    }
+    
+    @Override
+    public V get(K key) {
+        return tree.get(key);
+    }
+    
+    @Override
+    public void put(K key, V value) {
+        tree.put(key, value);
+    }
+    
+    @Override
+    public Iterator<Entry<K, V>> iterator(K from, K to, boolean ascending) {
+        
+        ConcurrentNavigableMap<K, V> map = ascending ? tree : tree.descendingMap();
+        
+        if (from != null && to != null)
+            // both boundaries are provided
+            map = map.subMap(from, to);
+        else if (from != null)
+            // only 'from' boundary is provided
+            map = map.tailMap(from);
+        else if (to != null)
+            // only 'to' boundary is provided
+            map = map.headMap(to);
+        
+        return map.entrySet().iterator();
+    }
+    
+}
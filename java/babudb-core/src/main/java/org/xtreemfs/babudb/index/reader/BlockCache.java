@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2026, agent
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+package org.xtreemfs.babudb.index.reader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A size-bounded cache for blocks of on-disk indices that are accessed via
+ * file channels rather than memory-mapped buffers. A single instance is shared
+ * among all indices of a BabuDB instance.
+ * <p>
+ * Cached blocks are identified by the index they belong to, the ID of the
+ * block file and the offset of the block in that file. The cache is split into
+ * a fixed number of shards, each of which is protected by its own lock and
+ * evicts the least recently used blocks once its share of the overall byte
+ * budget is exceeded.
+ * </p>
+ * <p>
+ * Blocks are kept in direct buffers outside of the Java heap, so that a large
+ * cache neither adds to the heap size nor to garbage collection pauses. The
+ * memory of evicted blocks is released once their buffers become unreachable.
+ * </p>
+ *
+ * @author agent
+ *
+ */
+public class BlockCache {
+
+    public static final String RUNTIME_STATE_HITS      = "blockCache.hitCount";
+
+    public static final String RUNTIME_STATE_MISSES    = "blockCache.missCount";
+
+    public static final String RUNTIME_STATE_EVICTIONS = "blockCache.evictionCount";
+
+    public static final String RUNTIME_STATE_SIZE      = "blockCache.sizeBytes";
+
+    public static final String RUNTIME_STATE_CAPACITY  = "blockCache.capacityBytes";
+
+    private static final int   NUM_SHARDS              = 16;
+
+    private final Shard[]      shards;
+
+    private final long         capacity;
+
+    private final AtomicLong   nextIndexId;
+
+    private final AtomicLong   _hits;
+
+    private final AtomicLong   _misses;
+
+    private final AtomicLong   _evictions;
+
+    /**
+     * Creates a new block cache.
+     *
+     * @param capacity
+     *            the maximum number of bytes occupied by all cached blocks
+     */
+    public BlockCache(long capacity) {
+
+        this.capacity = capacity;
+        this.nextIndexId = new AtomicLong();
+        this._hits = new AtomicLong();
+        this._misses = new AtomicLong();
+        this._evictions = new AtomicLong();
+
+        long shardCapacity = (capacity + NUM_SHARDS - 1) / NUM_SHARDS;
+        shards = new Shard[NUM_SHARDS];
+        for (int i = 0; i < NUM_SHARDS; i++)
+            shards[i] = new Shard(shardCapacity);
+    }
+
+    /**
+     * Assigns a new ID to an index. Blocks of the index are cached under this
+     * ID, which ensures that blocks of different indices never collide, even
+     * if an index is recreated at the same path.
+     *
+     * @return a new, unique index ID
+     */
+    public long newIndexId() {
+        return nextIndexId.incrementAndGet();
+    }
+
+    /**
+     * Returns a block from the cache. If the block is not cached, it will be
+     * read from the given channel and added to the cache.
+     *
+     * @param indexId
+     *            the ID of the index
+     * @param fileId
+     *            the ID of the block file
+     * @param startOffset
+     *            the offset of the block in the block file
+     * @param endOffset
+     *            the offset at which the block ends
+     * @param channel
+     *            the channel of the block file
+     * @return a read-only buffer containing the block, starting at position 0
+     * @throws IOException
+     *             if an I/O error occurred while reading the block
+     */
+    public ByteBuffer getBlock(long indexId, int fileId, int startOffset, int endOffset, FileChannel channel)
+        throws IOException {
+
+        BlockKey key = new BlockKey(indexId, fileId, startOffset);
+        Shard shard = getShard(key);
+
+        ByteBuffer block = shard.get(key);
+        if (block != null) {
+            _hits.incrementAndGet();
+            return block.duplicate();
+        }
+
+        _misses.incrementAndGet();
+
+        // read the block from disk; concurrent misses on the same block may
+        // read it more than once, which is harmless
+        ByteBuffer buf = ByteBuffer.allocateDirect(endOffset - startOffset);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, startOffset + buf.position()) == -1)
+                break;
+        }
+        buf.clear();
+        block = buf.asReadOnlyBuffer();
+
+        _evictions.addAndGet(shard.put(key, block));
+
+        return block.duplicate();
+    }
+
+    /**
+     * Removes all blocks of the given index from the cache.
+     *
+     * @param indexId
+     *            the ID of the index
+     */
+    public void invalidate(long indexId) {
+        for (Shard shard : shards)
+            shard.removeAll(indexId);
+    }
+
+    /**
+     * Returns the total number of bytes of all cached blocks.
+     *
+     * @return the size of the cache in bytes
+     */
+    public long getSize() {
+        long size = 0;
+        for (Shard shard : shards)
+            size += shard.getSize();
+        return size;
+    }
+
+    public Object getRuntimeState(String property) {
+
+        if (RUNTIME_STATE_HITS.equals(property))
+            return _hits.get();
+        if (RUNTIME_STATE_MISSES.equals(property))
+            return _misses.get();
+        if (RUNTIME_STATE_EVICTIONS.equals(property))
+            return _evictions.get();
+        if (RUNTIME_STATE_SIZE.equals(property))
+            return getSize();
+        if (RUNTIME_STATE_CAPACITY.equals(property))
+            return capacity;
+
+        return null;
+    }
+
+    public Map<String, Object> getRuntimeState() {
+
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put(RUNTIME_STATE_HITS, _hits.get());
+        map.put(RUNTIME_STATE_MISSES, _misses.get());
+        map.put(RUNTIME_STATE_EVICTIONS, _evictions.get());
+        map.put(RUNTIME_STATE_SIZE, getSize());
+        map.put(RUNTIME_STATE_CAPACITY, capacity);
+
+        return map;
+    }
+
+    private Shard getShard(BlockKey key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return shards[(h & 0x7FFFFFFF) % NUM_SHARDS];
+    }
+
+    /**
+     * A shard of the cache, which keeps its blocks in access order.
+     */
+    private static final class Shard {
+
+        private final LinkedHashMap<BlockKey, ByteBuffer> blocks;
+
+        private final long                                capacity;
+
+        private long                                      size;
+
+        Shard(long capacity) {
+            this.capacity = capacity;
+            this.blocks = new LinkedHashMap<BlockKey, ByteBuffer>(16, 0.75f, true);
+        }
+
+        synchronized ByteBuffer get(BlockKey key) {
+            return blocks.get(key);
+        }
+
+        /**
+         * Adds a block and evicts the least recently used blocks until the
+         * shard fits into its capacity.
+         *
+         * @return the number of evicted blocks
+         */
+        synchronized int put(BlockKey key, ByteBuffer block) {
+
+            // blocks exceeding the capacity of the shard are never cached
+            if (block.capacity() > capacity)
+                return 0;
+
+            ByteBuffer old = blocks.put(key, block);
+            if (old != null)
+                size -= old.capacity();
+            size += block.capacity();
+
+            int evicted = 0;
+            Iterator<ByteBuffer> it = blocks.values().iterator();
+            while (size > capacity && it.hasNext()) {
+                size -= it.next().capacity();
+                it.remove();
+                evicted++;
+            }
+
+            return evicted;
+        }
+
+        synchronized void removeAll(long indexId) {
+            Iterator<Map.Entry<BlockKey, ByteBuffer>> it = blocks.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<BlockKey, ByteBuffer> next = it.next();
+                if (next.getKey().indexId == indexId) {
+                    size -= next.getValue().capacity();
+                    it.remove();
+                }
+            }
+        }
+
+        synchronized long getSize() {
+            return size;
+        }
+    }
+
+    /**
+     * Identifies a cached block.
+     */
+    private static final class BlockKey {
+
+        final long indexId;
+
+        final int  fileId;
+
+        final int  offset;
+
+        BlockKey(long indexId, int fileId, int offset) {
+            this.indexId = indexId;
+            this.fileId = fileId;
+            this.offset = offset;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = (int) (indexId ^ (indexId >>> 32));
+            h = 31 * h + fileId;
+            h = 31 * h + offset;
+            return h;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof BlockKey))
+                return false;
+            BlockKey other = (BlockKey) obj;
+            return indexId == other.indexId && fileId == other.fileId && offset == other.offset;
+        }
+    }
+
+}
@@ -75,4 +75,35 @@ public abstract class BlockReader {
             BufferPool.free(readBuffer);
     }
     
+    /**
+     * Creates a mini page of the format given by the entry size stored in the
+     * block header.
+     * 
+     * @param entrySize
+     *            the entry size from the block header; -1 indicates
+     *            variable-length entries, {@link FrontCodedMiniPage#ENTRY_SIZE}
+     *            front-coded entries
+     * @param numEntries
+     *            the number of entries
+     * @param buf
+     *            the buffer
+     * @param offset
+     *            the offset of the page in the buffer
+     * @param limit
+     *            the limit of the page in the buffer
+     * @param comp
+     *            the byte range comparator
+     * @return the mini page
+     */
+    protected static MiniPage createPage(int entrySize, int numEntries, ByteBuffer buf, int offset, int limit,
+        ByteRangeComparator comp) {
+        
+        if (entrySize == -1)
+            return new VarLenMiniPage(numEntries, buf, offset, limit, comp);
+        else if (entrySize == FrontCodedMiniPage.ENTRY_SIZE)
+            return new FrontCodedMiniPage(numEntries, buf, offset, limit, comp);
+        else
+            return new FixedLenMiniPage(entrySize, numEntries, buf, offset, limit, comp);
+    }
+    
 }
\ No newline at end of file
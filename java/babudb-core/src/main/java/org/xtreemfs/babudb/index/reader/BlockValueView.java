@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2026, agent
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.babudb.index.reader;
+
+import java.nio.ByteBuffer;
+
+import org.xtreemfs.babudb.api.database.ValueView;
+
+/**
+ * A view on a value in a block of a disk index. The view keeps the block
+ * reader open and pins the index until it is freed.
+ * 
+ * @author agent
+ * 
+ */
+class BlockValueView extends ValueView {
+    
+    private BlockReader block;
+    
+    private DiskIndex   index;
+    
+    BlockValueView(ByteBuffer value, BlockReader block, DiskIndex index) {
+        super(value);
+        this.block = block;
+        this.index = index;
+    }
+    
+    @Override
+    public synchronized void free() {
+        
+        if (block == null)
+            return;
+        
+        block.free();
+        index.unpin();
+        
+        block = null;
+        index = null;
+    }
+    
+}
@@ -15,6 +15,7 @@ import java.util.Map.Entry;
 
 import org.xtreemfs.babudb.api.database.ResultSet;
 import org.xtreemfs.babudb.api.index.ByteRangeComparator;
+import org.xtreemfs.babudb.index.BlockCodec;
 import org.xtreemfs.babudb.index.ByteRange;
 import org.xtreemfs.foundation.buffer.BufferPool;
 
@@ -22,8 +23,33 @@ public class CompressedBlockReader extends BlockReader {
     
     public static final int PREFIX_OFFSET = 5 * Integer.SIZE / 8;
     
+    /**
+     * the position of the codec ID in the header field that contains the
+     * number of entries
+     */
+    public static final int CODEC_SHIFT   = 24;
+    
+    /**
+     * the maximum number of entries in a block
+     */
+    public static final int MAX_ENTRIES   = (1 << CODEC_SHIFT) - 1;
+    
     private byte[]          prefix;
     
+    /**
+     * the codec of the value page, or <code>null</code> if values are not
+     * compressed
+     */
+    private BlockCodec      codec;
+    
+    private ByteBuffer      valsBuffer;
+    
+    private int             valsOffset;
+    
+    private int             valsLimit;
+    
+    private int             valEntrySize;
+    
     /**
      * Creates a reader for a compressed buffered block.
      * 
@@ -35,8 +61,11 @@ public class CompressedBlockReader extends BlockReader {
      *            the limit of the block in the buffer
      * @param comp
      *            the byte range comparator
+     * @throws IOException
+     *             if the block has been compressed with an unknown codec
      */
-    public CompressedBlockReader(ByteBuffer buf, int position, int limit, ByteRangeComparator comp) {
+    public CompressedBlockReader(ByteBuffer buf, int position, int limit, ByteRangeComparator comp)
+        throws IOException {
         
         super(true);
         
@@ -47,7 +76,8 @@ public class CompressedBlockReader extends BlockReader {
         
         int valsOffset = position + buf.getInt(position);
         int keysOffset = position + buf.getInt(position + 4);
-        numEntries = buf.getInt(position + 8);
+        int entries = buf.getInt(position + 8);
+        numEntries = entries & MAX_ENTRIES;
         int keyEntrySize = buf.getInt(position + 12);
         int valEntrySize = buf.getInt(position + 16);
         
@@ -63,10 +93,8 @@ public class CompressedBlockReader extends BlockReader {
             buf.position(position);
         }
         
-        keys = keyEntrySize == -1 ? new VarLenMiniPage(numEntries, buf, keysOffset, valsOffset, comp)
-            : new FixedLenMiniPage(keyEntrySize, numEntries, buf, keysOffset, valsOffset, comp);
-        values = valEntrySize == -1 ? new VarLenMiniPage(numEntries, buf, valsOffset, limit, comp)
-            : new FixedLenMiniPage(valEntrySize, numEntries, buf, valsOffset, limit, comp);
+        keys = createPage(keyEntrySize, numEntries, buf, keysOffset, valsOffset, comp);
+        initValues(BlockCodec.getCodec(entries >>> CODEC_SHIFT), buf, valsOffset, limit, valEntrySize);
     }
     
     /**
@@ -95,7 +123,8 @@ public class CompressedBlockReader extends BlockReader {
         
         int valsOffset = readBuffer.getBuffer().getInt(0);
         int keysOffset = readBuffer.getBuffer().getInt(4);
-        numEntries = readBuffer.getBuffer().getInt(8);
+        int entries = readBuffer.getBuffer().getInt(8);
+        numEntries = entries & MAX_ENTRIES;
         int keyEntrySize = readBuffer.getBuffer().getInt(12);
         int valEntrySize = readBuffer.getBuffer().getInt(16);
         
@@ -111,15 +140,54 @@ public class CompressedBlockReader extends BlockReader {
             readBuffer.getBuffer().position(0);
         }
         
-        keys = keyEntrySize == -1 ? new VarLenMiniPage(numEntries, readBuffer.getBuffer(), keysOffset,
-            valsOffset, comp) : new FixedLenMiniPage(keyEntrySize, numEntries, readBuffer.getBuffer(),
-            keysOffset, valsOffset, comp);
-        values = valEntrySize == -1 ? new VarLenMiniPage(numEntries, readBuffer.getBuffer(), valsOffset,
-            limit - position, comp) : new FixedLenMiniPage(valEntrySize, numEntries, readBuffer.getBuffer(),
-            valsOffset, limit - position, comp);
+        keys = createPage(keyEntrySize, numEntries, readBuffer.getBuffer(), keysOffset, valsOffset, comp);
+        initValues(BlockCodec.getCodec(entries >>> CODEC_SHIFT), readBuffer.getBuffer(), valsOffset, limit
+            - position, valEntrySize);
         
     }
     
+    /**
+     * Returns the value page. Compressed value pages are decompressed when
+     * they are accessed for the first time, so that lookups of keys that are
+     * not contained in the block do not have to decompress any values.
+     */
+    public MiniPage getValues() {
+        
+        if (values == null) {
+            
+            // the uncompressed page size precedes the compressed page
+            byte[] page = new byte[valsBuffer.getInt(valsOffset)];
+            int offset = valsOffset + Integer.SIZE / 8;
+            
+            try {
+                codec.decompress(valsBuffer, offset, valsLimit - offset, page);
+            } catch (IOException exc) {
+                throw new IllegalStateException("could not decompress values of block at offset " + position,
+                    exc);
+            }
+            
+            values = createPage(valEntrySize, numEntries, ByteBuffer.wrap(page), 0, page.length, comp);
+            valsBuffer = null;
+        }
+        
+        return values;
+    }
+    
+    private void initValues(BlockCodec codec, ByteBuffer buf, int valsOffset, int valsLimit, int valEntrySize) {
+        
+        if (codec == null)
+            values = createPage(valEntrySize, numEntries, buf, valsOffset, valsLimit, comp);
+        
+        else {
+            this.codec = codec;
+            this.valsBuffer = buf;
+            this.valsOffset = valsOffset;
+            this.valsLimit = valsLimit;
+            this.valEntrySize = valEntrySize;
+        }
+    }
+
+    
     /**
      * Returns null if the key is not matching the block prefix, otherwise the
      * suffix is returned, i.e. key - prefix.
@@ -162,7 +230,7 @@ public class CompressedBlockReader extends BlockReader {
         if (index == -1)
             return null;
         
-        return values.getEntry(index);
+        return getValues().getEntry(index);
     }
     
     public ResultSet<ByteRange, ByteRange> rangeLookup(byte[] from, byte[] to, final boolean ascending) {
@@ -200,7 +268,7 @@ public class CompressedBlockReader extends BlockReader {
                     
                     final ByteRange key   = keys.getEntry(currentIndex);
                     
-                    final ByteRange value = values.getEntry(currentIndex);
+                    final ByteRange value = getValues().getEntry(currentIndex);
                     
                     {
                         // attach the buffer to the last key-value pair, so that
@@ -50,10 +50,8 @@ public class DefaultBlockReader extends BlockReader {
             numEntries = buf.getInt(position + 4);
             int keyEntrySize = buf.getInt(position + 8);
             int valEntrySize = buf.getInt(position + 12);
-            keys = keyEntrySize == -1 ? new VarLenMiniPage(numEntries, buf, keysOffset, valsOffset, comp)
-                : new FixedLenMiniPage(keyEntrySize, numEntries, buf, keysOffset, valsOffset, comp);
-            values = valEntrySize == -1 ? new VarLenMiniPage(numEntries, buf, valsOffset, limit, comp)
-                : new FixedLenMiniPage(valEntrySize, numEntries, buf, valsOffset, limit, comp);
+            keys = createPage(keyEntrySize, numEntries, buf, keysOffset, valsOffset, comp);
+            values = createPage(valEntrySize, numEntries, buf, valsOffset, limit, comp);
         } else {
             numEntries = 0;
             keys = new FixedLenMiniPage(0, 0, null, 0, 0, comp);
@@ -93,12 +91,9 @@ public class DefaultBlockReader extends BlockReader {
             numEntries = readBuffer.getBuffer().getInt(4);
             int keyEntrySize = readBuffer.getBuffer().getInt(8);
             int valEntrySize = readBuffer.getBuffer().getInt(12);
-            keys = keyEntrySize == -1 ? new VarLenMiniPage(numEntries, readBuffer.getBuffer(), keysOffset,
-                valsOffset, comp) : new FixedLenMiniPage(keyEntrySize, numEntries, readBuffer.getBuffer(),
-                keysOffset, valsOffset, comp);
-            values = valEntrySize == -1 ? new VarLenMiniPage(numEntries, readBuffer.getBuffer(), valsOffset,
-                limit - position, comp) : new FixedLenMiniPage(valEntrySize, numEntries, readBuffer
-                    .getBuffer(), valsOffset, limit - position, comp);
+            keys = createPage(keyEntrySize, numEntries, readBuffer.getBuffer(), keysOffset, valsOffset, comp);
+            values = createPage(valEntrySize, numEntries, readBuffer.getBuffer(), valsOffset, limit - position,
+                comp);
         } else {
             numEntries = 0;
             keys = new FixedLenMiniPage(0, 0, null, 0, 0, comp);
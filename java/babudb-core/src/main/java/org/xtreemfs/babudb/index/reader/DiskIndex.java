@@ -16,11 +16,15 @@ import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.xtreemfs.babudb.api.database.ResultSet;
+import org.xtreemfs.babudb.api.database.ValueView;
 import org.xtreemfs.babudb.api.index.ByteRangeComparator;
+import org.xtreemfs.babudb.index.BloomFilter;
 import org.xtreemfs.babudb.index.ByteRange;
 import org.xtreemfs.foundation.logging.Logging;
 import org.xtreemfs.foundation.logging.Logging.Category;
@@ -35,6 +39,12 @@ public class DiskIndex {
     
     private FileChannel[]       dbFileChannels;
     
+    /**
+     * the sizes of all block files, which never change once an index has been
+     * written
+     */
+    private long[]              dbFileSizes;
+    
     private ByteRangeComparator comp;
     
     private long                indexSize;
@@ -43,8 +53,47 @@ public class DiskIndex {
     
     private final boolean       mmaped;
     
+    private final BlockCache    blockCache;
+    
+    private final long          cacheId;
+    
+    private final BloomFilter   bloomFilter;
+    
+    /**
+     * the number of value views on the index that have not been freed yet
+     */
+    private int                 pins;
+    
+    /**
+     * specifies whether the index has been destroyed while views were pinning
+     * it, so that it has to be released when the last view is freed
+     */
+    private boolean             destroyPending;
+    
     public DiskIndex(String path, ByteRangeComparator comp, boolean compressed, boolean mmaped)
         throws IOException {
+        this(path, comp, compressed, mmaped, null);
+    }
+    
+    /**
+     * Creates a new disk index.
+     * 
+     * @param path
+     *            the path to the index directory
+     * @param comp
+     *            the byte range comparator
+     * @param compressed
+     *            specifies whether the index is compressed
+     * @param mmaped
+     *            specifies whether block files are memory-mapped
+     * @param blockCache
+     *            the cache for blocks read from block files that are not
+     *            memory-mapped - may be <code>null</code>
+     * @throws IOException
+     *             if an I/O error occurred while loading the index
+     */
+    public DiskIndex(String path, ByteRangeComparator comp, boolean compressed, boolean mmaped,
+        BlockCache blockCache) throws IOException {
         if (!path.endsWith(System.getProperty("file.separator")))
             path += System.getProperty("file.separator");
         
@@ -54,6 +103,8 @@ public class DiskIndex {
         this.comp = comp;
         this.compressed = compressed;
         this.mmaped = mmaped;
+        this.blockCache = mmaped ? null : blockCache;
+        this.cacheId = this.blockCache == null ? 0 : this.blockCache.newIndexId();
         Logging.logMessage(Logging.LEVEL_INFO, Category.babudb, this, "loading index ...");
         
         // First, read the block index into a buffer. For performance reasons,
@@ -68,6 +119,12 @@ public class DiskIndex {
         blockIndex = new DefaultBlockReader(blockIndexBuf, 0, blockIndexBuf.limit(), comp);
         channel.close();
         
+        // load the Bloom filter, if the index has one; older indices come
+        // without a filter, and filters are ignored if keys are not compared
+        // by their raw bytes
+        bloomFilter = BloomFilter.isApplicable(comp) ? BloomFilter.read(path + BloomFilter.FILTER_FILE_NAME)
+            : null;
+        
         // Second, mmap each of the potentially large block list files
         FilenameFilter filter = new FilenameFilter() {
             public boolean accept(File dir, String filename) {
@@ -79,6 +136,7 @@ public class DiskIndex {
         Pattern p = Pattern.compile("blockfile_(\\d+).idx");
         
         dbFileChannels = new FileChannel[blockFilenames.length];
+        dbFileSizes = new long[blockFilenames.length];
         
         if (mmaped)
             dbFiles = new MappedByteBuffer[blockFilenames.length];
@@ -89,7 +147,8 @@ public class DiskIndex {
                 int blockIndexId = new Integer(m.group(1)).intValue();
                 RandomAccessFile blockFile = new RandomAccessFile(path + blockFilename, "r");
                 dbFileChannels[blockIndexId] = blockFile.getChannel();
-                indexSize += blockFile.length();
+                dbFileSizes[blockIndexId] = blockFile.length();
+                indexSize += dbFileSizes[blockIndexId];
                 
                 // if mmap'ed access is used, map the index files and close the
                 // channels; otherwise, no maps will be created, and channels
@@ -107,7 +166,25 @@ public class DiskIndex {
         
     }
     
+    /**
+     * Checks whether the given key may be contained in the index. If the
+     * index has no Bloom filter, <code>true</code> is always returned.
+     * 
+     * @param key
+     *            the key
+     * @return <code>false</code>, if the key is definitely not contained in
+     *         the index, <code>true</code>, otherwise
+     */
+    public boolean mightContain(byte[] key) {
+        return bloomFilter == null || bloomFilter.mightContain(key);
+    }
+    
     public byte[] lookup(byte[] key) {
+        
+        // a negative answer from the Bloom filter is definite
+        if (!mightContain(key))
+            return null;
+        
         // returns index position in the second block for "word"
         int indexPosition = getBlockIndexPosition(key, blockIndex);
         
@@ -116,34 +193,8 @@ public class DiskIndex {
         if (indexPosition == -1)
             return null;
         
-        int startBlockOffset = getBlockOffset(indexPosition, blockIndex);
-        int fileId = getBlockFileId(indexPosition, blockIndex);
-        
-        int endBlockOffset;
-        if (indexPosition == blockIndex.getNumEntries() - 1)
-            // the last block in the block index
-            endBlockOffset = -1;
-        else {
-            ByteRange indexPos = getBlockEntry(indexPosition + 1, blockIndex);
-            ByteBuffer indexPosBuf = indexPos.getBuf();
-            endBlockOffset = getBlockIndexOffset(indexPosBuf, indexPos.getStartOffset());
-            
-            // is this the last block of the current block file?
-            // then the endBlockOffset should be set to the end of the file
-            if (getBlockIndexFileId(indexPosBuf, indexPos.getStartOffset()) > fileId)
-                endBlockOffset = -1;
-            
-            // endBlockOffset = getBlockOffset(indexPosition + 1, blockIndex);
-        }
-        
         // create a view buffer on the target block
-        BlockReader targetBlock = null;
-        try {
-            targetBlock = mmaped ? getBlock(startBlockOffset, endBlockOffset, dbFiles[fileId]) : getBlock(
-                startBlockOffset, endBlockOffset, dbFileChannels[fileId]);
-        } catch (IOException e) {
-            Logging.logError(Logging.LEVEL_ERROR, this, e);
-        }
+        BlockReader targetBlock = getTargetBlock(indexPosition);
         
         // search for the key in the target block and return the result
         ByteRange val = targetBlock.lookup(key);
@@ -153,6 +204,126 @@ public class DiskIndex {
         return result;
     }
     
+    /**
+     * Performs a lookup that returns a read-only view on the value instead of
+     * a copy. For memory-mapped indices, the view refers to the mapped block
+     * file; otherwise, it refers to the buffer into which the block was read.
+     * The index is pinned by the view, i.e. it will not be released before
+     * the view has been freed.
+     * 
+     * @param key
+     *            the key to look up
+     * @return a view on the value, or <code>null</code>, if the key is not
+     *         contained in the index
+     */
+    public ValueView lookupView(byte[] key) {
+        
+        if (!mightContain(key))
+            return null;
+        
+        int indexPosition = getBlockIndexPosition(key, blockIndex);
+        if (indexPosition == -1)
+            return null;
+        
+        pin();
+        BlockReader targetBlock = getTargetBlock(indexPosition);
+        
+        ByteRange val = targetBlock.lookup(key);
+        if (val == null) {
+            targetBlock.free();
+            unpin();
+            return null;
+        }
+        
+        ByteBuffer buf = val.getBuf().duplicate();
+        buf.limit(val.getEndOffset());
+        buf.position(val.getStartOffset());
+        
+        return new BlockValueView(buf.slice().asReadOnlyBuffer(), targetBlock, this);
+    }
+    
+    /**
+     * Performs a range lookup that returns read-only views on the keys and
+     * values. Unlike {@link #rangeLookup(byte[], byte[], boolean)}, the
+     * iterator returns the same entry object in each step, and keys and
+     * values are not copied. Hence, entries only remain valid until the next
+     * step of the iterator.
+     * 
+     * @param from
+     *            smallest key (inclusively)
+     * @param to
+     *            largest key (exclusively)
+     * @param ascending
+     *            defines the iteration order
+     * @return an iterator over views on the entries
+     */
+    public ResultSet<ByteBuffer, ByteBuffer> rangeLookupView(final byte[] from, final byte[] to,
+        final boolean ascending) {
+        
+        if (mmaped) {
+            final ByteBuffer[] map = new ByteBuffer[dbFiles.length];
+            for (int i = 0; i < dbFiles.length; i++) {
+                dbFiles[i].position(0);
+                map[i] = dbFiles[i].slice();
+            }
+            
+            return new DiskIndexViewIterator(this, blockIndex, from, to, ascending, map);
+        }
+        
+        else
+            return new DiskIndexViewIterator(this, blockIndex, from, to, ascending, dbFileChannels);
+    }
+    
+    /**
+     * Looks up multiple keys at once. The keys are processed in ascending
+     * order, so that keys residing in the same block only cause the block to
+     * be read and decoded once.
+     * 
+     * @param keys
+     *            the keys to look up, in arbitrary order
+     * @return an array containing the value associated with each key at the
+     *         key's position, or <code>null</code> if the key is not
+     *         contained in the index
+     */
+    public byte[][] lookup(byte[][] keys) {
+        
+        byte[][] results = new byte[keys.length][];
+        
+        BlockReader targetBlock = null;
+        int targetPosition = -1;
+        
+        try {
+            for (int i : sortedOrder(keys)) {
+                
+                byte[] key = keys[i];
+                if (!mightContain(key))
+                    continue;
+                
+                int indexPosition = getBlockIndexPosition(key, blockIndex);
+                if (indexPosition == -1)
+                    continue;
+                
+                // only switch to another block if the key is not contained
+                // in the current one
+                if (indexPosition != targetPosition) {
+                    if (targetBlock != null)
+                        targetBlock.free();
+                    targetBlock = getTargetBlock(indexPosition);
+                    targetPosition = indexPosition;
+                }
+                
+                ByteRange val = targetBlock.lookup(key);
+                results[i] = val == null ? null : val.toBuffer();
+            }
+            
+        } finally {
+            if (targetBlock != null)
+                targetBlock.free();
+        }
+        
+        return results;
+    }
+    
     public long numKeys() {
         
         int numBlocks = blockIndex.getNumEntries();
@@ -167,7 +338,8 @@ public class DiskIndex {
         try {
             lastBlock = mmaped ? getBlock(lastBlockStartOffset, lastBlockEndOffset, dbFiles[getBlockFileId(
                 numBlocks - 1, blockIndex)]) : getBlock(lastBlockStartOffset, lastBlockEndOffset,
-                dbFileChannels[getBlockFileId(numBlocks - 1, blockIndex)]);
+                getBlockFileId(numBlocks - 1, blockIndex), dbFileChannels[getBlockFileId(numBlocks - 1,
+                    blockIndex)]);
         } catch (IOException e) {
             Logging.logError(Logging.LEVEL_ERROR, this, e);
         }
@@ -188,7 +360,8 @@ public class DiskIndex {
         try {
             firstBlock = mmaped ? getBlock(firstBlockStartOffset, firstBlockEndBlockOffset,
                 dbFiles[getBlockFileId(0, blockIndex)]) : getBlock(firstBlockStartOffset,
-                firstBlockEndBlockOffset, dbFileChannels[getBlockFileId(0, blockIndex)]);
+                firstBlockEndBlockOffset, getBlockFileId(0, blockIndex), dbFileChannels[getBlockFileId(0,
+                    blockIndex)]);
         } catch (IOException e) {
             Logging.logError(Logging.LEVEL_ERROR, this, e);
         }
@@ -244,11 +417,57 @@ public class DiskIndex {
         return indexSize;
     }
     
+    /**
+     * Destroys the index. If views on the index have not been freed yet, the
+     * index is released as soon as the last view is freed.
+     * 
+     * @throws IOException
+     *             if an I/O error occurred
+     */
     public void destroy() throws IOException {
+        
+        synchronized (this) {
+            if (pins > 0) {
+                destroyPending = true;
+                return;
+            }
+            destroyPending = false;
+        }
+        
+        release();
+    }
+    
+    synchronized void pin() {
+        pins++;
+    }
+    
+    void unpin() {
+        
+        synchronized (this) {
+            if (--pins > 0 || !destroyPending)
+                return;
+            destroyPending = false;
+        }
+        
+        try {
+            release();
+        } catch (IOException exc) {
+            Logging.logError(Logging.LEVEL_ERROR, this, exc);
+        }
+    }
+    
+    private void release() throws IOException {
+        
+        if (dbFileChannels == null)
+            return;
+        
         blockIndex.free();
+        if (blockCache != null)
+            blockCache.invalidate(cacheId);
         for (FileChannel c : dbFileChannels) {
             c.close();
         }
+        dbFileChannels = null;
 
         if (mmaped) {
             // This is what should happen during GC of dbFiles, however there may be leaks (e.g. in iterators)
@@ -282,7 +501,8 @@ public class DiskIndex {
         super.finalize();
     }
     
-    protected BlockReader getBlock(int startBlockOffset, int endBlockOffset, ByteBuffer map) {
+    protected BlockReader getBlock(int startBlockOffset, int endBlockOffset, ByteBuffer map)
+        throws IOException {
         
         if (startBlockOffset > map.limit())
             return null;
@@ -301,14 +521,26 @@ public class DiskIndex {
         return targetBlock;
     }
     
-    protected BlockReader getBlock(int startBlockOffset, int endBlockOffset, FileChannel channel)
+    protected BlockReader getBlock(int startBlockOffset, int endBlockOffset, int fileId, FileChannel channel)
         throws IOException {
         
-        if (startBlockOffset > channel.size())
+        // use the file size recorded when the index was opened, so that
+        // cached blocks can be returned without any system call
+        long fileSize = dbFileSizes[fileId];
+        
+        if (startBlockOffset > fileSize)
             return null;
         
         if (endBlockOffset == -1)
-            endBlockOffset = (int) channel.size();
+            endBlockOffset = (int) fileSize;
+        
+        // if a block cache exists, read the block through the cache and wrap
+        // it in a buffered block reader, so that it will not be freed
+        if (blockCache != null) {
+            ByteBuffer block = blockCache.getBlock(cacheId, fileId, startBlockOffset, endBlockOffset,
+                channel);
+            return getBlock(0, block.limit(), block);
+        }
         
         BlockReader targetBlock;
         
@@ -321,6 +553,70 @@ public class DiskIndex {
         return targetBlock;
     }
     
+    /**
+     * Creates a reader for the block at the given position in the block
+     * index.
+     * 
+     * @param indexPosition
+     *            the position in the block index
+     * @return the block reader
+     */
+    protected BlockReader getTargetBlock(int indexPosition) {
+        
+        int startBlockOffset = getBlockOffset(indexPosition, blockIndex);
+        int fileId = getBlockFileId(indexPosition, blockIndex);
+        
+        int endBlockOffset;
+        if (indexPosition == blockIndex.getNumEntries() - 1)
+            // the last block in the block index
+            endBlockOffset = -1;
+        else {
+            ByteRange indexPos = getBlockEntry(indexPosition + 1, blockIndex);
+            ByteBuffer indexPosBuf = indexPos.getBuf();
+            endBlockOffset = getBlockIndexOffset(indexPosBuf, indexPos.getStartOffset());
+            
+            // is this the last block of the current block file?
+            // then the endBlockOffset should be set to the end of the file
+            if (getBlockIndexFileId(indexPosBuf, indexPos.getStartOffset()) > fileId)
+                endBlockOffset = -1;
+            
+            // endBlockOffset = getBlockOffset(indexPosition + 1, blockIndex);
+        }
+        
+        BlockReader targetBlock = null;
+        try {
+            targetBlock = mmaped ? getBlock(startBlockOffset, endBlockOffset, dbFiles[fileId]) : getBlock(
+                startBlockOffset, endBlockOffset, fileId, dbFileChannels[fileId]);
+        } catch (IOException e) {
+            Logging.logError(Logging.LEVEL_ERROR, this, e);
+        }
+        
+        return targetBlock;
+    }
+    
+    /**
+     * Returns the positions of the given keys, sorted by the keys in
+     * ascending order.
+     * 
+     * @param keys
+     *            the keys
+     * @return the sorted positions
+     */
+    protected Integer[] sortedOrder(final byte[][] keys) {
+        
+        Integer[] order = new Integer[keys.length];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer o1, Integer o2) {
+                return comp.compare(keys[o1], keys[o2]);
+            }
+        });
+        
+        return order;
+    }
+    
     /**
      * Returns the index of the block potentially contains the given key.
      * 
@@ -155,7 +155,7 @@ public abstract class DiskIndexIteratorBase {
         
         try {
             currentBlock = maps != null ? index.getBlock(startOffset, endOffset, maps[fileId]) : index
-                    .getBlock(startOffset, endOffset, dbFileChannels[fileId]);
+                    .getBlock(startOffset, endOffset, fileId, dbFileChannels[fileId]);
         } catch (ClosedByInterruptException exc) {
             Logging.logError(Logging.LEVEL_DEBUG, this, exc);
         } catch (IOException exc) {
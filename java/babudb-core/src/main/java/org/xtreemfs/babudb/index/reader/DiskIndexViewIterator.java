@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2026, agent
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.babudb.index.reader;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.NoSuchElementException;
+import java.util.Map.Entry;
+
+import org.xtreemfs.babudb.api.database.ResultSet;
+import org.xtreemfs.babudb.index.ByteRange;
+import org.xtreemfs.foundation.buffer.BufferPool;
+import org.xtreemfs.foundation.buffer.ReusableBuffer;
+
+/**
+ * A disk index iterator that returns read-only views on keys and values
+ * rather than copies. The iterator returns the same entry in each step, and
+ * the buffers of the entry are repositioned rather than reallocated as long
+ * as consecutive entries reside in the same buffer. Hence, an entry and its
+ * buffers are only valid until the next step of the iterator.
+ * 
+ * @author agent
+ * 
+ */
+public class DiskIndexViewIterator extends DiskIndexIteratorBase implements
+    ResultSet<ByteBuffer, ByteBuffer> {
+    
+    private final ViewEntry entry = new ViewEntry();
+    
+    /**
+     * the buffers on which the current key and value views have been created
+     */
+    private ByteBuffer      keySource;
+    
+    private ByteBuffer      valueSource;
+    
+    private ByteBuffer      keyView;
+    
+    private ByteBuffer      valueView;
+    
+    /**
+     * a buffer for keys that have to be assembled from a prefix and a suffix
+     */
+    private byte[]          keyBuffer   = new byte[0];
+    
+    private ByteBuffer      keyBufferView;
+    
+    /**
+     * a read buffer that has to be freed in the next step
+     */
+    private ReusableBuffer  pendingFree;
+    
+    /**
+     * Disk index view iterator for mmap'ed index files.
+     * 
+     * @param index
+     *            reference to the index
+     * @param blockIndexReader
+     *            reference to the block index reader
+     * @param from
+     *            smallest key (inclusively)
+     * @param to
+     *            largest key (exclusively)
+     * @param ascending
+     *            defines the iteration order
+     * @param maps
+     *            an array of mmap'ed buffers
+     */
+    public DiskIndexViewIterator(DiskIndex index, BlockReader blockIndexReader, byte[] from, byte[] to,
+        boolean ascending, ByteBuffer[] maps) {
+        super(index, blockIndexReader, from, to, ascending, maps, null);
+    }
+    
+    /**
+     * Disk index view iterator for streamed index files.
+     * 
+     * @param index
+     *            reference to the index
+     * @param blockIndexReader
+     *            reference to the block index reader
+     * @param from
+     *            smallest key (inclusively)
+     * @param to
+     *            largest key (exclusively)
+     * @param ascending
+     *            defines the iteration order
+     * @param dbFileChannels
+     *            an array of file channels
+     */
+    public DiskIndexViewIterator(DiskIndex index, BlockReader blockIndexReader, byte[] from, byte[] to,
+        boolean ascending, FileChannel[] dbFileChannels) {
+        super(index, blockIndexReader, from, to, ascending, null, dbFileChannels);
+    }
+    
+    @Override
+    public Entry<ByteBuffer, ByteBuffer> next() {
+        
+        freePending();
+        
+        if (!hasNext())
+            throw new NoSuchElementException();
+        
+        Entry<ByteRange, ByteRange> next = currentBlockIterator.next();
+        ByteRange key = next.getKey();
+        ByteRange value = next.getValue();
+        
+        // the read buffer of a streamed block is attached to its last value;
+        // it may only be freed once the view on the value has been abandoned
+        pendingFree = value.getReusableBuf();
+        
+        if (key.getPrefix() != null)
+            entry.key = assemble(key);
+        else {
+            if (key.getBuf() != keySource) {
+                keySource = key.getBuf();
+                keyView = keySource.asReadOnlyBuffer();
+            }
+            entry.key = reposition(keyView, key);
+        }
+        
+        if (value.getBuf() != valueSource) {
+            valueSource = value.getBuf();
+            valueView = valueSource.asReadOnlyBuffer();
+        }
+        entry.value = reposition(valueView, value);
+        
+        return entry;
+    }
+    
+    @Override
+    public void free() {
+        freePending();
+        super.free();
+    }
+    
+    private void freePending() {
+        if (pendingFree != null) {
+            BufferPool.free(pendingFree);
+            pendingFree = null;
+        }
+    }
+    
+    private static ByteBuffer reposition(ByteBuffer view, ByteRange range) {
+        view.limit(range.getEndOffset());
+        view.position(range.getStartOffset());
+        return view;
+    }
+    
+    /**
+     * Assembles a key from its prefix and its suffix in the key buffer.
+     */
+    private ByteBuffer assemble(ByteRange key) {
+        
+        byte[] prefix = key.getPrefix();
+        int length = prefix.length + key.getSize();
+        if (keyBuffer.length < length) {
+            keyBuffer = new byte[Math.max(length, keyBuffer.length * 2)];
+            keyBufferView = ByteBuffer.wrap(keyBuffer).asReadOnlyBuffer();
+        }
+        
+        System.arraycopy(prefix, 0, keyBuffer, 0, prefix.length);
+        ByteBuffer buf = key.getBuf();
+        for (int i = 0; i < key.getSize(); i++)
+            keyBuffer[prefix.length + i] = buf.get(key.getStartOffset() + i);
+        
+        keyBufferView.limit(length);
+        keyBufferView.position(0);
+        
+        return keyBufferView;
+    }
+    
+    private static class ViewEntry implements Entry<ByteBuffer, ByteBuffer> {
+        
+        private ByteBuffer key;
+        
+        private ByteBuffer value;
+        
+        @Override
+        public ByteBuffer getKey() {
+            return key;
+        }
+        
+        @Override
+        public ByteBuffer getValue() {
+            return value;
+        }
+        
+        @Override
+        public ByteBuffer setValue(ByteBuffer value) {
+            throw new UnsupportedOperationException();
+        }
+        
+    }
+    
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2026, agent
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.babudb.index.reader;
+
+import java.nio.ByteBuffer;
+
+import org.xtreemfs.babudb.api.index.ByteRangeComparator;
+import org.xtreemfs.babudb.index.ByteRange;
+
+/**
+ * A mini page of front-coded entries. Each entry is stored as the length of
+ * the prefix it shares with its predecessor, the length of the remaining
+ * suffix (both as variable-length integers) and the suffix. Every
+ * <i>n</i>-th entry is a restart point, which is stored without a shared
+ * prefix. The page ends with the offsets of all restart points relative to
+ * the start of the page, followed by the restart interval <i>n</i>.
+ * <p>
+ * Searches are carried out as binary searches across the restart points,
+ * followed by a linear scan of the entries following the restart point.
+ * Pages keep track of the last decoded entry, so that sequential accesses do
+ * not have to decode entries from the restart point again. Hence, pages must
+ * not be accessed by multiple threads concurrently.
+ * </p>
+ * 
+ * @author agent
+ */
+public class FrontCodedMiniPage extends MiniPage {
+    
+    /**
+     * the entry size stored in block headers to indicate front-coded pages
+     */
+    public static final int ENTRY_SIZE = -2;
+    
+    private final int       restartInterval;
+    
+    private final int       numRestarts;
+    
+    private final int       restartsOffset;
+    
+    /**
+     * the position of the last decoded entry, or -1
+     */
+    private int             cursorIndex = -1;
+    
+    /**
+     * the last decoded entry
+     */
+    private byte[]          cursorEntry;
+    
+    /**
+     * the offset of the entry following the last decoded entry
+     */
+    private int             cursorNext;
+    
+    /**
+     * the current read offset when decoding entries
+     */
+    private int             readOffset;
+    
+    public FrontCodedMiniPage(int numEntries, ByteBuffer buf, int offset, int limit, ByteRangeComparator comp) {
+        
+        super(numEntries, buf, offset, comp);
+        
+        restartInterval = buf.getInt(limit - Integer.SIZE / 8);
+        numRestarts = numEntries == 0 ? 0 : (numEntries - 1) / restartInterval + 1;
+        restartsOffset = limit - (numRestarts + 1) * Integer.SIZE / 8;
+    }
+    
+    public ByteRange getEntry(int n) {
+        byte[] entry = decode(n);
+        return new ByteRange(ByteBuffer.wrap(entry), 0, entry.length);
+    }
+    
+    public int getPosition(byte[] entry) {
+        int pos = search(entry);
+        return pos >= 0 ? pos : -1;
+    }
+    
+    public int getExclTopPosition(byte[] entry) {
+        
+        if (entry == null)
+            return 0;
+        
+        int pos = search(entry);
+        return pos >= 0 ? pos + 1 : -pos - 1;
+    }
+    
+    public int getInclTopPosition(byte[] entry) {
+        
+        if (entry == null)
+            return 0;
+        
+        int pos = search(entry);
+        return pos >= 0 ? pos : -pos - 1;
+    }
+    
+    public int getExclBottomPosition(byte[] entry) {
+        
+        if (entry == null)
+            return numEntries - 1;
+        
+        int pos = search(entry);
+        return pos >= 0 ? pos - 1 : -pos - 2;
+    }
+    
+    public int getInclBottomPosition(byte[] entry) {
+        
+        if (entry == null)
+            return numEntries - 1;
+        
+        int pos = search(entry);
+        return pos >= 0 ? pos : -pos - 2;
+    }
+    
+    /**
+     * Searches for an entry.
+     * 
+     * @param entry
+     *            the entry
+     * @return the position of the entry, if contained; otherwise,
+     *         <code>(-(insertion point) - 1)</code>, where the insertion point
+     *         is the position of the first larger entry, or the number of
+     *         entries if all entries are smaller
+     */
+    private int search(byte[] entry) {
+        
+        // find the last restart point with an entry <= the given entry
+        int low = 0;
+        int high = numRestarts - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (comp.compare(getRestartEntry(mid), entry) <= 0)
+                low = mid;
+            else
+                high = mid - 1;
+        }
+        
+        // scan the entries following the restart point
+        int end = Math.min((low + 1) * restartInterval, numEntries);
+        for (int i = low * restartInterval; i < end; i++) {
+            int cmp = comp.compare(decode(i), entry);
+            if (cmp == 0)
+                return i;
+            if (cmp > 0)
+                return -i - 1;
+        }
+        
+        return -end - 1;
+    }
+    
+    /**
+     * Returns the entry at a restart point without copying it.
+     */
+    private ByteRange getRestartEntry(int r) {
+        
+        readOffset = offset + buf.getInt(restartsOffset + r * Integer.SIZE / 8);
+        int shared = readVarInt();
+        int unshared = readVarInt();
+        assert (shared == 0);
+        
+        return new ByteRange(buf, readOffset, readOffset + unshared);
+    }
+    
+    /**
+     * Decodes the entry at the given position.
+     */
+    private byte[] decode(int n) {
+        
+        if (n == cursorIndex)
+            return cursorEntry;
+        
+        int index;
+        byte[] prev;
+        
+        // continue from the last decoded entry if possible; otherwise, start
+        // at the preceding restart point
+        if (cursorIndex != -1 && cursorIndex < n && cursorIndex / restartInterval == n / restartInterval) {
+            index = cursorIndex + 1;
+            readOffset = cursorNext;
+            prev = cursorEntry;
+        } else {
+            index = n - n % restartInterval;
+            readOffset = offset + buf.getInt(restartsOffset + index / restartInterval * Integer.SIZE / 8);
+            prev = null;
+        }
+        
+        for (;; index++) {
+            
+            int shared = readVarInt();
+            int unshared = readVarInt();
+            
+            byte[] entry = new byte[shared + unshared];
+            if (shared > 0)
+                System.arraycopy(prev, 0, entry, 0, shared);
+            for (int i = 0; i < unshared; i++)
+                entry[shared + i] = buf.get(readOffset + i);
+            readOffset += unshared;
+            
+            if (index == n) {
+                cursorIndex = n;
+                cursorEntry = entry;
+                cursorNext = readOffset;
+                return entry;
+            }
+            
+            prev = entry;
+        }
+    }
+    
+    private int readVarInt() {
+        
+        int result = 0;
+        for (int shift = 0;; shift += 7) {
+            byte b = buf.get(readOffset++);
+            result |= (b & 0x7F) << shift;
+            if (b >= 0)
+                return result;
+        }
+    }
+    
+}
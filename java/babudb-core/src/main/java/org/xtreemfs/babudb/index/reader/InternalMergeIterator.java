@@ -8,7 +8,9 @@
 
 package org.xtreemfs.babudb.index.reader;
 
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Map.Entry;
 
@@ -18,47 +20,65 @@ import org.xtreemfs.babudb.index.ByteRange;
 import org.xtreemfs.foundation.buffer.BufferPool;
 
 /**
- * Merges an iterator for an in-memory overlay with an iterator for an on-disk
- * index. <br/>
+ * Merges an iterator for an in-memory overlay with iterators for a list of
+ * on-disk runs. If a key occurs in multiple sources, the overlay has the
+ * highest priority, followed by the on-disk runs in the order of the list.
+ * <br/>
  * 
  * The iterator either returns a byte array or a <code>ByteRange</code> object,
  * depending on whether the current element is part of the overlay trees or the
  * on-disk index. The returned keys and values are direct references to the
  * internally used key-value pairs and should hence not be modified.
+ * <br/>
+ * 
+ * On-disk runs may contain deleted entries, which are denoted by a
+ * <code>null</code> value. Like entries from the overlay with the tombstone
+ * value, such entries are skipped. If no tombstone value is defined, deleted
+ * entries are returned.
  * 
  * @author stenjan
  * 
  */
 public class InternalMergeIterator implements ResultSet<Object, Object> {
     
-    private Iterator<Entry<byte[], byte[]>> overlayIterator;
+    private Iterator<Entry<byte[], byte[]>>       overlayIterator;
     
-    private InternalDiskIndexIterator       diskIndexIterator;
+    private List<ResultSet<ByteRange, ByteRange>> diskIterators;
     
-    private Entry<byte[], byte[]>           nextOverlayEntry;
+    private Entry<byte[], byte[]>                 nextOverlayEntry;
     
-    private Entry<ByteRange, ByteRange>     nextDiskIndexEntry;
+    private Entry<ByteRange, ByteRange>[]         nextDiskEntries;
     
-    private Entry<Object, Object>           nextEntry;
+    private Entry<Object, Object>                 nextEntry;
     
-    private ByteRangeComparator             comp;
+    private ByteRangeComparator                   comp;
     
-    private byte[]                          nullValue;
+    private byte[]                                nullValue;
     
-    private boolean                         ascending;
+    private boolean                               ascending;
     
     public InternalMergeIterator(Iterator<Entry<byte[], byte[]>> overlayIterator,
         InternalDiskIndexIterator diskIndexIterator, ByteRangeComparator comp, byte[] nullValue,
         boolean ascending) {
+        this(overlayIterator, diskIndexIterator == null ? Collections
+                .<ResultSet<ByteRange, ByteRange>> emptyList() : Collections
+                .<ResultSet<ByteRange, ByteRange>> singletonList(diskIndexIterator), comp, nullValue, ascending);
+    }
+    
+    public InternalMergeIterator(Iterator<Entry<byte[], byte[]>> overlayIterator,
+        List<ResultSet<ByteRange, ByteRange>> diskIterators, ByteRangeComparator comp, byte[] nullValue,
+        boolean ascending) {
         
         assert (overlayIterator != null);
         
         this.overlayIterator = overlayIterator;
-        this.diskIndexIterator = diskIndexIterator;
+        this.diskIterators = diskIterators;
         this.comp = comp;
         this.nullValue = nullValue;
         this.ascending = ascending;
         
+        nextDiskEntries = new Entry[diskIterators.size()];
+        
         nextElement();
     }
     
@@ -85,100 +105,103 @@ public class InternalMergeIterator implements ResultSet<Object, Object> {
     }
     
     public void free() {
-        if (diskIndexIterator != null)
-            diskIndexIterator.free();
+        for (ResultSet<ByteRange, ByteRange> it : diskIterators)
+            it.free();
     }
     
     private void nextElement() {
         
-        // find the smallest element in the 'rightmost' tree
         for (;;) {
             
             // find the next element in the overlay
             if (nextOverlayEntry == null && overlayIterator.hasNext())
                 nextOverlayEntry = overlayIterator.next();
             
-            // find the next element in the disk index
-            if (nextDiskIndexEntry == null && diskIndexIterator != null && diskIndexIterator.hasNext())
-                nextDiskIndexEntry = diskIndexIterator.next();
+            // find the next elements in the disk runs
+            for (int i = 0; i < nextDiskEntries.length; i++)
+                if (nextDiskEntries[i] == null && diskIterators.get(i).hasNext())
+                    nextDiskEntries[i] = diskIterators.get(i).next();
             
-            // if the next overlay key is equal to the next disk index key,
-            // shift disk index element
-            if (nextOverlayEntry != null && nextDiskIndexEntry != null
-                && comp.compare(nextDiskIndexEntry.getKey(), nextOverlayEntry.getKey()) == 0) {
+            // choose the element with the smallest or largest key, depending
+            // on the iteration order; elements with equal keys from sources
+            // with lower priority are shifted
+            Object nextKey = nextOverlayEntry == null ? null : nextOverlayEntry.getKey();
+            int next = -1;
+            for (int i = 0; i < nextDiskEntries.length; i++) {
+                
+                if (nextDiskEntries[i] == null)
+                    continue;
                 
-                // free the buffer if necessary
-                if(nextDiskIndexEntry.getValue().getReusableBuf() != null)
-                    BufferPool.free(nextDiskIndexEntry.getValue().getReusableBuf());
+                if (nextKey == null) {
+                    nextKey = nextDiskEntries[i].getKey();
+                    next = i;
+                    continue;
+                }
                 
-                if (diskIndexIterator.hasNext())
-                    nextDiskIndexEntry = diskIndexIterator.next();
-                else
-                    nextDiskIndexEntry = null;
+                int cmp = compare(nextDiskEntries[i].getKey(), nextKey);
+                if (cmp == 0) {
+                    free(nextDiskEntries[i]);
+                    nextDiskEntries[i] = diskIterators.get(i).hasNext() ? diskIterators.get(i).next() : null;
+                } else if (ascending ? cmp < 0 : cmp > 0) {
+                    nextKey = nextDiskEntries[i].getKey();
+                    next = i;
+                }
             }
             
             // if no more element exists, set 'next' to 'empty' and return
-            if (nextDiskIndexEntry == null && nextOverlayEntry == null) {
+            if (nextKey == null) {
                 nextEntry = null;
                 return;
             }
             
-            // otherwise, choose the element with the smallest or largest key,
-            // depending on the iteration order
-            if (ascending) {
-                
-                if (nextDiskIndexEntry == null) {
-                    nextEntry = InternalBufferUtil.cast(nextOverlayEntry);
-                    nextOverlayEntry = null;
-                }
-
-                else if (nextOverlayEntry == null) {
-                    nextEntry = InternalBufferUtil.cast(nextDiskIndexEntry);
-                    nextDiskIndexEntry = null;
-                }
-
-                else if (comp.compare(nextDiskIndexEntry.getKey(), nextOverlayEntry.getKey()) < 0) {
-                    nextEntry = InternalBufferUtil.cast(nextDiskIndexEntry);
-                    nextDiskIndexEntry = null;
-                }
-
-                else {
-                    nextEntry = InternalBufferUtil.cast(nextOverlayEntry);
-                    nextOverlayEntry = null;
-                }
-                
+            boolean deleted;
+            if (next == -1) {
+                nextEntry = InternalBufferUtil.cast(nextOverlayEntry);
+                nextOverlayEntry = null;
+                deleted = nullValue != null && nextEntry.getValue() == nullValue;
             } else {
-                
-                if (nextDiskIndexEntry == null) {
-                    nextEntry = InternalBufferUtil.cast(nextOverlayEntry);
-                    nextOverlayEntry = null;
-                }
-
-                else if (nextOverlayEntry == null) {
-                    nextEntry = InternalBufferUtil.cast(nextDiskIndexEntry);
-                    nextDiskIndexEntry = null;
-                }
-
-                else if (comp.compare(nextDiskIndexEntry.getKey(), nextOverlayEntry.getKey()) > 0) {
-                    nextEntry = InternalBufferUtil.cast(nextDiskIndexEntry);
-                    nextDiskIndexEntry = null;
-                }
-
-                else {
-                    InternalBufferUtil.cast(nextOverlayEntry);
-                    nextOverlayEntry = null;
-                }
-                
+                Entry<ByteRange, ByteRange> diskEntry = nextDiskEntries[next];
+                nextEntry = InternalBufferUtil.cast(diskEntry);
+                nextDiskEntries[next] = null;
+                deleted = nullValue != null && diskEntry.getValue() == null;
+                if (deleted)
+                    free(diskEntry);
             }
             
-            assert (nextEntry != null);
-            
-            // if no tombstone value was defined or the next entry's value is
-            // not a tombstone value, return; otherwise, restart
-            if (nullValue == null || nextEntry.getValue() != nullValue)
+            // if the next entry's value is not a tombstone value, return;
+            // otherwise, restart
+            if (!deleted)
                 return;
         }
         
     }
     
+    /**
+     * Compares two keys, each of which may either be a byte array or a
+     * <code>ByteRange</code>. Byte ranges with a prefix are converted to byte
+     * arrays, as the comparator only considers the range itself.
+     */
+    private int compare(Object key1, Object key2) {
+        
+        if (key1 instanceof ByteRange && ((ByteRange) key1).getPrefix() == null)
+            return comp.compare((ByteRange) key1, InternalBufferUtil.toBuffer(key2));
+        
+        if (key2 instanceof ByteRange && ((ByteRange) key2).getPrefix() == null)
+            return -comp.compare((ByteRange) key2, InternalBufferUtil.toBuffer(key1));
+        
+        return comp.compare(InternalBufferUtil.toBuffer(key1), InternalBufferUtil.toBuffer(key2));
+    }
+    
+    /**
+     * Frees any buffers attached to a skipped on-disk entry.
+     */
+    private static void free(Entry<ByteRange, ByteRange> entry) {
+        
+        if (entry.getValue() != null && entry.getValue().getReusableBuf() != null)
+            BufferPool.free(entry.getValue().getReusableBuf());
+        
+        if (entry.getKey().getReusableBuf() != null)
+            BufferPool.free(entry.getKey().getReusableBuf());
+    }
+    
 }
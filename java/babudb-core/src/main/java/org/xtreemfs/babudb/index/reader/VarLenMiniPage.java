@@ -38,7 +38,9 @@ public class VarLenMiniPage extends MiniPage {
         int offsetEnd = offset;
         offsetEnd += buf.getInt(offsetListStart + n * Integer.SIZE / 8);
         
-        assert (offsetEnd > offsetStart);
+        // the suffix of a key that equals the common prefix of a compressed
+        // block is empty
+        assert (offsetEnd >= offsetStart);
         
         return new ByteRange(buf, offsetStart, offsetEnd);
     }
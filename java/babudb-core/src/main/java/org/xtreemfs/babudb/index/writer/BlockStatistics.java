@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2026, agent
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.babudb.index.writer;
+
+/**
+ * Records the sizes of the blocks written to an on-disk index. Besides the
+ * number of blocks and their min., max. and average size, the distribution of
+ * block sizes is recorded in buckets of powers of two.
+ *
+ * @author agent
+ */
+public class BlockStatistics {
+
+    /**
+     * numbers of blocks per size bucket; bucket <code>i</code> counts all
+     * blocks with a size in [2^i, 2^(i+1)) bytes
+     */
+    private final long[] buckets = new long[Integer.SIZE];
+
+    private long         numBlocks;
+
+    private long         totalBytes;
+
+    private int          minBytes;
+
+    private int          maxBytes;
+
+    /**
+     * Records the size of a block.
+     *
+     * @param size
+     *            the size of the serialized block in bytes
+     */
+    public void add(int size) {
+
+        if (numBlocks == 0 || size < minBytes)
+            minBytes = size;
+        if (size > maxBytes)
+            maxBytes = size;
+
+        numBlocks++;
+        totalBytes += size;
+        buckets[size == 0 ? 0 : 31 - Integer.numberOfLeadingZeros(size)]++;
+    }
+
+    public long getNumBlocks() {
+        return numBlocks;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public int getMinBytes() {
+        return minBytes;
+    }
+
+    public int getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getAvgBytes() {
+        return numBlocks == 0 ? 0 : totalBytes / numBlocks;
+    }
+
+    /**
+     * Returns the number of blocks with a size in [2^i, 2^(i+1)) bytes.
+     *
+     * @param i
+     *            the bucket
+     * @return the number of blocks in the bucket
+     */
+    public long getNumBlocks(int i) {
+        return buckets[i];
+    }
+
+    public String toString() {
+
+        StringBuffer buf = new StringBuffer();
+        buf.append(numBlocks + " blocks, " + totalBytes + " bytes (min " + minBytes + ", max " + maxBytes
+            + ", avg " + getAvgBytes() + ")");
+
+        String sep = ", distribution: ";
+        for (int i = 0; i < buckets.length; i++) {
+            if (buckets[i] == 0)
+                continue;
+            buf.append(sep + "[" + toSize(1L << i) + "," + toSize(1L << (i + 1)) + "): " + buckets[i]);
+            sep = ", ";
+        }
+
+        return buf.toString();
+    }
+
+    private static String toSize(long bytes) {
+        return bytes >= 1024 * 1024 ? bytes / (1024 * 1024) + "M" : bytes >= 1024 ? bytes / 1024 + "K" : bytes
+            + "";
+    }
+
+}
@@ -19,6 +19,15 @@ public interface BlockWriter {
      */
     public abstract void add(Object key, Object value);
     
+    /**
+     * Returns the size in bytes that the key-value pairs added so far occupy
+     * in the serialized block, including the offsets of variable-length
+     * entries. For blocks with compressed keys, the size is an upper bound.
+     * 
+     * @return the (estimated) size of the serialized block
+     */
+    public abstract int size();
+    
     /**
      * Returns a serialized representation of all data previously added to the
      * block writer. Implementations may assume that this method will be only
@@ -13,8 +13,9 @@ import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
-import org.xtreemfs.babudb.index.ByteRange;
+import org.xtreemfs.babudb.index.BlockCodec;
 import org.xtreemfs.babudb.index.reader.CompressedBlockReader;
+import org.xtreemfs.babudb.index.reader.FrontCodedMiniPage;
 import org.xtreemfs.babudb.index.reader.InternalBufferUtil;
 import org.xtreemfs.foundation.buffer.BufferPool;
 import org.xtreemfs.foundation.buffer.ReusableBuffer;
@@ -29,20 +30,75 @@ public class CompressedBlockWriter implements BlockWriter {
     
     private boolean      varLenVals;
     
+    private int          size;
+    
     private byte[]       prefix;
     
+    private BlockCodec   codec;
+    
+    private int          restartInterval;
+    
     public CompressedBlockWriter(boolean varLenKeys, boolean varLenVals) {
+        this(varLenKeys, varLenVals, null);
+    }
+    
+    /**
+     * Creates a writer for blocks with prefix-compressed keys, the value
+     * pages of which are compressed with the given codec.
+     * 
+     * @param varLenKeys
+     *            specifies whether keys have variable lengths
+     * @param varLenVals
+     *            specifies whether values have variable lengths
+     * @param codec
+     *            the codec for value pages - may be <code>null</code>, in
+     *            which case values are not compressed
+     */
+    public CompressedBlockWriter(boolean varLenKeys, boolean varLenVals, BlockCodec codec) {
+        this(varLenKeys, varLenVals, codec, 0);
+    }
+    
+    /**
+     * Creates a writer for blocks with front-coded keys, the value pages of
+     * which are compressed with the given codec.
+     * 
+     * @param varLenKeys
+     *            specifies whether keys have variable lengths
+     * @param varLenVals
+     *            specifies whether values have variable lengths
+     * @param codec
+     *            the codec for value pages - may be <code>null</code>, in
+     *            which case values are not compressed
+     * @param restartInterval
+     *            the number of keys after which a restart point is inserted
+     *            in the front-coded key page; if set to 0, keys are not
+     *            front-coded
+     */
+    public CompressedBlockWriter(boolean varLenKeys, boolean varLenVals, BlockCodec codec, int restartInterval) {
         
         keys = new LinkedList<Object>();
         values = new LinkedList<Object>();
         
         this.varLenKeys = varLenKeys;
         this.varLenVals = varLenVals;
+        this.size = CompressedBlockReader.PREFIX_OFFSET;
+        this.codec = codec;
+        this.restartInterval = restartInterval;
     }
     
     public void add(Object key, Object value) {
         keys.add(key);
         values.add(value);
+        
+        size += InternalBufferUtil.size(key) + InternalBufferUtil.size(value);
+        if (varLenKeys)
+            size += Integer.SIZE / 8;
+        if (varLenVals)
+            size += Integer.SIZE / 8;
+    }
+    
+    public int size() {
+        return size;
     }
     
     public SerializedBlock serialize() {
@@ -51,33 +107,58 @@ public class CompressedBlockWriter implements BlockWriter {
         
         List<byte[]> compressedKeys = compress(keys);
         
-        ReusableBuffer keyBuf = varLenKeys ? serializeVarLenPageBuf(compressedKeys)
+        ReusableBuffer keyBuf = restartInterval > 0 ? ReusableBuffer.wrap(FrontCodedPageWriter.serialize(
+            compressedKeys, restartInterval)) : varLenKeys ? serializeVarLenPageBuf(compressedKeys)
             : serializeFixedLenPage(keys);
         ReusableBuffer valBuf = varLenVals ? serializeVarLenPage(values) : serializeFixedLenPage(values);
+        int valPageSize = valBuf.limit();
+        
+        // compress the value page; the compressed page is only used if it is
+        // smaller than the uncompressed one
+        byte[] compressedVals = null;
+        if (codec != null && valPageSize > 0) {
+            byte[] tmp = new byte[valPageSize];
+            valBuf.get(tmp);
+            valBuf.position(0);
+            compressedVals = codec.compress(tmp);
+            if (compressedVals.length + Integer.SIZE / 8 >= valPageSize)
+                compressedVals = null;
+        }
         
         int entries = keys.size();
+        assert (entries <= CompressedBlockReader.MAX_ENTRIES);
+        int codecId = compressedVals == null ? BlockCodec.ID_NONE : codec.getId();
         int keysOffset = CompressedBlockReader.PREFIX_OFFSET + this.prefix.length;
         int valsOffset = keysOffset + keyBuf.limit();
+        int valsSize = compressedVals == null ? valPageSize : Integer.SIZE / 8 + compressedVals.length;
         
-        ByteBuffer returnBuf = ByteBuffer.wrap(new byte[valsOffset + valBuf.limit()]);
+        ByteBuffer returnBuf = ByteBuffer.wrap(new byte[valsOffset + valsSize]);
         /*
-         * the header consist of 4 : ptr to vals 4 : ptr to keys 4 : number of
-         * entries 4 : -1 => variable keys, or n => length of fixed size keys 4
-         * : -1 => variable values, or n => length of fixed size values k :
-         * prefix ... start of keys
+         * the header consist of 4 : ptr to vals 4 : ptr to keys 4 : ID of the
+         * value codec (highest byte) and number of entries (lower 3 bytes) 4 :
+         * -1 => variable keys, or n => length of fixed size keys 4 : -1 =>
+         * variable values, or n => length of fixed size values k : prefix ...
+         * start of keys; compressed values are preceded by the size of the
+         * uncompressed value page
          */
 
         returnBuf.putInt(valsOffset);
         returnBuf.putInt(keysOffset);
-        returnBuf.putInt(entries);
-        returnBuf.putInt(varLenKeys ? -1 : entries == 0 ? 0 : (keyBuf.limit() / entries));
-        returnBuf.putInt(varLenVals ? -1 : entries == 0 ? 0 : (valBuf.limit() / entries));
+        returnBuf.putInt(codecId << CompressedBlockReader.CODEC_SHIFT | entries);
+        returnBuf.putInt(restartInterval > 0 ? FrontCodedMiniPage.ENTRY_SIZE : varLenKeys ? -1 : entries == 0 ? 0
+            : (keyBuf.limit() / entries));
+        returnBuf.putInt(varLenVals ? -1 : entries == 0 ? 0 : (valPageSize / entries));
         
         if (this.prefix.length > 0)
             returnBuf.put(this.prefix);
         
         returnBuf.put(keyBuf.getBuffer());
-        returnBuf.put(valBuf.getBuffer());
+        if (compressedVals == null)
+            returnBuf.put(valBuf.getBuffer());
+        else {
+            returnBuf.putInt(valPageSize);
+            returnBuf.put(compressedVals);
+        }
         
         BufferPool.free(keyBuf);
         BufferPool.free(valBuf);
@@ -126,21 +207,26 @@ public class CompressedBlockWriter implements BlockWriter {
             return tmp;
         }
         
-        Object prefix = list.get(0);
+        /*
+         * entries may be byte ranges from compressed blocks, the prefixes of
+         * which are not part of the range; hence, all entries are converted
+         * to byte arrays first
+         */
+        List<byte[]> entries = new ArrayList<byte[]>(list.size());
+        for (Object entry : list)
+            entries.add(InternalBufferUtil.toBuffer(entry));
+        
+        byte[] prefix = entries.get(0);
         
         /* find the longest common prefix (lcp) */
         // cant be longer than prefix
-        int longestPrefixLen = InternalBufferUtil.size(prefix);
+        int longestPrefixLen = prefix.length;
         
-        for (Object entry : list) {
+        for (byte[] entry : entries) {
             int prefixLen = 0;
-            int prefixIndex = 0;
-            int entryIndex = 0;
-            int maxLen = Math.min(InternalBufferUtil.size(prefix), InternalBufferUtil.size(entry));
+            int maxLen = Math.min(prefix.length, entry.length);
             
-            while (prefixLen < maxLen
-                && InternalBufferUtil.byteAt(prefix, prefixIndex++) == InternalBufferUtil.byteAt(entry,
-                    entryIndex++)) {
+            while (prefixLen < maxLen && prefix[prefixLen] == entry[prefixLen]) {
                 prefixLen++;
             }
             
@@ -151,28 +237,19 @@ public class CompressedBlockWriter implements BlockWriter {
         
         // Create the prefix
         byte[] LCP = new byte[longestPrefixLen];
-        System.arraycopy(InternalBufferUtil.toBuffer(prefix), 0, LCP, 0, longestPrefixLen);
+        System.arraycopy(prefix, 0, LCP, 0, longestPrefixLen);
         this.prefix = LCP;
         
         // add the entries, removing the prefix
-        for (Object entry : list) {
+        for (byte[] entry : entries) {
             if (longestPrefixLen <= 0) {
-                results.add(InternalBufferUtil.toBuffer(entry));
+                results.add(entry);
             } else {
-                if (entry instanceof byte[]) {
-                    
-                    int newLen = ((byte[]) entry).length - longestPrefixLen;
-                    byte[] newEntry = new byte[newLen];
-                    
-                    System.arraycopy((byte[]) entry, longestPrefixLen, newEntry, 0, newLen);
-                    results.add(newEntry);
-                }
-
-                else {
-                    ((ByteRange) entry).addPrefix(LCP);
-                    results.add(((ByteRange) entry).toBuffer());
-                }
+                int newLen = entry.length - longestPrefixLen;
+                byte[] newEntry = new byte[newLen];
                 
+                System.arraycopy(entry, longestPrefixLen, newEntry, 0, newLen);
+                results.add(newEntry);
             }
         }
         
@@ -14,6 +14,7 @@ import java.util.LinkedList;
 import java.util.List;
 
 import org.xtreemfs.babudb.index.reader.DefaultBlockReader;
+import org.xtreemfs.babudb.index.reader.FrontCodedMiniPage;
 import org.xtreemfs.babudb.index.reader.InternalBufferUtil;
 
 public class DefaultBlockWriter implements BlockWriter {
@@ -26,15 +27,37 @@ public class DefaultBlockWriter implements BlockWriter {
     
     private boolean      varLenVals;
     
+    private int          size;
+    
     private boolean      serialized;
     
+    private int          restartInterval;
+    
     public DefaultBlockWriter(boolean varLenKeys, boolean varLenVals) {
+        this(varLenKeys, varLenVals, 0);
+    }
+    
+    /**
+     * Creates a writer for blocks with front-coded keys.
+     * 
+     * @param varLenKeys
+     *            specifies whether keys have variable lengths
+     * @param varLenVals
+     *            specifies whether values have variable lengths
+     * @param restartInterval
+     *            the number of keys after which a restart point is inserted
+     *            in the front-coded key page; if set to 0, keys are not
+     *            front-coded
+     */
+    public DefaultBlockWriter(boolean varLenKeys, boolean varLenVals, int restartInterval) {
         
         keys = new LinkedList<Object>();
         values = new LinkedList<Object>();
         
         this.varLenKeys = varLenKeys;
         this.varLenVals = varLenVals;
+        this.size = DefaultBlockReader.KEYS_OFFSET;
+        this.restartInterval = restartInterval;
     }
     
     /*
@@ -49,6 +72,21 @@ public class DefaultBlockWriter implements BlockWriter {
         
         keys.add(key);
         values.add(value);
+        
+        size += InternalBufferUtil.size(key) + InternalBufferUtil.size(value);
+        if (varLenKeys)
+            size += Integer.SIZE / 8;
+        if (varLenVals)
+            size += Integer.SIZE / 8;
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.xtreemfs.babudb.index.writer.BlockWriter#size()
+     */
+    public int size() {
+        return size;
     }
     
     /*
@@ -63,7 +101,8 @@ public class DefaultBlockWriter implements BlockWriter {
         
         serialized = true;
         
-        SerializedPage keyPage = varLenKeys ? serializeVarLenPage(keys) : serializeFixedLenPage(keys);
+        SerializedPage keyPage = restartInterval > 0 ? serializeFrontCodedPage(keys, restartInterval)
+            : varLenKeys ? serializeVarLenPage(keys) : serializeFixedLenPage(keys);
         SerializedPage valPage = varLenVals ? serializeVarLenPage(values) : serializeFixedLenPage(values);
         
         int entries = keys.size();
@@ -73,7 +112,8 @@ public class DefaultBlockWriter implements BlockWriter {
         ByteBuffer tmp = ByteBuffer.wrap(new byte[4 * Integer.SIZE / 8]);
         tmp.putInt(valsOffset);
         tmp.putInt(entries);
-        tmp.putInt(varLenKeys ? -1 : entries == 0 ? 0 : (keyPage.size / entries));
+        tmp.putInt(restartInterval > 0 ? FrontCodedMiniPage.ENTRY_SIZE : varLenKeys ? -1 : entries == 0 ? 0
+            : (keyPage.size / entries));
         tmp.putInt(varLenVals ? -1 : entries == 0 ? 0 : (valPage.size / entries));
         
         List<Object> header = new ArrayList<Object>(1);
@@ -114,6 +154,16 @@ public class DefaultBlockWriter implements BlockWriter {
         return new SerializedPage(size, list, offsetList);
     }
     
+    private static SerializedPage serializeFrontCodedPage(List<Object> list, int restartInterval) {
+        
+        byte[] page = FrontCodedPageWriter.serialize(list, restartInterval);
+        
+        List<Object> pageList = new ArrayList<Object>(1);
+        pageList.add(page);
+        
+        return new SerializedPage(page.length, pageList);
+    }
+    
     private static SerializedPage serializeFixedLenPage(List<Object> list) {
         
         int size = 0;
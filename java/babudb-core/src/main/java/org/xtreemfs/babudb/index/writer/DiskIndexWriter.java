@@ -16,10 +16,15 @@ import java.util.Iterator;
 import java.util.Map.Entry;
 
 import org.xtreemfs.babudb.api.database.ResultSet;
+import org.xtreemfs.babudb.index.BlockCodec;
+import org.xtreemfs.babudb.index.BloomFilter;
 import org.xtreemfs.babudb.index.ByteRange;
+import org.xtreemfs.babudb.index.IndexOptions;
 import org.xtreemfs.babudb.index.reader.InternalBufferUtil;
 import org.xtreemfs.foundation.buffer.BufferPool;
 import org.xtreemfs.foundation.buffer.ReusableBuffer;
+import org.xtreemfs.foundation.logging.Logging;
+import org.xtreemfs.foundation.logging.Logging.Category;
 
 /**
  * Writes an index to a set of files on disk. A file will not be larger than the
@@ -39,12 +44,26 @@ public class DiskIndexWriter {
     
     private int     maxBlockEntries;
     
+    private int     maxBlockSize;
+    
+    private BlockCodec codec;
+    
+    private int     keyRestartInterval;
+    
     private boolean compressed;
     
     private int     maxFileSize;
     
     private short   blockFileId;
     
+    private int     bloomFilterBitsPerKey;
+    
+    private BloomFilter bloomFilter;
+    
+    private WriteRateLimiter rateLimiter;
+    
+    private final BlockStatistics blockStats = new BlockStatistics();
+    
     /**
      * Creates a new DiskIndexWriter
      * 
@@ -62,6 +81,117 @@ public class DiskIndexWriter {
      */
     public DiskIndexWriter(String path, int maxBlockEntries, boolean compressed, int maxFileSize)
         throws IOException {
+        this(path, maxBlockEntries, compressed, maxFileSize, 0);
+    }
+    
+    /**
+     * Creates a new DiskIndexWriter that writes blocks as specified by the
+     * given index options.
+     * 
+     * @param path
+     *            The path to the directory where the index will be written. The
+     *            directory is created if it does not yet exist.
+     * @param options
+     *            The options that determine the layout of the index, and the
+     *            rate at which it is written.
+     * @throws IOException
+     */
+    public DiskIndexWriter(String path, IndexOptions options) throws IOException {
+        this(path, options.getMaxEntriesPerBlock(), options.isCompressed(), options.getMaxBlockFileSize(),
+            options.getBloomFilterBitsPerKey(), options.getMaxBlockSize(), options.getBlockCodec(), options
+                    .getKeyRestartInterval(), options.getRateLimiter());
+    }
+    
+    /**
+     * Creates a new DiskIndexWriter that additionally writes a Bloom filter
+     * over all keys of the index.
+     * 
+     * @param path
+     *            The path to the directory where the index will be written. The
+     *            directory is created if it does not yet exist.
+     * @param maxBlockEntries
+     *            The maximum number of entries in a single block.
+     * @param compressed
+     *            Indicates if the blocks should be compressed.
+     * @param maxFileSize
+     *            The max size of a file storing blocks in bytes. On a 32-bit
+     *            system this should not be larger than 2GB.
+     * @param bloomFilterBitsPerKey
+     *            The number of Bloom filter bits per key. If set to 0, no
+     *            Bloom filter will be written.
+     * @throws IOException
+     */
+    public DiskIndexWriter(String path, int maxBlockEntries, boolean compressed, int maxFileSize,
+        int bloomFilterBitsPerKey) throws IOException {
+        this(path, maxBlockEntries, compressed, maxFileSize, bloomFilterBitsPerKey, 0);
+    }
+    
+    /**
+     * Creates a new DiskIndexWriter that writes blocks of a given target size.
+     * A block is completed as soon as the size of its entries reaches the
+     * target size, or when it contains the max. number of entries. Hence,
+     * blocks may exceed the target size by at most one entry.
+     * 
+     * @param path
+     *            The path to the directory where the index will be written. The
+     *            directory is created if it does not yet exist.
+     * @param maxBlockEntries
+     *            The maximum number of entries in a single block.
+     * @param compressed
+     *            Indicates if the blocks should be compressed.
+     * @param maxFileSize
+     *            The max size of a file storing blocks in bytes. On a 32-bit
+     *            system this should not be larger than 2GB.
+     * @param bloomFilterBitsPerKey
+     *            The number of Bloom filter bits per key. If set to 0, no
+     *            Bloom filter will be written.
+     * @param maxBlockSize
+     *            The target size of a block in bytes. If set to 0, blocks are
+     *            only limited by the number of entries.
+     * @throws IOException
+     */
+    public DiskIndexWriter(String path, int maxBlockEntries, boolean compressed, int maxFileSize,
+        int bloomFilterBitsPerKey, int maxBlockSize) throws IOException {
+        this(path, maxBlockEntries, compressed, maxFileSize, bloomFilterBitsPerKey, maxBlockSize, null, 0, null);
+    }
+    
+    /**
+     * Creates a new DiskIndexWriter with values compressed by the given codec,
+     * front-coded key pages and a limited write rate.
+     * 
+     * @param path
+     *            The path to the directory where the index will be written. The
+     *            directory is created if it does not yet exist.
+     * @param maxBlockEntries
+     *            The maximum number of entries in a single block.
+     * @param compressed
+     *            Indicates if the blocks should be compressed.
+     * @param maxFileSize
+     *            The max size of a file storing blocks in bytes. On a 32-bit
+     *            system this should not be larger than 2GB.
+     * @param bloomFilterBitsPerKey
+     *            The number of Bloom filter bits per key. If set to 0, no
+     *            Bloom filter will be written.
+     * @param maxBlockSize
+     *            The target size of a block in bytes. If set to 0, blocks are
+     *            only limited by the number of entries.
+     * @param codec
+     *            The codec for the values of compressed blocks. If set to
+     *            <code>null</code> or if <code>compressed</code> is
+     *            <code>false</code>, values will not be compressed.
+     * @param keyRestartInterval
+     *            The number of keys between two restart points of a
+     *            front-coded key page. If set to 0, key pages will not be
+     *            front-coded.
+     * @param rateLimiter
+     *            The rate limiter from which tokens are acquired before data
+     *            is written. If set to <code>null</code>, the write rate is
+     *            not limited.
+     * @throws IOException
+     */
+    private DiskIndexWriter(String path, int maxBlockEntries, boolean compressed, int maxFileSize,
+        int bloomFilterBitsPerKey, int maxBlockSize, BlockCodec codec, int keyRestartInterval,
+        WriteRateLimiter rateLimiter) throws IOException {
         
         if (!path.endsWith(System.getProperty("file.separator")))
             path += System.getProperty("file.separator");
@@ -82,7 +212,12 @@ public class DiskIndexWriter {
         
         this.path = path;
         this.maxBlockEntries = maxBlockEntries;
+        this.maxBlockSize = maxBlockSize;
+        this.codec = codec;
+        this.keyRestartInterval = keyRestartInterval;
         this.maxFileSize = maxFileSize;
+        this.bloomFilterBitsPerKey = bloomFilterBitsPerKey;
+        this.rateLimiter = rateLimiter;
     }
     
     /**
@@ -101,9 +236,9 @@ public class DiskIndexWriter {
         BlockWriter block;
         
         if (compressed)
-            block = new CompressedBlockWriter(true, true);
+            block = new CompressedBlockWriter(true, true, codec, keyRestartInterval);
         else
-            block = new DefaultBlockWriter(true, true);
+            block = new DefaultBlockWriter(true, true, keyRestartInterval);
         
         int entryCount = 0;
         int blockOffset = 0;
@@ -114,15 +249,23 @@ public class DiskIndexWriter {
         // depending on the size of the last block
         while (iterator.hasNext() && !newBlockFile) {
             
-            // add the next key-value pair to the current block
             Entry<Object, Object> next = iterator.next();
+            
+            // add the key to the Bloom filter
+            if (bloomFilter != null)
+                bloomFilter.add(BloomFilter.hash(next.getKey()));
+            
+            // add the next key-value pair to the current block
             block.add(next.getKey(), next.getValue());
             
             entryCount++;
             
             // if the block size limit has been reached, or there are no more
             // key-value pairs, serialize the block and write it to disk
-            if (entryCount % maxBlockEntries == 0 || !iterator.hasNext()) {
+            if (entryCount == maxBlockEntries || (maxBlockSize > 0 && block.size() >= maxBlockSize)
+                || !iterator.hasNext()) {
+                
+                entryCount = 0;
                 
                 // serialize the offset of the block into a new buffer
                 ReusableBuffer buf = ReusableBuffer.wrap(new byte[(Integer.SIZE / 8) + (Short.SIZE / 8)]);
@@ -135,6 +278,12 @@ public class DiskIndexWriter {
                 // serialize the block and calculate the next block offset
                 SerializedBlock serializedBlock = block.serialize();
                 blockOffset += serializedBlock.size();
+                blockStats.add(serializedBlock.size());
+                
+                // acquire the tokens for the entire block before writing it,
+                // so that no buffer of the block is freed while waiting
+                if (rateLimiter != null)
+                    rateLimiter.acquire(serializedBlock.size());
                 
                 // write the block
                 int writtenBytes = 0;
@@ -149,15 +298,15 @@ public class DiskIndexWriter {
                     }
                     
                     Object nextBuffer = it.next();
+                    writtenBytes += writeBuffer(out, nextBuffer);
                     
-                    // check if the entry is the last from the buffer; if so, free it
+                    // check if the entry is the last from the buffer; if so, free
+                    // it once it has been written
                     if(nextBuffer instanceof ByteRange) {
                         ByteRange rng = (ByteRange) nextBuffer;
                         if(rng.getReusableBuf() != null)
                             BufferPool.free(rng.getReusableBuf());
                     }
-                    
-                    writtenBytes += writeBuffer(out, nextBuffer);
                 }
                 assert (writtenBytes == serializedBlock.size());
                 
@@ -166,9 +315,9 @@ public class DiskIndexWriter {
                 } else {
                     if (iterator.hasNext())
                         if (compressed)
-                            block = new CompressedBlockWriter(true, true);
+                            block = new CompressedBlockWriter(true, true, codec, keyRestartInterval);
                         else
-                            block = new DefaultBlockWriter(true, true);
+                            block = new DefaultBlockWriter(true, true, keyRestartInterval);
                 }
             }
             
@@ -180,6 +329,8 @@ public class DiskIndexWriter {
     /**
      * Creates an on-disk representation of an index from an iterator of
      * key-value pairs. The iterator has to return keys in ascending order!
+     * This method may only be used if no Bloom filter is written, as the size
+     * of the filter depends on the number of keys.
      * 
      * @param iterator
      *            an iterator w/ key-value pairs, keys must be in ascending
@@ -189,6 +340,31 @@ public class DiskIndexWriter {
      */
     public void writeIndex(ResultSet<Object, Object> iterator) throws IOException {
         
+        if (bloomFilterBitsPerKey > 0)
+            throw new IllegalStateException("the number of keys is required to write a Bloom filter");
+        
+        writeIndex(iterator, 0);
+    }
+    
+    /**
+     * Creates an on-disk representation of an index from an iterator of
+     * key-value pairs. The iterator has to return keys in ascending order!
+     * 
+     * @param iterator
+     *            an iterator w/ key-value pairs, keys must be in ascending
+     *            order
+     * @param numKeys
+     *            the (estimated) max. number of keys returned by the
+     *            iterator, for which the Bloom filter is sized; if more keys
+     *            are returned, the false positive rate of the filter increases
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public void writeIndex(ResultSet<Object, Object> iterator, long numKeys) throws IOException {
+        
+        if (bloomFilterBitsPerKey > 0)
+            bloomFilter = new BloomFilter(numKeys, bloomFilterBitsPerKey);
+        
         BlockWriter blockIndex = new DefaultBlockWriter(true, false);
         
         // write all index files
@@ -206,6 +382,8 @@ public class DiskIndexWriter {
         FileOutputStream out = new FileOutputStream(path + "blockindex.idx", false);
         
         SerializedBlock serializedBuf = blockIndex.serialize();
+        if (rateLimiter != null)
+            rateLimiter.acquire(serializedBuf.size());
         
         int bytesWritten = 0;
         Iterator<Object> it = serializedBuf.iterator();
@@ -215,6 +393,24 @@ public class DiskIndexWriter {
         assert (bytesWritten == serializedBuf.size());
         
         out.close();
+        
+        // write the Bloom filter
+        if (bloomFilter != null) {
+            bloomFilter.write(path + BloomFilter.FILTER_FILE_NAME);
+            bloomFilter = null;
+        }
+        
+        Logging.logMessage(Logging.LEVEL_INFO, Category.babudb, this, "wrote index %s: %s", path, blockStats
+                .toString());
+    }
+    
+    /**
+     * Returns statistics on the sizes of the blocks written so far.
+     * 
+     * @return the block statistics
+     */
+    public BlockStatistics getBlockStatistics() {
+        return blockStats;
     }
     
     private int writeBuffer(FileOutputStream out, Object buf) throws IOException {
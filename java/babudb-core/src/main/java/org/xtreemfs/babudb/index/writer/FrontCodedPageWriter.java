@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2026, agent
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.babudb.index.writer;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+import org.xtreemfs.babudb.index.reader.FrontCodedMiniPage;
+import org.xtreemfs.babudb.index.reader.InternalBufferUtil;
+
+/**
+ * Serializes sorted entries to a front-coded page, as read by
+ * {@link FrontCodedMiniPage}.
+ * 
+ * @author agent
+ */
+public class FrontCodedPageWriter {
+    
+    /**
+     * Serializes a list of entries to a front-coded page.
+     * 
+     * @param entries
+     *            the entries, in ascending order
+     * @param restartInterval
+     *            the number of entries after which a restart point is
+     *            inserted
+     * @return the serialized page
+     */
+    public static byte[] serialize(List<?> entries, int restartInterval) {
+        
+        assert (restartInterval > 0);
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int[] restarts = new int[(entries.size() + restartInterval - 1) / restartInterval];
+        
+        byte[] prev = null;
+        int index = 0;
+        for (Object next : entries) {
+            
+            byte[] entry = InternalBufferUtil.toBuffer(next);
+            
+            int shared = 0;
+            if (index % restartInterval == 0)
+                restarts[index / restartInterval] = out.size();
+            else {
+                int maxShared = Math.min(prev.length, entry.length);
+                while (shared < maxShared && prev[shared] == entry[shared])
+                    shared++;
+            }
+            
+            writeVarInt(out, shared);
+            writeVarInt(out, entry.length - shared);
+            out.write(entry, shared, entry.length - shared);
+            
+            prev = entry;
+            index++;
+        }
+        
+        for (int restart : restarts)
+            writeInt(out, restart);
+        writeInt(out, restartInterval);
+        
+        return out.toByteArray();
+    }
+    
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+    
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+    
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2026, agent
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+package org.xtreemfs.babudb.index.writer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token bucket that limits the rate at which on-disk indices are written, so
+ * that checkpoints, snapshots and database copies leave enough I/O bandwidth
+ * for the database log. A single instance is shared by all index writers of a
+ * BabuDB instance.
+ * <p>
+ * Writers acquire the tokens for each block before writing it. If the
+ * bucket is empty, the writer sleeps until enough tokens have been refilled.
+ * The bucket holds at most the tokens for <code>BURST_MILLIS</code> ms of
+ * writing.
+ * </p>
+ * <p>
+ * If a target sync latency is given, the rate is adjusted to the latencies of
+ * the log syncs reported via <code>syncCompleted()</code>: whenever a sync has
+ * exceeded the target during the last adjustment interval, the rate is halved;
+ * otherwise, it is increased by a fraction of the max. rate, until the max.
+ * rate is reached again.
+ * </p>
+ *
+ * @author agent
+ *
+ */
+public class WriteRateLimiter {
+
+    public static final String RUNTIME_STATE_RATE          = "writeRateLimiter.bytesPerSec";
+
+    public static final String RUNTIME_STATE_BYTES         = "writeRateLimiter.bytesWritten";
+
+    public static final String RUNTIME_STATE_THROTTLED     = "writeRateLimiter.throttledMillis";
+
+    public static final String RUNTIME_STATE_DECREASES     = "writeRateLimiter.rateDecreaseCount";
+
+    private static final long  BURST_MILLIS                = 100;
+
+    private static final long  ADJUST_INTERVAL_NANOS       = 100L * 1000 * 1000;
+
+    /**
+     * the min. rate as a fraction of the max. rate
+     */
+    private static final int   MIN_RATE_DIVISOR            = 64;
+
+    /**
+     * the step by which the rate is increased, as a fraction of the max. rate
+     */
+    private static final int   RATE_INCREASE_DIVISOR       = 16;
+
+    private final long         maxRate;
+
+    private final long         minRate;
+
+    private final long         targetSyncLatencyMicros;
+
+    private long               rate;
+
+    private double             tokens;
+
+    private long               lastRefill;
+
+    private long               lastAdjustment;
+
+    private long               maxSyncLatencyMicros;
+
+    private final AtomicLong   _bytes;
+
+    private final AtomicLong   _throttledNanos;
+
+    private final AtomicLong   _rateDecreases;
+
+    /**
+     * Creates a new rate limiter.
+     *
+     * @param maxRate
+     *            the max. number of bytes per second
+     * @param targetSyncLatencyMicros
+     *            the max. latency of log syncs in microseconds, above which
+     *            the rate is decreased; if set to 0, the rate remains at
+     *            <code>maxRate</code>
+     */
+    public WriteRateLimiter(long maxRate, long targetSyncLatencyMicros) {
+
+        assert (maxRate > 0);
+
+        this.maxRate = maxRate;
+        this.minRate = Math.max(1, maxRate / MIN_RATE_DIVISOR);
+        this.targetSyncLatencyMicros = targetSyncLatencyMicros;
+        this.rate = maxRate;
+        this.lastRefill = System.nanoTime();
+        this.lastAdjustment = lastRefill;
+        this.tokens = getBurstSize();
+        this._bytes = new AtomicLong();
+        this._throttledNanos = new AtomicLong();
+        this._rateDecreases = new AtomicLong();
+    }
+
+    /**
+     * Acquires the tokens for writing the given number of bytes. The method
+     * blocks until the tokens are available. If the calling thread is
+     * interrupted while waiting, the method returns immediately and the
+     * thread's interrupt status is set.
+     *
+     * @param bytes
+     *            the number of bytes
+     */
+    public void acquire(long bytes) {
+
+        long waitNanos;
+        synchronized (this) {
+
+            long now = System.nanoTime();
+            adjust(now);
+
+            tokens = Math.min(getBurstSize(), tokens + (now - lastRefill) * (double) rate / 1e9);
+            lastRefill = now;
+
+            // take the tokens in advance; later writers wait for the deficit
+            // to be refilled, too
+            tokens -= bytes;
+            waitNanos = tokens >= 0 ? 0 : (long) (-tokens * 1e9 / rate);
+        }
+
+        _bytes.addAndGet(bytes);
+        if (waitNanos == 0)
+            return;
+
+        _throttledNanos.addAndGet(waitNanos);
+        try {
+            Thread.sleep(waitNanos / 1000000, (int) (waitNanos % 1000000));
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Reports the latency of a completed log sync.
+     *
+     * @param latencyMicros
+     *            the latency in microseconds
+     */
+    public synchronized void syncCompleted(long latencyMicros) {
+
+        if (targetSyncLatencyMicros == 0)
+            return;
+
+        maxSyncLatencyMicros = Math.max(maxSyncLatencyMicros, latencyMicros);
+        adjust(System.nanoTime());
+    }
+
+    /**
+     * Returns the current rate.
+     *
+     * @return the number of bytes per second
+     */
+    public synchronized long getRate() {
+        return rate;
+    }
+
+    public Object getRuntimeState(String property) {
+
+        if (RUNTIME_STATE_RATE.equals(property))
+            return getRate();
+        if (RUNTIME_STATE_BYTES.equals(property))
+            return _bytes.get();
+        if (RUNTIME_STATE_THROTTLED.equals(property))
+            return _throttledNanos.get() / 1000000;
+        if (RUNTIME_STATE_DECREASES.equals(property))
+            return _rateDecreases.get();
+
+        return null;
+    }
+
+    public Map<String, Object> getRuntimeState() {
+
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put(RUNTIME_STATE_RATE, getRate());
+        map.put(RUNTIME_STATE_BYTES, _bytes.get());
+        map.put(RUNTIME_STATE_THROTTLED, _throttledNanos.get() / 1000000);
+        map.put(RUNTIME_STATE_DECREASES, _rateDecreases.get());
+
+        return map;
+    }
+
+    private double getBurstSize() {
+        return rate * BURST_MILLIS / 1000.0;
+    }
+
+    /**
+     * Adjusts the rate to the sync latencies observed since the last
+     * adjustment, if the adjustment interval has passed.
+     */
+    private void adjust(long now) {
+
+        if (targetSyncLatencyMicros == 0 || now - lastAdjustment < ADJUST_INTERVAL_NANOS)
+            return;
+
+        if (maxSyncLatencyMicros > targetSyncLatencyMicros) {
+            if (rate > minRate)
+                _rateDecreases.incrementAndGet();
+            rate = Math.max(minRate, rate / 2);
+        } else
+            rate = Math.min(maxRate, rate + maxRate / RATE_INCREASE_DIVISOR);
+
+        maxSyncLatencyMicros = 0;
+        lastAdjustment = now;
+    }
+
+}
@@ -14,6 +14,8 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.zip.CRC32;
 import java.util.zip.Checksum;
 
@@ -38,10 +40,30 @@ public class DiskLogFile {
     
     protected Checksum        csumAlgo;
     
-    protected ByteBuffer      myInt;
+    /**
+     * the number of bytes read from the log file at once
+     */
+    protected static final int CHUNK_SIZE = 8 * 1024 * 1024;
+    
+    /**
+     * the chunk of the log file from which entries are currently parsed; log
+     * entries refer to the chunk by means of view buffers
+     */
+    protected ReusableBuffer  chunk;
+    
+    /**
+     * the offset of the next log entry in the file
+     */
+    protected long            position;
     
     protected LogEntry        next;
     
+    /**
+     * the LSN of the previous log entry; entries with smaller LSNs are stale
+     * entries of a recycled log file - may be <code>null</code>
+     */
+    protected LSN             lastLSN;
+    
     public DiskLogFile(String baseDir, LSN logLSN) throws IOException, LogEntryException {
         this(baseDir + DiskLogger.createLogFileName(logLSN.getViewId(), logLSN.getSequenceNo()));
     }
@@ -51,15 +73,20 @@ public class DiskLogFile {
         file = new File(filename);
         fis = new FileInputStream(file);
         channel = fis.getChannel();
-        myInt = ByteBuffer.allocate(Integer.SIZE / 8);
         csumAlgo = new CRC32();
         
+        // the first entry has the LSN contained in the file name
+        Matcher m = Pattern.compile("(\\d+)\\.(\\d+)\\.dbl").matcher(file.getName());
+        if (m.matches())
+            lastLSN = new LSN(Integer.parseInt(m.group(1)), Long.parseLong(m.group(2)) - 1);
+        
         next = getNext();
     }
     
     public void close() throws IOException {
         LogEntry tmp = next;
         next = null;
+        chunk = null;
         if (tmp != null) tmp.free();
         channel.close();
         fis.close();
@@ -69,6 +96,16 @@ public class DiskLogFile {
         return next != null;
     }
     
+    /**
+     * Returns the next entry of the log file. The payload of the entry is a
+     * view on the chunk of the file it was parsed from, which remains in
+     * memory as long as the entry has not been freed. Entries that are kept
+     * for longer should therefore be copied.
+     * 
+     * @return the next entry
+     * @throws LogEntryException
+     *             if the entry could not be read
+     */
     public LogEntry next() throws LogEntryException {
         LogEntry tmp = next;
         next = getNext();
@@ -81,27 +118,45 @@ public class DiskLogFile {
         ReusableBuffer item = null;
         try {
             
-            if (channel.position() == channel.size())
+            if (!fill(Integer.SIZE / 8))
                 return null;
             
-            int numRead = channel.read(myInt);
-            if (numRead < Integer.SIZE / 8)
-                return null;
+            int entrySize = chunk.getInt(chunk.position());
+            offset = position;
             
-            myInt.flip();
-            int entrySize = myInt.getInt();
-            myInt.flip();
-            offset = channel.position() - Integer.SIZE / 8;
-            channel.position(offset);
+            // end-of-log marker of a preallocated log file
+            if (entrySize == 0)
+                return null;
             
             if (entrySize < 0)
                 throw new LogEntryException("log entry with negative size detected: " + entrySize);
             
-            item = BufferPool.allocate(entrySize);
-            channel.read(item.getBuffer());
-            item.flip();
+            if (entrySize > chunk.remaining()
+                && entrySize - chunk.remaining() > channel.size() - channel.position())
+                throw new LogEntryException("incomplete log entry detected: " + entrySize + " bytes expected, "
+                    + (channel.size() - offset) + " bytes available");
+            
+            // parse the entry from a view on the current chunk
+            fill(entrySize);
+            int length = Math.min(entrySize, chunk.remaining());
+            item = chunk.createViewBuffer();
+            item.range(chunk.position(), length);
+            chunk.position(chunk.position() + length);
+            position += length;
+            
             LogEntry e = LogEntry.deserialize(item, csumAlgo);
             csumAlgo.reset();
+            
+            // a stale entry behind the end of the log of a recycled log file,
+            // e.g. if the end-of-log marker was not written before a crash
+            if (lastLSN != null && e.getLSN().compareTo(lastLSN) <= 0) {
+                Logging.logMessage(Logging.LEVEL_DEBUG, Category.babudb, this,
+                    "stale log entry %s found at offset %d, end of log reached", e.getLSN(), offset);
+                e.free();
+                return null;
+            }
+            lastLSN = e.getLSN();
+            
             return e;
             
         } catch (LogEntryException ex) {
@@ -129,6 +184,8 @@ public class DiskLogFile {
                 fis = new FileInputStream(file);
                 channel = fis.getChannel();
                 channel.position(offset);
+                position = offset;
+                chunk = null;
                 
             } catch (IOException exc) {
                 throw new LogEntryException("Cannot truncate log file: " + ex);
@@ -148,4 +205,43 @@ public class DiskLogFile {
         
     }
     
+    /**
+     * Makes sure that the current chunk contains at least the given number of
+     * bytes, unless the end of the file has been reached. Otherwise, the next
+     * chunk is read. As log entries parsed from the current chunk may still
+     * refer to it, a new chunk is allocated for this purpose, and the bytes
+     * remaining in the current chunk are copied to the new one. Hence, only
+     * entries that span two chunks are copied. Chunks are never larger than
+     * the rest of the file, so that reading a small log file does not
+     * allocate a full chunk.
+     * 
+     * @param numBytes
+     *            the number of bytes
+     * @return <code>true</code>, if the chunk contains the given number of
+     *         bytes, <code>false</code>, if the end of the file was reached
+     *         before
+     * @throws IOException
+     *             if an I/O error occurred
+     */
+    private boolean fill(int numBytes) throws IOException {
+        
+        if (chunk != null && chunk.remaining() >= numBytes)
+            return true;
+        
+        long available = channel.size() - position;
+        ByteBuffer buf = ByteBuffer.allocate((int) Math.max(Math.min(CHUNK_SIZE, available), numBytes));
+        if (chunk != null)
+            buf.put(chunk.getBuffer());
+        
+        while (buf.hasRemaining()) {
+            if (channel.read(buf) < 0)
+                break;
+        }
+        
+        chunk = ReusableBuffer.wrap(buf.array());
+        chunk.limit(buf.position());
+        
+        return chunk.remaining() >= numBytes;
+    }
+    
 }
@@ -10,12 +10,16 @@ package org.xtreemfs.babudb.log;
 
 import java.io.File;
 import java.io.FileDescriptor;
+import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -25,15 +29,48 @@ import java.util.zip.CRC32;
 
 import org.xtreemfs.babudb.api.exception.BabuDBException;
 import org.xtreemfs.babudb.api.exception.BabuDBException.ErrorCode;
+import org.xtreemfs.babudb.index.writer.WriteRateLimiter;
+import org.xtreemfs.babudb.lsmdb.BoundedMPSCQueue;
 import org.xtreemfs.babudb.lsmdb.LSN;
+import org.xtreemfs.foundation.LifeCycleListener;
 import org.xtreemfs.foundation.LifeCycleThread;
-import org.xtreemfs.foundation.buffer.BufferPool;
-import org.xtreemfs.foundation.buffer.ReusableBuffer;
 import org.xtreemfs.foundation.logging.Logging;
 import org.xtreemfs.foundation.logging.Logging.Category;
 
 /**
  * Writes entries to the on disc operations log and syncs after blocks of MAX_ENTRIES_PER_BLOCK.
+ * <p>
+ * If a maximum batch size in bytes is configured, the logger runs in group commit mode instead: entries are
+ * collected in batches that are limited by their total size rather than the number of entries. Optionally, the
+ * logger may wait a short time for further entries before writing a batch. Each batch is written with a single
+ * gathering write, followed by a single sync.
+ * </p>
+ * <p>
+ * If a preallocation size is configured, each log file is filled with zeros up to that size when it is created, so
+ * that appending entries does not change the size of the file, and a sync does not have to commit file system
+ * metadata. As preallocated files may contain stale data behind the last entry, an end-of-log marker (an entry size
+ * of 0) is written behind each batch. Log files that are no longer needed after a checkpoint are kept in a small
+ * pool of recycled files and reused for the next log file instead of preallocating a new one.
+ * </p>
+ * <p>
+ * Log entries may request a durability that differs from the logger's sync mode. Entries in a batch that are durable
+ * enough once they have been written are acknowledged right after the write; the log file is only forced if at least
+ * one entry of the batch requires it, and the remaining entries are acknowledged after the force.
+ * </p>
+ * <p>
+ * If additional log lane directories are configured, the logger distributes entries over several log lanes. Each
+ * lane is a separate logger thread that writes its own log file and syncs it independently of the other lanes. All
+ * lanes share a global LSN, which is assigned when an entry is appended, so that the entries of all lanes can be
+ * replayed in the order of their LSNs. Entries with the same lane key are always written to the same lane. Locking
+ * the logger waits until all lanes have written the entries appended so far, so that switching the log file cuts all
+ * lanes at the same LSN.
+ * </p>
+ * <p>
+ * If a mapped window size is configured, entries are serialized directly into a memory-mapped window of the log file
+ * at the current end of the log, instead of being written with a system call per batch. When an entry does not fit
+ * into the current window, the next window is mapped behind it. Entries are made durable by forcing the windows that
+ * have been written to since the last sync.
+ * </p>
  * 
  * @author bjko
  * @author flangner
@@ -71,6 +108,49 @@ public class DiskLogger extends LifeCycleThread {
 
     private static final String        RUNTIME_STATE_PROCESSEDLOGENTRIES = "diskLogger.processedLogEntryCount";
 
+    /**
+     * histogram of the number of entries per written batch (see {@link Histogram})
+     */
+    private static final String        RUNTIME_STATE_BATCHSIZES          = "diskLogger.batchSizeHistogram";
+
+    /**
+     * histogram of the sync latencies in microseconds (see {@link Histogram})
+     */
+    private static final String        RUNTIME_STATE_SYNCLATENCIES       = "diskLogger.syncLatencyHistogram";
+
+    private static final String        RUNTIME_STATE_REUSEDLOGFILES      = "diskLogger.reusedLogFileCount";
+
+    private static final String        RUNTIME_STATE_LANES               = "diskLogger.laneCount";
+
+    /**
+     * durability levels of log entries: not synced, data synced, data and metadata synced
+     */
+    private static final int           DURABILITY_NONE                   = 0;
+
+    private static final int           DURABILITY_DATA                   = 1;
+
+    private static final int           DURABILITY_METADATA               = 2;
+
+    /**
+     * suffix of log files in the pool of recycled files
+     */
+    static final String                RECYCLED_SUFFIX                   = ".recycled";
+
+    /**
+     * max. number of recycled log files kept for reuse
+     */
+    private static final int           MAX_RECYCLED_LOG_FILES            = 2;
+
+    /**
+     * max. number of mapped windows that have not been synced yet and are kept for the next sync
+     */
+    private static final int           MAX_UNSYNCED_WINDOWS              = 4;
+
+    /**
+     * the end-of-log marker written behind the last entry of a preallocated log file
+     */
+    private static final byte[]        END_OF_LOG                        = new byte[Integer.SIZE / 8];
+
     /**
      * NIO FileChannel used to write ByteBuffers directly to file.
      */
@@ -89,7 +169,7 @@ public class DiskLogger extends LifeCycleThread {
     /**
      * The LogEntries to be written to disk.
      */
-    private final LinkedList<LogEntry> entries                           = new LinkedList<LogEntry>();
+    private final BoundedMPSCQueue<LogEntry> entries;
 
     /**
      * If set to true the thread will shutdown.
@@ -103,14 +183,44 @@ public class DiskLogger extends LifeCycleThread {
     private final String               logfileDir;
 
     /**
-     * log sequence number to assign to assign to next log entry
+     * log sequence number to assign to assign to next log entry; shared by all log lanes
      */
-    private final AtomicLong           nextLogSequenceNo                 = new AtomicLong();
+    private final AtomicLong           nextLogSequenceNo;
 
     /**
-     * view Id to assign to entries
+     * view Id to assign to entries; shared by all log lanes
      */
-    private final AtomicInteger        currentViewId                     = new AtomicInteger();
+    private final AtomicInteger        currentViewId;
+
+    /**
+     * the log lanes, starting with this logger; a single lane if log lanes are disabled
+     */
+    private DiskLogger[]               lanes;
+
+    /**
+     * true, if the logger is one of several log lanes; LSNs are assigned when entries are appended then
+     */
+    private final boolean              laneMode;
+
+    /**
+     * reserves the LSNs of all lanes and holds back acknowledgements of durable entries until all entries with lower
+     * LSNs are durable; <code>null</code> if log lanes are disabled
+     */
+    private final LaneWatermark        watermark;
+
+    /**
+     * Lock for appending entries to the lane in lane mode.
+     */
+    private final ReentrantLock        appendLock                        = new ReentrantLock();
+
+    /**
+     * Lock for the numbers of entries that have been appended to and completed by the lane in lane mode.
+     */
+    private final Object               drainLock                         = new Object();
+
+    private long                       appendedEntries;
+
+    private long                       completedEntries;
 
     /**
      * current log file name
@@ -130,10 +240,94 @@ public class DiskLogger extends LifeCycleThread {
 
     private final CRC32                csumAlgo                          = new CRC32();
 
+    /**
+     * reusable buffer for the headers and trailers of the entries written by a gathering write
+     */
+    private ByteBuffer                 headers                           = ByteBuffer
+                                                                                 .allocate(MAX_ENTRIES_PER_BLOCK
+                                                                                     * LogEntry.headerLength);
+
+    /**
+     * reusable array of the buffers written by a gathering write
+     */
+    private ByteBuffer[]               data                              = new ByteBuffer[0];
+
+    /**
+     * reusable buffer for the end-of-log marker appended to a gathering write
+     */
+    private final ByteBuffer           endOfLog                          = ByteBuffer.wrap(END_OF_LOG);
+
     private final int                  maxQ;
 
+    /**
+     * max. size of a batch of entries in bytes; 0 limits batches to MAX_ENTRIES_PER_BLOCK entries
+     */
+    private final int                  maxBatchBytes;
+
+    /**
+     * max. time to wait for further entries before writing a batch, in nanoseconds
+     */
+    private final long                 maxBatchWaitNanos;
+
+    /**
+     * size up to which log files are preallocated, in bytes; 0 disables preallocation
+     */
+    private final long                 preallocationSize;
+
+    /**
+     * size of the windows of log files that are mapped into memory in bytes; 0 disables memory-mapped writes
+     */
+    private final int                  mappedWindowSize;
+
+    /**
+     * the mapped window of the current log file that entries are written to, or <code>null</code> if no window has
+     * been mapped yet
+     */
+    private MappedByteBuffer           window;
+
+    /**
+     * the offset of the mapped window in the current log file
+     */
+    private long                       windowOffset;
+
+    /**
+     * the mapped windows that have been written to since the last sync
+     */
+    private final List<MappedByteBuffer> unsyncedWindows                 = new ArrayList<MappedByteBuffer>();
+
+    /**
+     * true, if a window that has been written to since the last sync was dropped from the unsynced windows
+     */
+    private boolean                    droppedUnsyncedWindows;
+
+    /**
+     * number of bytes written to the current log file
+     */
+    private volatile long              logFileSize;
+
+    /**
+     * Lock for the pool of recycled log files.
+     */
+    private final Object               recycleLock                       = new Object();
+
+    /**
+     * total size of all entries in the queue
+     */
+    private final AtomicLong           queuedBytes                       = new AtomicLong();
+
     private AtomicInteger              _processedLogEntries              = new AtomicInteger();
 
+    private final Histogram            _batchSizes                       = new Histogram();
+
+    private final Histogram            _syncLatencies                    = new Histogram();
+
+    private final AtomicInteger        _reusedLogFiles                   = new AtomicInteger();
+
+    /**
+     * rate limiter for writing on-disk indices, which is notified of sync latencies; may be null
+     */
+    private volatile WriteRateLimiter  rateLimiter;
+
     /**
      * Creates a new instance of DiskLogger
      * 
@@ -151,8 +345,53 @@ public class DiskLogger extends LifeCycleThread {
      */
     public DiskLogger(String logfileDir, LSN initLSN, SyncMode syncMode, int pseudoSyncWait, int maxQ)
             throws IOException {
+        this(logfileDir, initLSN, new LogOptions().setSyncMode(syncMode).setPseudoSyncWait(pseudoSyncWait)
+                .setMaxQueueLength(maxQ));
+    }
+
+    /**
+     * Creates a new instance of DiskLogger
+     * 
+     * @param logfileDir
+     *            Name and path of the directory to use for the append log.
+     * @param initLSN
+     * @param options
+     *            the options that determine how log entries are batched, written and synced
+     * 
+     * @throws java.io.FileNotFoundException
+     *             If that file cannot be created.
+     * @throws java.io.IOException
+     *             If that file cannot be created.
+     */
+    public DiskLogger(String logfileDir, LSN initLSN, LogOptions options) throws IOException {
+
+        this("DiskLogger", logfileDir, new AtomicLong(), new AtomicInteger(), options.getLaneDirs().length > 0, null,
+                initLSN, options);
 
-        super("DiskLogger");
+        String[] laneDirs = options.getLaneDirs();
+        lanes = new DiskLogger[laneDirs.length + 1];
+        lanes[0] = this;
+        try {
+            for (int i = 1; i < lanes.length; i++) {
+                lanes[i] = new DiskLogger("DiskLogger-" + i, laneDirs[i - 1], nextLogSequenceNo, currentViewId, true,
+                        watermark, null, options);
+            }
+        } catch (IOException exc) {
+            for (DiskLogger lane : lanes)
+                if (lane != null)
+                    lane.fos.close();
+            throw exc;
+        }
+    }
+
+    /**
+     * Creates a single log lane. The first lane creates the watermark shared by all lanes if <code>laneMode</code> is
+     * set and no watermark is given.
+     */
+    private DiskLogger(String name, String logfileDir, AtomicLong nextLogSequenceNo, AtomicInteger currentViewId,
+            boolean laneMode, LaneWatermark watermark, LSN initLSN, LogOptions options) throws IOException {
+
+        super(name);
 
         if (logfileDir == null) {
             throw new RuntimeException("expected a non-null log file directory name!");
@@ -163,14 +402,24 @@ public class DiskLogger extends LifeCycleThread {
             this.logfileDir = logfileDir + "/";
         }
 
-        if (pseudoSyncWait > 0 && syncMode == SyncMode.ASYNC) {
+        if (options.getPseudoSyncWait() > 0 && options.getSyncMode() == SyncMode.ASYNC) {
             Logging.logMessage(Logging.LEVEL_WARN, Category.babudb, this,
                     "When pseudoSyncWait is enabled (> 0) make sure that SyncMode is not ASYNC");
         }
 
-        this.pseudoSyncWait = pseudoSyncWait;
-        this.syncMode = syncMode;
-        this.maxQ = maxQ;
+        this.pseudoSyncWait = options.getPseudoSyncWait();
+        this.syncMode = options.getSyncMode();
+        this.maxQ = options.getMaxQueueLength();
+        this.entries = new BoundedMPSCQueue<LogEntry>(maxQ);
+        this.maxBatchBytes = options.getMaxBatchBytes();
+        this.maxBatchWaitNanos = 1000L * options.getMaxBatchWaitMicros();
+        this.preallocationSize = options.getPreallocationSize();
+        this.mappedWindowSize = options.getMappedWindowSize();
+        this.nextLogSequenceNo = nextLogSequenceNo;
+        this.currentViewId = currentViewId;
+        this.laneMode = laneMode;
+        this.watermark = !laneMode ? null : watermark != null ? watermark : new LaneWatermark(nextLogSequenceNo);
+        this.lanes = new DiskLogger[] { this };
 
         loadLogFile(initLSN);
     }
@@ -181,16 +430,34 @@ public class DiskLogger extends LifeCycleThread {
      * @throws IOException
      */
     public void dropLogFile() throws IOException {
-        channel.close();
-        fos.close();
-
-        // delete invalid (because empty) database log on switch
-        if (currentLogFileName != null) {
-            File f = new File(currentLogFileName);
-            if (f.length() == 0L) {
-                boolean suc = f.delete();
-                assert (suc) : "An empty database log file could not have been deleted properly.";
-            }
+        for (DiskLogger lane : lanes)
+            lane.closeLogFile();
+    }
+
+    /**
+     * Closes the current log file of the lane.
+     * 
+     * @throws IOException
+     */
+    private void closeLogFile() throws IOException {
+        try {
+            trimLogFile();
+        } finally {
+            channel.close();
+            fos.close();
+        }
+
+        // the mappings remain valid until the windows are garbage-collected
+        window = null;
+        unsyncedWindows.clear();
+        droppedUnsyncedWindows = false;
+
+        // delete invalid (because empty) database log on switch; empty files
+        // of log lanes are kept, as the other lanes may contain entries with
+        // LSNs in the range covered by the file name
+        if (currentLogFileName != null && logFileSize == 0L && !laneMode) {
+            boolean suc = recycleLogFile(new File(currentLogFileName));
+            assert (suc) : "An empty database log file could not have been deleted properly.";
         }
 
         channel = null;
@@ -206,6 +473,8 @@ public class DiskLogger extends LifeCycleThread {
      */
     public void loadLogFile(LSN initLSN) throws IOException {
 
+        assert (watermark == null || watermark.isEmpty());
+
         // update disk-log LSN
         if (initLSN != null) {
             this.currentViewId.set(initLSN.getViewId());
@@ -213,11 +482,93 @@ public class DiskLogger extends LifeCycleThread {
             this.nextLogSequenceNo.set(initLSN.getSequenceNo());
         }
 
-        loadLogFile();
+        for (DiskLogger lane : lanes)
+            lane.loadLogFile();
     }
 
+    /**
+     * Returns the number of bytes written to the current log file. If log files are preallocated, the size of the
+     * file may be larger.
+     * 
+     * @return the size of the log in bytes
+     */
     public long getLogFileSize() {
-        return new File(currentLogFileName).length();
+        long size = 0;
+        for (DiskLogger lane : lanes)
+            size += lane.logFileSize;
+        return size;
+    }
+
+    /**
+     * Returns the directories of all log lanes, starting with the log file directory of the logger.
+     * 
+     * @return the log directories
+     */
+    public String[] getLogDirectories() {
+        String[] dirs = new String[lanes.length];
+        for (int i = 0; i < lanes.length; i++)
+            dirs[i] = lanes[i].logfileDir;
+        return dirs;
+    }
+
+    /**
+     * Removes a log file that is no longer needed. If preallocation is enabled and the pool of recycled log files
+     * is not full, the file is moved to the pool, so that it can be reused as a new log file. Otherwise, the file is
+     * deleted.
+     * 
+     * @param logFile
+     *            the log file
+     * @return <code>true</code>, if the file was recycled or deleted, <code>false</code>, otherwise
+     */
+    public boolean recycleLogFile(File logFile) {
+
+        synchronized (recycleLock) {
+
+            File dir = logFile.getAbsoluteFile().getParentFile();
+            String[] recycled = dir.list(new FilenameFilter() {
+                public boolean accept(File dir, String name) {
+                    return name.endsWith(RECYCLED_SUFFIX);
+                }
+            });
+
+            // files that have not been preallocated are not worth recycling
+            if (preallocationSize > 0 && logFile.length() >= preallocationSize && recycled != null
+                && recycled.length < MAX_RECYCLED_LOG_FILES) {
+
+                try {
+                    // trim files that have grown beyond the preallocation size
+                    if (logFile.length() > preallocationSize) {
+                        RandomAccessFile raf = new RandomAccessFile(logFile, "rw");
+                        try {
+                            raf.setLength(preallocationSize);
+                        } finally {
+                            raf.close();
+                        }
+                    }
+
+                    if (logFile.renameTo(new File(dir, logFile.getName() + RECYCLED_SUFFIX)))
+                        return true;
+
+                } catch (IOException exc) {
+                    Logging.logMessage(Logging.LEVEL_WARN, Category.babudb, this, "could not recycle log file %s: %s",
+                            logFile.getAbsolutePath(), exc.toString());
+                }
+            }
+
+            return logFile.delete();
+        }
+    }
+
+    /**
+     * Sets the rate limiter for writing on-disk indices. The latency of each sync of the log will be reported to the
+     * rate limiter, so that the index write rate can be adjusted to the log latency.
+     * 
+     * @param rateLimiter
+     *            the rate limiter - may be <code>null</code>
+     */
+    public void setWriteRateLimiter(WriteRateLimiter rateLimiter) {
+        for (DiskLogger lane : lanes)
+            lane.rateLimiter = rateLimiter;
     }
 
     /**
@@ -229,28 +580,110 @@ public class DiskLogger extends LifeCycleThread {
      * @throws InterruptedException
      *             if the entry could not be appended.
      */
-    public synchronized void append(LogEntry entry) throws InterruptedException, IllegalStateException {
+    public void append(LogEntry entry) throws InterruptedException, IllegalStateException {
 
         assert (entry != null);
 
-        // wait for queue space to become available
-        if (!quit && maxQ > 0 && entries.size() >= maxQ) {
-            wait();
+        if (laneMode) {
+            lanes[(entry.getLaneKey() & Integer.MAX_VALUE) % lanes.length].appendToLane(entry);
+            return;
         }
 
-        if (!quit) {
-            assert (maxQ == 0 || entries.size() < maxQ);
+        enqueue(entry);
+    }
 
-            entries.add(entry);
-            notifyAll();
-        } else {
+    /**
+     * Assigns the next LSN to an entry and appends it to the queue of the lane. The LSN is reserved atomically by the
+     * watermark, since lanes append concurrently, while the append lock of the lane is held, so that the entries of
+     * each lane are written in the order of their LSNs.
+     * <p>
+     * If the entry cannot be appended, its LSN is returned unless a later LSN has already been reserved by another
+     * lane. The LSN is skipped then, which is tolerated when replaying the log, since the entries of all lanes are
+     * merged in the order of their LSNs.
+     * </p>
+     * 
+     * @param entry
+     *            to write.
+     * @throws InterruptedException
+     *             if the entry could not be appended.
+     */
+    private void appendToLane(LogEntry entry) throws InterruptedException, IllegalStateException {
+
+        appendLock.lockInterruptibly();
+        try {
+            // the view ID only changes while the append locks of all lanes are held
+            int viewID = currentViewId.get();
+            long seqNo;
+
+            if (entry.getLSN() == null) {
+                seqNo = watermark.reserve();
+            } else {
+                seqNo = entry.getLSN().getSequenceNo();
+                if (entry.getLSN().getViewId() != viewID || !watermark.reserve(seqNo)) {
+
+                    throw new IllegalStateException("LogEntry (" + entry.getPayloadType() + ") had unexpected LSN: "
+                        + entry.getLSN() + "\n" + viewID + ":" + nextLogSequenceNo.get() + " was expected instead.");
+                }
+            }
+
+            entry.assignId(viewID, seqNo);
+            try {
+                enqueue(entry);
+            } catch (InterruptedException exc) {
+                watermark.cancel(seqNo);
+                throw exc;
+            }
+
+            synchronized (drainLock) {
+                appendedEntries++;
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Appends an entry to the write queue.
+     * 
+     * @param entry
+     *            to write.
+     * @throws InterruptedException
+     *             if the entry could not be appended.
+     */
+    private void enqueue(LogEntry entry) throws InterruptedException {
+
+        int size = getSize(entry);
+        queuedBytes.addAndGet(size);
+
+        // wait for queue space to become available
+        if (quit || !entries.put(entry)) {
+            queuedBytes.addAndGet(-size);
             throw new InterruptedException("Appending the LogEntry to the DiskLogger's "
                     + "queue was interrupted, due DiskLogger shutdown.");
         }
     }
 
     public void lock() throws InterruptedException {
-        sync.lockInterruptibly();
+
+        if (!laneMode) {
+            sync.lockInterruptibly();
+            return;
+        }
+
+        // keep new entries from being appended, and wait for all lanes to
+        // write the entries that have already been appended
+        int locked = 0;
+        try {
+            for (; locked < lanes.length; locked++)
+                lanes[locked].appendLock.lockInterruptibly();
+            for (DiskLogger lane : lanes)
+                lane.awaitDrained();
+            for (; locked < 2 * lanes.length; locked++)
+                lanes[locked - lanes.length].sync.lockInterruptibly();
+        } catch (InterruptedException exc) {
+            unlock(locked);
+            throw exc;
+        }
     }
 
     public boolean hasLock() {
@@ -258,7 +691,50 @@ public class DiskLogger extends LifeCycleThread {
     }
 
     public void unlock() {
-        sync.unlock();
+        if (!laneMode)
+            sync.unlock();
+        else
+            unlock(2 * lanes.length);
+    }
+
+    /**
+     * Releases the given number of locks taken by {@link #lock()} in lane mode, in reverse order.
+     * 
+     * @param locked
+     *            the number of locks taken
+     */
+    private void unlock(int locked) {
+        while (locked > lanes.length)
+            lanes[--locked - lanes.length].sync.unlock();
+        while (locked > 0)
+            lanes[--locked].appendLock.unlock();
+    }
+
+    /**
+     * Waits until all entries appended to the lane have been written to the current log file or failed.
+     * 
+     * @throws InterruptedException
+     */
+    private void awaitDrained() throws InterruptedException {
+        synchronized (drainLock) {
+            while (completedEntries < appendedEntries)
+                drainLock.wait();
+        }
+    }
+
+    /**
+     * Records that the given number of entries have been written or failed in lane mode.
+     * 
+     * @param count
+     *            the number of entries
+     */
+    private void entriesCompleted(int count) {
+        if (laneMode && count > 0) {
+            synchronized (drainLock) {
+                completedEntries += count;
+                drainLock.notifyAll();
+            }
+        }
     }
 
     public LSN switchLogFile(boolean incrementViewId) throws IOException {
@@ -280,7 +756,8 @@ public class DiskLogger extends LifeCycleThread {
         }
 
         dropLogFile();
-        loadLogFile();
+        for (DiskLogger lane : lanes)
+            lane.loadLogFile();
 
         return lastSyncedLSN;
     }
@@ -297,6 +774,58 @@ public class DiskLogger extends LifeCycleThread {
 
         quit = false;
         super.start();
+
+        for (int i = 1; i < lanes.length; i++)
+            lanes[i].start();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.xtreemfs.foundation.LifeCycleThread#setLifeCycleListener(org.xtreemfs.foundation.LifeCycleListener)
+     */
+    @Override
+    public void setLifeCycleListener(final LifeCycleListener listener) {
+        super.setLifeCycleListener(listener);
+
+        // report crashes of the other lanes as crashes of the logger
+        for (int i = 1; i < lanes.length; i++) {
+            lanes[i].setLifeCycleListener(new LifeCycleListener() {
+                public void startupPerformed() {
+                }
+
+                public void shutdownPerformed() {
+                }
+
+                public void crashPerformed(Throwable cause) {
+                    listener.crashPerformed(cause);
+                }
+            });
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.xtreemfs.foundation.LifeCycleThread#waitForStartup()
+     */
+    @Override
+    public void waitForStartup() throws Exception {
+        super.waitForStartup();
+        for (int i = 1; i < lanes.length; i++)
+            lanes[i].waitForStartup();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.xtreemfs.foundation.LifeCycleThread#waitForShutdown()
+     */
+    @Override
+    public void waitForShutdown() throws Exception {
+        super.waitForShutdown();
+        for (int i = 1; i < lanes.length; i++)
+            lanes[i].waitForShutdown();
     }
 
     /**
@@ -313,28 +842,30 @@ public class DiskLogger extends LifeCycleThread {
             try {
 
                 // wait for an entry
-                synchronized (this) {
+                if (entries.isEmpty()) {
+                    entries.await(0);
+                    if (Thread.interrupted())
+                        throw new InterruptedException();
+                    continue;
+                }
 
-                    if (!quit && entries.isEmpty()) {
-                        wait();
+                // wait for further entries, if the batch is not complete yet
+                if (maxBatchWaitNanos > 0) {
+                    long deadline = System.nanoTime() + maxBatchWaitNanos;
+                    long remaining;
+                    while (!quit && !isBatchComplete() && (remaining = deadline - System.nanoTime()) > 0) {
+                        entries.await(remaining);
                     }
+                }
 
-                    if (quit) {
-                        break;
-
-                        // get some entries from the queue
-                    } else {
-
-                        LogEntry tmp = null;
-                        while (tmpE.size() < MAX_ENTRIES_PER_BLOCK - 1 && (tmp = entries.poll()) != null) {
-
-                            tmpE.add(tmp);
-                        }
-                        notifyAll();
-                        lock();
-                    }
+                if (quit) {
+                    break;
                 }
 
+                // get some entries from the queue
+                sync.lockInterruptibly();
+                pollBatch(tmpE);
+
                 processLogEntries(tmpE);
 
             } catch (IOException ex) {
@@ -344,6 +875,8 @@ public class DiskLogger extends LifeCycleThread {
                 for (LogEntry le : tmpE) {
                     le.free();
                     le.getListener().failed(ex);
+                    if (watermark != null)
+                        watermark.discard(le);
                 }
                 tmpE.clear();
             } catch (InterruptedException ex) {
@@ -358,7 +891,7 @@ public class DiskLogger extends LifeCycleThread {
                 }
             } finally {
                 if (hasLock())
-                    unlock();
+                    sync.unlock();
             }
         }
 
@@ -367,11 +900,12 @@ public class DiskLogger extends LifeCycleThread {
             // process pending requests on shutdown if graceful flag has not been reset
             if (graceful) {
                 try {
-                    lock();
-                    processLogEntries(entries);
+                    sync.lockInterruptibly();
+                    entries.drainTo(tmpE);
+                    processLogEntries(tmpE);
                 } finally {
                     if (hasLock())
-                        unlock();
+                        sync.unlock();
                 }
             }
 
@@ -400,10 +934,13 @@ public class DiskLogger extends LifeCycleThread {
      */
     public synchronized void shutdown(boolean graceful) throws InterruptedException {
 
-        lock();
+        for (int i = 1; i < lanes.length; i++)
+            lanes[i].shutdown(graceful);
+
+        sync.lockInterruptibly();
         this.graceful = graceful;
         quit = true;
-        notifyAll();
+        entries.close();
 
         // stop pseudoSyncWait, if shutdown is ungraceful
         if (!graceful && pseudoSyncWait > 0) {
@@ -411,7 +948,7 @@ public class DiskLogger extends LifeCycleThread {
                 pseudoSyncWaitMonitor.notify();
             }
         }
-        unlock();
+        sync.unlock();
     }
 
     /**
@@ -419,6 +956,8 @@ public class DiskLogger extends LifeCycleThread {
      */
     @Deprecated
     public void destroy() {
+        for (int i = 1; i < lanes.length; i++)
+            lanes[i].destroy();
         stop();
         try {
             try {
@@ -443,17 +982,53 @@ public class DiskLogger extends LifeCycleThread {
     }
 
     public Object getRuntimeState(String property) {
-        if (RUNTIME_STATE_PROCESSEDLOGENTRIES.equals(property))
-            return _processedLogEntries.get();
+        if (RUNTIME_STATE_PROCESSEDLOGENTRIES.equals(property)) {
+            int count = 0;
+            for (DiskLogger lane : lanes)
+                count += lane._processedLogEntries.get();
+            return count;
+        }
+        if (RUNTIME_STATE_BATCHSIZES.equals(property)) {
+            long[] counts = _batchSizes.getCounts();
+            for (int i = 1; i < lanes.length; i++)
+                addCounts(counts, lanes[i]._batchSizes.getCounts());
+            return counts;
+        }
+        if (RUNTIME_STATE_SYNCLATENCIES.equals(property)) {
+            long[] counts = _syncLatencies.getCounts();
+            for (int i = 1; i < lanes.length; i++)
+                addCounts(counts, lanes[i]._syncLatencies.getCounts());
+            return counts;
+        }
+        if (RUNTIME_STATE_REUSEDLOGFILES.equals(property)) {
+            int count = 0;
+            for (DiskLogger lane : lanes)
+                count += lane._reusedLogFiles.get();
+            return count;
+        }
+        if (RUNTIME_STATE_LANES.equals(property))
+            return lanes.length;
         return null;
     }
 
     public Map<String, Object> getRuntimeState() {
         Map<String, Object> map = new HashMap<String, Object>();
-        map.put(RUNTIME_STATE_PROCESSEDLOGENTRIES, _processedLogEntries.get());
+        map.put(RUNTIME_STATE_PROCESSEDLOGENTRIES, getRuntimeState(RUNTIME_STATE_PROCESSEDLOGENTRIES));
+        map.put(RUNTIME_STATE_BATCHSIZES, getRuntimeState(RUNTIME_STATE_BATCHSIZES));
+        map.put(RUNTIME_STATE_SYNCLATENCIES, getRuntimeState(RUNTIME_STATE_SYNCLATENCIES));
+        map.put(RUNTIME_STATE_REUSEDLOGFILES, getRuntimeState(RUNTIME_STATE_REUSEDLOGFILES));
+        map.put(RUNTIME_STATE_LANES, lanes.length);
         return map;
     }
 
+    /**
+     * Adds the bucket counts of a histogram to the given counts.
+     */
+    private static void addCounts(long[] counts, long[] add) {
+        for (int i = 0; i < counts.length; i++)
+            counts[i] += add[i];
+    }
+
     private String createLogFileName() {
         return logfileDir + createLogFileName(currentViewId.get(), nextLogSequenceNo.get());
     }
@@ -466,22 +1041,27 @@ public class DiskLogger extends LifeCycleThread {
     private void cleanUp() throws IOException {
 
         try {
+            for (MappedByteBuffer w : unsyncedWindows)
+                w.force();
+            trimLogFile();
             fdes.sync();
         } finally {
             try {
                 fos.close();
             } finally {
 
-                synchronized (this) {
-                    assert (graceful || entries.size() == 0);
+                entries.close();
 
-                    // clear pending requests, if available
-                    for (LogEntry le : entries) {
-                        le.free();
-                        le.getListener().failed(
-                                new BabuDBException(ErrorCode.INTERRUPTED, "DiskLogger was shut down, before the "
-                                        + "entry could be written to the log-file"));
-                    }
+                // clear pending requests, if available
+                LogEntry le;
+                while ((le = entries.poll()) != null) {
+                    le.free();
+                    le.getListener().failed(
+                            new BabuDBException(ErrorCode.INTERRUPTED, "DiskLogger was shut down, before the "
+                                    + "entry could be written to the log-file"));
+                    if (watermark != null)
+                        watermark.discard(le);
+                    entriesCompleted(1);
                 }
             }
         }
@@ -498,49 +1078,107 @@ public class DiskLogger extends LifeCycleThread {
 
         assert (hasLock());
 
-        for (LogEntry le : entries) {
-            assert (le != null) : "Entry must not be null";
-            int viewID = currentViewId.get();
-            long seqNo = nextLogSequenceNo.getAndIncrement();
-
-            if (le.getLSN() != null && (le.getLSN().getSequenceNo() != seqNo || le.getLSN().getViewId() != viewID)) {
+        try {
 
-                throw new IOException("LogEntry (" + le.getPayloadType() + ") had unexpected LSN: " + le.getLSN()
-                        + "\n" + viewID + ":" + seqNo + " was expected instead.");
-            }
+            for (LogEntry le : entries) {
+                assert (le != null) : "Entry must not be null";
 
-            le.assignId(viewID, seqNo);
+                // LSNs of log lanes have been assigned on append
+                if (!laneMode) {
+                    int viewID = currentViewId.get();
+                    long seqNo = nextLogSequenceNo.getAndIncrement();
 
-            ReusableBuffer buffer = null;
-            try {
-                buffer = le.serialize(csumAlgo);
+                    if (le.getLSN() != null
+                        && (le.getLSN().getSequenceNo() != seqNo || le.getLSN().getViewId() != viewID)) {
 
-                Logging.logMessage(Logging.LEVEL_DEBUG, Category.babudb, this,
-                        "Writing entry LSN(%d:%d) with %d bytes payload [%s] to log. " + "[serialized %d bytes]",
-                        viewID, seqNo, le.getPayload().remaining(), new String(le.getPayload().array()),
-                        buffer.remaining());
+                        throw new IOException("LogEntry (" + le.getPayloadType() + ") had unexpected LSN: "
+                            + le.getLSN() + "\n" + viewID + ":" + seqNo + " was expected instead.");
+                    }
 
-                // write the LogEntry to the local disk
-                channel.write(buffer.getBuffer());
+                    le.assignId(viewID, seqNo);
+                }
 
-            } finally {
-                csumAlgo.reset();
-                if (buffer != null)
-                    BufferPool.free(buffer);
+                if (Logging.isDebug())
+                    Logging.logMessage(Logging.LEVEL_DEBUG, Category.babudb, this,
+                            "Writing entry LSN(%d:%d) with %d bytes payload [%s] to log. " + "[serialized %d bytes]",
+                            le.getViewId(), le.getLogSequenceNo(), le.getPayload().remaining(),
+                            new String(le.getPayload().array()), getSize(le));
             }
 
-            _processedLogEntries.incrementAndGet();
+            if (mappedWindowSize > 0)
+                writeMapped(entries);
+            else
+                write(entries);
+
+        } finally {
+            // the entries have been written to the current log file or will fail
+            entriesCompleted(entries.size());
+        }
+
+        _processedLogEntries.addAndGet(entries.size());
+        if (!entries.isEmpty())
+            _batchSizes.record(entries.size());
+
+        // writes are synchronous if the log file was opened in a SYNC_WRITE
+        // mode, unless they go to a mapped window
+        int written = (mappedWindowSize == 0 && (syncMode == SyncMode.SYNC_WRITE
+            || syncMode == SyncMode.SYNC_WRITE_METADATA)) ? getDurabilityLevel(syncMode) : DURABILITY_NONE;
+
+        // acknowledge all entries that are already durable enough, and
+        // determine the strongest durability requested by the others; in
+        // lane mode, entries that require durability are only acknowledged
+        // once the entries with lower LSNs in the other lanes are durable
+        int required = written;
+        int pending = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            LogEntry le = entries.get(i);
+            int level = getDurabilityLevel(le.getDurability() != null ? le.getDurability() : syncMode);
+            if (level > written) {
+                required = Math.max(required, level);
+                entries.set(pending++, le);
+            } else if (watermark != null && level > DURABILITY_NONE) {
+                entries.set(pending++, le);
+            } else {
+                le.free();
+                le.getListener().synced(le.getLSN());
+                if (watermark != null)
+                    watermark.discard(le);
+            }
         }
+        entries.subList(pending, entries.size()).clear();
+
+        // only force the log if a strict entry is pending
+        if (required > written) {
+            long start = System.nanoTime();
+            if (mappedWindowSize > 0) {
+                for (MappedByteBuffer w : unsyncedWindows)
+                    w.force();
+                unsyncedWindows.clear();
+                if (window != null)
+                    unsyncedWindows.add(window);
+
+                // forcing the channel also writes back the dirty pages of
+                // windows that are no longer referenced
+                if (required == DURABILITY_METADATA || droppedUnsyncedWindows)
+                    channel.force(required == DURABILITY_METADATA);
+                droppedUnsyncedWindows = false;
+            } else {
+                channel.force(required == DURABILITY_METADATA);
+            }
+            long latency = (System.nanoTime() - start) / 1000;
+            _syncLatencies.record(latency);
 
-        if (syncMode == SyncMode.FSYNC) {
-            channel.force(true);
-        } else if (this.syncMode == SyncMode.FDATASYNC) {
-            channel.force(false);
+            WriteRateLimiter limiter = rateLimiter;
+            if (limiter != null)
+                limiter.syncCompleted(latency);
         }
         for (LogEntry le : entries) {
             le.free();
-            le.getListener().synced(le.getLSN());
+            if (watermark == null)
+                le.getListener().synced(le.getLSN());
         }
+        if (watermark != null)
+            watermark.synced(entries);
         entries.clear();
 
         if (pseudoSyncWait > 0) {
@@ -550,6 +1188,202 @@ public class DiskLogger extends LifeCycleThread {
         }
     }
 
+    /**
+     * Serializes a list of entries and writes them to the current log file with a single gathering write. Only the
+     * headers and trailers of the entries are serialized into a reusable buffer; the payloads are written from the
+     * entries' own buffers.
+     * 
+     * @param entries
+     * @throws IOException
+     */
+    private void write(List<LogEntry> entries) throws IOException {
+
+        final int trailerLength = Integer.SIZE / 8;
+        final int frameLength = LogEntry.headerLength;
+        if (headers.capacity() < entries.size() * frameLength)
+            headers = ByteBuffer.allocate(entries.size() * frameLength);
+        headers.clear();
+
+        // serialize all headers and trailers, and refer to the payloads
+        final int markerBuffers = preallocationSize > 0 ? 1 : 0;
+        final int numBuffers = entries.size() * 3 + markerBuffers;
+        if (data.length < numBuffers)
+            data = new ByteBuffer[numBuffers];
+        for (int i = 0; i < entries.size(); i++) {
+            LogEntry le = entries.get(i);
+            try {
+                le.serializeHeader(headers, csumAlgo);
+            } finally {
+                csumAlgo.reset();
+            }
+            le.serializeTrailer(headers);
+
+            int end = headers.position();
+            data[3 * i] = slice(headers, end - frameLength, LogEntry.headerLength - trailerLength);
+            data[3 * i + 1] = le.getPayload().getBuffer().duplicate();
+            data[3 * i + 2] = slice(headers, end - trailerLength, trailerLength);
+        }
+
+        // mark the end of the log, as the rest of the file may contain stale entries; the marker is written with the
+        // entries and overwritten by the next batch
+        if (markerBuffers > 0) {
+            endOfLog.clear();
+            data[numBuffers - 1] = endOfLog;
+        }
+
+        // write all LogEntries to the local disk at once
+        try {
+            int first = 0;
+            while (first < numBuffers) {
+                channel.write(data, first, numBuffers - first);
+                while (first < numBuffers && !data[first].hasRemaining())
+                    first++;
+            }
+        } finally {
+            // do not retain the payloads of the entries
+            Arrays.fill(data, 0, numBuffers, null);
+        }
+
+        logFileSize = channel.position() - markerBuffers * END_OF_LOG.length;
+        if (markerBuffers > 0)
+            channel.position(logFileSize);
+    }
+
+    /**
+     * Returns a view of a range of the given buffer.
+     */
+    private static ByteBuffer slice(ByteBuffer buf, int offset, int length) {
+        ByteBuffer view = buf.duplicate();
+        view.limit(offset + length);
+        view.position(offset);
+        return view;
+    }
+
+    /**
+     * Serializes a list of entries directly into the mapped window of the current log file. A new window is mapped
+     * behind the end of the log if an entry does not fit into the current one.
+     * 
+     * @param entries
+     * @throws IOException
+     */
+    private void writeMapped(List<LogEntry> entries) throws IOException {
+
+        for (LogEntry le : entries) {
+
+            // leave space for the end-of-log marker behind the entry
+            int size = getSize(le) + END_OF_LOG.length;
+            if (window == null || window.remaining() < size) {
+
+                // keep the number of mapped windows bounded if entries are not
+                // synced; the oldest window is dropped rather than forced, as
+                // the entries written so far do not require durability
+                if (unsyncedWindows.size() >= MAX_UNSYNCED_WINDOWS) {
+                    unsyncedWindows.remove(0);
+                    droppedUnsyncedWindows = true;
+                }
+
+                windowOffset = logFileSize;
+                window = channel.map(MapMode.READ_WRITE, windowOffset, Math.max(mappedWindowSize, size));
+                unsyncedWindows.add(window);
+            }
+
+            try {
+                le.serialize(window, csumAlgo);
+            } finally {
+                csumAlgo.reset();
+            }
+            logFileSize = windowOffset + window.position();
+        }
+
+        // mark the end of the log, as the rest of the window may contain stale entries
+        if (window != null)
+            window.putInt(window.position(), 0);
+    }
+
+    /**
+     * Truncates the current log file behind the end of the log if memory-mapped windows have extended it. Windows
+     * are mapped with a fixed size, so that the file would otherwise keep a tail of zeros. Preallocated files are not
+     * truncated below their preallocation size.
+     * 
+     * @throws IOException
+     */
+    private void trimLogFile() throws IOException {
+        if (mappedWindowSize > 0) {
+            long size = Math.max(logFileSize, preallocationSize);
+            if (channel.size() > size)
+                channel.truncate(size);
+        }
+    }
+
+    /**
+     * Maps a sync mode to the durability it guarantees once an entry has been written.
+     * 
+     * @param mode
+     *            the sync mode
+     * @return DURABILITY_NONE, DURABILITY_DATA or DURABILITY_METADATA
+     */
+    private static int getDurabilityLevel(SyncMode mode) {
+        switch (mode) {
+        case FSYNC:
+        case SYNC_WRITE_METADATA:
+            return DURABILITY_METADATA;
+        case FDATASYNC:
+        case SYNC_WRITE:
+            return DURABILITY_DATA;
+        default:
+            return DURABILITY_NONE;
+        }
+    }
+
+    /**
+     * Checks whether the queue contains enough entries to fill a batch. Must only be called by the logger thread.
+     * 
+     * @return <code>true</code>, if a complete batch can be taken from the queue
+     */
+    private boolean isBatchComplete() {
+
+        if (maxQ > 0 && entries.size() >= maxQ)
+            return true;
+
+        return maxBatchBytes > 0 ? queuedBytes.get() >= maxBatchBytes : entries.size() >= MAX_ENTRIES_PER_BLOCK - 1;
+    }
+
+    /**
+     * Moves the next batch of entries from the queue to the given list. Must only be called by the logger thread.
+     * 
+     * @param batch
+     *            the list to add the entries to
+     */
+    private void pollBatch(List<LogEntry> batch) {
+
+        long batchBytes = 0;
+        LogEntry tmp = null;
+        while ((tmp = entries.peek()) != null) {
+
+            if (maxBatchBytes > 0) {
+                if (!batch.isEmpty() && batchBytes + getSize(tmp) > maxBatchBytes)
+                    break;
+            } else if (batch.size() >= MAX_ENTRIES_PER_BLOCK - 1)
+                break;
+
+            entries.poll();
+            batchBytes += getSize(tmp);
+            queuedBytes.addAndGet(-getSize(tmp));
+            batch.add(tmp);
+        }
+    }
+
+    /**
+     * Returns the size of a serialized log entry.
+     * 
+     * @param entry
+     *            the log entry
+     * @return the size in bytes
+     */
+    private static int getSize(LogEntry entry) {
+        return LogEntry.headerLength + entry.getPayload().remaining();
+    }
+
     /**
      * Method to generate log-file names.
      * 
@@ -609,9 +1443,67 @@ public class DiskLogger extends LifeCycleThread {
             break;
         }
         }
+        // reuse a recycled log file if possible
+        boolean reused = preallocationSize > 0 && reuseLogFile(lf);
+
         fos = new RandomAccessFile(lf, openMode);
-        fos.setLength(0);
         channel = fos.getChannel();
         fdes = fos.getFD();
+        logFileSize = 0;
+
+        if (reused) {
+            // invalidate the stale entries
+            channel.write(ByteBuffer.wrap(END_OF_LOG), 0);
+            _reusedLogFiles.incrementAndGet();
+        } else {
+            fos.setLength(0);
+            if (preallocationSize > 0)
+                preallocate();
+        }
+    }
+
+    /**
+     * Moves a file from the pool of recycled log files to the given log file.
+     * 
+     * @param logFile
+     *            the new log file
+     * @return <code>true</code>, if a recycled file was moved, <code>false</code>, if no recycled file is available
+     */
+    private boolean reuseLogFile(File logFile) {
+
+        synchronized (recycleLock) {
+
+            File[] recycled = logFile.getAbsoluteFile().getParentFile().listFiles(new FilenameFilter() {
+                public boolean accept(File dir, String name) {
+                    return name.endsWith(RECYCLED_SUFFIX);
+                }
+            });
+
+            if (recycled != null)
+                for (File f : recycled)
+                    if (f.renameTo(logFile))
+                        return true;
+
+            return false;
+        }
+    }
+
+    /**
+     * Fills the current log file with zeros up to the preallocation size and syncs it, so that the file size does not
+     * change when entries are appended.
+     * 
+     * @throws IOException
+     */
+    private void preallocate() throws IOException {
+
+        ByteBuffer zeros = ByteBuffer.allocate(1024 * 1024);
+        long pos = 0;
+        while (pos < preallocationSize) {
+            zeros.clear();
+            zeros.limit((int) Math.min(zeros.capacity(), preallocationSize - pos));
+            pos += channel.write(zeros, pos);
+        }
+
+        channel.force(true);
     }
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2026, agent
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.babudb.log;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe histogram with exponentially growing buckets. Bucket 0 counts
+ * all values &lt;= 0, bucket <code>i &gt; 0</code> counts all values in
+ * <code>[2^(i-1), 2^i)</code>.
+ *
+ * @author agent
+ */
+class Histogram {
+
+    private static final int     NUM_BUCKETS = Long.SIZE;
+
+    private final AtomicLongArray buckets     = new AtomicLongArray(NUM_BUCKETS);
+
+    /**
+     * Records a value.
+     *
+     * @param value
+     *            the value
+     */
+    public void record(long value) {
+        buckets.incrementAndGet(value <= 0 ? 0 : Long.SIZE - Long.numberOfLeadingZeros(value));
+    }
+
+    /**
+     * Returns a snapshot of the bucket counts. Trailing empty buckets are
+     * omitted.
+     *
+     * @return the bucket counts
+     */
+    public long[] getCounts() {
+
+        long[] counts = new long[NUM_BUCKETS];
+        int length = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            if (counts[i] != 0)
+                length = i + 1;
+        }
+
+        long[] result = new long[length];
+        System.arraycopy(counts, 0, result, 0, length);
+        return result;
+    }
+
+    /**
+     * Returns the total number of recorded values.
+     *
+     * @return the number of values
+     */
+    public long getCount() {
+
+        long count = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++)
+            count += buckets.get(i);
+
+        return count;
+    }
+
+}
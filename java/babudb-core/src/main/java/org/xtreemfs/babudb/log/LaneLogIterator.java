@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2026, agent
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.babudb.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.xtreemfs.babudb.lsmdb.LSN;
+
+/**
+ * An iterator that returns the log entries of multiple log lanes in the order
+ * of their LSNs. The entries of each lane are read by a separate
+ * {@link DiskLogIterator}.
+ *
+ * @author agent
+ */
+public class LaneLogIterator implements Iterator<LogEntry> {
+
+    private final DiskLogIterator[] lanes;
+
+    /**
+     * the next entry of each lane, or <code>null</code> if all entries of
+     * the lane have been returned
+     */
+    private final LogEntry[]        heads;
+
+    /**
+     * @param laneLogFiles
+     *            the log files of each lane
+     * @param from
+     *            - inclusive, if everything went fine, next() will return the
+     *            log entry identified by LSN <code>from</code>.
+     * @throws LogEntryException
+     * @throws IOException
+     */
+    public LaneLogIterator(File[][] laneLogFiles, LSN from) throws LogEntryException, IOException {
+
+        lanes = new DiskLogIterator[laneLogFiles.length];
+        heads = new LogEntry[laneLogFiles.length];
+
+        try {
+            for (int i = 0; i < lanes.length; i++) {
+                lanes[i] = new DiskLogIterator(laneLogFiles[i], from);
+                if (lanes[i].hasNext())
+                    heads[i] = lanes[i].next();
+            }
+        } catch (LogEntryException exc) {
+            destroy();
+            throw exc;
+        } catch (IOException exc) {
+            destroy();
+            throw exc;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        for (LogEntry head : heads)
+            if (head != null)
+                return true;
+        return false;
+    }
+
+    @Override
+    public LogEntry next() {
+
+        // find the lane with the smallest LSN
+        int next = -1;
+        for (int i = 0; i < heads.length; i++)
+            if (heads[i] != null && (next == -1 || heads[i].getLSN().compareTo(heads[next].getLSN()) < 0))
+                next = i;
+
+        if (next == -1)
+            throw new NoSuchElementException();
+
+        LogEntry tmp = heads[next];
+        heads[next] = lanes[next].hasNext() ? lanes[next].next() : null;
+        return tmp;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    public void destroy() throws IOException {
+        for (int i = 0; i < lanes.length; i++) {
+            if (heads[i] != null) {
+                heads[i].free();
+                heads[i] = null;
+            }
+            if (lanes[i] != null)
+                lanes[i].destroy();
+        }
+    }
+}
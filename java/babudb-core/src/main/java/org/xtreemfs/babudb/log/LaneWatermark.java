@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2026, agent
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.babudb.log;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reserves the LSNs of the entries of all log lanes, and tracks which of them
+ * have become durable. As lanes are synced independently of each other, an
+ * entry may become durable before an entry with a lower LSN in another lane.
+ * Such an entry is held back until all entries with lower LSNs are durable as
+ * well, so that a crash can never preserve an acknowledged entry but lose an
+ * earlier one.
+ * <p>
+ * Entries that do not require durability are not waited for, as they may be
+ * lost on a crash anyway.
+ * </p>
+ *
+ * @author agent
+ */
+class LaneWatermark {
+
+    /**
+     * log sequence number to assign to the next log entry
+     */
+    private final AtomicLong            nextLogSequenceNo;
+
+    /**
+     * the sequence numbers of all reserved entries that are neither durable
+     * nor failed yet
+     */
+    private final TreeSet<Long>         outstanding = new TreeSet<Long>();
+
+    /**
+     * durable entries that wait for entries with lower LSNs, by their
+     * sequence numbers
+     */
+    private final TreeMap<Long, LogEntry> durable   = new TreeMap<Long, LogEntry>();
+
+    /**
+     * @param nextLogSequenceNo
+     *            the log sequence number to assign to the next log entry
+     */
+    LaneWatermark(AtomicLong nextLogSequenceNo) {
+        this.nextLogSequenceNo = nextLogSequenceNo;
+    }
+
+    /**
+     * Reserves the next sequence number.
+     *
+     * @return the sequence number
+     */
+    synchronized long reserve() {
+        long seqNo = nextLogSequenceNo.getAndIncrement();
+        outstanding.add(seqNo);
+        return seqNo;
+    }
+
+    /**
+     * Reserves the given sequence number, if it is the next one.
+     *
+     * @param seqNo
+     *            the sequence number
+     * @return <code>true</code>, if the sequence number has been reserved,
+     *         <code>false</code>, if it is not the next one
+     */
+    synchronized boolean reserve(long seqNo) {
+        if (!nextLogSequenceNo.compareAndSet(seqNo, seqNo + 1))
+            return false;
+        outstanding.add(seqNo);
+        return true;
+    }
+
+    /**
+     * Cancels the reservation of a sequence number whose entry could not be
+     * appended. The sequence number is returned, unless a later one has
+     * already been reserved.
+     *
+     * @param seqNo
+     *            the sequence number
+     */
+    void cancel(long seqNo) {
+        List<LogEntry> ready;
+        synchronized (this) {
+            nextLogSequenceNo.compareAndSet(seqNo + 1, seqNo);
+            ready = remove(seqNo);
+        }
+        acknowledge(ready);
+    }
+
+    /**
+     * Records that an entry that has been reserved will not become durable,
+     * either because it does not require durability or because it has failed.
+     *
+     * @param entry
+     *            the entry
+     */
+    void discard(LogEntry entry) {
+        List<LogEntry> ready;
+        synchronized (this) {
+            ready = remove(entry.getLSN().getSequenceNo());
+        }
+        acknowledge(ready);
+    }
+
+    /**
+     * Records that the given entries have become durable, and acknowledges all
+     * durable entries that no longer wait for entries with lower LSNs. The
+     * entries must have been freed.
+     *
+     * @param entries
+     *            the entries
+     */
+    void synced(List<LogEntry> entries) {
+        List<LogEntry> ready;
+        synchronized (this) {
+            for (LogEntry le : entries) {
+                long seqNo = le.getLSN().getSequenceNo();
+                outstanding.remove(seqNo);
+                durable.put(seqNo, le);
+            }
+            ready = remove(null);
+        }
+        acknowledge(ready);
+    }
+
+    /**
+     * Checks whether any reserved entry is still outstanding.
+     *
+     * @return <code>true</code>, if all entries are durable or have failed
+     */
+    synchronized boolean isEmpty() {
+        return outstanding.isEmpty() && durable.isEmpty();
+    }
+
+    /**
+     * Removes a sequence number from the outstanding ones, and removes all
+     * durable entries that no longer wait for entries with lower LSNs.
+     *
+     * @param seqNo
+     *            the sequence number, or <code>null</code>
+     * @return the entries to acknowledge, in the order of their LSNs
+     */
+    private List<LogEntry> remove(Long seqNo) {
+
+        if (seqNo != null)
+            outstanding.remove(seqNo);
+
+        List<LogEntry> ready = new ArrayList<LogEntry>();
+        Iterator<Map.Entry<Long, LogEntry>> it = durable.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, LogEntry> next = it.next();
+            if (!outstanding.isEmpty() && outstanding.first() < next.getKey())
+                break;
+            ready.add(next.getValue());
+            it.remove();
+        }
+
+        return ready;
+    }
+
+    /**
+     * Acknowledges entries as durable. Must not be called while holding the
+     * lock of the watermark, as listeners may take arbitrary locks.
+     */
+    private static void acknowledge(List<LogEntry> entries) {
+        for (LogEntry le : entries)
+            le.getListener().synced(le.getLSN());
+    }
+}
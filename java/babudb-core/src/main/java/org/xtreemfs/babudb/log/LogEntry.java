@@ -8,8 +8,10 @@
 
 package org.xtreemfs.babudb.log;
 
+import java.nio.ByteBuffer;
 import java.util.zip.Checksum;
 
+import org.xtreemfs.babudb.log.DiskLogger.SyncMode;
 import org.xtreemfs.babudb.lsmdb.LSMDBRequest;
 import org.xtreemfs.babudb.lsmdb.LSN;
 import org.xtreemfs.foundation.buffer.BufferPool;
@@ -24,13 +26,20 @@ import org.xtreemfs.foundation.logging.Logging.Category;
 public class LogEntry {
     
     /**
-     * length of the entry's header (excluding the length field itself)
+     * length of the entry's header and trailer, i.e. of all fields of a
+     * serialized entry except for the payload
      */
     protected static final int  headerLength        = Integer.SIZE / 8 * 4 + 
                                                   Long.SIZE / 8 + Byte.SIZE / 8;
     
     public static final boolean USE_CHECKSUMS       = true;
     
+    /**
+     * max. number of bytes copied at once to calculate the checksum of a
+     * buffer without an accessible backing array
+     */
+    private static final int    CHECKSUM_CHUNK_SIZE = 8 * 1024;
+    
     public static final byte    PAYLOAD_TYPE_INSERT = 0;
     
     public static final byte    PAYLOAD_TYPE_SNAP   = 1;
@@ -55,6 +64,12 @@ public class LogEntry {
     
     protected int               checksum;
     
+    /**
+     * true, if the checksum has been calculated for the current LSN of the
+     * entry, so that it does not have to be calculated again
+     */
+    private boolean             checksumValid;
+    
     protected ReusableBuffer    payload;
     
     protected SyncListener      listener;
@@ -63,6 +78,18 @@ public class LogEntry {
     
     protected byte              payloadType;
     
+    /**
+     * durability requested for the entry; if null, the logger's sync mode
+     * applies
+     */
+    private SyncMode            durability;
+    
+    /**
+     * key that determines the log lane the entry is written to; entries with
+     * the same key are always written to the same lane
+     */
+    private int                 laneKey;
+    
     private LogEntry() {
     }
         
@@ -77,40 +104,124 @@ public class LogEntry {
     public void assignId(int viewId, long logSequenceNo) {
         this.viewId = viewId;
         this.logSequenceNo = logSequenceNo;
+        this.checksumValid = false;
     }
     
+    /**
+     * Serializes the entry into a new buffer from the buffer pool.
+     * 
+     * @param csumAlgo
+     *            the checksum algorithm
+     * @return the buffer containing the serialized entry
+     */
     public ReusableBuffer serialize(Checksum csumAlgo) {
+        
+        ReusableBuffer buf = BufferPool.allocate(getSerializedSize());
+        serialize(buf.getBuffer(), csumAlgo);
+        buf.flip();
+        
+        return buf;
+    }
+    
+    /**
+     * Serializes the entry directly into the given buffer, starting at its
+     * current position. The position of the buffer is advanced behind the
+     * entry.
+     * 
+     * @param buf
+     *            the buffer, which must have enough space for the entry
+     * @param csumAlgo
+     *            the checksum algorithm
+     */
+    public void serialize(ByteBuffer buf, Checksum csumAlgo) {
+        serializeHeader(buf, csumAlgo);
+        buf.put(payload.getBuffer().duplicate());
+        serializeTrailer(buf);
+    }
+    
+    /**
+     * Writes the header of the serialized entry, i.e. all fields preceding the
+     * payload, to the given buffer, starting at its current position. This
+     * allows the payload to be written from its own buffer rather than being
+     * copied, as the header and trailer are the only parts that have to be
+     * generated.
+     * 
+     * The checksum is only calculated when the entry is serialized for the
+     * first time with its current LSN, and it is reused afterwards. Entries
+     * read from a log file keep the checksum they were written with.
+     * 
+     * @param buf
+     *            the buffer, which must have enough space for the header
+     * @param csumAlgo
+     *            the checksum algorithm, which has to be reset by the caller
+     */
+    public void serializeHeader(ByteBuffer buf, Checksum csumAlgo) {
         assert (viewId > 0);
         assert (logSequenceNo > 0);
         
-        final int bufSize = headerLength + payload.remaining();
-        ReusableBuffer buf = BufferPool.allocate(bufSize);
+        final int bufSize = getSerializedSize();
+        final int startPos = buf.position();
+        
+        // the header, with a checksum of 0
         buf.putInt(bufSize);
-        buf.putInt(checksum);
+        buf.putInt(0);
         buf.putInt(viewId);
         buf.putLong(logSequenceNo);
         buf.put(payloadType);
-        buf.put(payload);
-        payload.flip(); // otherwise payload is not reusable
-        buf.putInt(bufSize);
-        buf.flip();
         
-        if (USE_CHECKSUMS) {
-            // reset the old checksum to 0, before calculating a new one
-            buf.position(Integer.SIZE / 8);
-            buf.putInt(0);
-            buf.position(0);
+        if (USE_CHECKSUMS && !checksumValid) {
             
-            csumAlgo.update(buf.array(), 0, bufSize);
-            int cPos = buf.position();
+            // calculate the checksum from the parts of the entry, as the
+            // header, payload and trailer are held by different buffers
+            update(csumAlgo, buf, startPos, buf.position() - startPos);
+            ByteBuffer data = payload.getBuffer();
+            update(csumAlgo, data, data.position(), data.remaining());
+            for (int shift = Integer.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE)
+                csumAlgo.update(bufSize >>> shift);
             
-            // write the checksum to the buffer
-            buf.position(Integer.SIZE / 8);
-            buf.putInt((int) csumAlgo.getValue());
-            buf.position(cPos);
+            checksum = (int) csumAlgo.getValue();
+            checksumValid = true;
+        }
+        buf.putInt(startPos + Integer.SIZE / 8, checksum);
+    }
+    
+    /**
+     * Writes the trailer of the serialized entry, i.e. all fields following
+     * the payload, to the given buffer, starting at its current position.
+     * 
+     * @param buf
+     *            the buffer
+     */
+    public void serializeTrailer(ByteBuffer buf) {
+        buf.putInt(getSerializedSize());
+    }
+    
+    /**
+     * @return the size of the serialized entry in bytes
+     */
+    public int getSerializedSize() {
+        return headerLength + payload.remaining();
+    }
+    
+    /**
+     * Updates the checksum with a range of the given buffer, avoiding a copy
+     * if the backing array of the buffer is accessible. Otherwise, the range
+     * is copied in chunks of at most CHECKSUM_CHUNK_SIZE bytes.
+     */
+    private static void update(Checksum csumAlgo, ByteBuffer buf, int offset, int length) {
+        if (buf.hasArray()) {
+            csumAlgo.update(buf.array(), buf.arrayOffset() + offset, length);
+        } else {
+            byte[] bytes = new byte[Math.min(length, CHECKSUM_CHUNK_SIZE)];
+            ByteBuffer tmp = buf.duplicate();
+            tmp.position(offset);
+            tmp.limit(offset + length);
+            while (tmp.hasRemaining()) {
+                int len = Math.min(bytes.length, tmp.remaining());
+                tmp.get(bytes, 0, len);
+                csumAlgo.update(bytes, 0, len);
+            }
         }
-        
-        return buf;
     }
     
     public void setListener(SyncListener listener) {
@@ -193,7 +304,12 @@ public class LogEntry {
             data.putInt(0);
             data.position(startPos);
             
-            csumAlgo.update(data.array(), startPos, bufSize);
+            // avoid copying the buffer, if its backing array is accessible
+            ByteBuffer buf = data.getBuffer();
+            if (buf.hasArray())
+                csumAlgo.update(buf.array(), buf.arrayOffset() + startPos, bufSize);
+            else
+                csumAlgo.update(data.array(), startPos, bufSize);
             int csum = (int) csumAlgo.getValue();
             
             // write back the checksum to the buffer
@@ -205,6 +321,7 @@ public class LogEntry {
                     "Invalid Checksum. Checksum in log entry and calculated " +
                     "checksum do not match.");
             }
+            e.checksumValid = true;
         }
         
         data.position(startPos);
@@ -229,6 +346,22 @@ public class LogEntry {
         return payloadType;
     }
     
+    public SyncMode getDurability() {
+        return durability;
+    }
+    
+    public void setDurability(SyncMode durability) {
+        this.durability = durability;
+    }
+    
+    public int getLaneKey() {
+        return laneKey;
+    }
+    
+    public void setLaneKey(int laneKey) {
+        this.laneKey = laneKey;
+    }
+    
     /* (non-Javadoc)
      * @see java.lang.Object#clone()
      */
@@ -237,7 +370,10 @@ public class LogEntry {
         LogEntry result = new LogEntry(payload.createViewBuffer(), listener, payloadType);
         result.assignId(viewId, logSequenceNo);
         result.attachment = attachment;
+        result.durability = durability;
+        result.laneKey = laneKey;
         result.checksum = checksum;
+        result.checksumValid = checksumValid;
         return result;
     }
     
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2026, agent
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.babudb.log;
+
+import org.xtreemfs.babudb.log.DiskLogger.SyncMode;
+
+/**
+ * The options of a disk logger, which determine how log entries are batched,
+ * written and synced. Options that are not set keep their defaults, which
+ * disable all optional features.
+ *
+ * @author agent
+ *
+ */
+public class LogOptions {
+
+    private SyncMode syncMode           = SyncMode.FSYNC;
+
+    private int      pseudoSyncWait;
+
+    private int      maxQueueLength;
+
+    private int      maxBatchBytes;
+
+    private int      maxBatchWaitMicros;
+
+    private long     preallocationSize;
+
+    private String[] laneDirs           = new String[0];
+
+    private int      mappedWindowSize;
+
+    /**
+     * Sets the way log entries are synced to disk.
+     *
+     * @param syncMode
+     *            the sync mode
+     * @return a reference to this object
+     */
+    public LogOptions setSyncMode(SyncMode syncMode) {
+        this.syncMode = syncMode;
+        return this;
+    }
+
+    /**
+     * Sets the time to wait for further entries before a batch of entries is
+     * synced.
+     *
+     * @param pseudoSyncWait
+     *            the time in milliseconds; 0 disables pseudo-sync mode
+     * @return a reference to this object
+     */
+    public LogOptions setPseudoSyncWait(int pseudoSyncWait) {
+        this.pseudoSyncWait = pseudoSyncWait;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of entries in the queue of each log lane.
+     *
+     * @param maxQueueLength
+     *            the maximum number of entries; 0 means no limit
+     * @return a reference to this object
+     */
+    public LogOptions setMaxQueueLength(int maxQueueLength) {
+        this.maxQueueLength = maxQueueLength;
+        return this;
+    }
+
+    /**
+     * Enables group commits with batches of entries that are limited by their
+     * total size.
+     *
+     * @param maxBatchBytes
+     *            the maximum size of a batch of entries written with a single
+     *            sync in bytes; 0 limits batches to
+     *            {@link DiskLogger#MAX_ENTRIES_PER_BLOCK} entries
+     * @param maxBatchWaitMicros
+     *            the maximum time in microseconds to wait for further entries
+     *            before a batch is written
+     * @return a reference to this object
+     */
+    public LogOptions setBatching(int maxBatchBytes, int maxBatchWaitMicros) {
+        this.maxBatchBytes = maxBatchBytes;
+        this.maxBatchWaitMicros = maxBatchWaitMicros;
+        return this;
+    }
+
+    /**
+     * Sets the size up to which log files are preallocated.
+     *
+     * @param preallocationSize
+     *            the size in bytes; 0 disables preallocation and recycling of
+     *            log files
+     * @return a reference to this object
+     */
+    public LogOptions setPreallocationSize(long preallocationSize) {
+        this.preallocationSize = preallocationSize;
+        return this;
+    }
+
+    /**
+     * Sets the directories of additional log lanes.
+     *
+     * @param laneDirs
+     *            the directories of the log lanes in addition to the first
+     *            lane in the log directory; an empty array disables log lanes
+     * @return a reference to this object
+     */
+    public LogOptions setLaneDirs(String[] laneDirs) {
+        this.laneDirs = laneDirs;
+        return this;
+    }
+
+    /**
+     * Sets the size of the windows of log files that are mapped into memory
+     * to write entries.
+     *
+     * @param mappedWindowSize
+     *            the size in bytes; 0 writes entries with system calls
+     * @return a reference to this object
+     */
+    public LogOptions setMappedWindowSize(int mappedWindowSize) {
+        this.mappedWindowSize = mappedWindowSize;
+        return this;
+    }
+
+    public SyncMode getSyncMode() {
+        return syncMode;
+    }
+
+    public int getPseudoSyncWait() {
+        return pseudoSyncWait;
+    }
+
+    public int getMaxQueueLength() {
+        return maxQueueLength;
+    }
+
+    public int getMaxBatchBytes() {
+        return maxBatchBytes;
+    }
+
+    public int getMaxBatchWaitMicros() {
+        return maxBatchWaitMicros;
+    }
+
+    public long getPreallocationSize() {
+        return preallocationSize;
+    }
+
+    public String[] getLaneDirs() {
+        return laneDirs;
+    }
+
+    public int getMappedWindowSize() {
+        return mappedWindowSize;
+    }
+
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) 2026, agent
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+package org.xtreemfs.babudb.lsmdb;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded, lock-free multi-producer/single-consumer queue based on a ring
+ * buffer. Producers that find the queue full are parked until the consumer
+ * has removed an element; the consumer is parked while the queue is empty.
+ * <p>
+ * Each slot of the ring buffer carries a sequence number that indicates
+ * whether the slot may be written by a producer or read by the consumer, so
+ * that producers only have to agree on the next slot by means of a single
+ * CAS operation. All methods that remove elements must only be invoked by
+ * the consumer thread.
+ * </p>
+ *
+ * @author agent
+ *
+ * @param <E>
+ *            the type of the elements
+ */
+public class BoundedMPSCQueue<E> {
+
+    /**
+     * the capacity of queues without a size limit
+     */
+    public static final int                           DEFAULT_CAPACITY = 1 << 16;
+
+    /**
+     * the number of attempts to append an element to a full queue before the
+     * producer is parked
+     */
+    private static final int                          MAX_SPINS        = 4;
+
+    private final AtomicReferenceArray<E>             buffer;
+
+    private final AtomicLongArray                     sequences;
+
+    private final int                                 mask;
+
+    private final int                                 limit;
+
+    /**
+     * position of the next slot to write
+     */
+    private final AtomicLong                          tail             = new AtomicLong();
+
+    /**
+     * position of the next slot to read; only modified by the consumer
+     */
+    private volatile long                             head;
+
+    /**
+     * the consumer thread, if parked
+     */
+    private final AtomicReference<Thread>             parkedConsumer   = new AtomicReference<Thread>();
+
+    /**
+     * producers waiting for free space
+     */
+    private final ConcurrentLinkedQueue<Thread>       parkedProducers  = new ConcurrentLinkedQueue<Thread>();
+
+    /**
+     * number of producers currently inside <code>put()</code>
+     */
+    private final AtomicInteger                       activeProducers  = new AtomicInteger();
+
+    private volatile boolean                          closed;
+
+    /**
+     * Creates a new queue.
+     *
+     * @param maxSize
+     *            the maximum number of elements, or 0 for a queue of
+     *            {@link #DEFAULT_CAPACITY}
+     */
+    public BoundedMPSCQueue(int maxSize) {
+
+        this.limit = maxSize > 0 ? maxSize : DEFAULT_CAPACITY;
+
+        int capacity = Integer.highestOneBit(limit);
+        if (capacity < limit)
+            capacity <<= 1;
+
+        this.buffer = new AtomicReferenceArray<E>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++)
+            sequences.set(i, i);
+    }
+
+    /**
+     * Appends an element to the queue. If the queue is full, the calling
+     * thread is parked until space becomes available.
+     *
+     * @param element
+     *            the element
+     * @return <code>true</code>, if the element was appended,
+     *         <code>false</code>, if the queue has been closed
+     * @throws InterruptedException
+     *             if the calling thread was interrupted while waiting for
+     *             space
+     */
+    public boolean put(E element) throws InterruptedException {
+
+        assert (element != null);
+
+        activeProducers.incrementAndGet();
+        try {
+
+            int spins = 0;
+
+            for (;;) {
+
+                if (closed)
+                    return false;
+
+                if (offer(element))
+                    break;
+
+                // give the consumer a chance to remove elements before
+                // parking
+                if (spins++ < MAX_SPINS) {
+                    Thread.yield();
+                    continue;
+                }
+
+                // register as waiting and re-check before parking, so that
+                // a consumer that has freed a slot in between will see this
+                // thread
+                Thread current = Thread.currentThread();
+                parkedProducers.add(current);
+                if (!closed && isFull())
+                    LockSupport.park(this);
+                parkedProducers.remove(current);
+
+                if (Thread.interrupted())
+                    throw new InterruptedException();
+            }
+
+        } finally {
+            activeProducers.decrementAndGet();
+        }
+
+        // wake up the consumer if necessary; only the producer that removes
+        // the parked consumer thread will unpark it
+        wakeUpConsumer();
+
+        return true;
+    }
+
+    /**
+     * Removes the first element from the queue.
+     *
+     * @return the first element, or <code>null</code>, if the queue is empty
+     */
+    public E poll() {
+
+        long pos = head;
+        int index = (int) pos & mask;
+        if (sequences.get(index) != pos + 1)
+            return null;
+
+        E element = buffer.get(index);
+        buffer.set(index, null);
+        sequences.set(index, pos + mask + 1);
+        head = pos + 1;
+
+        // wake up the producers waiting for space once the queue has been
+        // drained to half of its size, so that producers are not woken up
+        // one at a time by each removed element
+        if (!parkedProducers.isEmpty() && pos + 1 - tail.get() + (limit >> 1) >= 0) {
+            Thread producer;
+            while ((producer = parkedProducers.poll()) != null)
+                LockSupport.unpark(producer);
+        }
+
+        return element;
+    }
+
+    /**
+     * Returns the first element without removing it.
+     *
+     * @return the first element, or <code>null</code>, if the queue is empty
+     */
+    public E peek() {
+
+        long pos = head;
+        int index = (int) pos & mask;
+        return sequences.get(index) != pos + 1 ? null : buffer.get(index);
+    }
+
+    /**
+     * Moves all elements from the queue to the given collection.
+     *
+     * @param c
+     *            the collection
+     * @return the number of elements moved
+     */
+    public int drainTo(Collection<? super E> c) {
+
+        int count = 0;
+        E element;
+        while ((element = poll()) != null) {
+            c.add(element);
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Parks the consumer thread until an element is appended to the queue,
+     * the queue is closed, or the given time has elapsed. The method may
+     * return spuriously.
+     *
+     * @param timeoutNanos
+     *            the max. time to wait in nanoseconds, or 0 to wait without
+     *            a timeout
+     */
+    public void await(long timeoutNanos) {
+
+        long tailBefore = tail.get();
+        parkedConsumer.set(Thread.currentThread());
+
+        // re-check after publishing the consumer thread, so that no element
+        // appended in between will be missed
+        if (!closed && tail.get() == tailBefore && isEmpty()) {
+            if (timeoutNanos > 0)
+                LockSupport.parkNanos(this, timeoutNanos);
+            else
+                LockSupport.park(this);
+        }
+
+        parkedConsumer.set(null);
+    }
+
+    /**
+     * Closes the queue. Subsequent calls of <code>put()</code> fail, and
+     * parked threads are woken up. When the method returns, no producer will
+     * append any further elements.
+     */
+    public void close() {
+
+        closed = true;
+        wakeUpConsumer();
+
+        // wait for all producers to leave
+        while (activeProducers.get() > 0) {
+            for (Thread producer : parkedProducers)
+                LockSupport.unpark(producer);
+            Thread.yield();
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public boolean isEmpty() {
+        return peek() == null;
+    }
+
+    public int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    private boolean isFull() {
+        return tail.get() - head >= limit;
+    }
+
+    private void wakeUpConsumer() {
+
+        if (parkedConsumer.get() == null)
+            return;
+
+        Thread consumer = parkedConsumer.getAndSet(null);
+        if (consumer != null)
+            LockSupport.unpark(consumer);
+    }
+
+    /**
+     * Appends an element if space is available.
+     *
+     * @param element
+     *            the element
+     * @return <code>true</code>, if the element was appended
+     */
+    private boolean offer(E element) {
+
+        long pos = tail.get();
+        for (;;) {
+
+            if (pos - head >= limit)
+                return false;
+
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    buffer.set(index, element);
+                    sequences.set(index, pos + 1);
+                    return true;
+                }
+            } else if (diff < 0)
+                return false;
+
+            pos = tail.get();
+        }
+    }
+
+}
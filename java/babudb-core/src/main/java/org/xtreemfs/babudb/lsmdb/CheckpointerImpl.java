@@ -12,12 +12,23 @@ import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.nio.channels.ClosedByInterruptException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -61,9 +72,37 @@ public class CheckpointerImpl extends CheckpointerInternal {
         
     }
     
+    /**
+     * Creates named daemon threads for the thread pools of the checkpointer.
+     */
+    private final static class DaemonThreadFactory implements ThreadFactory {
+        
+        private final String        name;
+        
+        private final AtomicInteger count = new AtomicInteger();
+        
+        DaemonThreadFactory(String name) {
+            this.name = name;
+        }
+        
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, name + "#" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+    
     private static final String                RUNTIME_STATE_CPCOUNT        = "checkpointer.cpCount";
     private static final String                RUNTIME_STATE_LASTCP         = "checkpointer.lastCpTimestampMillis";
     private static final String                RUNTIME_STATE_LASTCPDURATION = "checkpointer.lastCpDurationMillis";
+    private static final String                RUNTIME_STATE_MEMCPCOUNT     = "checkpointer.memtableCpCount";
+    private static final String                RUNTIME_STATE_DBCPDURATIONS  = "checkpointer.lastCpDbDurationsMillis";
+    
+    /**
+     * the interval in ms at which the size of the in-memory trees is checked,
+     * if a memtable budget is set
+     */
+    private static final long                  MEMORY_CHECK_INTERVAL        = 1000;
     
     private volatile boolean                   quit;
     
@@ -79,8 +118,31 @@ public class CheckpointerImpl extends CheckpointerInternal {
      */
     private long                               maxLogLength;
     
+    /**
+     * Maximum estimated size of all in-memory trees in bytes; 0 if unlimited.
+     */
+    private long                               maxMemtableSize;
+    
     private final BabuDBInternal               dbs;
     
+    /**
+     * the threads that concurrently write indices when a checkpoint is
+     * created
+     */
+    private final ExecutorService              writers;
+    
+    /**
+     * a single thread that merges the delta runs of databases in the
+     * background, so that checkpoints do not have to wait for merges
+     */
+    private final ExecutorService              compactor;
+    
+    /**
+     * the names of all databases for which a merge has been scheduled but not
+     * yet started
+     */
+    private final Set<String>                  pendingCompactions           = new HashSet<String>();
+    
     /**
      * a queue containing all snapshot materialization requests that should be
      * executed before the next checkpoint is made
@@ -110,6 +172,10 @@ public class CheckpointerImpl extends CheckpointerInternal {
     
     private AtomicLong                         _lastCheckpointDuration      = new AtomicLong();
     
+    private AtomicInteger                      _memtableCheckpointCount     = new AtomicInteger();
+    
+    private volatile Map<String, Long>         _lastCheckpointDbDurations   = Collections.emptyMap();
+    
     /**
      * Creates a new database checkpointer
      * 
@@ -119,6 +185,9 @@ public class CheckpointerImpl extends CheckpointerInternal {
     public CheckpointerImpl(BabuDBInternal master) {
         setLifeCycleListener(master);
         this.dbs = master;
+        this.writers = Executors.newFixedThreadPool(master.getConfig().getCheckpointThreads(),
+            new DaemonThreadFactory("ChkptWriter"));
+        this.compactor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("Compactor"));
     }
     
     @Override
@@ -127,6 +196,7 @@ public class CheckpointerImpl extends CheckpointerInternal {
         this.logger = logger;
         this.checkInterval = 1000L * checkInterval;
         this.maxLogLength = maxLogLength;
+        this.maxMemtableSize = dbs.getConfig().getMaxMemtableSize();
         
         if (!suspended.compareAndSet(true, false) && !quit) {
             start();
@@ -169,13 +239,12 @@ public class CheckpointerImpl extends CheckpointerInternal {
     @Override
     public LSN checkpoint(boolean incViewId) throws BabuDBException {
         
-        synchronized (checkpointComplete) {
-            checkpointComplete.set(false);
-        }
-        
         // notify the checkpointing thread to immediately process all requests
         // in the processing queue
         synchronized (this) {
+            synchronized (checkpointComplete) {
+                checkpointComplete.set(false);
+            }
             incrementViewId = incViewId;
             forceCheckpoint = true;
             notify();
@@ -278,22 +347,22 @@ public class CheckpointerImpl extends CheckpointerInternal {
                     logger.unlock();
             }
             
-            i = 0;
-            for (DatabaseInternal db : databases) {
-                db.proceedWriteSnapshot(lastWrittenLSN.getViewId(), lastWrittenLSN.getSequenceNo(), snapIds[i++]);
-                db.proceedCleanupSnapshot(lastWrittenLSN.getViewId(), lastWrittenLSN.getSequenceNo());
-            }
+            writeSnapshots(databases, snapIds);
             
-            // delete all logfile with LSN <= lastWrittenLSN
-            File f = new File(dbs.getConfig().getDbLogDir());
-            String[] logs = f.list(new FilenameFilter() {
+            // delete (or recycle) all logfile with LSN <= lastWrittenLSN in
+            // the directories of all log lanes
+            Pattern p = Pattern.compile("(\\d+)\\.(\\d+)\\.dbl");
+            for (String logDir : logger.getLogDirectories()) {
+                File f = new File(logDir);
+                String[] logs = f.list(new FilenameFilter() {
+                    
+                    public boolean accept(File dir, String name) {
+                        return name.endsWith(".dbl");
+                    }
+                });
+                if (logs == null)
+                    continue;
                 
-                public boolean accept(File dir, String name) {
-                    return name.endsWith(".dbl");
-                }
-            });
-            if (logs != null) {
-                Pattern p = Pattern.compile("(\\d+)\\.(\\d+)\\.dbl");
                 for (String log : logs) {
                     Matcher m = p.matcher(log);
                     m.matches();
@@ -304,9 +373,9 @@ public class CheckpointerImpl extends CheckpointerInternal {
                     LSN logLSN = new LSN(viewId, seqNo);
                     if (logLSN.compareTo(lastWrittenLSN) <= 0) {
                         Logging.logMessage(Logging.LEVEL_DEBUG, Category.babudb, this,
-                                "deleting old db log file: " + log);
-                        f = new File(dbs.getConfig().getDbLogDir() + log);
-                        if (!f.delete())
+                                "deleting old db log file: " + logDir + log);
+                        f = new File(logDir + log);
+                        if (!logger.recycleLogFile(f))
                             Logging.logMessage(Logging.LEVEL_WARN, Category.babudb, this,
                                     "could not delete log file: %s", f.getAbsolutePath());
                     }
@@ -353,10 +422,144 @@ public class CheckpointerImpl extends CheckpointerInternal {
         }
     }
     
+    /**
+     * Writes the snapshots of all databases to disk and links the databases
+     * to them. Each index is written by a task of the writer thread pool. A
+     * database is linked to its new snapshot as soon as all of its indices
+     * have been written; if an index cannot be written, its database remains
+     * linked to its previous snapshot.
+     * 
+     * @param databases
+     *            the databases
+     * @param snapIds
+     *            the snapshot IDs of all indices of each database
+     * @throws BabuDBException
+     *             if a snapshot could not be written or linked
+     * @throws InterruptedException
+     *             if the checkpointer was interrupted
+     */
+    private void writeSnapshots(Collection<DatabaseInternal> databases, int[][] snapIds) throws BabuDBException,
+        InterruptedException {
+        
+        final int viewId = lastWrittenLSN.getViewId();
+        final long sequenceNo = lastWrittenLSN.getSequenceNo();
+        
+        // submit one task per index
+        List<List<Future<Long>>> tasks = new ArrayList<List<Future<Long>>>(databases.size());
+        try {
+            
+            int i = 0;
+            for (final DatabaseInternal db : databases) {
+                
+                final int[] ids = snapIds[i++];
+                List<Future<Long>> dbTasks = new ArrayList<Future<Long>>(ids.length);
+                for (int index = 0; index < ids.length; index++) {
+                    
+                    final int ix = index;
+                    dbTasks.add(writers.submit(new Callable<Long>() {
+                        public Long call() throws Exception {
+                            long start = System.currentTimeMillis();
+                            db.proceedWriteSnapshot(viewId, sequenceNo, ids, ix);
+                            return System.currentTimeMillis() - start;
+                        }
+                    }));
+                }
+                tasks.add(dbTasks);
+            }
+            
+            // link each database once all of its indices have been written
+            Map<String, Long> durations = new TreeMap<String, Long>();
+            BabuDBException failure = null;
+            i = 0;
+            for (DatabaseInternal db : databases) {
+                
+                long duration = 0;
+                BabuDBException dbFailure = null;
+                for (Future<Long> task : tasks.get(i)) {
+                    try {
+                        duration += task.get();
+                    } catch (ExecutionException exc) {
+                        if (dbFailure == null)
+                            dbFailure = exc.getCause() instanceof BabuDBException ? (BabuDBException) exc
+                                    .getCause() : new BabuDBException(ErrorCode.INTERNAL_ERROR,
+                                "cannot write snapshot: " + exc.getCause(), exc.getCause());
+                    }
+                }
+                i++;
+                
+                if (dbFailure != null) {
+                    Logging.logMessage(Logging.LEVEL_ERROR, Category.babudb, this,
+                            "could not write snapshot of database %s: %s", db.getName(), dbFailure.getMessage());
+                    if (failure == null)
+                        failure = dbFailure;
+                    continue;
+                }
+                
+                long start = System.currentTimeMillis();
+                db.proceedCleanupSnapshot(viewId, sequenceNo);
+                duration += System.currentTimeMillis() - start;
+                
+                scheduleCompaction(db.getName());
+                
+                durations.put(db.getName(), duration);
+                Logging.logMessage(Logging.LEVEL_INFO, Category.babudb, this,
+                        "spent %d ms on writing and linking the checkpoint of database %s", duration, db.getName());
+            }
+            
+            _lastCheckpointDbDurations = Collections.unmodifiableMap(durations);
+            
+            if (failure != null)
+                throw failure;
+            
+        } finally {
+            // interrupt any writers if the checkpoint has been aborted
+            for (List<Future<Long>> dbTasks : tasks)
+                for (Future<Long> task : dbTasks)
+                    task.cancel(true);
+        }
+    }
+    
+    /**
+     * Schedules a merge of the delta runs of a database, unless a merge of the
+     * database has been scheduled already.
+     * 
+     * @param dbName
+     *            the name of the database
+     */
+    private void scheduleCompaction(final String dbName) {
+        
+        synchronized (pendingCompactions) {
+            if (!pendingCompactions.add(dbName))
+                return;
+        }
+        
+        compactor.execute(new Runnable() {
+            public void run() {
+                
+                synchronized (pendingCompactions) {
+                    pendingCompactions.remove(dbName);
+                }
+                
+                try {
+                    dbs.getDatabaseManager().getDatabase(dbName).getLSMDB().compactRuns();
+                } catch (BabuDBException exc) {
+                    // the database has been deleted in the meantime
+                    Logging.logMessage(Logging.LEVEL_DEBUG, Category.babudb, CheckpointerImpl.this,
+                            "skipping merge of database %s: %s", dbName, exc.getMessage());
+                }
+            }
+        });
+    }
+    
     @Override
     public synchronized void shutdown() {
         quit = true;
         interrupt();
+        
+        writers.shutdownNow();
+        
+        // any ongoing merge is aborted when the databases are shut down
+        compactor.shutdown();
     }
     
     public void run() {
@@ -368,7 +571,7 @@ public class CheckpointerImpl extends CheckpointerInternal {
             try {
                 synchronized (this) {
                     if (!forceCheckpoint) {
-                        wait(checkInterval);
+                        wait(maxMemtableSize > 0 ? Math.min(checkInterval, MEMORY_CHECK_INTERVAL) : checkInterval);
                     }
                     manualCheckpoint = forceCheckpoint;
                     forceCheckpoint = false;
@@ -389,13 +592,14 @@ public class CheckpointerImpl extends CheckpointerInternal {
                 }
                 
                 final long lfsize = logger.getLogFileSize();
-                if (manualCheckpoint || lfsize > maxLogLength) {
+                final boolean memtableFull = maxMemtableSize > 0 && memtableBudgetExceeded();
+                if (manualCheckpoint || lfsize > maxLogLength || memtableFull) {
                     
-                    if (!manualCheckpoint) {
+                    if (!manualCheckpoint && lfsize > maxLogLength) {
                         Logging.logMessage(Logging.LEVEL_INFO, Category.babudb, this,
                                 "database operation log has exceeded threshold " + "size of " + maxLogLength + " ("
                                         + lfsize + ")");
-                    } else {
+                    } else if (manualCheckpoint) {
                         Logging.logMessage(Logging.LEVEL_INFO, Category.babudb, this, "triggered manual checkpoint");
                     }
                     
@@ -409,6 +613,8 @@ public class CheckpointerImpl extends CheckpointerInternal {
                             _checkpointCount.incrementAndGet();
                             _lastCheckpoint.set(System.currentTimeMillis());
                             _lastCheckpointDuration.set(System.currentTimeMillis() - start);
+                            if (!manualCheckpoint && lfsize <= maxLogLength)
+                                _memtableCheckpointCount.incrementAndGet();
                         }
                     }
                 }
@@ -427,9 +633,16 @@ public class CheckpointerImpl extends CheckpointerInternal {
                     Logging.logMessage(Logging.LEVEL_ERROR, Category.babudb, this, OutputUtils.stackTraceToString(ex));
                 }
             } finally {
-                synchronized (checkpointComplete) {
-                    checkpointComplete.set(true);
-                    checkpointComplete.notify();
+                // only signal completion if no checkpoint has been requested
+                // in the meantime, as the request would otherwise be
+                // considered complete before it has been processed
+                synchronized (this) {
+                    if (!forceCheckpoint) {
+                        synchronized (checkpointComplete) {
+                            checkpointComplete.set(true);
+                            checkpointComplete.notifyAll();
+                        }
+                    }
                 }
             }
         }
@@ -438,6 +651,42 @@ public class CheckpointerImpl extends CheckpointerInternal {
         notifyStopped();
     }
     
+    /**
+     * Checks whether the estimated size of the in-memory trees of all indices
+     * exceeds the memtable budget. Since in-memory trees can only be discarded
+     * once the log has been truncated, which requires all indices to be
+     * written up to the same LSN, the budget is enforced by means of a
+     * checkpoint of all databases. The largest in-memory tree is logged.
+     * 
+     * @return <code>true</code>, if the budget is exceeded,
+     *         <code>false</code>, otherwise
+     */
+    private boolean memtableBudgetExceeded() {
+        
+        long total = 0;
+        long largest = -1;
+        String largestIndex = null;
+        for (DatabaseInternal db : dbs.getDatabaseManager().getDatabaseList()) {
+            LSMDatabase lsmDB = db.getLSMDB();
+            for (int i = 0; i < lsmDB.getIndexCount(); i++) {
+                long size = lsmDB.getIndex(i).getInMemorySize();
+                total += size;
+                if (size > largest) {
+                    largest = size;
+                    largestIndex = lsmDB.getDatabaseName() + "." + i;
+                }
+            }
+        }
+        
+        if (total <= maxMemtableSize)
+            return false;
+        
+        Logging.logMessage(Logging.LEVEL_INFO, Category.babudb, this,
+                "in-memory trees have exceeded budget of " + maxMemtableSize + " (" + total + "), largest index: "
+                        + largestIndex + " (" + largest + ")");
+        return true;
+    }
+    
     /*
      * (non-Javadoc)
      * 
@@ -462,6 +711,10 @@ public class CheckpointerImpl extends CheckpointerInternal {
             return _lastCheckpoint.get();
         if (RUNTIME_STATE_LASTCPDURATION.equals(property))
             return _lastCheckpointDuration.get();
+        if (RUNTIME_STATE_MEMCPCOUNT.equals(property))
+            return _memtableCheckpointCount.get();
+        if (RUNTIME_STATE_DBCPDURATIONS.equals(property))
+            return _lastCheckpointDbDurations;
         
         return null;
     }
@@ -472,6 +725,8 @@ public class CheckpointerImpl extends CheckpointerInternal {
         map.put(RUNTIME_STATE_CPCOUNT, _checkpointCount.get());
         map.put(RUNTIME_STATE_LASTCP, _lastCheckpoint.get());
         map.put(RUNTIME_STATE_LASTCPDURATION, _lastCheckpointDuration.get());
+        map.put(RUNTIME_STATE_MEMCPCOUNT, _memtableCheckpointCount.get());
+        map.put(RUNTIME_STATE_DBCPDURATIONS, _lastCheckpointDbDurations);
         return map;
     }
     
@@ -103,19 +103,13 @@ public class DBConfig {
                         db = dbman.getDatabase(dbId);
                         db.setLSMDB(new LSMDatabase(dbName, dbId, dbs.getConfig().getBaseDir() 
                                 + dbName + File.separatorChar, numIndex, true, comps, 
-                                dbs.getConfig().getCompression(), 
-                                dbs.getConfig().getMaxNumRecordsPerBlock(), 
-                                dbs.getConfig().getMaxBlockFileSize(), 
-                                dbs.getConfig().getDisableMMap(),
-                                dbs.getConfig().getMMapLimit()));
+                                dbs.getConfig().getBlockCodecs(dbName, numIndex),
+                                DatabaseManagerImpl.getIndexOptions(dbs)));
                     } catch (BabuDBException e) {
                         db = new DatabaseImpl(dbs, new LSMDatabase(dbName, dbId, 
                                 dbs.getConfig().getBaseDir() + dbName + File.separatorChar, 
-                                numIndex, true, comps, dbs.getConfig().getCompression(), 
-                                dbs.getConfig().getMaxNumRecordsPerBlock(), 
-                                dbs.getConfig().getMaxBlockFileSize(), 
-                                dbs.getConfig().getDisableMMap(),
-                                dbs.getConfig().getMMapLimit()));
+                                numIndex, true, comps, dbs.getConfig().getBlockCodecs(dbName, numIndex),
+                                DatabaseManagerImpl.getIndexOptions(dbs)));
                         
                         dbman.putDatabase(db);
                     }
@@ -197,9 +191,7 @@ public class DBConfig {
                         DatabaseInternal db = new DatabaseImpl(this.dbs, 
                                 new LSMDatabase(dbName, dbId, this.dbs.getConfig().getBaseDir()
                             + dbName + File.separatorChar, numIndex, true, comps, dbs.getConfig()
-                                .getCompression(), this.dbs.getConfig().getMaxNumRecordsPerBlock(), 
-                                dbs.getConfig().getMaxBlockFileSize(), dbs.getConfig().getDisableMMap(),
-                                dbs.getConfig().getMMapLimit()));
+                                .getBlockCodecs(dbName, numIndex), DatabaseManagerImpl.getIndexOptions(dbs)));
                         dbman.putDatabase(db);
                         Logging.logMessage(Logging.LEVEL_DEBUG, Category.babudb, this,
                                 "loaded DB " + dbName + "(" + dbId + ") successfully.");
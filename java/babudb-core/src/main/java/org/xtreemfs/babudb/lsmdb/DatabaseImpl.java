@@ -16,12 +16,15 @@ import org.xtreemfs.babudb.api.database.DatabaseInsertGroup;
 import org.xtreemfs.babudb.api.database.DatabaseRequestResult;
 import org.xtreemfs.babudb.api.database.ResultSet;
 import org.xtreemfs.babudb.api.database.UserDefinedLookup;
+import org.xtreemfs.babudb.api.database.ValueView;
 import org.xtreemfs.babudb.api.dev.BabuDBInternal;
 import org.xtreemfs.babudb.api.dev.DatabaseInternal;
+import org.xtreemfs.babudb.api.dev.transaction.TransactionInternal;
 import org.xtreemfs.babudb.api.exception.BabuDBException;
 import org.xtreemfs.babudb.api.exception.BabuDBException.ErrorCode;
 import org.xtreemfs.babudb.api.index.ByteRangeComparator;
 import org.xtreemfs.babudb.log.DiskLogger.SyncMode;
+import org.xtreemfs.babudb.lsmdb.LSMDBWorker.RequestOperation;
 import org.xtreemfs.babudb.snapshots.SnapshotConfig;
 import org.xtreemfs.foundation.logging.Logging;
 import org.xtreemfs.foundation.logging.Logging.Category;
@@ -86,10 +89,23 @@ public class DatabaseImpl implements DatabaseInternal {
     public DatabaseRequestResult<Object> singleInsert(int indexId, byte[] key, 
             byte[] value, Object context) {
         
+        return singleInsert(indexId, key, value, null, context);
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.xtreemfs.babudb.api.database.Database#singleInsert(int, byte[], byte[],
+     * org.xtreemfs.babudb.log.DiskLogger.SyncMode, java.lang.Object)
+     */
+    @Override
+    public DatabaseRequestResult<Object> singleInsert(int indexId, byte[] key, 
+            byte[] value, SyncMode durability, Object context) {
+        
         BabuDBInsertGroup irg = new BabuDBInsertGroup(lsmDB);
         irg.addInsert(indexId, key, value);
         
-        return insert(irg, context);
+        return insert(irg, durability, context);
     }
     
     /*
@@ -100,6 +116,18 @@ public class DatabaseImpl implements DatabaseInternal {
      */
     @Override
     public DatabaseRequestResult<Object> insert(BabuDBInsertGroup irg, Object context) {
+        return insert(irg, null, context);
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.xtreemfs.babudb.api.dev.DatabaseInternal#insert(org.xtreemfs.babudb.lsmdb.
+     * BabuDBInsertGroup, org.xtreemfs.babudb.log.DiskLogger.SyncMode, java.lang.Object)
+     */
+    @Override
+    public DatabaseRequestResult<Object> insert(BabuDBInsertGroup irg, SyncMode durability, 
+            Object context) {
         
         InsertRecordGroup ins = irg.getRecord();
         int dbId = ins.getDatabaseId();
@@ -114,7 +142,7 @@ public class DatabaseImpl implements DatabaseInternal {
             BabuDBRequestResultImpl<Object> result = 
                 new BabuDBRequestResultImpl<Object>(context, dbs.getResponseManager());
             try {
-                w.addRequest(new LSMDBRequest<Object>(lsmDB, result, ins));
+                w.addRequest(new LSMDBRequest<Object>(lsmDB, result, ins, durability));
             } catch (InterruptedException ex) {
                 result.failed(new BabuDBException(ErrorCode.INTERRUPTED, 
                         "operation was interrupted", ex));
@@ -122,7 +150,7 @@ public class DatabaseImpl implements DatabaseInternal {
             
             return result;
         } else {
-            return directInsert(irg, context);
+            return directInsert(irg, durability, context);
         }
     }
     
@@ -132,19 +160,22 @@ public class DatabaseImpl implements DatabaseInternal {
      * make the insert persistent is ignored, if {@link SyncMode} is ASYNC.
      * 
      * @param irg - the group of inserts.
+     * @param durability - the durability of the inserts, may be null.
      * @param context - the context object for this request.
      * 
      * @return the request future.
      */
-    private DatabaseRequestResult<Object> directInsert(BabuDBInsertGroup irg, Object context) {
+    private DatabaseRequestResult<Object> directInsert(BabuDBInsertGroup irg, SyncMode durability, 
+            Object context) {
 
         BabuDBRequestResultImpl<Object> result = 
             new BabuDBRequestResultImpl<Object>(context, dbs.getResponseManager());
         
         try {
-            dbs.getTransactionManager().makePersistent(
-                    dbs.getDatabaseManager().createTransaction().insertRecordGroup(
-                            getName(), irg.getRecord(), getLSMDB()), result);
+            TransactionInternal txn = dbs.getDatabaseManager().createTransaction().insertRecordGroup(
+                    getName(), irg.getRecord(), getLSMDB());
+            txn.setDurability(durability);
+            dbs.getTransactionManager().makePersistent(txn, result);
         } catch (BabuDBException e) {
             
             // if an exception occurred while writing the log, respond with an
@@ -179,7 +210,7 @@ public class DatabaseImpl implements DatabaseInternal {
             }
             
             try {
-                w.addRequest(new LSMDBRequest<byte[]>(lsmDB, indexId, result, 
+                w.addReadRequest(new LSMDBRequest<byte[]>(lsmDB, indexId, result, 
                         key));
             } catch (InterruptedException ex) {
                 result.failed(new BabuDBException(ErrorCode.INTERRUPTED, 
@@ -209,6 +240,82 @@ public class DatabaseImpl implements DatabaseInternal {
             listener.finished(lsmDB.getIndex(indexId).lookup(key));
     }
     
+    /* (non-Javadoc)
+     * @see org.xtreemfs.babudb.api.database.DatabaseRO#lookupView(int, byte[], 
+     *          java.lang.Object)
+     */
+    @Override
+    public DatabaseRequestResult<ValueView> lookupView(int indexId, byte[] key, 
+            Object context) {
+        
+        BabuDBRequestResultImpl<ValueView> result = 
+            new BabuDBRequestResultImpl<ValueView>(context, dbs.getResponseManager());
+        LSMDBWorker w = dbs.getWorker(lsmDB.getDatabaseId());
+        if (w != null) {
+            if (Logging.isDebug()) {
+                Logging.logMessage(Logging.LEVEL_DEBUG, Category.babudb, this, "lookup view "
+                        + "request is sent to worker #" 
+                        + lsmDB.getDatabaseId() % dbs.getWorkerCount());
+            }
+            
+            try {
+                w.addReadRequest(new LSMDBRequest<ValueView>(lsmDB, indexId, result, 
+                        key, RequestOperation.LOOKUP_VIEW));
+            } catch (InterruptedException ex) {
+                result.failed(new BabuDBException(ErrorCode.INTERRUPTED, 
+                        "operation was interrupted", ex));
+            }
+        } else {
+            
+            // otherwise, perform a direct lookup
+            if ((indexId >= lsmDB.getIndexCount()) || (indexId < 0)) {
+                result.failed(new BabuDBException(ErrorCode.NO_SUCH_INDEX, 
+                        "index does not exist"));
+            } else
+                result.finished(lsmDB.getIndex(indexId).lookupView(key));
+        }
+        
+        return result;
+    }
+    
+    /* (non-Javadoc)
+     * @see org.xtreemfs.babudb.api.database.DatabaseRO#multiLookup(int, byte[][], 
+     *          java.lang.Object)
+     */
+    @Override
+    public DatabaseRequestResult<byte[][]> multiLookup(int indexId, byte[][] keys, 
+            Object context) {
+        
+        BabuDBRequestResultImpl<byte[][]> result = 
+            new BabuDBRequestResultImpl<byte[][]>(context, dbs.getResponseManager());
+        LSMDBWorker w = dbs.getWorker(lsmDB.getDatabaseId());
+        if (w != null) {
+            if (Logging.isDebug()) {
+                Logging.logMessage(Logging.LEVEL_DEBUG, Category.babudb, this, "multi-lookup "
+                        + "request is sent to worker #" 
+                        + lsmDB.getDatabaseId() % dbs.getWorkerCount());
+            }
+            
+            try {
+                w.addReadRequest(new LSMDBRequest<byte[][]>(lsmDB, indexId, result, 
+                        keys));
+            } catch (InterruptedException ex) {
+                result.failed(new BabuDBException(ErrorCode.INTERRUPTED, 
+                        "operation was interrupted", ex));
+            }
+        } else {
+            
+            // otherwise, perform a direct multi-lookup
+            if ((indexId >= lsmDB.getIndexCount()) || (indexId < 0)) {
+                result.failed(new BabuDBException(ErrorCode.NO_SUCH_INDEX, 
+                        "index does not exist"));
+            } else
+                result.finished(lsmDB.getIndex(indexId).lookup(keys));
+        }
+        
+        return result;
+    }
+    
     /* (non-Javadoc)
      * @see org.xtreemfs.babudb.api.database.DatabaseRO#prefixLookup(int, byte[], java.lang.Object)
      */
@@ -254,7 +361,7 @@ public class DatabaseImpl implements DatabaseInternal {
             }
             
             try {
-                w.addRequest(new LSMDBRequest<ResultSet<byte[], byte[]>>(
+                w.addReadRequest(new LSMDBRequest<ResultSet<byte[], byte[]>>(
                         lsmDB, indexId, result, key, ascending));
             } catch (InterruptedException ex) {
                 result.failed(new BabuDBException(ErrorCode.INTERRUPTED, 
@@ -326,7 +433,7 @@ public class DatabaseImpl implements DatabaseInternal {
             }
             
             try {
-                w.addRequest(new LSMDBRequest<ResultSet<byte[], byte[]>>(
+                w.addReadRequest(new LSMDBRequest<ResultSet<byte[], byte[]>>(
                         lsmDB, indexId, result, from, to, ascending));
             } catch (InterruptedException ex) {
                 result.failed(new BabuDBException(ErrorCode.INTERRUPTED, 
@@ -370,7 +477,7 @@ public class DatabaseImpl implements DatabaseInternal {
             }
             
             try {
-                w.addRequest(new LSMDBRequest<Object>(lsmDB, result, udl));
+                w.addReadRequest(new LSMDBRequest<Object>(lsmDB, result, udl));
             } catch (InterruptedException ex) {
                 result.failed(new BabuDBException(ErrorCode.INTERRUPTED, 
                         "operation was interrupted", ex));
@@ -412,6 +519,20 @@ public class DatabaseImpl implements DatabaseInternal {
         return lsmDB.getIndex(indexId).lookup(key, snapId);
     }
     
+    /* (non-Javadoc)
+     * @see org.xtreemfs.babudb.api.dev.DatabaseInternal#directMultiLookup(int, int, byte[][])
+     */
+    @Override
+    public byte[][] directMultiLookup(int indexId, int snapId, byte[][] keys) 
+        throws BabuDBException {
+        
+        if ((indexId >= lsmDB.getIndexCount()) || (indexId < 0)) {
+            throw new BabuDBException(ErrorCode.NO_SUCH_INDEX, 
+                    "index does not exist");
+        }
+        return lsmDB.getIndex(indexId).lookup(keys, snapId);
+    }
+    
     /* (non-Javadoc)
      * @see org.xtreemfs.babudb.api.dev.DatabaseInternal#directPrefixLookup(int, int, byte[], 
      *          boolean)
@@ -527,6 +648,19 @@ public class DatabaseImpl implements DatabaseInternal {
         
     }
     
+    /* (non-Javadoc)
+     * @see org.xtreemfs.babudb.api.dev.DatabaseInternal#proceedWriteSnapshot(int, long, int[], int)
+     */
+    @Override
+    public void proceedWriteSnapshot(int viewId, long sequenceNo, int[] snapIds, int index) 
+            throws BabuDBException {
+        try {
+            lsmDB.writeSnapshot(viewId, sequenceNo, snapIds, index);
+        } catch (IOException ex) {
+            throw new BabuDBException(ErrorCode.IO_ERROR, "cannot write snapshot: " + ex, ex);
+        }
+    }
+    
     /* (non-Javadoc)
      * @see org.xtreemfs.babudb.api.dev.DatabaseInternal#proceedCleanupSnapshot(int, long)
      */
@@ -605,4 +739,12 @@ public class DatabaseImpl implements DatabaseInternal {
         return insert((BabuDBInsertGroup) irg, context);
     }
     
+    /* (non-Javadoc)
+     * @see org.xtreemfs.babudb.api.database.Database#insert(org.xtreemfs.babudb.api.database.DatabaseInsertGroup, org.xtreemfs.babudb.log.DiskLogger.SyncMode, java.lang.Object)
+     */
+    @Override
+    public DatabaseRequestResult<Object> insert(DatabaseInsertGroup irg, SyncMode durability, Object context) {
+        return insert((BabuDBInsertGroup) irg, durability, context);
+    }
+    
 }
@@ -13,13 +13,19 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.xtreemfs.babudb.BabuDBRequestResultImpl;
 import org.xtreemfs.babudb.api.database.Database;
+import org.xtreemfs.babudb.api.database.DatabaseRequestListener;
 import org.xtreemfs.babudb.api.database.DatabaseRequestResult;
 import org.xtreemfs.babudb.api.dev.BabuDBInternal;
 import org.xtreemfs.babudb.api.dev.DatabaseInternal;
@@ -34,8 +40,11 @@ import org.xtreemfs.babudb.api.transaction.Operation;
 import org.xtreemfs.babudb.api.transaction.Transaction;
 import org.xtreemfs.babudb.api.transaction.TransactionListener;
 import org.xtreemfs.babudb.config.BabuDBConfig;
+import org.xtreemfs.babudb.index.BlockCodec;
 import org.xtreemfs.babudb.index.DefaultByteRangeComparator;
+import org.xtreemfs.babudb.index.IndexOptions;
 import org.xtreemfs.babudb.index.LSMTree;
+import org.xtreemfs.babudb.log.DiskLogger.SyncMode;
 import org.xtreemfs.babudb.lsmdb.InsertRecordGroup.InsertRecord;
 import org.xtreemfs.foundation.buffer.ReusableBuffer;
 import org.xtreemfs.foundation.logging.Logging;
@@ -46,6 +55,7 @@ public class DatabaseManagerImpl implements DatabaseManagerInternal {
     
     private static final String                    RUNTIME_STATE_DBCREATIONCOUNT = "databaseManager.dbCreationCount";
     private static final String                    RUNTIME_STATE_DBDELETIONCOUNT = "databaseManager.dbDeletionCount";
+    private static final String                    RUNTIME_STATE_MEMTABLEBYTES   = "databaseManager.memtableBytes";
     
     private BabuDBInternal                         dbs;
     
@@ -348,9 +358,8 @@ public class DatabaseManagerImpl implements DatabaseManagerInternal {
                         final int dbId = nextDbId++;
                         db = new DatabaseImpl(dbs, new LSMDatabase(operation.getDatabaseName(), dbId, dbs.getConfig()
                                 .getBaseDir() + operation.getDatabaseName() + File.separatorChar, numIndices, false,
-                                com, dbs.getConfig().getCompression(), dbs.getConfig().getMaxNumRecordsPerBlock(), dbs
-                                        .getConfig().getMaxBlockFileSize(), dbs.getConfig().getDisableMMap(), dbs
-                                        .getConfig().getMMapLimit()));
+                                com, dbs.getConfig().getBlockCodecs(operation.getDatabaseName(), numIndices),
+                                getIndexOptions(dbs)));
                         dbsById.put(dbId, db);
                         dbsByName.put(operation.getDatabaseName(), db);
                         dbs.getDBConfigFile().save();
@@ -389,13 +398,17 @@ public class DatabaseManagerImpl implements DatabaseManagerInternal {
                             throw new BabuDBException(ErrorCode.NO_SUCH_DB, "database '" + operation.getDatabaseName()
                                     + "' does not exists");
                         }
-                        final LSMDatabase db = getDatabase(operation.getDatabaseName()).getLSMDB();
-                        dbId = db.getDatabaseId();
+                        final DatabaseInternal database = getDatabase(operation.getDatabaseName());
+                        dbId = database.getLSMDB().getDatabaseId();
                         dbsByName.remove(operation.getDatabaseName());
                         dbsById.remove(dbId);
                         
                         dbs.getSnapshotManager().deleteAllSnapshots(operation.getDatabaseName());
                         
+                        // close the index files of the database, instead of
+                        // leaving them open until the indices are collected
+                        database.shutdown();
+                        
                         dbs.getDBConfigFile().save();
                         File dbDir = new File(dbs.getConfig().getBaseDir(), operation.getDatabaseName());
                         
@@ -463,9 +476,8 @@ public class DatabaseManagerImpl implements DatabaseManagerInternal {
                 // create new DB and load from snapshot
                 DatabaseInternal newDB = new DatabaseImpl(dbs, new LSMDatabase(destDB, dbId, dbs.getConfig()
                         .getBaseDir() + destDB + File.separatorChar, sDB.getLSMDB().getIndexCount(), true, sDB
-                        .getComparators(), dbs.getConfig().getCompression(),
-                        dbs.getConfig().getMaxNumRecordsPerBlock(), dbs.getConfig().getMaxBlockFileSize(), dbs
-                                .getConfig().getDisableMMap(), dbs.getConfig().getMMapLimit()));
+                        .getComparators(), dbs.getConfig().getBlockCodecs(destDB, sDB.getLSMDB().getIndexCount()),
+                        getIndexOptions(dbs)));
                 
                 // insert real database
                 synchronized (dbModificationLock) {
@@ -634,67 +646,303 @@ public class DatabaseManagerImpl implements DatabaseManagerInternal {
      * org.xtreemfs.babudb.api.dev.TransactionInternal)
      */
     @Override
-    public synchronized void executeTransaction(TransactionInternal txn) throws BabuDBException {
+    public void executeTransaction(TransactionInternal txn) throws BabuDBException {
+        executeTransaction(txn, null);
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.xtreemfs.babudb.api.DatabaseManager#executeTransaction(
+     * org.xtreemfs.babudb.api.transaction.Transaction)
+     */
+    @Override
+    public void executeTransaction(Transaction txn) throws BabuDBException {
+        executeTransaction((TransactionInternal) txn);
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.xtreemfs.babudb.api.DatabaseManager#executeTransaction(
+     * org.xtreemfs.babudb.api.transaction.Transaction,
+     * org.xtreemfs.babudb.log.DiskLogger.SyncMode)
+     */
+    @Override
+    public void executeTransaction(Transaction txn, SyncMode durability) throws BabuDBException {
+        
+        BabuDBRequestResultImpl<Object> result = new BabuDBRequestResultImpl<Object>(dbs.getResponseManager());
+        ((TransactionInternal) txn).setDurability(durability);
+        executeTransaction((TransactionInternal) txn, result, true);
+        result.get();
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.xtreemfs.babudb.api.DatabaseManager#executeTransactionAsync(
+     * org.xtreemfs.babudb.api.transaction.Transaction)
+     */
+    @Override
+    public DatabaseRequestResult<Object> executeTransactionAsync(Transaction txn) {
+        return executeTransactionAsync(txn, null);
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.xtreemfs.babudb.api.DatabaseManager#executeTransactionAsync(
+     * org.xtreemfs.babudb.api.transaction.Transaction,
+     * org.xtreemfs.babudb.log.DiskLogger.SyncMode)
+     */
+    @Override
+    public DatabaseRequestResult<Object> executeTransactionAsync(Transaction txn, SyncMode durability) {
+        
+        BabuDBRequestResultImpl<Object> result = new BabuDBRequestResultImpl<Object>(dbs.getResponseManager());
+        try {
+            ((TransactionInternal) txn).setDurability(durability);
+            executeTransaction((TransactionInternal) txn, result, false);
+        } catch (BabuDBException e) {
+            result.failed(e);
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Executes a transaction. The result will be set once the transaction's
+     * log entry has been written.
+     * <p>
+     * No manager-wide lock is held during the execution. Instead, the
+     * in-memory processing is serialized per affected database, either by
+     * locking the responsible workers or, if no workers exist, by
+     * synchronizing on the affected databases. In both cases, locks are
+     * acquired in ascending order of worker or database IDs, so as to prevent
+     * deadlocks between concurrent transactions.
+     * </p>
+     * <p>
+     * If <code>blocking</code> is <code>false</code>, the calling thread never
+     * waits for worker locks: the lock of the next worker is requested by the
+     * worker that granted the previous one, and the transaction is applied
+     * and appended to the log by the worker that grants the last lock.
+     * Synchronous executions wait for the locks in the calling thread
+     * instead.
+     * </p>
+     * 
+     * @param txn
+     *            the transaction
+     * @param result
+     *            the future for the transaction's result
+     * @param blocking
+     *            <code>true</code>, if the calling thread may wait for the
+     *            worker locks
+     * @throws BabuDBException
+     *             if the transaction could not be executed
+     */
+    private void executeTransaction(TransactionInternal txn, BabuDBRequestResultImpl<Object> result,
+        boolean blocking) throws BabuDBException {
+        
+        // determine the databases affected by this txn, sorted by their IDs
+        SortedMap<Integer, LSMDatabase> affectedDBs = new TreeMap<Integer, LSMDatabase>();
+        Map<String, Integer> dbIds = new HashMap<String, Integer>();
+        for (String dbName : txn.databasesAffected()) {
+            try {
+                LSMDatabase lsmDB = getDatabase(dbName).getLSMDB();
+                affectedDBs.put(lsmDB.getDatabaseId(), lsmDB);
+                dbIds.put(dbName, lsmDB.getDatabaseId());
+            } catch (BabuDBException be) {
+                assert (be.getErrorCode() == ErrorCode.NO_SUCH_DB);
+                
+                /*
+                 * affected database does not exist yet; exception will be
+                 * ignored
+                 */
+            }
+        }
         
-        // acquire worker locks asynchronously if necessary
         if (dbs.getWorkerCount() > 0) {
             
-            // maps the lockFuture of the workers affected by this txn
-            Map<LSMDBWorker, BabuDBRequestResultImpl<AtomicBoolean>> workerLockFutureMap = new HashMap<LSMDBWorker, BabuDBRequestResultImpl<AtomicBoolean>>();
+            // maps the names of the affected databases to the workers' indices
+            SortedMap<Integer, Set<String>> dbNamesByWorker = new TreeMap<Integer, Set<String>>();
+            for (Entry<String, Integer> entry : dbIds.entrySet()) {
+                int workerIndex = entry.getValue() % dbs.getWorkerCount();
+                Set<String> dbNames = dbNamesByWorker.get(workerIndex);
+                if (dbNames == null) {
+                    dbNames = new HashSet<String>();
+                    dbNamesByWorker.put(workerIndex, dbNames);
+                }
+                dbNames.add(entry.getKey());
+            }
             
             // maps the lockFutures by the databases affected by this txn
             Map<String, DatabaseRequestResult<AtomicBoolean>> databaseLockFutureMap = new HashMap<String, DatabaseRequestResult<AtomicBoolean>>();
+            txn.updateWorkerLocks(databaseLockFutureMap);
             
-            for (String dbName : txn.databasesAffected()) {
-                try {
-                    // setup the lock-request if necessary
-                    if (!databaseLockFutureMap.containsKey(dbName)) {
-                        
-                        LSMDBWorker worker = dbs.getWorker(getDatabase(dbName).getLSMDB().getDatabaseId());
-                        
-                        // retrieve the lockFuture of the worker if already
-                        // available
-                        BabuDBRequestResultImpl<AtomicBoolean> lockFuture = workerLockFutureMap.get(worker);
-                        
-                        // create a new lockFuture otherwise
-                        if (lockFuture == null) {
-                            lockFuture = new BabuDBRequestResultImpl<AtomicBoolean>(txn, dbs.getResponseManager());
-                            worker.addRequest(new LSMDBRequest<AtomicBoolean>(lockFuture));
-                            workerLockFutureMap.put(worker, lockFuture);
-                        }
-                        
-                        databaseLockFutureMap.put(dbName, lockFuture);
-                    }
-                } catch (BabuDBException be) {
-                    assert (be.getErrorCode() == ErrorCode.NO_SUCH_DB);
-                    
-                    /*
-                     * affected database does not exist yet; exception will be
-                     * ignored
-                     */
-                } catch (InterruptedException ie) {
-                    throw new BabuDBException(ErrorCode.INTERRUPTED, ie.getMessage(), ie);
-                }
+            if (blocking) {
+                lockWorkers(txn, dbNamesByWorker.values(), dbIds, databaseLockFutureMap);
+                dbs.getTransactionManager().makePersistent(txn, result);
+            } else {
+                lockWorkersAsync(txn, dbNamesByWorker.values().iterator(), dbIds, databaseLockFutureMap, result);
             }
             
-            txn.updateWorkerLocks(databaseLockFutureMap);
+        } else {
+            makePersistent(txn, new ArrayList<LSMDatabase>(affectedDBs.values()), 0, result);
         }
+    }
+    
+    /**
+     * Acquires the locks of all workers responsible for the given databases.
+     * The locks are acquired one after another, in ascending order of the
+     * workers' indices.
+     * 
+     * @param txn
+     *            the transaction
+     * @param dbNamesByWorker
+     *            the names of the affected databases, grouped by workers in
+     *            ascending order of the workers' indices
+     * @param dbIds
+     *            a mapping from the names of all existing databases affected
+     *            by the transaction to their IDs
+     * @param databaseLockFutureMap
+     *            the lock futures of the transaction by database names
+     * @throws BabuDBException
+     *             if a lock could not be acquired
+     */
+    private void lockWorkers(TransactionInternal txn, Collection<Set<String>> dbNamesByWorker,
+        Map<String, Integer> dbIds, Map<String, DatabaseRequestResult<AtomicBoolean>> databaseLockFutureMap)
+        throws BabuDBException {
         
-        // execute the transaction
-        BabuDBRequestResultImpl<Object> result = new BabuDBRequestResultImpl<Object>(dbs.getResponseManager());
-        dbs.getTransactionManager().makePersistent(txn, result);
-        result.get();
+        try {
+            for (Set<String> dbNames : dbNamesByWorker) {
+                
+                LSMDBWorker worker = dbs.getWorker(dbIds.get(dbNames.iterator().next()));
+                BabuDBRequestResultImpl<AtomicBoolean> lockFuture = new BabuDBRequestResultImpl<AtomicBoolean>(
+                    txn, dbs.getResponseManager());
+                worker.addRequest(new LSMDBRequest<AtomicBoolean>(lockFuture));
+                
+                // wait for the lock before requesting the next one
+                lockFuture.get();
+                
+                for (String dbName : dbNames)
+                    databaseLockFutureMap.put(dbName, lockFuture);
+            }
+            
+        } catch (InterruptedException ie) {
+            txn.unlockWorkers();
+            throw new BabuDBException(ErrorCode.INTERRUPTED, ie.getMessage(), ie);
+        } catch (BabuDBException be) {
+            txn.unlockWorkers();
+            throw be;
+        }
     }
     
-    /*
-     * (non-Javadoc)
+    /**
+     * Acquires the locks of all workers responsible for the given databases
+     * without blocking the calling thread, and makes the transaction
+     * persistent once all locks are held. Each worker requests the lock of the
+     * next worker right after having granted its own lock, so that locks are
+     * still acquired in ascending order of the workers' indices. The
+     * transaction is made persistent by the last worker.
+     * <p>
+     * Neither step is executed by the response manager: appending to the log
+     * may wait for the disk logger, which in turn may wait for the response
+     * manager to accept the responses of the entries it has written.
+     * </p>
      * 
-     * @see org.xtreemfs.babudb.api.DatabaseManager#executeTransaction(
-     * org.xtreemfs.babudb.api.transaction.Transaction)
+     * @param txn
+     *            the transaction
+     * @param dbNamesByWorker
+     *            the names of the affected databases that remain to be
+     *            locked, grouped by workers in ascending order of the workers'
+     *            indices
+     * @param dbIds
+     *            a mapping from the names of all existing databases affected
+     *            by the transaction to their IDs
+     * @param databaseLockFutureMap
+     *            the lock futures of the transaction by database names
+     * @param result
+     *            the future for the transaction's result
      */
-    @Override
-    public void executeTransaction(Transaction txn) throws BabuDBException {
-        executeTransaction((TransactionInternal) txn);
+    private void lockWorkersAsync(final TransactionInternal txn, final Iterator<Set<String>> dbNamesByWorker,
+        final Map<String, Integer> dbIds,
+        final Map<String, DatabaseRequestResult<AtomicBoolean>> databaseLockFutureMap,
+        final BabuDBRequestResultImpl<Object> result) {
+        
+        if (!dbNamesByWorker.hasNext()) {
+            try {
+                dbs.getTransactionManager().makePersistent(txn, result);
+            } catch (BabuDBException be) {
+                result.failed(be);
+            }
+            return;
+        }
+        
+        final Set<String> dbNames = dbNamesByWorker.next();
+        LSMDBWorker worker = dbs.getWorker(dbIds.get(dbNames.iterator().next()));
+        final BabuDBRequestResultImpl<AtomicBoolean> lockFuture = new BabuDBRequestResultImpl<AtomicBoolean>(txn,
+            dbs.getResponseManager());
+        lockFuture.registerListener(new DatabaseRequestListener<AtomicBoolean>() {
+            
+            @Override
+            public void finished(AtomicBoolean lock, Object context) {
+                // the transaction is continued by the worker, see below
+            }
+            
+            @Override
+            public void failed(BabuDBException error, Object context) {
+                txn.unlockWorkers();
+                result.failed(error);
+            }
+        });
+        
+        // executed by the worker once it has granted the lock
+        Runnable onLocked = new Runnable() {
+            
+            @Override
+            public void run() {
+                synchronized (txn) {
+                    for (String dbName : dbNames)
+                        databaseLockFutureMap.put(dbName, lockFuture);
+                }
+                lockWorkersAsync(txn, dbNamesByWorker, dbIds, databaseLockFutureMap, result);
+            }
+        };
+        
+        try {
+            worker.addRequest(new LSMDBRequest<AtomicBoolean>(lockFuture, onLocked));
+        } catch (InterruptedException ie) {
+            txn.unlockWorkers();
+            result.failed(new BabuDBException(ErrorCode.INTERRUPTED, ie.getMessage(), ie));
+        }
+    }
+    
+    /**
+     * Makes a transaction persistent while holding the monitors of all
+     * affected databases. The monitors are acquired recursively in the order
+     * of the given list.
+     * 
+     * @param txn
+     *            the transaction
+     * @param lsmDBs
+     *            the databases affected by the transaction
+     * @param index
+     *            the index of the next monitor to acquire
+     * @param result
+     *            the future for the transaction's result
+     * @throws BabuDBException
+     *             if the transaction could not be executed
+     */
+    private void makePersistent(TransactionInternal txn, List<LSMDatabase> lsmDBs, int index,
+        BabuDBRequestResultImpl<Object> result) throws BabuDBException {
+        
+        if (index == lsmDBs.size()) {
+            dbs.getTransactionManager().makePersistent(txn, result);
+            return;
+        }
+        
+        synchronized (lsmDBs.get(index)) {
+            makePersistent(txn, lsmDBs, index + 1, result);
+        }
     }
     
     /*
@@ -726,6 +974,8 @@ public class DatabaseManagerImpl implements DatabaseManagerInternal {
             return _dbCreationCount.get();
         if (RUNTIME_STATE_DBDELETIONCOUNT.equals(property))
             return _dbDeletionCount.get();
+        if (RUNTIME_STATE_MEMTABLEBYTES.equals(property))
+            return getMemtableBytes();
         
         return null;
     }
@@ -735,6 +985,49 @@ public class DatabaseManagerImpl implements DatabaseManagerInternal {
         Map<String, Object> map = new HashMap<String, Object>();
         map.put(RUNTIME_STATE_DBCREATIONCOUNT, _dbCreationCount.get());
         map.put(RUNTIME_STATE_DBDELETIONCOUNT, _dbDeletionCount.get());
+        map.put(RUNTIME_STATE_MEMTABLEBYTES, getMemtableBytes());
         return map;
     }
+    
+    /**
+     * Returns the estimated number of bytes occupied by the in-memory trees of
+     * all indices.
+     * 
+     * @return a map from &lt;database name&gt;.&lt;index ID&gt; to the number
+     *         of bytes
+     */
+    private Map<String, Long> getMemtableBytes() {
+        Map<String, Long> map = new TreeMap<String, Long>();
+        for (DatabaseInternal db : getDatabaseList()) {
+            LSMDatabase lsmDB = db.getLSMDB();
+            for (int i = 0; i < lsmDB.getIndexCount(); i++)
+                map.put(lsmDB.getDatabaseName() + "." + i, lsmDB.getIndex(i).getInMemorySize());
+        }
+        return map;
+    }
+    
+    /**
+     * Returns the tuning options of all indices, as defined by the
+     * configuration of the given BabuDB instance.
+     * 
+     * @param dbs
+     *            the BabuDB instance
+     * @return the index options
+     */
+    static IndexOptions getIndexOptions(BabuDBInternal dbs) {
+        BabuDBConfig cfg = dbs.getConfig();
+        return new IndexOptions()
+            .setCompressed(cfg.getCompression())
+            .setMaxEntriesPerBlock(cfg.getMaxNumRecordsPerBlock())
+            .setMaxBlockFileSize(cfg.getMaxBlockFileSize())
+            .setMMap(!cfg.getDisableMMap(), cfg.getMMapLimit())
+            .setBlockCache(dbs.getBlockCache())
+            .setBloomFilterBitsPerKey(cfg.getBloomFilterBitsPerKey())
+            .setMaxDeltaRuns(cfg.getMaxDeltaRuns())
+            .setMaxBlockSize(cfg.getMaxBlockSize())
+            .setBlockCodec(BlockCodec.getCodec(cfg.getBlockCodec()))
+            .setKeyRestartInterval(cfg.getKeyRestartInterval())
+            .setMemtableArena(cfg.getMemtableArena())
+            .setRateLimiter(dbs.getWriteRateLimiter());
+    }
 }
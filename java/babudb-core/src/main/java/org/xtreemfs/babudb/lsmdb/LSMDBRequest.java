@@ -10,6 +10,7 @@ package org.xtreemfs.babudb.lsmdb;
 
 import org.xtreemfs.babudb.BabuDBRequestResultImpl;
 import org.xtreemfs.babudb.api.database.UserDefinedLookup;
+import org.xtreemfs.babudb.log.DiskLogger.SyncMode;
 import org.xtreemfs.babudb.lsmdb.LSMDBWorker.RequestOperation;
 
 /**
@@ -29,8 +30,12 @@ public class LSMDBRequest<T> {
     
     private final InsertRecordGroup             insertData;
     
+    private final SyncMode                      durability;
+    
     private final byte[]                        lookupKey;
     
+    private byte[][]                            lookupKeys;
+    
     private byte[]                              from;
     
     private byte[]                              to;
@@ -39,6 +44,8 @@ public class LSMDBRequest<T> {
     
     private final UserDefinedLookup             udLookup;
     
+    private Runnable                            lockedAction;
+    
     /**
      * Lock worker request.
      * 
@@ -50,16 +57,35 @@ public class LSMDBRequest<T> {
         this.udLookup = null;
         this.lookupKey = null;
         this.insertData = null;
+        this.durability = null;
         this.indexId = -1;
         this.database = null;
     }
     
+    /**
+     * Lock worker request that runs an action on the worker thread once the
+     * lock has been granted.
+     * 
+     * @param listener
+     * @param lockedAction
+     */
+    public LSMDBRequest(BabuDBRequestResultImpl<T> listener, Runnable lockedAction) {
+        this(listener);
+        this.lockedAction = lockedAction;
+    }
+    
     public LSMDBRequest(LSMDatabase database, BabuDBRequestResultImpl<T> listener, 
             InsertRecordGroup insert) {
+        this(database, listener, insert, null);
+    }
+    
+    public LSMDBRequest(LSMDatabase database, BabuDBRequestResultImpl<T> listener, 
+            InsertRecordGroup insert, SyncMode durability) {
         this.operation = RequestOperation.INSERT;
         this.database = database;
         this.indexId = 0;
         this.insertData = insert;
+        this.durability = durability;
         this.lookupKey = null;
         this.listener = listener;
         this.udLookup = null;
@@ -72,6 +98,43 @@ public class LSMDBRequest<T> {
         this.indexId = indexId;
         this.lookupKey = key;
         this.insertData = null;
+        this.durability = null;
+        this.listener = listener;
+        this.udLookup = null;
+    }
+    
+    /**
+     * Lookup request for a single key.
+     * 
+     * @param database
+     * @param indexId
+     * @param listener
+     * @param key
+     * @param operation
+     *            either <code>LOOKUP</code> or <code>LOOKUP_VIEW</code>
+     */
+    public LSMDBRequest(LSMDatabase database, int indexId, 
+            BabuDBRequestResultImpl<T> listener, byte[] key, RequestOperation operation) {
+        assert (operation == RequestOperation.LOOKUP || operation == RequestOperation.LOOKUP_VIEW);
+        this.operation = operation;
+        this.database = database;
+        this.indexId = indexId;
+        this.lookupKey = key;
+        this.insertData = null;
+        this.durability = null;
+        this.listener = listener;
+        this.udLookup = null;
+    }
+    
+    public LSMDBRequest(LSMDatabase database, int indexId, 
+            BabuDBRequestResultImpl<T> listener, byte[][] keys) {
+        this.operation = RequestOperation.MULTI_LOOKUP;
+        this.database = database;
+        this.indexId = indexId;
+        this.lookupKey = null;
+        this.lookupKeys = keys;
+        this.insertData = null;
+        this.durability = null;
         this.listener = listener;
         this.udLookup = null;
     }
@@ -84,6 +147,7 @@ public class LSMDBRequest<T> {
         this.indexId = indexId;
         this.lookupKey = prefix;
         this.insertData = null;
+        this.durability = null;
         this.listener = listener;
         this.udLookup = null;
         this.ascending = ascending;
@@ -99,6 +163,7 @@ public class LSMDBRequest<T> {
         this.to = to;
         this.lookupKey = null;
         this.insertData = null;
+        this.durability = null;
         this.listener = listener;
         this.udLookup = null;
         this.ascending = ascending;
@@ -111,6 +176,7 @@ public class LSMDBRequest<T> {
         this.indexId = 0;
         this.lookupKey = null;
         this.insertData = null;
+        this.durability = null;
         this.listener = listener;
         this.udLookup = udLookup;
     }
@@ -131,10 +197,18 @@ public class LSMDBRequest<T> {
         return insertData;
     }
     
+    public SyncMode getDurability() {
+        return durability;
+    }
+    
     public byte[] getLookupKey() {
         return lookupKey;
     }
     
+    public byte[][] getLookupKeys() {
+        return lookupKeys;
+    }
+    
     public byte[] getFrom() {
         return from;
     }
@@ -154,4 +228,8 @@ public class LSMDBRequest<T> {
     public UserDefinedLookup getUserDefinedLookup() {
         return this.udLookup;
     }
+    
+    public Runnable getLockedAction() {
+        return lockedAction;
+    }
 }
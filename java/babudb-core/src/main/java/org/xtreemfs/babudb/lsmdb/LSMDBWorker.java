@@ -8,15 +8,18 @@
 package org.xtreemfs.babudb.lsmdb;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.xtreemfs.babudb.BabuDBRequestResultImpl;
 import org.xtreemfs.babudb.api.database.UserDefinedLookup;
+import org.xtreemfs.babudb.api.database.ValueView;
 import org.xtreemfs.babudb.api.dev.BabuDBInternal;
+import org.xtreemfs.babudb.api.dev.transaction.TransactionInternal;
 import org.xtreemfs.babudb.api.exception.BabuDBException;
 import org.xtreemfs.babudb.api.exception.BabuDBException.ErrorCode;
 import org.xtreemfs.foundation.LifeCycleThread;
@@ -29,53 +32,94 @@ import org.xtreemfs.foundation.logging.Logging.Category;
 public class LSMDBWorker extends LifeCycleThread {
     
     public static enum RequestOperation {
-        INSERT, LOOKUP, PREFIX_LOOKUP, RANGE_LOOKUP, USER_DEFINED_LOOKUP, LOCK
+        INSERT, LOOKUP, LOOKUP_VIEW, MULTI_LOOKUP, PREFIX_LOOKUP, RANGE_LOOKUP, USER_DEFINED_LOOKUP, LOCK
     };
     
     private final AtomicBoolean                  locked = new AtomicBoolean(false);
     
     private final BabuDBInternal                 dbs;
     
-    private final LinkedList<LSMDBRequest<?>>    requests = new LinkedList<LSMDBRequest<?>>();
+    private final BoundedMPSCQueue<LSMDBRequest<?>> requests;
     
-    private final int                            maxQ;
+    /**
+     * queue of read requests shared with all other workers, or
+     * <code>null</code> if reads are processed by the worker responsible
+     * for the database
+     */
+    private final SharedRequestQueue             sharedRequests;
     
-    private boolean                              quit = true;
-    private boolean                              graceful;
+    private volatile boolean                     quit = true;
+    private volatile boolean                     graceful;
     
     public LSMDBWorker(BabuDBInternal babuDB, int id, int maxQ) {
+        this(babuDB, id, maxQ, null);
+    }
+    
+    /**
+     * Creates a new worker.
+     * 
+     * @param babuDB
+     *            the database system
+     * @param id
+     *            the worker id
+     * @param maxQ
+     *            the max. length of the worker's request queue
+     * @param sharedRequests
+     *            the queue of read requests shared by all workers, or
+     *            <code>null</code>, if all requests for a database are
+     *            processed by the same worker
+     */
+    public LSMDBWorker(BabuDBInternal babuDB, int id, int maxQ, SharedRequestQueue sharedRequests) {
         super("LSMDBWrkr#" + id);
         setLifeCycleListener(babuDB);
-        this.maxQ = maxQ;
+        this.requests = new BoundedMPSCQueue<LSMDBRequest<?>>(maxQ);
+        this.sharedRequests = sharedRequests;
         this.dbs = babuDB;
     }
     
-    public synchronized void addRequest(LSMDBRequest<?> request) throws InterruptedException {
+    public void addRequest(LSMDBRequest<?> request) throws InterruptedException {
         
         assert (request != null);
         
         // wait for queue space to become available
-        if (!quit && maxQ > 0 && requests.size() >= maxQ) {
-            wait();
+        if (quit || !requests.put(request)) {
+            throw new InterruptedException("Appending a request to the queue of " + getName() +
+                        " was interrupted, due shutdown.");
         }
+    }
+    
+    /**
+     * Appends a read-only request. If workers share a queue of read requests,
+     * the request is appended to the shared queue, so that it may be
+     * processed by any worker. Read requests may thus overtake insertions
+     * that were previously submitted for the same database.
+     * 
+     * @param request
+     *            the request
+     * @throws InterruptedException
+     *             if the request could not be appended
+     */
+    public void addReadRequest(LSMDBRequest<?> request) throws InterruptedException {
         
-        if (!quit) {
-
-            assert (maxQ == 0 || requests.size() < maxQ);
-            
-            requests.add(request);
-            notifyAll();
-        } else {
+        if (sharedRequests == null) {
+            addRequest(request);
+            return;
+        }
+        
+        assert (request != null);
+        
+        if (quit) {
             throw new InterruptedException("Appending a request to the queue of " + getName() +
                         " was interrupted, due shutdown.");
         }
+        sharedRequests.add(request);
     }
     
-    public synchronized void shutdown(boolean graceful) {
+    public void shutdown(boolean graceful) {
         this.graceful = graceful;
         
         quit = true;
-        notifyAll();
+        requests.close();
     }
         
     @Override
@@ -99,27 +143,32 @@ public class LSMDBWorker extends LifeCycleThread {
 
         notifyStarted();
         
+        final List<LSMDBRequest<?>> batch = new ArrayList<LSMDBRequest<?>>();
+        
         while (!quit) {
             try {
-                final LSMDBRequest<?> r;
-                
-                // wait for a request
-                synchronized (this) {
-                    if (requests.isEmpty() && !quit) {
-                        wait();
-                    }
+                // wait for a request; requests for the worker's own
+                // databases take precedence over shared read requests
+                if (requests.drainTo(batch) == 0 && !pollSharedRequest(batch)) {
+                    
+                    if (sharedRequests != null) {
+                        sharedRequests.registerIdle();
+                        if (sharedRequests.isEmpty())
+                            requests.await(0);
+                        sharedRequests.unregisterIdle();
+                    } else
+                        requests.await(0);
                     
-                    if (quit) {
-                        break;
-                        
-                    // get a request
-                    } else {
-                        r = requests.poll();
-                        notify();
-                    }
+                    if (Thread.interrupted())
+                        throw new InterruptedException();
+                    continue;
                 }
-                                
-                processRequest(r);
+                
+                // process all requests taken from the queue
+                for (LSMDBRequest<?> r : batch) {
+                    processRequest(r);
+                }
+                batch.clear();
             } catch (InterruptedException ex) {
                 if (!quit) {
                     cleanUp();
@@ -131,12 +180,16 @@ public class LSMDBWorker extends LifeCycleThread {
         
         // process pending requests on shutdown if graceful flag has not been reset
         if (graceful) {
-            synchronized (this) {
-                for (LSMDBRequest<?> rq : requests) {
-                    processRequest(rq);
-                }
+            LSMDBRequest<?> rq;
+            while ((rq = requests.poll()) != null) {
+                processRequest(rq);
             }
-        }
+            while (sharedRequests != null && (rq = sharedRequests.poll()) != null) {
+                processRequest(rq);
+            }
+        } else
+            failSharedRequests();
+        
         Logging.logMessage(Logging.LEVEL_DEBUG, Category.babudb, this, "worker shutdown complete");
         notifyStopped();
     }
@@ -146,15 +199,54 @@ public class LSMDBWorker extends LifeCycleThread {
      * 
      * @throws IOException
      */
-    private synchronized void cleanUp() {    
+    private void cleanUp() {    
             
-        assert (graceful || requests.size() == 0);
+        requests.close();
         
         // clear pending requests, if available
-        for (LSMDBRequest<?> rq : requests) {
+        LSMDBRequest<?> rq;
+        while ((rq = requests.poll()) != null) {
             rq.getListener().failed(new BabuDBException(ErrorCode.INTERRUPTED, 
                 "Worker was shut down, before the request could be proceeded."));
         }
+        
+        failSharedRequests();
+    }
+    
+    /**
+     * Fails all requests remaining in the shared queue, once the queue has
+     * been closed.
+     */
+    private void failSharedRequests() {
+        
+        if (sharedRequests == null || !sharedRequests.isClosed())
+            return;
+        
+        LSMDBRequest<?> rq;
+        while ((rq = sharedRequests.poll()) != null) {
+            rq.getListener().failed(new BabuDBException(ErrorCode.INTERRUPTED, 
+                "Worker was shut down, before the request could be proceeded."));
+        }
+    }
+    
+    /**
+     * Takes a single request from the shared queue, if available.
+     * 
+     * @param batch
+     *            the list to add the request to
+     * @return <code>true</code>, if a request was taken
+     */
+    private boolean pollSharedRequest(List<LSMDBRequest<?>> batch) {
+        
+        if (sharedRequests == null)
+            return false;
+        
+        LSMDBRequest<?> rq = sharedRequests.poll();
+        if (rq == null)
+            return false;
+        
+        batch.add(rq);
+        return true;
     }
     
     @SuppressWarnings("unchecked")
@@ -166,6 +258,12 @@ public class LSMDBWorker extends LifeCycleThread {
         case LOOKUP:
             doLookup((LSMDBRequest<byte[]>) r);
             break;
+        case LOOKUP_VIEW:
+            doLookupView((LSMDBRequest<ValueView>) r);
+            break;
+        case MULTI_LOOKUP:
+            doMultiLookup((LSMDBRequest<byte[][]>) r);
+            break;
         case PREFIX_LOOKUP:
             doPrefixLookup((LSMDBRequest<Iterator<Entry<byte[], byte[]>>>) r);
             break;
@@ -200,10 +298,11 @@ public class LSMDBWorker extends LifeCycleThread {
     private void doInsert(final LSMDBRequest<?> r) {
 
         try {
-            dbs.getTransactionManager().makePersistent(
-                    dbs.getDatabaseManager().createTransaction().insertRecordGroup(
-                            r.getDatabase().getDatabaseName(), r.getInsertData(), r.getDatabase()), 
-                            (BabuDBRequestResultImpl<Object>) r.getListener());
+            TransactionInternal txn = dbs.getDatabaseManager().createTransaction().insertRecordGroup(
+                    r.getDatabase().getDatabaseName(), r.getInsertData(), r.getDatabase());
+            txn.setDurability(r.getDurability());
+            dbs.getTransactionManager().makePersistent(txn, 
+                    (BabuDBRequestResultImpl<Object>) r.getListener());
         } catch (BabuDBException e) {
             r.getListener().failed(e);
         }
@@ -222,6 +321,32 @@ public class LSMDBWorker extends LifeCycleThread {
         }
     }
     
+    private void doLookupView(final LSMDBRequest<ValueView> r) {
+        final LSMDatabase db = r.getDatabase();
+        final int numIndices = db.getIndexCount();
+        
+        if ((r.getIndexId() >= numIndices) || (r.getIndexId() < 0)) {
+            r.getListener().failed(
+                new BabuDBException(ErrorCode.NO_SUCH_INDEX, "index " + r.getIndexId() + 
+                        " does not exist"));
+        } else {
+            r.getListener().finished(db.getIndex(r.getIndexId()).lookupView(r.getLookupKey()));
+        }
+    }
+    
+    private void doMultiLookup(final LSMDBRequest<byte[][]> r) {
+        final LSMDatabase db = r.getDatabase();
+        final int numIndices = db.getIndexCount();
+        
+        if ((r.getIndexId() >= numIndices) || (r.getIndexId() < 0)) {
+            r.getListener().failed(
+                new BabuDBException(ErrorCode.NO_SUCH_INDEX, "index " + r.getIndexId() + 
+                        " does not exist"));
+        } else {
+            r.getListener().finished(db.getIndex(r.getIndexId()).lookup(r.getLookupKeys()));
+        }
+    }
+    
     private void doPrefixLookup(final LSMDBRequest<Iterator<Map.Entry<byte[], byte[]>>> r) {
         final LSMDatabase db = r.getDatabase();
         final int numIndices = db.getIndexCount();
@@ -231,7 +356,7 @@ public class LSMDBWorker extends LifeCycleThread {
                 new BabuDBException(ErrorCode.NO_SUCH_INDEX, "index " + r.getIndexId() + 
                         " does not exist"));
         } else {
-            r.getListener().finished(db.getIndex(r.getIndexId()).prefixLookup(r.getLookupKey()));
+            r.getListener().finished(db.getIndex(r.getIndexId()).prefixLookup(r.getLookupKey(), r.isAscending()));
         }
     }
     
@@ -245,7 +370,7 @@ public class LSMDBWorker extends LifeCycleThread {
                         " does not exist"));
         } else {
             r.getListener().finished(
-                    db.getIndex(r.getIndexId()).rangeLookup(r.getFrom(), r.getTo()));
+                    db.getIndex(r.getIndexId()).rangeLookup(r.getFrom(), r.getTo(), r.isAscending()));
         }
     }
     
@@ -253,6 +378,9 @@ public class LSMDBWorker extends LifeCycleThread {
 
         synchronized (locked) {
             r.getListener().finished(locked);
+            if (r.getLockedAction() != null) {
+                r.getLockedAction().run();
+            }
             try {
                 if (locked.get()) {
                     locked.wait();
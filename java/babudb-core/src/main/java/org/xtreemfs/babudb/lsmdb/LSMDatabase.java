@@ -20,6 +20,8 @@ import java.util.regex.Pattern;
 import org.xtreemfs.babudb.api.exception.BabuDBException;
 import org.xtreemfs.babudb.api.exception.BabuDBException.ErrorCode;
 import org.xtreemfs.babudb.api.index.ByteRangeComparator;
+import org.xtreemfs.babudb.index.BlockCodec;
+import org.xtreemfs.babudb.index.IndexOptions;
 import org.xtreemfs.babudb.index.LSMTree;
 import org.xtreemfs.babudb.snapshots.SnapshotConfig;
 import org.xtreemfs.foundation.logging.Logging;
@@ -75,30 +77,14 @@ public class LSMDatabase {
     private final ByteRangeComparator[] comparators;
     
     /**
-     * enables compression of the on-disk index
+     * the codecs for the values of compressed on-disk indices, by index
      */
-    private final boolean               compression;
+    private final BlockCodec[]          blockCodecs;
     
     /**
-     * the maximum number of entries per block in an index
+     * the tuning options of all indices
      */
-    private final int                   maxEntriesPerBlock;
-    
-    /**
-     * the maximum size of an on-disk index file
-     */
-    private final int                   maxBlockFileSize;
-    
-    /**
-     * disables memory-mapping of block files
-     */
-    private final boolean               disableMMap;
-    
-    /**
-     * the maximum size of all block files maintained by BabuDB at which block
-     * files will be mmap'ed
-     */
-    private final int                   mmapLimit;
+    private final IndexOptions          options;
     
     /**
      * Creates a new database and loads data from disk if requested.
@@ -133,6 +119,40 @@ public class LSMDatabase {
     public LSMDatabase(String databaseName, int databaseId, String databaseDir, int numIndices,
         boolean readFromDisk, ByteRangeComparator[] comparators, boolean compression, int maxEntriesPerBlock,
         int maxBlockFileSize, boolean disableMMap, int mmapLimit) throws BabuDBException {
+        this(databaseName, databaseId, databaseDir, numIndices, readFromDisk, comparators, null,
+            new IndexOptions().setCompressed(compression).setMaxEntriesPerBlock(maxEntriesPerBlock)
+                    .setMaxBlockFileSize(maxBlockFileSize).setMMap(!disableMMap, mmapLimit));
+    }
+    
+    /**
+     * Creates a new database with the given index tuning options and loads
+     * data from disk if requested.
+     * 
+     * @param databaseName
+     *            the name of the database
+     * @param databaseId
+     *            the numeric database ID
+     * @param databaseDir
+     *            the directory in which the DB stores the checkpoints
+     * @param numIndices
+     *            number of indices (cannot be changed)
+     * @param readFromDisk
+     *            true if data should be read from disk
+     * @param comparators
+     *            an array containing the comparators of all indices
+     * @param blockCodecs
+     *            an array containing the codecs for the values of compressed
+     *            on-disk indices, by index - may be <code>null</code>, in
+     *            which case the codec from the options is used for all indices
+     * @param options
+     *            the tuning options of all indices
+     * @throws BabuDBException
+     *             if on-disk data cannot be read or DB directory cannot be
+     *             created
+     */
+    public LSMDatabase(String databaseName, int databaseId, String databaseDir, int numIndices,
+        boolean readFromDisk, ByteRangeComparator[] comparators, BlockCodec[] blockCodecs, IndexOptions options)
+        throws BabuDBException {
         
         this.numIndices = numIndices;
         this.databaseId = databaseId;
@@ -144,11 +164,8 @@ public class LSMDatabase {
         this.databaseName = databaseName;
         this.trees = new ArrayList<LSMTree>(numIndices);
         this.comparators = comparators;
-        this.compression = compression;
-        this.maxEntriesPerBlock = maxEntriesPerBlock;
-        this.maxBlockFileSize = maxBlockFileSize;
-        this.disableMMap = disableMMap;
-        this.mmapLimit = mmapLimit;
+        this.blockCodecs = blockCodecs;
+        this.options = options.copy();
         
         if (readFromDisk) {
             loadFromDisk(numIndices);
@@ -156,8 +173,7 @@ public class LSMDatabase {
             try {
                 for (int i = 0; i < numIndices; i++) {
                     assert (comparators[i] != null);
-                    trees.add(new LSMTree(null, comparators[i], this.compression, maxEntriesPerBlock,
-                        maxBlockFileSize, !disableMMap, mmapLimit));
+                    trees.add(new LSMTree(null, comparators[i], getIndexOptions(i)));
                 }
                 ondiskLSN = NO_DB_LSN;
             } catch (IOException ex) {
@@ -231,16 +247,21 @@ public class LSMDatabase {
                                     + File.separator + "IX" + index + "V" + maxView + "SEQ" + maxSeq);
                     assert (comparators[index] != null);
                     trees.set(index, new LSMTree(databaseDir + File.separator
-                        + getSnapshotFilename(index, maxView, maxSeq), comparators[index], this.compression,
-                        this.maxEntriesPerBlock, this.maxBlockFileSize, !this.disableMMap, this.mmapLimit));
-                    ondiskLSN = new LSN(maxView, maxSeq);
+                        + getSnapshotFilename(index, maxView, maxSeq), comparators[index],
+                        getIndexOptions(index)));
+                    
+                    // if a checkpoint was interrupted, the indices may refer
+                    // to different LSNs; use the oldest one, so that no
+                    // updates are skipped when replaying the log
+                    LSN lsn = new LSN(maxView, maxSeq);
+                    if (ondiskLSN == null || lsn.compareTo(ondiskLSN) < 0)
+                        ondiskLSN = lsn;
                 } else {
                     ondiskLSN = NO_DB_LSN;
                     Logging.logMessage(Logging.LEVEL_DEBUG, Category.babudb, this, "no snapshot for database "
                         + this.databaseName);
                     assert (comparators[index] != null);
-                    trees.set(index, new LSMTree(null, comparators[index], this.compression,
-                        this.maxEntriesPerBlock, this.maxBlockFileSize, !this.disableMMap, this.mmapLimit));
+                    trees.set(index, new LSMTree(null, comparators[index], getIndexOptions(index)));
                 }
             } catch (IOException ex) {
                 Logging.logError(Logging.LEVEL_ERROR, this, ex);
@@ -270,6 +291,29 @@ public class LSMDatabase {
         return trees.size();
     }
     
+    /**
+     * Get the codec for the values of the given compressed on-disk index.
+     * 
+     * @param indexId
+     *            the index
+     * @return the codec, or <code>null</code> if values are not compressed
+     */
+    public BlockCodec getBlockCodec(int indexId) {
+        return blockCodecs == null || indexId >= blockCodecs.length ? options.getBlockCodec()
+            : blockCodecs[indexId];
+    }
+    
+    /**
+     * Get the tuning options of the given index.
+     * 
+     * @param indexId
+     *            the index
+     * @return the options
+     */
+    private IndexOptions getIndexOptions(int indexId) {
+        return options.copy().setBlockCodec(getBlockCodec(indexId));
+    }
+    
     /**
      * Get the LSN of the current on-disk snapshot (i.e. all writes with LSN <=
      * the on-disk LSN are in the snapshot on disk).
@@ -324,39 +368,66 @@ public class LSMDatabase {
         
         Logging.logMessage(Logging.LEVEL_INFO, Category.babudb, this,
                 "writing snapshot, database = " + databaseName + "...");
-        for (int index = 0; index < trees.size(); index++) {
-            
-            final LSMTree tree = trees.get(index);
-            
-            if (Logging.isInfo())
-                Logging.logMessage(Logging.LEVEL_INFO, Category.babudb, this,
-                        "snapshotting index " + index + "(dbName = " + databaseName + ")...");
-            
-            File tmpDir = new File(databaseDir, ".currentSnapshot");
-            File targetDir = new File(databaseDir, getSnapshotFilename(index, viewId, sequenceNo));
-            
-            if (targetDir.exists()) {
-                Logging.logMessage(Logging.LEVEL_DEBUG, Category.babudb, this,
-                        "skipping index'" + index + ", as a valid checkpoint (" + targetDir + ") exists already");
-                continue;
-            }
-            
-            // clean up incomplete old checkpoints if necessary
-            if (tmpDir.exists())
-                FSUtils.delTree(tmpDir);
-            
+        for (int index = 0; index < trees.size(); index++)
+            writeSnapshot(viewId, sequenceNo, snapIds, index);
+        if (Logging.isInfo())
+            Logging.logMessage(Logging.LEVEL_INFO, Category.babudb, this,
+                    "snapshot written, database = " + databaseName);
+    }
+    
+    /**
+     * Writes the snapshot of a single index to disk. Snapshots of different
+     * indices may be written concurrently.
+     * 
+     * @param viewId
+     *            current viewId (i.e. of the last write)
+     * @param sequenceNo
+     *            current sequenceNo (i.e. of the last write)
+     * @param snapIds
+     *            the snapshot Ids (obtained via createSnapshot).
+     * @param index
+     *            the index
+     * @throws java.io.IOException
+     *             if the snapshot cannot be written to disk
+     */
+    public void writeSnapshot(int viewId, long sequenceNo, int[] snapIds, int index) throws IOException {
+        
+        final LSMTree tree = trees.get(index);
+        
+        if (Logging.isInfo())
+            Logging.logMessage(Logging.LEVEL_INFO, Category.babudb, this,
+                    "snapshotting index " + index + "(dbName = " + databaseName + ")...");
+        
+        File tmpDir = new File(databaseDir, ".currentSnapshot" + index);
+        File targetDir = new File(databaseDir, getSnapshotFilename(index, viewId, sequenceNo));
+        
+        if (targetDir.exists()) {
+            Logging.logMessage(Logging.LEVEL_DEBUG, Category.babudb, this,
+                    "skipping index'" + index + ", as a valid checkpoint (" + targetDir + ") exists already");
+            return;
+        }
+        
+        // clean up incomplete old checkpoints if necessary
+        if (tmpDir.exists())
+            FSUtils.delTree(tmpDir);
+        
+        if (tree.canCarryForward()) {
+            // the index has not changed since the last checkpoint; move it
+            // instead of rewriting it
+            tree.carryForward(targetDir.getAbsolutePath());
+        } else if (tree.canMaterializeDelta()) {
+            // only write the changes since the last checkpoint
+            tree.materializeDelta(targetDir.getAbsolutePath(), snapIds[index]);
+        } else {
             tree.materializeSnapshot(tmpDir.getAbsolutePath(), snapIds[index]);
             
             if (!tmpDir.renameTo(targetDir))
                 throw new IOException("could not rename '" + tmpDir + "' to " + targetDir);
-            
-            if (Logging.isInfo())
-                Logging.logMessage(Logging.LEVEL_INFO, Category.babudb, this,
-                        "... done (index = " + index + ", dbName = " + databaseName + ")");
         }
+        
         if (Logging.isInfo())
             Logging.logMessage(Logging.LEVEL_INFO, Category.babudb, this,
-                    "snapshot written, database = " + databaseName);
+                    "... done (index = " + index + ", dbName = " + databaseName + ")");
     }
     
     public void writeSnapshot(String directory, int[] snapIds, int viewId, long sequenceNumber)
@@ -453,6 +524,23 @@ public class LSMDatabase {
         }
     }
     
+    /**
+     * Merges the delta runs of all indices where necessary. This may take
+     * place concurrently with the creation of a checkpoint; a failure is not
+     * critical, as the on-disk indices remain consistent.
+     */
+    public void compactRuns() {
+        
+        for (int index = 0; index < trees.size(); index++) {
+            try {
+                trees.get(index).compactRuns(new File(databaseDir, ".mergedRuns" + index).getAbsolutePath());
+            } catch (IOException exc) {
+                Logging.logMessage(Logging.LEVEL_WARN, Category.babudb, this, "could not merge delta runs of index "
+                    + index + ", dbName=" + databaseName + ": " + exc);
+            }
+        }
+    }
+    
     /**
      * Get the database's name.
      * 
@@ -528,8 +616,18 @@ public class LSMDatabase {
                     
                     if (snapshotDir.isDirectory()) {
                         for (File file : snapshotDir.listFiles()) {
-                            result.add(new DBFileMetaData(databaseDir + File.separator + fName
-                                + File.separator + file.getName(), file.length()));
+                            if (file.isDirectory()) {
+                                // delta runs of the index; temporary
+                                // directories of incomplete runs are skipped
+                                if (!LSMTree.isDeltaRunDirectory(file.getName()))
+                                    continue;
+                                for (File runFile : file.listFiles())
+                                    result.add(new DBFileMetaData(databaseDir + File.separator + fName
+                                        + File.separator + file.getName() + File.separator + runFile.getName(),
+                                        runFile.length()));
+                            } else
+                                result.add(new DBFileMetaData(databaseDir + File.separator + fName
+                                    + File.separator + file.getName(), file.length()));
                         }
                     } else {
                         // for compatibility with older versions of BabuDB
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2026, agent
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+package org.xtreemfs.babudb.lsmdb;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A queue of read requests that is shared by all worker threads. Unlike the
+ * queue of an individual worker, which only receives requests for the
+ * databases assigned to the worker, requests from the shared queue may be
+ * processed by any worker that has run out of work. This allows lookups on a
+ * single database to be spread across all workers.
+ * <p>
+ * Workers that find the queue empty register as idle before parking, so that
+ * the next request appended to the queue wakes up one of them.
+ * </p>
+ *
+ * @author agent
+ */
+public class SharedRequestQueue {
+
+    private final LinkedBlockingQueue<LSMDBRequest<?>> requests;
+
+    private final ConcurrentLinkedQueue<Thread>        idleWorkers = new ConcurrentLinkedQueue<Thread>();
+
+    private volatile boolean                           closed;
+
+    /**
+     * Creates a new shared request queue.
+     *
+     * @param maxQ
+     *            the maximum number of queued requests, or 0 for an unbounded
+     *            queue
+     */
+    public SharedRequestQueue(int maxQ) {
+        requests = maxQ > 0 ? new LinkedBlockingQueue<LSMDBRequest<?>>(maxQ)
+            : new LinkedBlockingQueue<LSMDBRequest<?>>();
+    }
+
+    /**
+     * Appends a request to the queue and wakes up an idle worker. Blocks until
+     * queue space becomes available.
+     *
+     * @param request
+     *            the request
+     * @throws InterruptedException
+     *             if the request could not be appended because the queue was
+     *             closed, or if the calling thread was interrupted
+     */
+    public void add(LSMDBRequest<?> request) throws InterruptedException {
+
+        if (closed)
+            throw new InterruptedException("Appending a request to the shared queue was interrupted, "
+                + "due shutdown.");
+
+        requests.put(request);
+
+        // if the queue was closed in the meantime, withdraw the request unless
+        // a worker has already taken it
+        if (closed && requests.remove(request))
+            throw new InterruptedException("Appending a request to the shared queue was interrupted, "
+                + "due shutdown.");
+
+        Thread worker = idleWorkers.poll();
+        if (worker != null)
+            LockSupport.unpark(worker);
+    }
+
+    /**
+     * Removes the first request from the queue.
+     *
+     * @return the first request, or <code>null</code>, if the queue is empty
+     */
+    public LSMDBRequest<?> poll() {
+        return requests.poll();
+    }
+
+    public boolean isEmpty() {
+        return requests.isEmpty();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Registers the calling worker thread as idle. The thread will be unparked
+     * when the next request is appended. Workers have to check whether the
+     * queue is empty after registering, before they park.
+     */
+    void registerIdle() {
+        idleWorkers.add(Thread.currentThread());
+    }
+
+    /**
+     * Unregisters the calling worker thread.
+     */
+    void unregisterIdle() {
+        idleWorkers.remove(Thread.currentThread());
+    }
+
+    /**
+     * Closes the queue. Subsequent calls of <code>add()</code> fail. Pending
+     * requests remain in the queue and have to be processed or failed by the
+     * workers.
+     */
+    public void close() {
+        closed = true;
+    }
+
+}
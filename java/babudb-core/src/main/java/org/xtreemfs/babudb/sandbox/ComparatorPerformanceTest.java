@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2026, agent
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.babudb.sandbox;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.xtreemfs.babudb.index.ByteRange;
+import org.xtreemfs.babudb.index.DefaultByteRangeComparator;
+
+/**
+ * Measures the throughput of {@link DefaultByteRangeComparator} for keys of
+ * different lengths and compares it with a byte-wise comparison. Key pairs
+ * only differ in their last byte, which is the worst case for both
+ * comparisons, as it occurs with keys sharing long prefixes. Ranges are
+ * compared on a direct buffer, like a memory-mapped block file.
+ *
+ * @author agent
+ */
+public class ComparatorPerformanceTest {
+
+    private static final int[] KEY_LENGTHS = { 8, 16, 32, 64, 128, 256 };
+
+    private static final int   NUM_KEYS    = 1024;
+
+    public static void main(String[] args) throws Exception {
+
+        if (args.length != 1) {
+            System.out.println("usage: java " + ComparatorPerformanceTest.class.getCanonicalName()
+                + " <num_comparisons>");
+            System.exit(1);
+        }
+
+        final int numComparisons = Integer.parseInt(args[0]);
+        DefaultByteRangeComparator comp = new DefaultByteRangeComparator();
+
+        // warm up
+        for (int length : KEY_LENGTHS)
+            run(comp, length, numComparisons / 10);
+
+        System.out.println("key length\tarrays (byte-wise / word-wise) [ops/s]\tranges (byte-wise / word-wise) [ops/s]");
+        for (int length : KEY_LENGTHS) {
+            long[] results = run(comp, length, numComparisons);
+            System.out.println(length + "\t\t" + results[0] + " / " + results[1] + "\t\t\t" + results[2] + " / "
+                + results[3]);
+        }
+    }
+
+    private static long[] run(DefaultByteRangeComparator comp, int length, int numComparisons) {
+
+        Random rnd = new Random(1);
+        byte[][] keys1 = new byte[NUM_KEYS][length];
+        byte[][] keys2 = new byte[NUM_KEYS][];
+        ByteBuffer data = ByteBuffer.allocateDirect(NUM_KEYS * length);
+        ByteRange[] ranges = new ByteRange[NUM_KEYS];
+        for (int i = 0; i < NUM_KEYS; i++) {
+            rnd.nextBytes(keys1[i]);
+            keys2[i] = keys1[i].clone();
+            keys2[i][length - 1]++;
+            data.position(i * length);
+            data.put(keys1[i]);
+            ranges[i] = new ByteRange(data, i * length, (i + 1) * length);
+        }
+
+        long[] results = new long[4];
+        int sum = 0;
+
+        long t0 = System.nanoTime();
+        for (int i = 0; i < numComparisons; i++)
+            sum += compareBytewise(keys1[i % NUM_KEYS], keys2[i % NUM_KEYS]);
+        results[0] = opsPerSec(numComparisons, System.nanoTime() - t0);
+
+        t0 = System.nanoTime();
+        for (int i = 0; i < numComparisons; i++)
+            sum += comp.compare(keys1[i % NUM_KEYS], keys2[i % NUM_KEYS]);
+        results[1] = opsPerSec(numComparisons, System.nanoTime() - t0);
+
+        t0 = System.nanoTime();
+        for (int i = 0; i < numComparisons; i++)
+            sum += compareBytewise(ranges[i % NUM_KEYS], keys2[i % NUM_KEYS]);
+        results[2] = opsPerSec(numComparisons, System.nanoTime() - t0);
+
+        t0 = System.nanoTime();
+        for (int i = 0; i < numComparisons; i++)
+            sum += comp.compare(ranges[i % NUM_KEYS], keys2[i % NUM_KEYS]);
+        results[3] = opsPerSec(numComparisons, System.nanoTime() - t0);
+
+        // make sure that the comparisons cannot be eliminated
+        if (sum == 42)
+            System.out.print("");
+
+        return results;
+    }
+
+    /**
+     * The byte-wise comparisons formerly used by the default comparator.
+     */
+    private static int compareBytewise(ByteRange rng, byte[] buf) {
+
+        int n = rng.getStartOffset() + Math.min(rng.getSize(), buf.length);
+        int j = 0;
+        for (int i = rng.getStartOffset(); i < n; i++, j++) {
+            byte v1 = rng.getBuf().get(i);
+            byte v2 = buf[j];
+            if (v1 == v2)
+                continue;
+            if (v1 < v2)
+                return -1;
+            return 1;
+        }
+
+        return rng.getSize() - buf.length;
+    }
+
+    private static int compareBytewise(byte[] buf1, byte[] buf2) {
+
+        int n = Math.min(buf1.length, buf2.length);
+        for (int i = 0; i < n; i++) {
+            byte v1 = buf1[i];
+            byte v2 = buf2[i];
+            if (v1 == v2)
+                continue;
+            if (v1 < v2)
+                return -1;
+            return 1;
+        }
+
+        return buf1.length - buf2.length;
+    }
+
+    private static long opsPerSec(int ops, long nanos) {
+        return (long) (ops / (nanos / 1e9));
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2026, agent
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.babudb.sandbox;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import org.xtreemfs.babudb.log.DiskLogFile;
+import org.xtreemfs.babudb.log.LogEntry;
+import org.xtreemfs.foundation.buffer.BufferPool;
+import org.xtreemfs.foundation.buffer.ReusableBuffer;
+import org.xtreemfs.foundation.logging.Logging;
+
+/**
+ * Measures the time needed to read all entries of a database log file. The
+ * chunked {@link DiskLogFile} reader is compared with a reader that reads each
+ * entry with separate system calls, as <code>DiskLogFile</code> used to do.
+ *
+ * @author agent
+ */
+public class LogReadPerformanceTest {
+
+    public static void main(String[] args) throws Exception {
+
+        if (args.length < 2) {
+            System.out.println("usage: java " + LogReadPerformanceTest.class.getCanonicalName()
+                + " <log_file> <size_in_MB> [<payload_size>]");
+            System.exit(1);
+        }
+
+        Logging.start(Logging.LEVEL_ERROR);
+
+        File logFile = new File(args[0]);
+        long size = Long.parseLong(args[1]) * 1024 * 1024;
+        int payloadSize = args.length > 2 ? Integer.parseInt(args[2]) : 256;
+
+        if (!logFile.exists())
+            createLog(logFile, size, payloadSize);
+
+        System.out.println("log file size: " + logFile.length() / 1024 / 1024 + " MB");
+
+        for (int i = 0; i < 3; i++) {
+
+            long t0 = System.currentTimeMillis();
+            long count = readChunked(logFile);
+            long chunked = System.currentTimeMillis() - t0;
+
+            t0 = System.currentTimeMillis();
+            long countLegacy = readPerEntry(logFile);
+            long legacy = System.currentTimeMillis() - t0;
+
+            if (count != countLegacy)
+                throw new Exception("readers returned different numbers of entries: " + count + ", "
+                    + countLegacy);
+
+            System.out.println(count + " entries: chunked " + chunked + " ms, per entry " + legacy + " ms");
+        }
+    }
+
+    private static void createLog(File logFile, long size, int payloadSize) throws Exception {
+
+        Random rnd = new Random(1);
+        CRC32 csum = new CRC32();
+        FileOutputStream out = new FileOutputStream(logFile);
+        FileChannel channel = out.getChannel();
+
+        long seqNo = 1;
+        for (long written = 0; written < size;) {
+
+            byte[] payload = new byte[payloadSize];
+            rnd.nextBytes(payload);
+
+            LogEntry e = new LogEntry(ReusableBuffer.wrap(payload), null, LogEntry.PAYLOAD_TYPE_TRANSACTION);
+            e.assignId(1, seqNo++);
+            ReusableBuffer buf = e.serialize(csum);
+            csum.reset();
+            written += buf.remaining();
+            while (buf.hasRemaining())
+                channel.write(buf.getBuffer());
+            BufferPool.free(buf);
+            e.free();
+        }
+
+        out.close();
+    }
+
+    private static long readChunked(File logFile) throws Exception {
+
+        long count = 0;
+        DiskLogFile f = new DiskLogFile(logFile.getAbsolutePath());
+        while (f.hasNext()) {
+            f.next().free();
+            count++;
+        }
+        f.close();
+
+        return count;
+    }
+
+    private static long readPerEntry(File logFile) throws Exception {
+
+        long count = 0;
+        CRC32 csum = new CRC32();
+        ByteBuffer myInt = ByteBuffer.allocate(Integer.SIZE / 8);
+        FileInputStream in = new FileInputStream(logFile);
+        FileChannel channel = in.getChannel();
+
+        while (channel.position() != channel.size()) {
+
+            channel.read(myInt);
+            myInt.flip();
+            int entrySize = myInt.getInt();
+            myInt.flip();
+            channel.position(channel.position() - Integer.SIZE / 8);
+
+            ReusableBuffer item = BufferPool.allocate(entrySize);
+            channel.read(item.getBuffer());
+            item.flip();
+            LogEntry.deserialize(item, csum).free();
+            csum.reset();
+            BufferPool.free(item);
+            count++;
+        }
+        in.close();
+
+        return count;
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2026, agent
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.babudb.sandbox;
+
+import java.util.LinkedList;
+import java.util.concurrent.CountDownLatch;
+
+import org.xtreemfs.babudb.lsmdb.BoundedMPSCQueue;
+
+/**
+ * Measures the enqueue throughput of the request queues used by the BabuDB
+ * worker and logger threads for a growing number of producers. The lock-free
+ * {@link BoundedMPSCQueue} is compared with a monitor-based queue as it was
+ * used before.
+ *
+ * @author agent
+ */
+public class QueuePerformanceTest {
+
+    private static final int[] PRODUCERS = { 1, 2, 4, 8, 16, 32, 64 };
+
+    public static void main(String[] args) throws Exception {
+
+        if (args.length != 2) {
+            System.out.println("usage: java " + QueuePerformanceTest.class.getCanonicalName()
+                + " <num_elements> <max_queue_size>");
+            System.exit(1);
+        }
+
+        final int numElements = Integer.parseInt(args[0]);
+        final int maxQ = Integer.parseInt(args[1]);
+
+        // warm up
+        runLockFree(4, numElements / 4, maxQ);
+        runMonitor(4, numElements / 4, maxQ);
+
+        System.out.println("producers\tlock-free [ops/s]\tmonitor [ops/s]");
+        for (int producers : PRODUCERS) {
+            long lockFree = runLockFree(producers, numElements, maxQ);
+            long monitor = runMonitor(producers, numElements, maxQ);
+            System.out.println(producers + "\t\t" + lockFree + "\t\t\t" + monitor);
+        }
+    }
+
+    private static long runLockFree(int producers, final int numElements, int maxQ) throws Exception {
+
+        final BoundedMPSCQueue<Object> queue = new BoundedMPSCQueue<Object>(maxQ);
+        final Object element = new Object();
+
+        Thread consumer = new Thread() {
+            public void run() {
+                for (int i = 0; i < numElements;) {
+                    if (queue.poll() != null)
+                        i++;
+                    else
+                        queue.await(0);
+                }
+            }
+        };
+
+        return run(producers, numElements, consumer, new Producer() {
+            public void put() throws InterruptedException {
+                queue.put(element);
+            }
+        });
+    }
+
+    private static long runMonitor(int producers, final int numElements, final int maxQ) throws Exception {
+
+        final LinkedList<Object> queue = new LinkedList<Object>();
+        final Object element = new Object();
+
+        Thread consumer = new Thread() {
+            public void run() {
+                try {
+                    for (int i = 0; i < numElements; i++) {
+                        synchronized (queue) {
+                            while (queue.isEmpty())
+                                queue.wait();
+                            queue.poll();
+                            queue.notifyAll();
+                        }
+                    }
+                } catch (InterruptedException exc) {
+                    // ignore
+                }
+            }
+        };
+
+        return run(producers, numElements, consumer, new Producer() {
+            public void put() throws InterruptedException {
+                synchronized (queue) {
+                    while (maxQ > 0 && queue.size() >= maxQ)
+                        queue.wait();
+                    queue.add(element);
+                    queue.notifyAll();
+                }
+            }
+        });
+    }
+
+    private static long run(int producers, int numElements, Thread consumer, final Producer producer)
+        throws Exception {
+
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[producers];
+        for (int i = 0; i < producers; i++) {
+            final int count = numElements / producers + (i < numElements % producers ? 1 : 0);
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                        for (int j = 0; j < count; j++)
+                            producer.put();
+                    } catch (InterruptedException exc) {
+                        // ignore
+                    }
+                }
+            };
+            threads[i].start();
+        }
+
+        consumer.start();
+
+        long t0 = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads)
+            thread.join();
+        consumer.join();
+        long time = System.nanoTime() - t0;
+
+        return numElements * 1000000000L / time;
+    }
+
+    private interface Producer {
+        void put() throws InterruptedException;
+    }
+
+}
@@ -14,6 +14,8 @@ public interface BabuDBView {
     
     public byte[] directLookup(int indexId, byte[] key) throws BabuDBException;
     
+    public byte[][] directMultiLookup(int indexId, byte[][] keys) throws BabuDBException;
+    
     public ResultSet<byte[], byte[]> directPrefixLookup(int indexId, byte[] key, boolean ascending)
         throws BabuDBException;
     
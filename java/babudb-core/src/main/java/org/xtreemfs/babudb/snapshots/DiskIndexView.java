@@ -78,6 +78,16 @@ public class DiskIndexView implements BabuDBView {
         return index.lookup(key);
     }
     
+    @Override
+    public byte[][] directMultiLookup(int indexId, byte[][] keys) throws BabuDBException {
+        
+        DiskIndex index = indexMap.get(indexId);
+        if (index == null)
+            throw new BabuDBException(ErrorCode.NO_SUCH_INDEX, "index " + indexId + " does not exist");
+        
+        return index.lookup(keys);
+    }
+    
     @Override
     public ResultSet<byte[], byte[]> directPrefixLookup(int indexId, byte[] key, boolean ascending) throws BabuDBException {
         
@@ -7,7 +7,9 @@
  */
 package org.xtreemfs.babudb.snapshots;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Map.Entry;
@@ -56,6 +58,30 @@ public class InMemoryView implements BabuDBView {
                 db.directLookup(indexId, snapId, key) : null;
     }
     
+    @Override
+    public byte[][] directMultiLookup(int indexId, byte[][] keys) throws BabuDBException {
+        
+        Integer snapId = snapIDMap.get(indexId);
+        if (snapId == null)
+            throw new BabuDBException(ErrorCode.NO_SUCH_INDEX, "index " + indexId + " does not exist");
+        
+        // only look up the keys contained in the snapshot
+        List<byte[]> covered = new ArrayList<byte[]>(keys.length);
+        for (byte[] key : keys)
+            if (isCovered(indexId, key) && snap.containsKey(indexId, key))
+                covered.add(key);
+        
+        byte[][] values = covered.isEmpty() ? new byte[0][] : db.directMultiLookup(indexId, snapId,
+            covered.toArray(new byte[covered.size()][]));
+        
+        byte[][] results = new byte[keys.length][];
+        for (int i = 0, j = 0; i < keys.length && j < covered.size(); i++)
+            if (keys[i] == covered.get(j))
+                results[i] = values[j++];
+        
+        return results;
+    }
+    
     @Override
     public ResultSet<byte[], byte[]> directPrefixLookup(final int indexId, final byte[] key,
         final boolean ascending) throws BabuDBException {
@@ -12,6 +12,7 @@ import org.xtreemfs.babudb.api.database.DatabaseRequestResult;
 import org.xtreemfs.babudb.api.database.DatabaseRO;
 import org.xtreemfs.babudb.api.database.ResultSet;
 import org.xtreemfs.babudb.api.database.UserDefinedLookup;
+import org.xtreemfs.babudb.api.database.ValueView;
 import org.xtreemfs.babudb.api.dev.BabuDBInternal;
 import org.xtreemfs.babudb.api.exception.BabuDBException;
 
@@ -62,6 +63,44 @@ public class Snapshot implements DatabaseRO {
         return result;
     }
 
+    /* (non-Javadoc)
+     * @see org.xtreemfs.babudb.api.database.DatabaseRO#lookupView(int, byte[], java.lang.Object)
+     */
+    @Override
+    public DatabaseRequestResult<ValueView> lookupView(int indexId, byte[] key, Object context) {
+        BabuDBRequestResultImpl<ValueView> result = 
+            new BabuDBRequestResultImpl<ValueView>(context, dbs.getResponseManager());
+        
+        // snapshot lookups return copies, which are wrapped in views
+        byte[] r;
+        try {
+            r = view.directLookup(indexId, key);
+            result.finished(r == null ? null : new ValueView(r));
+        } catch (BabuDBException e) {
+            result.failed(e);
+        }
+        
+        return result;
+    }
+
+    /* (non-Javadoc)
+     * @see org.xtreemfs.babudb.api.database.DatabaseRO#multiLookup(int, byte[][], java.lang.Object)
+     */
+    @Override
+    public DatabaseRequestResult<byte[][]> multiLookup(int indexId, byte[][] keys, Object context) {
+        BabuDBRequestResultImpl<byte[][]> result = 
+            new BabuDBRequestResultImpl<byte[][]>(context, dbs.getResponseManager());
+        byte[][] r;
+        try {
+            r = view.directMultiLookup(indexId, keys);
+            result.finished(r);
+        } catch (BabuDBException e) {
+            result.failed(e);
+        }
+        
+        return result;
+    }
+
     /* (non-Javadoc)
      * @see org.xtreemfs.babudb.lsmdb.DatabaseRO#prefixLookup(int, byte[], java.lang.Object)
      */
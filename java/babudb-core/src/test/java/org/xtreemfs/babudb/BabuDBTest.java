@@ -9,7 +9,9 @@
 package org.xtreemfs.babudb;
 
 import java.io.File;
+import java.io.FilenameFilter;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Map.Entry;
 
 import junit.framework.TestCase;
@@ -25,10 +27,18 @@ import org.xtreemfs.babudb.api.StaticInitialization;
 import org.xtreemfs.babudb.api.database.Database;
 import org.xtreemfs.babudb.api.database.DatabaseInsertGroup;
 import org.xtreemfs.babudb.api.database.UserDefinedLookup;
+import org.xtreemfs.babudb.api.database.ValueView;
+import org.xtreemfs.babudb.api.dev.DatabaseInternal;
 import org.xtreemfs.babudb.api.exception.BabuDBException;
 import org.xtreemfs.babudb.config.BabuDBConfig;
+import org.xtreemfs.babudb.config.ConfigBuilder;
+import org.xtreemfs.babudb.log.LaneLogIterator;
+import org.xtreemfs.babudb.log.LogEntry;
 import org.xtreemfs.babudb.log.DiskLogger.SyncMode;
+import org.xtreemfs.babudb.lsmdb.LSN;
+import org.xtreemfs.babudb.lsmdb.LSMDatabase.DBFileMetaData;
 import org.xtreemfs.babudb.lsmdb.LSMLookupInterface;
+import org.xtreemfs.babudb.snapshots.DefaultSnapshotConfig;
 import org.xtreemfs.foundation.buffer.BufferPool;
 import org.xtreemfs.foundation.logging.Logging;
 import org.xtreemfs.foundation.logging.Logging.Category;
@@ -113,6 +123,68 @@ public class BabuDBTest extends TestCase {
         database.shutdown();
     }
     
+    @Test
+    public void testParallelReplay() throws Exception {
+        
+        final int numDBs = 4;
+        final int numKeys = 50;
+        final int numRounds = 20;
+        
+        database = BabuDBFactory.createBabuDB(new BabuDBConfig(baseDir, baseDir, 1, 0, 0,
+            SyncMode.SYNC_WRITE, 0, 0, COMPRESSION, maxNumRecs, maxBlockFileSize, !MMAP, -1, LOG_LEVEL));
+        
+        Database[] dbs = new Database[numDBs];
+        for (int i = 0; i < numDBs; i++)
+            dbs[i] = database.getDatabaseManager().createDatabase("test" + i, 2);
+        
+        // repeatedly overwrite and delete the same keys in all databases, so
+        // that the result depends on the order in which the log is replayed
+        for (int round = 0; round < numRounds; round++) {
+            for (int i = 0; i < numDBs; i++) {
+                DatabaseInsertGroup ir = dbs[i].createInsertGroup();
+                for (int k = 0; k < numKeys; k++) {
+                    if ((k + round) % 7 == 0)
+                        ir.addDelete(k % 2, ("key" + k).getBytes());
+                    else
+                        ir.addInsert(k % 2, ("key" + k).getBytes(), ("v" + round).getBytes());
+                }
+                dbs[i].insert(ir, null).get();
+            }
+            
+            if (round == numRounds / 2)
+                database.getSnapshotManager().createPersistentSnapshot("test0",
+                    new DefaultSnapshotConfig("snap", new int[] { 0 }, null, null));
+        }
+        
+        ((BabuDBImpl) database).__test_killDB_dangerous();
+        Thread.sleep(500);
+        
+        database = BabuDBFactory.createBabuDB(new BabuDBConfig(baseDir, baseDir, 1, 0, 0,
+            SyncMode.SYNC_WRITE, 0, 0, COMPRESSION, maxNumRecs, maxBlockFileSize, !MMAP, -1, LOG_LEVEL));
+        
+        // the log contains the creation of each database, all insertions and
+        // the snapshot creation
+        assertEquals((long) numDBs * (numRounds + 1) + 1, database.getRuntimeState("logReplayer.replayedEntries"));
+        
+        for (int i = 0; i < numDBs; i++) {
+            Database db = database.getDatabaseManager().getDatabase("test" + i);
+            for (int k = 0; k < numKeys; k++) {
+                byte[] result = db.lookup(k % 2, ("key" + k).getBytes(), null).get();
+                if ((k + numRounds - 1) % 7 == 0)
+                    assertNull(result);
+                else
+                    assertEquals("v" + (numRounds - 1), new String(result));
+            }
+        }
+        
+        // the snapshot has to reflect the state at the time it was created
+        byte[] result = database.getSnapshotManager().getSnapshotDB("test0", "snap").lookup(0,
+            "key2".getBytes(), null).get();
+        assertEquals("v" + numRounds / 2, new String(result));
+        
+        database.shutdown();
+    }
+    
     @Test
     public void testReplayAfterCrash() throws Exception {
         database = BabuDBFactory.createBabuDB(new BabuDBConfig(baseDir, baseDir, 1, 0, 0,
@@ -293,6 +365,66 @@ public class BabuDBTest extends TestCase {
         database.shutdown();
     }
     
+    @Test
+    public void testParallelCheckpoint() throws Exception {
+        
+        BabuDBConfig cfg = new ConfigBuilder().setDataPath(baseDir).setLogAppendSyncMode(SyncMode.FSYNC)
+                .setCheckpointThreads(4).build();
+        
+        database = BabuDBFactory.createBabuDB(cfg);
+        for (int d = 0; d < 5; d++) {
+            Database db = database.getDatabaseManager().createDatabase("test" + d, 3);
+            for (int i = 0; i < 100; i++)
+                db.singleInsert(i % 3, (i + "").getBytes(), ("v" + d + "." + i).getBytes(), null).get();
+        }
+        
+        database.getCheckpointer().checkpoint();
+        
+        Map<?, ?> durations = (Map<?, ?>) database.getRuntimeState("checkpointer.lastCpDbDurationsMillis");
+        assertEquals(5, durations.size());
+        for (int d = 0; d < 5; d++)
+            assertTrue((Long) durations.get("test" + d) >= 0);
+        
+        // all indices should be restored from the checkpoint
+        database.shutdown();
+        database = BabuDBFactory.createBabuDB(cfg);
+        
+        for (int d = 0; d < 5; d++) {
+            Database db = database.getDatabaseManager().getDatabase("test" + d);
+            for (int i = 0; i < 100; i++)
+                assertEquals("v" + d + "." + i, new String(db.lookup(i % 3, (i + "").getBytes(), null).get()));
+        }
+        
+        database.shutdown();
+    }
+    
+    @Test
+    public void testRateLimitedCheckpoint() throws Exception {
+    
+        BabuDBConfig cfg = new ConfigBuilder().setDataPath(baseDir).setLogAppendSyncMode(SyncMode.FSYNC)
+                .setWriteRateLimit(1024 * 1024, 100000).build();
+        
+        database = BabuDBFactory.createBabuDB(cfg);
+        Database db = database.getDatabaseManager().createDatabase("test", 2);
+        for (int i = 0; i < 1000; i++)
+            db.singleInsert(i % 2, (i + "").getBytes(), ("v" + i).getBytes(), null).get();
+        
+        database.getCheckpointer().checkpoint();
+        
+        // the written indices must have passed the rate limiter
+        assertTrue((Long) database.getRuntimeState("writeRateLimiter.bytesWritten") > 0);
+        assertEquals(1024L * 1024, database.getRuntimeState("writeRateLimiter.bytesPerSec"));
+        
+        database.shutdown();
+        database = BabuDBFactory.createBabuDB(cfg);
+        
+        db = database.getDatabaseManager().getDatabase("test");
+        for (int i = 0; i < 1000; i++)
+            assertEquals("v" + i, new String(db.lookup(i % 2, (i + "").getBytes(), null).get()));
+        
+        database.shutdown();
+    }
+    
     @Test
     public void testUserDefinedLookup() throws Exception {
         
@@ -425,6 +557,468 @@ public class BabuDBTest extends TestCase {
         database.shutdown();
     }
     
+    @Test
+    public void testMultiLookup() throws Exception {
+        
+        database = BabuDBFactory.createBabuDB(new BabuDBConfig(baseDir, baseDir, 1, 0, 0, SyncMode.ASYNC, 0,
+            0, COMPRESSION, maxNumRecs, maxBlockFileSize, !MMAP, -1, LOG_LEVEL));
+        Database db = database.getDatabaseManager().createDatabase("test", 2);
+        
+        for (int i = 0; i < 1000; i += 2) {
+            DatabaseInsertGroup ir = db.createInsertGroup();
+            ir.addInsert(0, (i + "").getBytes(), ("v" + i).getBytes());
+            db.insert(ir, null).get();
+        }
+        
+        // look up all even and odd keys in descending order
+        byte[][] keys = new byte[1000][];
+        for (int i = 0; i < 1000; i++)
+            keys[i] = ((999 - i) + "").getBytes();
+        
+        for (int round = 0; round < 3; round++) {
+            
+            byte[][] values = db.multiLookup(0, keys, null).get();
+            assertEquals(keys.length, values.length);
+            for (int i = 0; i < 1000; i++) {
+                int key = 999 - i;
+                if (key % 2 == 0 && (round < 2 || key % 4 != 0))
+                    assertEquals("v" + key, new String(values[i]));
+                else
+                    assertNull(values[i]);
+            }
+            
+            if (round == 0) {
+                // look up the keys again from the on-disk index
+                database.getCheckpointer().checkpoint();
+            } else if (round == 1) {
+                // delete some keys
+                for (int i = 0; i < 1000; i += 4) {
+                    DatabaseInsertGroup ir = db.createInsertGroup();
+                    ir.addDelete(0, (i + "").getBytes());
+                    db.insert(ir, null).get();
+                }
+            }
+        }
+        
+        // the second index is empty
+        for (byte[] value : db.multiLookup(1, keys, null).get())
+            assertNull(value);
+        
+        try {
+            db.multiLookup(2, keys, null).get();
+            fail("multi-lookup on a non-existing index should have failed");
+        } catch (BabuDBException exc) {
+            // ignore
+        }
+        
+        database.shutdown();
+    }
+    
+    @Test
+    public void testLookupView() throws Exception {
+        
+        BabuDBConfig cfg = new ConfigBuilder().setDataPath(baseDir).setLogAppendSyncMode(SyncMode.ASYNC)
+                .setMaxDeltaRuns(8).build();
+        
+        database = BabuDBFactory.createBabuDB(cfg);
+        Database db = database.getDatabaseManager().createDatabase("test", 1);
+        
+        for (int i = 0; i < 1000; i++)
+            db.singleInsert(0, (i + "").getBytes(), ("v" + i).getBytes(), null).get();
+        
+        // write the base index, then delete some keys and write a delta run,
+        // and finally overwrite some keys in memory
+        database.getCheckpointer().checkpoint();
+        
+        DatabaseInsertGroup ir = db.createInsertGroup();
+        for (int i = 0; i < 1000; i += 10)
+            ir.addDelete(0, (i + "").getBytes());
+        db.insert(ir, null).get();
+        
+        database.getCheckpointer().checkpoint();
+        
+        for (int i = 1; i < 1000; i += 10)
+            db.singleInsert(0, (i + "").getBytes(), ("w" + i).getBytes(), null).get();
+        
+        for (int i = 0; i < 1000; i++) {
+            ValueView view = db.lookupView(0, (i + "").getBytes(), null).get();
+            if (i % 10 == 0)
+                assertNull(view);
+            else {
+                assertTrue(view.getValue().isReadOnly());
+                assertEquals((i % 10 == 1 ? "w" : "v") + i, new String(view.toArray()));
+                view.free();
+            }
+        }
+        
+        assertNull(db.lookupView(0, "x".getBytes(), null).get());
+        
+        try {
+            db.lookupView(1, "1".getBytes(), null).get();
+            fail("lookup on a non-existing index should have failed");
+        } catch (BabuDBException exc) {
+            // ignore
+        }
+        
+        database.shutdown();
+    }
+    
+    @Test
+    public void testIncrementalCheckpoints() throws Exception {
+        
+        BabuDBConfig cfg = new ConfigBuilder().setDataPath(baseDir).setLogAppendSyncMode(SyncMode.FSYNC)
+                .setMaxDeltaRuns(8).build();
+        
+        database = BabuDBFactory.createBabuDB(cfg);
+        Database db = database.getDatabaseManager().createDatabase("test", 1);
+        
+        for (int i = 0; i < 1000; i++)
+            db.singleInsert(0, (i + "").getBytes(), ("v" + i).getBytes(), null).get();
+        
+        database.getCheckpointer().checkpoint();
+        
+        // each of the following checkpoints only writes a delta run
+        for (int round = 0; round < 3; round++) {
+            
+            DatabaseInsertGroup ir = db.createInsertGroup();
+            for (int i = round * 10; i < round * 10 + 10; i++) {
+                ir.addDelete(0, (i + "").getBytes());
+                ir.addInsert(0, ("x" + i).getBytes(), ("v" + round).getBytes());
+            }
+            db.insert(ir, null).get();
+            
+            database.getCheckpointer().checkpoint();
+        }
+        
+        // the index directory should contain the base index and three runs
+        File[] snapshots = new File(baseDir, "test").listFiles();
+        assertEquals(1, snapshots.length);
+        assertEquals(3, snapshots[0].list(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.startsWith("delta_");
+            }
+        }).length);
+        
+        // the files of a leftover temporary delta run must not be listed as
+        // part of the latest snapshot
+        File tmpRun = new File(snapshots[0], ".delta");
+        assertTrue(tmpRun.mkdir());
+        assertTrue(new File(tmpRun, "blockindex.idx").createNewFile());
+        
+        int runFiles = 0;
+        for (DBFileMetaData file : ((DatabaseInternal) db).getLSMDB().getLastestSnapshotFiles()) {
+            assertFalse(file.file, file.file.contains(File.separator + ".delta" + File.separator));
+            if (file.file.contains(File.separator + "delta_"))
+                runFiles++;
+        }
+        assertTrue(runFiles > 0);
+        FSUtils.delTree(tmpRun);
+        
+        database.shutdown();
+        
+        // restart the database and check its content
+        database = BabuDBFactory.createBabuDB(cfg);
+        db = database.getDatabaseManager().getDatabase("test");
+        
+        for (int i = 0; i < 1000; i++) {
+            byte[] v = db.lookup(0, (i + "").getBytes(), null).get();
+            if (i < 30)
+                assertNull(v);
+            else
+                assertEquals("v" + i, new String(v));
+        }
+        
+        for (int i = 0; i < 30; i++)
+            assertEquals("v" + (i / 10), new String(db.lookup(0, ("x" + i).getBytes(), null).get()));
+        
+        Iterator<Entry<byte[], byte[]>> it = db.prefixLookup(0, new byte[0], null).get();
+        int count = 0;
+        while (it.hasNext()) {
+            it.next();
+            count++;
+        }
+        assertEquals(1000, count);
+        
+        database.shutdown();
+    }
+    
+    @Test
+    public void testUnchangedIndicesCarriedForward() throws Exception {
+    
+        BabuDBConfig cfg = new ConfigBuilder().setDataPath(baseDir).setLogAppendSyncMode(SyncMode.FSYNC).build();
+        
+        database = BabuDBFactory.createBabuDB(cfg);
+        Database db = database.getDatabaseManager().createDatabase("test", 3);
+        for (int i = 0; i < 300; i++)
+            db.singleInsert(i % 3, (i + "").getBytes(), ("v" + i).getBytes(), null).get();
+        
+        database.getCheckpointer().checkpoint();
+        
+        // mark the on-disk indices, so as to detect whether they are rewritten
+        File dbDir = new File(baseDir, "test");
+        File[] snapshots = dbDir.listFiles();
+        assertEquals(3, snapshots.length);
+        for (File snapshot : snapshots)
+            assertTrue(new File(snapshot, "marker").createNewFile());
+        
+        // only modify the first index
+        for (int i = 0; i < 10; i++)
+            db.singleInsert(0, ("x" + i).getBytes(), ("x" + i).getBytes(), null).get();
+        
+        database.getCheckpointer().checkpoint();
+        
+        // the unchanged indices should have been moved to the new checkpoint
+        String lsn = null;
+        snapshots = dbDir.listFiles();
+        assertEquals(3, snapshots.length);
+        for (File snapshot : snapshots) {
+            String name = snapshot.getName();
+            if (lsn == null)
+                lsn = name.substring(name.indexOf('V'));
+            assertEquals(lsn, name.substring(name.indexOf('V')));
+            assertEquals(!name.startsWith("IX0V"), new File(snapshot, "marker").exists());
+        }
+        
+        // checkpoints without any changes should not rewrite any indices
+        database.getCheckpointer().checkpoint();
+        for (File snapshot : dbDir.listFiles())
+            assertEquals(!snapshot.getName().startsWith("IX0V"), new File(snapshot, "marker").exists());
+        
+        database.shutdown();
+        
+        // restart the database and check its content
+        database = BabuDBFactory.createBabuDB(cfg);
+        db = database.getDatabaseManager().getDatabase("test");
+        
+        for (int i = 0; i < 300; i++)
+            assertEquals("v" + i, new String(db.lookup(i % 3, (i + "").getBytes(), null).get()));
+        for (int i = 0; i < 10; i++)
+            assertEquals("x" + i, new String(db.lookup(0, ("x" + i).getBytes(), null).get()));
+        
+        database.shutdown();
+    }
+    
+    @Test
+    public void testDurability() throws Exception {
+    
+        // relaxed database-wide sync mode
+        BabuDBConfig cfg = new ConfigBuilder().setDataPath(baseDir).setLogAppendSyncMode(SyncMode.ASYNC).build();
+        
+        database = BabuDBFactory.createBabuDB(cfg);
+        Database db = database.getDatabaseManager().createDatabase("test", 1);
+        for (int i = 0; i < 100; i++)
+            db.singleInsert(0, (i + "").getBytes(), ("v" + i).getBytes(), null).get();
+        long syncs = getSyncCount();
+        
+        // strict inserts and transactions have to force the log
+        db.singleInsert(0, "a".getBytes(), "a".getBytes(), SyncMode.FSYNC, null).get();
+        assertEquals(syncs + 1, getSyncCount());
+        
+        DatabaseInsertGroup ir = db.createInsertGroup();
+        ir.addInsert(0, "b".getBytes(), "b".getBytes());
+        db.insert(ir, SyncMode.SYNC_WRITE, null).get();
+        assertEquals(syncs + 2, getSyncCount());
+        
+        DatabaseManager dbm = database.getDatabaseManager();
+        dbm.executeTransaction(dbm.createTransaction().insertRecord("test", 0, "c".getBytes(), "c".getBytes()),
+                SyncMode.FDATASYNC);
+        assertEquals(syncs + 3, getSyncCount());
+        
+        database.shutdown();
+        
+        // strict database-wide sync mode
+        cfg = new ConfigBuilder().setDataPath(baseDir).setLogAppendSyncMode(SyncMode.FSYNC).build();
+        
+        database = BabuDBFactory.createBabuDB(cfg);
+        db = database.getDatabaseManager().getDatabase("test");
+        syncs = getSyncCount();
+        
+        // relaxed inserts must not force the log
+        for (int i = 0; i < 100; i++)
+            db.singleInsert(0, ("x" + i).getBytes(), ("x" + i).getBytes(), SyncMode.ASYNC, null).get();
+        db.singleInsert(0, "d".getBytes(), "d".getBytes(), null).get();
+        assertEquals(syncs + 1, getSyncCount());
+        
+        for (int i = 0; i < 100; i++)
+            assertEquals("v" + i, new String(db.lookup(0, (i + "").getBytes(), null).get()));
+        for (String key : new String[] { "a", "b", "c", "d" })
+            assertEquals(key, new String(db.lookup(0, key.getBytes(), null).get()));
+        
+        database.shutdown();
+    }
+    
+    private long getSyncCount() {
+        long count = 0;
+        for (long c : (long[]) database.getRuntimeState("diskLogger.syncLatencyHistogram"))
+            count += c;
+        return count;
+    }
+    
+    @Test
+    public void testLogLanes() throws Exception {
+        
+        BabuDBConfig cfg = new ConfigBuilder().setDataPath(baseDir).setLogAppendSyncMode(SyncMode.FSYNC)
+                .setMultiThreaded(2).setLogLanes(3).build();
+        
+        database = BabuDBFactory.createBabuDB(cfg);
+        assertEquals(3, database.getRuntimeState("diskLogger.laneCount"));
+        
+        DatabaseManager dbm = database.getDatabaseManager();
+        for (int d = 0; d < 6; d++)
+            dbm.createDatabase("test" + d, 1);
+        for (int i = 0; i < 50; i++)
+            for (int d = 0; d < 6; d++)
+                dbm.getDatabase("test" + d).singleInsert(0, (i + "").getBytes(), ("v" + d + "." + i).getBytes(),
+                        null).get();
+        
+        database.getCheckpointer().checkpoint();
+        
+        // the logs of all lanes have been cut by the checkpoint
+        for (int l = 1; l < 3; l++)
+            for (String log : new File(cfg.getLogLaneDirs()[l - 1]).list())
+                if (log.endsWith(".dbl"))
+                    assertEquals(0, new File(cfg.getLogLaneDirs()[l - 1], log).length());
+        
+        // a transaction logged to the first lane overwrites an insertion
+        // logged to the lane of the database
+        for (int d = 0; d < 6; d++)
+            dbm.getDatabase("test" + d).singleInsert(0, "k".getBytes(), "single".getBytes(), null).get();
+        dbm.executeTransaction(dbm.createTransaction().insertRecord("test1", 0, "k".getBytes(), "txn".getBytes())
+                .insertRecord("test2", 0, "k".getBytes(), "txn".getBytes()));
+        
+        // each lane contains entries written after the checkpoint
+        for (int l = 1; l < 3; l++) {
+            long size = 0;
+            for (String log : new File(cfg.getLogLaneDirs()[l - 1]).list())
+                if (log.endsWith(".dbl"))
+                    size += new File(cfg.getLogLaneDirs()[l - 1], log).length();
+            assertTrue(size > 0);
+        }
+        
+        // the logs of all lanes are replayed in the order of their LSNs
+        database.shutdown();
+        database = BabuDBFactory.createBabuDB(cfg);
+        dbm = database.getDatabaseManager();
+        
+        for (int d = 0; d < 6; d++) {
+            Database db = dbm.getDatabase("test" + d);
+            for (int i = 0; i < 50; i++)
+                assertEquals("v" + d + "." + i, new String(db.lookup(0, (i + "").getBytes(), null).get()));
+            assertEquals(d == 1 || d == 2 ? "txn" : "single", new String(db.lookup(0, "k".getBytes(), null).get()));
+        }
+        
+        database.shutdown();
+    }
+    
+    @Test
+    public void testConcurrentLogLanes() throws Exception {
+        
+        final BabuDBConfig cfg = new ConfigBuilder().setDataPath(baseDir).setLogAppendSyncMode(SyncMode.ASYNC)
+                .setMultiThreaded(0).setLogLanes(3).build();
+        
+        database = BabuDBFactory.createBabuDB(cfg);
+        final DatabaseManager dbm = database.getDatabaseManager();
+        for (int d = 0; d < 6; d++)
+            dbm.createDatabase("test" + d, 1);
+        
+        // insert into the databases concurrently, so that all lanes assign
+        // LSNs at the same time
+        final Exception[] errors = new Exception[6];
+        Thread[] threads = new Thread[6];
+        for (int d = 0; d < threads.length; d++) {
+            final int dbNo = d;
+            threads[d] = new Thread() {
+                public void run() {
+                    try {
+                        Database db = dbm.getDatabase("test" + dbNo);
+                        for (int i = 0; i < 500; i++)
+                            db.singleInsert(0, (i + "").getBytes(), ("v" + dbNo + "." + i).getBytes(), null).get();
+                    } catch (Exception exc) {
+                        errors[dbNo] = exc;
+                    }
+                }
+            };
+            threads[d].start();
+        }
+        for (int d = 0; d < threads.length; d++) {
+            threads[d].join();
+            if (errors[d] != null)
+                throw errors[d];
+        }
+        
+        database.shutdown();
+        
+        // the LSNs of all lanes are unique and without gaps
+        String[] laneDirs = cfg.getLogLaneDirs();
+        File[][] logFiles = new File[laneDirs.length + 1][];
+        for (int l = 0; l < logFiles.length; l++) {
+            logFiles[l] = new File(l == 0 ? cfg.getDbLogDir() : laneDirs[l - 1]).listFiles(new FilenameFilter() {
+                public boolean accept(File dir, String name) {
+                    return name.endsWith(".dbl");
+                }
+            });
+        }
+        
+        LaneLogIterator it = new LaneLogIterator(logFiles, new LSN(0, 0));
+        LSN prev = null;
+        int count = 0;
+        try {
+            while (it.hasNext()) {
+                LogEntry entry = it.next();
+                LSN lsn = entry.getLSN();
+                entry.free();
+                
+                if (prev != null) {
+                    assertEquals(prev.getViewId(), lsn.getViewId());
+                    assertEquals(prev.getSequenceNo() + 1, lsn.getSequenceNo());
+                }
+                prev = lsn;
+                count++;
+            }
+        } finally {
+            it.destroy();
+        }
+        assertTrue(count >= 6 * 500);
+        
+        // all entries are replayed
+        database = BabuDBFactory.createBabuDB(cfg);
+        for (int d = 0; d < 6; d++) {
+            Database db = database.getDatabaseManager().getDatabase("test" + d);
+            for (int i = 0; i < 500; i++)
+                assertEquals("v" + d + "." + i, new String(db.lookup(0, (i + "").getBytes(), null).get()));
+        }
+        
+        database.shutdown();
+    }
+    
+    @Test
+    public void testMemtableBudget() throws Exception {
+        
+        BabuDBConfig cfg = new ConfigBuilder().setDataPath(baseDir).setLogAppendSyncMode(SyncMode.ASYNC)
+                .setMaxMemtableSize(64 * 1024).build();
+        
+        database = BabuDBFactory.createBabuDB(cfg);
+        Database db = database.getDatabaseManager().createDatabase("test", 1);
+        
+        // insert large values until the budget is exceeded; the log remains
+        // far below its max. size
+        for (int i = 0; i < 100; i++)
+            db.singleInsert(0, (i + "").getBytes(), new byte[4096], null).get();
+        
+        // wait for the checkpointer to flush the in-memory tree
+        for (int i = 0; i < 100 && (Integer) database.getRuntimeState("checkpointer.memtableCpCount") == 0; i++)
+            Thread.sleep(100);
+        
+        assertTrue((Integer) database.getRuntimeState("checkpointer.memtableCpCount") > 0);
+        Map<?, ?> memtableBytes = (Map<?, ?>) database.getRuntimeState("databaseManager.memtableBytes");
+        assertTrue((Long) memtableBytes.get("test.0") < 64 * 1024);
+        
+        for (int i = 0; i < 100; i++)
+            assertEquals(4096, db.lookup(0, (i + "").getBytes(), null).get().length);
+        
+        database.shutdown();
+    }
+    
     @Test
     public void testInsPrefLookup() throws Exception {
         
@@ -12,6 +12,7 @@ import java.io.File;
 import java.nio.ByteBuffer;
 import java.util.Iterator;
 import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicReference;
 
 import junit.framework.TestCase;
 import junit.textui.TestRunner;
@@ -23,6 +24,7 @@ import org.xtreemfs.babudb.api.BabuDB;
 import org.xtreemfs.babudb.api.database.Database;
 import org.xtreemfs.babudb.api.exception.BabuDBException;
 import org.xtreemfs.babudb.config.BabuDBConfig;
+import org.xtreemfs.babudb.config.ConfigBuilder;
 import org.xtreemfs.babudb.log.DiskLogger.SyncMode;
 import org.xtreemfs.foundation.buffer.BufferPool;
 import org.xtreemfs.foundation.logging.Logging;
@@ -182,6 +184,65 @@ public class ConcurrencyTest extends TestCase {
         database.shutdown();
     }
 
+    @Test
+    public void testSharedReads() throws Exception {
+        
+        final int numThreads = 8;
+        final int numLookups = 500;
+        final int entryCount = 100;
+        
+        database = BabuDBFactory.createBabuDB(new ConfigBuilder().setDataPath(baseDir).setMultiThreaded(4)
+                .setSharedReads(true).build());
+        final Database db = database.getDatabaseManager().createDatabase("test", 1);
+        
+        for (int i = 0; i < entryCount; i++) {
+            byte[] key = String.format("%09d", i).getBytes();
+            db.singleInsert(0, key, key, null).get();
+        }
+        
+        // concurrently look up entries of the same database from multiple
+        // threads
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        Thread[] threads = new Thread[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < numLookups; j++) {
+                            byte[] key = String.format("%09d", j % entryCount).getBytes();
+                            assertEquals(key, db.lookup(0, key, null).get());
+                        }
+                    } catch (Throwable exc) {
+                        error.set(exc);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        
+        for (Thread thread : threads)
+            thread.join();
+        
+        if (error.get() != null)
+            throw new Exception(error.get());
+        
+        // reverse lookups have to be processed in descending order
+        Iterator<Entry<byte[], byte[]>> it = db.reversePrefixLookup(0, new byte[0], null).get();
+        for (int i = entryCount - 1; i >= 0; i--)
+            assertEquals(String.format("%09d", i).getBytes(), it.next().getKey());
+        assertFalse(it.hasNext());
+        
+        database.shutdown();
+        
+        // lookups after the shutdown must fail
+        try {
+            db.lookup(0, "000000001".getBytes(), null).get();
+            fail("lookup should have failed");
+        } catch (BabuDBException exc) {
+            // ok
+        }
+    }
+    
     private void assertEquals(byte[] b1, byte[] b2) {
         assertEquals(b1.length, b2.length);
         for (int i = 0; i < b1.length; i++)
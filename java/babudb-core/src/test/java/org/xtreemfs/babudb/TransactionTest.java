@@ -22,8 +22,12 @@ import org.xtreemfs.babudb.api.BabuDB;
 import org.xtreemfs.babudb.api.DatabaseManager;
 import org.xtreemfs.babudb.api.database.Database;
 import org.xtreemfs.babudb.api.database.DatabaseInsertGroup;
+import org.xtreemfs.babudb.api.database.DatabaseRequestResult;
 import org.xtreemfs.babudb.api.database.ResultSet;
+import org.xtreemfs.babudb.api.database.UserDefinedLookup;
 import org.xtreemfs.babudb.api.dev.transaction.TransactionInternal;
+import org.xtreemfs.babudb.api.exception.BabuDBException;
+import org.xtreemfs.babudb.api.exception.BabuDBException.ErrorCode;
 import org.xtreemfs.babudb.api.index.ByteRangeComparator;
 import org.xtreemfs.babudb.api.transaction.Operation;
 import org.xtreemfs.babudb.api.transaction.Transaction;
@@ -33,6 +37,7 @@ import org.xtreemfs.babudb.index.DefaultByteRangeComparator;
 import org.xtreemfs.babudb.log.DiskLogger.SyncMode;
 import org.xtreemfs.babudb.lsmdb.BabuDBTransaction;
 import org.xtreemfs.babudb.lsmdb.LSMDatabase;
+import org.xtreemfs.babudb.lsmdb.LSMLookupInterface;
 import org.xtreemfs.foundation.buffer.BufferPool;
 import org.xtreemfs.foundation.buffer.ReusableBuffer;
 import org.xtreemfs.foundation.logging.Logging;
@@ -349,6 +354,129 @@ public class TransactionTest extends TestCase {
         assertNull(db2.lookup(2, "97".getBytes(), null).get());
     }
     
+    @Test
+    public void testConcurrentTransactions() throws Throwable {
+        
+        final int numThreads = 4;
+        final int numTxns = 50;
+        
+        final DatabaseManager dbMan = database.getDatabaseManager();
+        final Database db0 = dbMan.createDatabase("concTest0", 1);
+        final Database db1 = dbMan.createDatabase("concTest1", 1);
+        final List<Throwable> errors = new LinkedList<Throwable>();
+        
+        // concurrently execute transactions that access both databases in
+        // different orders
+        Thread[] threads = new Thread[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            
+            final int threadId = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < numTxns; j++) {
+                            
+                            byte[] key = (threadId + "." + j).getBytes();
+                            
+                            Transaction txn = dbMan.createTransaction();
+                            if (threadId % 2 == 0) {
+                                txn.insertRecord(db0.getName(), 0, key, key);
+                                txn.insertRecord(db1.getName(), 0, key, key);
+                            } else {
+                                txn.insertRecord(db1.getName(), 0, key, key);
+                                txn.insertRecord(db0.getName(), 0, key, key);
+                            }
+                            dbMan.executeTransaction(txn);
+                        }
+                    } catch (Throwable e) {
+                        synchronized (errors) {
+                            errors.add(e);
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        
+        for (Thread thread : threads)
+            thread.join();
+        
+        if (errors.size() > 0)
+            throw errors.get(0);
+        
+        for (int i = 0; i < numThreads; i++)
+            for (int j = 0; j < numTxns; j++) {
+                String key = i + "." + j;
+                assertEquals(key, new String(db0.lookup(0, key.getBytes(), null).get()));
+                assertEquals(key, new String(db1.lookup(0, key.getBytes(), null).get()));
+            }
+    }
+    
+    @Test
+    public void testAsyncTransactionExecution() throws Exception {
+        
+        DatabaseManager dbMan = database.getDatabaseManager();
+        Database db = dbMan.createDatabase("asyncTest", 2);
+        
+        // execute multiple transactions without waiting for their completion
+        List<DatabaseRequestResult<Object>> results = new LinkedList<DatabaseRequestResult<Object>>();
+        for (int i = 0; i < 100; i++) {
+            Transaction txn = dbMan.createTransaction();
+            txn.insertRecord(db.getName(), 0, (i + "").getBytes(), "value".getBytes());
+            txn.insertRecord(db.getName(), 1, (i + "").getBytes(), "value".getBytes());
+            results.add(dbMan.executeTransactionAsync(txn));
+        }
+        
+        for (DatabaseRequestResult<Object> result : results)
+            result.get();
+        
+        for (int i = 0; i < 100; i++) {
+            assertEquals("value", new String(db.lookup(0, (i + "").getBytes(), null).get()));
+            assertEquals("value", new String(db.lookup(1, (i + "").getBytes(), null).get()));
+        }
+        
+        // the calling thread must not wait for a busy worker
+        final Object monitor = new Object();
+        final boolean[] released = new boolean[1];
+        DatabaseRequestResult<Object> busy = db.userDefinedLookup(new UserDefinedLookup() {
+            public Object execute(LSMLookupInterface database) throws BabuDBException {
+                synchronized (monitor) {
+                    while (!released[0])
+                        try {
+                            monitor.wait();
+                        } catch (InterruptedException exc) {
+                            throw new BabuDBException(ErrorCode.INTERRUPTED, exc.getMessage());
+                        }
+                }
+                return null;
+            }
+        }, null);
+        
+        Transaction txn = dbMan.createTransaction();
+        txn.insertRecord(db.getName(), 0, "blocked".getBytes(), "value".getBytes());
+        DatabaseRequestResult<Object> result = dbMan.executeTransactionAsync(txn);
+        
+        // the transaction was submitted while the worker is busy
+        synchronized (monitor) {
+            released[0] = true;
+            monitor.notifyAll();
+        }
+        busy.get();
+        result.get();
+        assertEquals("value", new String(db.lookup(0, "blocked".getBytes(), null).get()));
+        
+        // transactions on non-existing databases should fail asynchronously
+        txn = dbMan.createTransaction();
+        txn.insertRecord("nonExisting", 0, "key".getBytes(), "value".getBytes());
+        result = dbMan.executeTransactionAsync(txn);
+        try {
+            result.get();
+            fail();
+        } catch (BabuDBException exc) {
+            // expected
+        }
+    }
+    
     @Test
     public void testTransactionListeners() throws Exception {
         
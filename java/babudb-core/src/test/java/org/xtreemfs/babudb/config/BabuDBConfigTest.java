@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2026, agent
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.babudb.config;
+
+import junit.framework.TestCase;
+import junit.textui.TestRunner;
+
+import org.junit.Test;
+import org.xtreemfs.foundation.logging.Logging;
+
+/**
+ * 
+ * @author agent
+ */
+public class BabuDBConfigTest extends TestCase {
+    
+    public BabuDBConfigTest() {
+        Logging.start(Logging.LEVEL_ERROR);
+    }
+    
+    @Test
+    public void testBlockCacheSize() throws Exception {
+        
+        BabuDBConfig cfg = new ConfigBuilder().setDataPath("/tmp/babudb").build();
+        assertEquals(0, cfg.getBlockCacheSize());
+        
+        // sizes beyond the range of an int have to be accepted
+        long size = 200L * 1024 * 1024 * 1024;
+        cfg = new ConfigBuilder().setDataPath("/tmp/babudb").setBlockCacheSize(size).build();
+        assertEquals(size, cfg.getBlockCacheSize());
+        assertEquals(size, cfg.copy().getBlockCacheSize());
+    }
+    
+    @Test
+    public void testMaxMemtableSize() throws Exception {
+        
+        long size = 4L * 1024 * 1024 * 1024;
+        BabuDBConfig cfg = new ConfigBuilder().setDataPath("/tmp/babudb").setMaxMemtableSize(size).build();
+        assertEquals(size, cfg.getMaxMemtableSize());
+    }
+    
+    @Test
+    public void testMaxWriteRate() throws Exception {
+        
+        // rates beyond the range of an int have to be accepted
+        long rate = 4L * 1024 * 1024 * 1024;
+        BabuDBConfig cfg = new ConfigBuilder().setDataPath("/tmp/babudb").setWriteRateLimit(rate, 0).build();
+        assertEquals(rate, cfg.getMaxWriteRate());
+        assertEquals(rate, cfg.copy().getMaxWriteRate());
+    }
+    
+    public static void main(String[] args) {
+        TestRunner.run(BabuDBConfigTest.class);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2026, agent
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.babudb.index;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import junit.textui.TestRunner;
+
+public class DefaultByteRangeComparatorTest extends TestCase {
+    
+    private static final byte[]              ALPHABET = { Byte.MIN_VALUE, -1, 0, 1, 'a', Byte.MAX_VALUE };
+    
+    private final DefaultByteRangeComparator comp     = new DefaultByteRangeComparator();
+    
+    private final Random                     rnd      = new Random(1);
+    
+    public void testCompareArrays() {
+        
+        for (int i = 0; i < 100000; i++) {
+            byte[] buf1 = createKey(null);
+            byte[] buf2 = createKey(rnd.nextBoolean() ? buf1 : null);
+            
+            assertEquals(signum(compareBytewise(buf1, buf2)), signum(comp.compare(buf1, buf2)));
+            assertEquals(signum(compareBytewise(buf2, buf1)), signum(comp.compare(buf2, buf1)));
+        }
+        
+        assertEquals(0, comp.compare(new byte[0], new byte[0]));
+    }
+    
+    public void testCompareRanges() {
+        
+        for (ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+            for (boolean direct : new boolean[] { false, true }) {
+                for (int i = 0; i < 20000; i++) {
+                    
+                    byte[] key = createKey(null);
+                    byte[] buf = createKey(rnd.nextBoolean() ? key : null);
+                    
+                    // embed the key in a larger buffer at an unaligned offset
+                    int offset = rnd.nextInt(13);
+                    ByteBuffer data = direct ? ByteBuffer.allocateDirect(offset + key.length + 7) : ByteBuffer
+                            .allocate(offset + key.length + 7);
+                    data.order(order);
+                    data.position(offset);
+                    data.put(key);
+                    
+                    ByteRange rng = new ByteRange(data, offset, offset + key.length);
+                    assertEquals(signum(compareBytewise(key, buf)), signum(comp.compare(rng, buf)));
+                }
+            }
+        }
+    }
+    
+    /**
+     * Creates a random key. If a base key is given, the new key shares a
+     * random prefix with it, so that keys often differ only in later words.
+     */
+    private byte[] createKey(byte[] base) {
+        
+        byte[] key = new byte[rnd.nextInt(64)];
+        int shared = base == null ? 0 : Math.min(key.length, rnd.nextInt(base.length + 1));
+        if (shared > 0)
+            System.arraycopy(base, 0, key, 0, shared);
+        for (int i = shared; i < key.length; i++)
+            key[i] = ALPHABET[rnd.nextInt(ALPHABET.length)];
+        
+        return key;
+    }
+    
+    private static int compareBytewise(byte[] buf1, byte[] buf2) {
+        
+        for (int i = 0; i < Math.min(buf1.length, buf2.length); i++)
+            if (buf1[i] != buf2[i])
+                return buf1[i] < buf2[i] ? -1 : 1;
+        
+        return buf1.length - buf2.length;
+    }
+    
+    private static int signum(int value) {
+        return value < 0 ? -1 : value > 0 ? 1 : 0;
+    }
+    
+    public static void main(String[] args) {
+        TestRunner.run(DefaultByteRangeComparatorTest.class);
+    }
+    
+}
@@ -13,8 +13,13 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
 import java.util.Random;
 import java.util.SortedMap;
 import java.util.TreeMap;
@@ -24,8 +29,11 @@ import junit.framework.TestCase;
 import junit.textui.TestRunner;
 
 import org.xtreemfs.babudb.api.database.ResultSet;
+import org.xtreemfs.babudb.api.database.ValueView;
 import org.xtreemfs.babudb.api.index.ByteRangeComparator;
+import org.xtreemfs.babudb.index.reader.BlockCache;
 import org.xtreemfs.babudb.index.reader.DiskIndex;
+import org.xtreemfs.babudb.index.writer.BlockStatistics;
 import org.xtreemfs.babudb.index.writer.DiskIndexWriter;
 import org.xtreemfs.foundation.logging.Logging;
 import org.xtreemfs.foundation.util.FSUtils;
@@ -180,6 +188,377 @@ public class DiskIndexTest extends TestCase {
         assertNoBlockfiles();
     }
     
+    public void testCachedLookup() throws Exception {
+        
+        // initialize a map w/ random strings
+        SortedMap<byte[], byte[]> map = new TreeMap<byte[], byte[]>(COMP);
+        for (int i = 0; i < NUM_ENTRIES / 10; i++)
+            map.put(createRandomString(1, 15).getBytes(), createRandomString(1, 15).getBytes());
+        
+        // write the map to a disk index
+        FSUtils.delTree(new File(PATH1));
+        DiskIndexWriter index = new DiskIndexWriter(PATH1, MAX_BLOCK_ENTRIES, COMPRESSED, MAX_BLOCK_FILE_SIZE);
+        index.writeIndex(getBufferIterator(map.entrySet().iterator()));
+        
+        // read the disk index through a small block cache
+        BlockCache cache = new BlockCache(64 * 1024);
+        DiskIndex diskIndex = new DiskIndex(PATH1, DefaultByteRangeComparator.getInstance(), COMPRESSED,
+            false, cache);
+        
+        // look up each element twice
+        for (int i = 0; i < 2; i++) {
+            for (Entry<byte[], byte[]> next : map.entrySet()) {
+                byte[] result = diskIndex.lookup(next.getKey());
+                assertEquals(0, COMP.compare(result, next.getValue()));
+            }
+        }
+        
+        long hits = (Long) cache.getRuntimeState(BlockCache.RUNTIME_STATE_HITS);
+        long misses = (Long) cache.getRuntimeState(BlockCache.RUNTIME_STATE_MISSES);
+        assertTrue(hits > 0);
+        assertTrue(misses > 0);
+        assertEquals(2L * map.size(), hits + misses);
+        assertTrue(cache.getSize() <= 64 * 1024);
+        
+        // iterate over all elements
+        Iterator<Entry<byte[], byte[]>> it = diskIndex.rangeLookup(null, null, true);
+        Iterator<Entry<byte[], byte[]>> mapIt = map.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry<byte[], byte[]> next = it.next();
+            Entry<byte[], byte[]> next2 = mapIt.next();
+            assertEquals(0, COMP.compare(next2.getKey(), next.getKey()));
+            assertEquals(0, COMP.compare(next2.getValue(), next.getValue()));
+        }
+        assertFalse(mapIt.hasNext());
+        
+        // destroying the index has to remove all of its blocks from the cache
+        diskIndex.destroy();
+        assertEquals(0, cache.getSize());
+        
+        assertNoBlockfiles();
+    }
+    
+    public void testMultiLookup() throws Exception {
+        
+        // initialize a map w/ random strings
+        SortedMap<byte[], byte[]> map = new TreeMap<byte[], byte[]>(COMP);
+        for (int i = 0; i < NUM_ENTRIES / 10; i++)
+            map.put(createRandomString(1, 15).getBytes(), createRandomString(1, 15).getBytes());
+        
+        // write the map to a disk index
+        FSUtils.delTree(new File(PATH1));
+        DiskIndexWriter index = new DiskIndexWriter(PATH1, MAX_BLOCK_ENTRIES, COMPRESSED, MAX_BLOCK_FILE_SIZE);
+        index.writeIndex(getBufferIterator(map.entrySet().iterator()));
+        
+        // look up all keys in random order, together with some keys that
+        // are not contained in the index
+        List<byte[]> keys = new ArrayList<byte[]>(map.keySet());
+        for (int i = 0; i < 100; i++) {
+            byte[] key = createRandomString(1, 15).getBytes();
+            if (!map.containsKey(key))
+                keys.add(key);
+        }
+        Collections.shuffle(keys, rnd);
+        
+        // read the disk index through a block cache that is large enough to
+        // hold all blocks
+        BlockCache cache = new BlockCache(64 * 1024 * 1024);
+        DiskIndex diskIndex = new DiskIndex(PATH1, DefaultByteRangeComparator.getInstance(), COMPRESSED,
+            false, cache);
+        
+        byte[][] results = diskIndex.lookup(keys.toArray(new byte[keys.size()][]));
+        assertEquals(keys.size(), results.length);
+        for (int i = 0; i < results.length; i++) {
+            byte[] expected = map.get(keys.get(i));
+            if (expected == null)
+                assertNull(results[i]);
+            else
+                assertEquals(0, COMP.compare(expected, results[i]));
+        }
+        
+        // each block has to be read exactly once
+        long hits = (Long) cache.getRuntimeState(BlockCache.RUNTIME_STATE_HITS);
+        long misses = (Long) cache.getRuntimeState(BlockCache.RUNTIME_STATE_MISSES);
+        assertEquals(0, hits);
+        assertEquals((map.size() + MAX_BLOCK_ENTRIES - 1) / MAX_BLOCK_ENTRIES, misses);
+        
+        // an empty set of keys yields an empty result
+        assertEquals(0, diskIndex.lookup(new byte[0][]).length);
+        
+        diskIndex.destroy();
+        assertNoBlockfiles();
+    }
+    
+    public void testBloomFilterLookup() throws Exception {
+        
+        // initialize a map w/ random strings
+        SortedMap<byte[], byte[]> map = new TreeMap<byte[], byte[]>(COMP);
+        for (int i = 0; i < NUM_ENTRIES / 10; i++)
+            map.put(createRandomString(1, 15).getBytes(), createRandomString(1, 15).getBytes());
+        
+        // write the map to a disk index with a Bloom filter
+        FSUtils.delTree(new File(PATH1));
+        DiskIndexWriter index = new DiskIndexWriter(PATH1, MAX_BLOCK_ENTRIES, COMPRESSED, MAX_BLOCK_FILE_SIZE,
+            10);
+        index.writeIndex(getBufferIterator(map.entrySet().iterator()), map.size());
+        assertTrue(new File(PATH1, BloomFilter.FILTER_FILE_NAME).exists());
+        
+        DiskIndex diskIndex = new DiskIndex(PATH1, DefaultByteRangeComparator.getInstance(), COMPRESSED,
+            MMAPED);
+        
+        // all contained keys have to be found
+        for (Entry<byte[], byte[]> next : map.entrySet()) {
+            assertTrue(diskIndex.mightContain(next.getKey()));
+            assertEquals(0, COMP.compare(diskIndex.lookup(next.getKey()), next.getValue()));
+        }
+        
+        // most keys that are not contained have to be rejected by the filter
+        int falsePositives = 0;
+        int numMisses = 0;
+        for (int i = 0; i < NUM_ENTRIES / 10; i++) {
+            byte[] key = createRandomString(16, 30).getBytes();
+            if (map.containsKey(key))
+                continue;
+            numMisses++;
+            if (diskIndex.mightContain(key))
+                falsePositives++;
+            assertNull(diskIndex.lookup(key));
+        }
+        assertTrue("false positives: " + falsePositives, falsePositives < numMisses / 20);
+        
+        diskIndex.destroy();
+        
+        assertNoBlockfiles();
+    }
+    
+    public void testSizeTargetedBlocks() throws Exception {
+        
+        final int maxBlockSize = 1024;
+        final int largeValSize = 4000;
+        
+        // initialize a map w/ a mix of small and large values
+        SortedMap<byte[], byte[]> map = new TreeMap<byte[], byte[]>(COMP);
+        for (int i = 0; i < NUM_ENTRIES / 25; i++) {
+            byte[] val = new byte[i % 10 == 0 ? largeValSize : rnd.nextInt(20) + 1];
+            rnd.nextBytes(val);
+            map.put(String.format("key%06d", i).getBytes(), val);
+        }
+        
+        for (boolean compressed : new boolean[] { false, true }) {
+            
+            // write the map to a disk index w/ size-targeted blocks
+            FSUtils.delTree(new File(PATH1));
+            DiskIndexWriter index = new DiskIndexWriter(PATH1, 1024, compressed, MAX_BLOCK_FILE_SIZE, 0,
+                maxBlockSize);
+            index.writeIndex(getBufferIterator(map.entrySet().iterator()));
+            
+            // blocks with small values only must be close to the target size;
+            // only the last entry of a block may exceed the target size
+            BlockStatistics stats = index.getBlockStatistics();
+            assertTrue(stats.toString(), stats.getNumBlocks() > map.size() / 64);
+            assertTrue(stats.toString(), stats.getMaxBytes() < maxBlockSize + largeValSize + 64);
+            long numBlocks = 0;
+            for (int i = 0; i < Integer.SIZE; i++)
+                numBlocks += stats.getNumBlocks(i);
+            assertEquals(stats.getNumBlocks(), numBlocks);
+            
+            // all keys have to be found
+            DiskIndex diskIndex = new DiskIndex(PATH1, COMP, compressed, MMAPED);
+            for (Entry<byte[], byte[]> next : map.entrySet())
+                assertEquals(0, COMP.compare(diskIndex.lookup(next.getKey()), next.getValue()));
+            
+            diskIndex.destroy();
+        }
+        
+        assertNoBlockfiles();
+    }
+    
+    public void testValueCompression() throws Exception {
+        
+        // initialize a map w/ compressible values, and a few random values
+        // that cannot be compressed
+        SortedMap<byte[], byte[]> map = new TreeMap<byte[], byte[]>(COMP);
+        for (int i = 0; i < NUM_ENTRIES / 25; i++) {
+            byte[] val;
+            if (i % 100 < 16) {
+                val = new byte[64];
+                rnd.nextBytes(val);
+            } else
+                val = ("value of entry " + i + " in a compressed block").getBytes();
+            map.put(String.format("key%06d", i).getBytes(), val);
+        }
+        
+        // write the map w/o and w/ value compression
+        FSUtils.delTree(new File(PATH2));
+        DiskIndexWriter index = new DiskIndexWriter(PATH2, MAX_BLOCK_ENTRIES, true, MAX_BLOCK_FILE_SIZE);
+        index.writeIndex(getBufferIterator(map.entrySet().iterator()));
+        long uncompressedBytes = index.getBlockStatistics().getTotalBytes();
+        FSUtils.delTree(new File(PATH2));
+        
+        FSUtils.delTree(new File(PATH1));
+        index = new DiskIndexWriter(PATH1, new IndexOptions().setMaxEntriesPerBlock(MAX_BLOCK_ENTRIES)
+                .setCompressed(true).setMaxBlockFileSize(MAX_BLOCK_FILE_SIZE).setBlockCodec(
+                    BlockCodec.getCodec("deflate")));
+        index.writeIndex(getBufferIterator(map.entrySet().iterator()));
+        long compressedBytes = index.getBlockStatistics().getTotalBytes();
+        assertTrue(compressedBytes + " >= " + uncompressedBytes, compressedBytes < uncompressedBytes);
+        
+        // read the index w/ all kinds of block readers
+        for (int i = 0; i < 3; i++) {
+            
+            DiskIndex diskIndex = i == 2 ? new DiskIndex(PATH1, COMP, true, false, new BlockCache(64 * 1024))
+                : new DiskIndex(PATH1, COMP, true, i == 0);
+            
+            // look up each element
+            for (Entry<byte[], byte[]> next : map.entrySet())
+                assertEquals(0, COMP.compare(diskIndex.lookup(next.getKey()), next.getValue()));
+            assertNull(diskIndex.lookup("key".getBytes()));
+            
+            // iterate over all elements
+            Iterator<Entry<byte[], byte[]>> it = diskIndex.rangeLookup(null, null, true);
+            for (Entry<byte[], byte[]> next : map.entrySet()) {
+                Entry<byte[], byte[]> entry = it.next();
+                assertEquals(0, COMP.compare(entry.getKey(), next.getKey()));
+                assertEquals(0, COMP.compare(entry.getValue(), next.getValue()));
+            }
+            assertFalse(it.hasNext());
+            
+            diskIndex.destroy();
+        }
+        
+        assertNoBlockfiles();
+    }
+    
+    public void testFrontCodedKeys() throws Exception {
+        
+        // initialize a map w/ keys that share long prefixes
+        TreeMap<byte[], byte[]> map = new TreeMap<byte[], byte[]>(COMP);
+        for (int i = 0; i < NUM_ENTRIES / 25; i++)
+            map.put(String.format("/home/user/documents/dir%03d/file%06d", i % 7, i).getBytes(), String.valueOf(
+                i).getBytes());
+        
+        for (boolean compressed : new boolean[] { false, true }) {
+            
+            // write the map w/o and w/ front coding
+            FSUtils.delTree(new File(PATH2));
+            DiskIndexWriter index = new DiskIndexWriter(PATH2, MAX_BLOCK_ENTRIES, compressed, MAX_BLOCK_FILE_SIZE);
+            index.writeIndex(getBufferIterator(map.entrySet().iterator()));
+            long plainBytes = index.getBlockStatistics().getTotalBytes();
+            FSUtils.delTree(new File(PATH2));
+            
+            FSUtils.delTree(new File(PATH1));
+            index = new DiskIndexWriter(PATH1, new IndexOptions().setMaxEntriesPerBlock(MAX_BLOCK_ENTRIES)
+                    .setCompressed(compressed).setMaxBlockFileSize(MAX_BLOCK_FILE_SIZE).setKeyRestartInterval(4));
+            index.writeIndex(getBufferIterator(map.entrySet().iterator()));
+            long frontCodedBytes = index.getBlockStatistics().getTotalBytes();
+            assertTrue(frontCodedBytes + " >= " + plainBytes, frontCodedBytes < plainBytes);
+            
+            for (boolean mmaped : new boolean[] { false, true }) {
+                
+                DiskIndex diskIndex = new DiskIndex(PATH1, COMP, compressed, mmaped);
+                
+                // look up each element, and some non-existing elements
+                for (Entry<byte[], byte[]> next : map.entrySet())
+                    assertEquals(0, COMP.compare(diskIndex.lookup(next.getKey()), next.getValue()));
+                assertNull(diskIndex.lookup("/home/user/documents/dir003".getBytes()));
+                assertNull(diskIndex.lookup("/home/user/documents/dir003/file000010x".getBytes()));
+                assertNull(diskIndex.lookup("/a".getBytes()));
+                assertNull(diskIndex.lookup("/z".getBytes()));
+                
+                // perform range lookups in both directions
+                byte[][] bounds = { null, "/home/user/documents/dir002".getBytes(),
+                    "/home/user/documents/dir004/file000053".getBytes(),
+                    "/home/user/documents/dir005/file000100x".getBytes(), null };
+                for (int i = 0; i < bounds.length - 1; i++) {
+                    byte[] from = bounds[i];
+                    byte[] to = bounds[i + 1];
+                    
+                    SortedMap<byte[], byte[]> subMap = from == null ? (to == null ? map : map.headMap(to))
+                        : to == null ? map.tailMap(from) : map.subMap(from, to);
+                    assertEntries(subMap.entrySet().iterator(), diskIndex.rangeLookup(from, to, true));
+                    
+                    NavigableMap<byte[], byte[]> descMap = from == null ? (to == null ? map : map.headMap(to,
+                        true)) : to == null ? map.tailMap(from, false) : map.subMap(from, false, to, true);
+                    assertEntries(descMap.descendingMap().entrySet().iterator(), diskIndex.rangeLookup(from, to,
+                        false));
+                }
+                
+                diskIndex.destroy();
+            }
+        }
+        
+        assertNoBlockfiles();
+    }
+    
+    public void testLookupView() throws Exception {
+        
+        // initialize a map w/ keys that share prefixes
+        TreeMap<byte[], byte[]> map = new TreeMap<byte[], byte[]>(COMP);
+        for (int i = 0; i < NUM_ENTRIES / 25; i++) {
+            byte[] value = new byte[1 + i % 40];
+            rnd.nextBytes(value);
+            map.put(String.format("key%06d", i).getBytes(), value);
+        }
+        
+        for (boolean compressed : new boolean[] { false, true }) {
+            
+            FSUtils.delTree(new File(PATH1));
+            DiskIndexWriter index = new DiskIndexWriter(PATH1, MAX_BLOCK_ENTRIES, compressed, MAX_BLOCK_FILE_SIZE);
+            index.writeIndex(getBufferIterator(map.entrySet().iterator()));
+            
+            for (boolean mmaped : new boolean[] { false, true }) {
+                
+                DiskIndex diskIndex = new DiskIndex(PATH1, COMP, compressed, mmaped);
+                
+                // look up each element, and some non-existing elements
+                for (Entry<byte[], byte[]> next : map.entrySet()) {
+                    ValueView view = diskIndex.lookupView(next.getKey());
+                    assertTrue(view.getValue().isReadOnly());
+                    assertEquals(ByteBuffer.wrap(next.getValue()), view.getValue());
+                    view.free();
+                }
+                assertNull(diskIndex.lookupView("key".getBytes()));
+                assertNull(diskIndex.lookupView("key000010x".getBytes()));
+                assertNull(diskIndex.lookupView("zzz".getBytes()));
+                
+                // iterate over views in both directions; the same entry
+                // should be returned in each step
+                byte[] from = "key000100".getBytes();
+                byte[] to = "key001500".getBytes();
+                for (boolean ascending : new boolean[] { true, false }) {
+                    
+                    Iterator<Entry<byte[], byte[]>> expected = ascending ? map.subMap(from, to).entrySet()
+                            .iterator() : map.subMap(from, false, to, true).descendingMap().entrySet().iterator();
+                    ResultSet<ByteBuffer, ByteBuffer> it = diskIndex.rangeLookupView(from, to, ascending);
+                    
+                    Entry<ByteBuffer, ByteBuffer> first = null;
+                    while (expected.hasNext()) {
+                        Entry<byte[], byte[]> exp = expected.next();
+                        assertTrue(it.hasNext());
+                        Entry<ByteBuffer, ByteBuffer> next = it.next();
+                        if (first == null)
+                            first = next;
+                        assertTrue(first == next);
+                        assertEquals(ByteBuffer.wrap(exp.getKey()), next.getKey());
+                        assertEquals(ByteBuffer.wrap(exp.getValue()), next.getValue());
+                    }
+                    assertFalse(it.hasNext());
+                    it.free();
+                }
+                
+                // destroying the index should be deferred until all views on
+                // it have been freed
+                Entry<byte[], byte[]> last = map.lastEntry();
+                ValueView view = diskIndex.lookupView(last.getKey());
+                diskIndex.destroy();
+                assertEquals(ByteBuffer.wrap(last.getValue()), view.getValue());
+                view.free();
+            }
+        }
+        
+        assertNoBlockfiles();
+    }
+    
     public void testPrefixLookup() throws Exception {
         
         final String[] keys = { "bla", "brabbel", "foo", "kfdkdkdf", "ouuou", "yagga", "yyy", "z" };
@@ -621,6 +1000,18 @@ public class DiskIndexTest extends TestCase {
         assertFalse(it.hasNext());
     }
     
+    private static void assertEntries(Iterator<Entry<byte[], byte[]>> expected,
+        Iterator<Entry<byte[], byte[]>> it) {
+        
+        while (expected.hasNext()) {
+            Entry<byte[], byte[]> next = expected.next();
+            Entry<byte[], byte[]> entry = it.next();
+            assertEquals(0, COMP.compare(entry.getKey(), next.getKey()));
+            assertEquals(0, COMP.compare(entry.getValue(), next.getValue()));
+        }
+        assertFalse(it.hasNext());
+    }
+    
     private static void assertNoBlockfiles() {
         int blockfiles = 0;
         int pid = Integer.parseInt(ManagementFactory.getRuntimeMXBean().getName().split("@")[0]);
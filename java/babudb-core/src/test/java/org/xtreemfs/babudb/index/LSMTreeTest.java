@@ -10,6 +10,7 @@ package org.xtreemfs.babudb.index;
 
 import java.io.File;
 import java.util.Iterator;
+import java.util.Random;
 import java.util.TreeMap;
 import java.util.Map.Entry;
 
@@ -18,6 +19,7 @@ import junit.textui.TestRunner;
 
 import org.xtreemfs.babudb.index.DefaultByteRangeComparator;
 import org.xtreemfs.babudb.index.LSMTree;
+import org.xtreemfs.babudb.index.overlay.ArenaOverlayTree;
 import org.xtreemfs.babudb.snapshots.DefaultSnapshotConfig;
 import org.xtreemfs.foundation.logging.Logging;
 import org.xtreemfs.foundation.util.FSUtils;
@@ -180,6 +182,183 @@ public class LSMTreeTest extends TestCase {
         tree.destroy();
     }
     
+    public void testBloomFilterLookups() throws Exception {
+        
+        // use compressed indices, so as to ensure that keys with stripped
+        // prefixes are hashed consistently
+        LSMTree tree = new LSMTree(null, DefaultByteRangeComparator.getInstance(), new IndexOptions()
+                .setCompressed(true).setMaxEntriesPerBlock(16).setMMap(MMAP, -1).setBloomFilterBitsPerKey(10));
+        TreeMap<byte[], byte[]> map = new TreeMap<byte[], byte[]>(new DefaultByteRangeComparator());
+        
+        for (int i = 0; i < 1000; i++) {
+            byte[] key = ("key" + (i * 2)).getBytes();
+            tree.insert(key, ("val" + i).getBytes());
+            map.put(key, ("val" + i).getBytes());
+        }
+        
+        // materialize the tree twice, so that the second index is written from
+        // the first one
+        int snapId = tree.createSnapshot();
+        tree.materializeSnapshot(SNAP_FILE, snapId);
+        tree.linkToSnapshot(SNAP_FILE);
+        assertTrue(new File(SNAP_FILE, BloomFilter.FILTER_FILE_NAME).exists());
+        
+        snapId = tree.createSnapshot();
+        tree.materializeSnapshot(SNAP_FILE2, snapId);
+        tree.linkToSnapshot(SNAP_FILE2);
+        
+        for (byte[] key : map.keySet())
+            assertEquals(new String(map.get(key)), new String(tree.lookup(key)));
+        
+        for (int i = 0; i < 1000; i++)
+            assertNull(tree.lookup(("key" + (i * 2 + 1)).getBytes()));
+        
+        tree.destroy();
+    }
+    
+    public void testBloomFilterCustomComparator() throws Exception {
+        
+        // a comparator that ignores the case of keys, for which the hashes of
+        // equal keys may differ
+        DefaultByteRangeComparator comp = new DefaultByteRangeComparator() {
+            
+            private static final long serialVersionUID = 1L;
+            
+            public int compare(ByteRange rng, byte[] buf) {
+                return compare(rng.toBuffer(), buf);
+            }
+            
+            public int compare(byte[] buf1, byte[] buf2) {
+                return super.compare(new String(buf1).toLowerCase().getBytes(), new String(buf2).toLowerCase()
+                        .getBytes());
+            }
+        };
+        
+        LSMTree tree = new LSMTree(null, comp, new IndexOptions().setCompressed(COMPRESSION)
+                .setMaxEntriesPerBlock(16).setMMap(MMAP, -1).setBloomFilterBitsPerKey(10));
+        for (int i = 0; i < 100; i++)
+            tree.insert(("key" + i).getBytes(), ("val" + i).getBytes());
+        
+        int snapId = tree.createSnapshot();
+        tree.materializeSnapshot(SNAP_FILE, snapId);
+        tree.linkToSnapshot(SNAP_FILE);
+        assertFalse(new File(SNAP_FILE, BloomFilter.FILTER_FILE_NAME).exists());
+        
+        for (int i = 0; i < 100; i++)
+            assertEquals("val" + i, new String(tree.lookup(("KEY" + i).getBytes())));
+        
+        tree.destroy();
+    }
+    
+    public void testSkippedSnapshot() throws Exception {
+        
+        LSMTree tree = new LSMTree(null, DefaultByteRangeComparator.getInstance(), COMPRESSION, 16,
+            1024 * 1024 * 512, MMAP, -1);
+        
+        tree.insert("key1".getBytes(), "val1".getBytes());
+        int snapId = tree.createSnapshot();
+        tree.materializeSnapshot(SNAP_FILE, snapId);
+        tree.linkToSnapshot(SNAP_FILE);
+        
+        // link to the current index again without writing the snapshot, as
+        // done if a checkpoint with the same LSN exists already
+        tree.insert("key2".getBytes(), "val2".getBytes());
+        tree.createSnapshot();
+        tree.linkToSnapshot(SNAP_FILE);
+        assertEquals("val2", new String(tree.lookup("key2".getBytes())));
+        assertTrue(tree.getInMemorySize() > 0);
+        
+        // the retained changes are written with the next snapshot
+        snapId = tree.createSnapshot();
+        tree.materializeSnapshot(SNAP_FILE2, snapId);
+        tree.linkToSnapshot(SNAP_FILE2);
+        assertEquals(0, tree.getInMemorySize());
+        assertEquals("val1", new String(tree.lookup("key1".getBytes())));
+        assertEquals("val2", new String(tree.lookup("key2".getBytes())));
+        
+        tree.destroy();
+    }
+    
+    public void testDeltaRuns() throws Exception {
+        
+        // run the test with both uncompressed and compressed indices; values
+        // of compressed indices are compressed as well
+        for (boolean compressed : new boolean[] { false, true }) {
+            
+            final DefaultByteRangeComparator comp = DefaultByteRangeComparator.getInstance();
+            final BlockCodec codec = compressed ? BlockCodec.getCodec("deflate") : null;
+            final IndexOptions options = new IndexOptions().setCompressed(compressed).setMaxEntriesPerBlock(16)
+                    .setMMap(MMAP, -1).setBloomFilterBitsPerKey(10).setMaxDeltaRuns(8);
+            LSMTree tree = new LSMTree(null, comp, options.copy().setBlockCodec(codec).setKeyRestartInterval(4)
+                    .setMemtableArena(compressed ? ArenaOverlayTree.Allocation.HEAP : null));
+            TreeMap<byte[], byte[]> map = new TreeMap<byte[], byte[]>(comp);
+            
+            for (int i = 0; i < 2000; i++) {
+                byte[] key = ("key" + (i * 2)).getBytes();
+                tree.insert(key, ("val" + i).getBytes());
+                map.put(key, ("val" + i).getBytes());
+            }
+            
+            // initially, the entire tree has to be written
+            assertFalse(tree.canMaterializeDelta());
+            int snapId = tree.createSnapshot();
+            tree.materializeSnapshot(SNAP_FILE, snapId);
+            tree.linkToSnapshot(SNAP_FILE);
+            assertEquals(0, tree.getNumDeltaRuns());
+            
+            // write a sequence of small checkpoints with insertions, updates
+            // and deletions as delta runs
+            Random rnd = new Random(17);
+            String dir = SNAP_FILE;
+            for (int round = 0; round < 6; round++) {
+                
+                for (int i = 0; i < 20; i++) {
+                    byte[] key = ("key" + rnd.nextInt(4000)).getBytes();
+                    if (rnd.nextInt(3) == 0) {
+                        tree.delete(key);
+                        map.remove(key);
+                    } else {
+                        byte[] val = ("val" + round + "." + i).getBytes();
+                        tree.insert(key, val);
+                        map.put(key, val);
+                    }
+                }
+                
+                assertTrue(tree.canMaterializeDelta());
+                String target = dir.equals(SNAP_FILE) ? SNAP_FILE2 : SNAP_FILE;
+                snapId = tree.createSnapshot();
+                tree.materializeDelta(target, snapId);
+                tree.linkToSnapshot(target);
+                assertFalse(new File(dir).exists());
+                dir = target;
+                
+                // the first four runs are merged into one
+                tree.compactRuns(SNAP_FILE4);
+                assertEquals(round < 3 ? round + 1 : round - 2, tree.getNumDeltaRuns());
+                
+                assertContent(map, tree);
+            }
+            
+            // reload the tree from disk; blocks have to be readable regardless
+            // of the configured codec
+            tree.destroy();
+            tree = new LSMTree(dir, comp, options);
+            assertEquals(3, tree.getNumDeltaRuns());
+            assertContent(map, tree);
+            
+            // rewrite the entire tree
+            snapId = tree.createSnapshot();
+            tree.materializeSnapshot(SNAP_FILE3, snapId);
+            tree.linkToSnapshot(SNAP_FILE3);
+            assertEquals(0, tree.getNumDeltaRuns());
+            assertContent(map, tree);
+            
+            tree.destroy();
+            FSUtils.delTree(new File(dir));
+            FSUtils.delTree(new File(SNAP_FILE3));
+        }
+    }
+    
     public void testPrefixLookups() throws Exception {
         
         // randomly insert 200 elements in a map
@@ -480,6 +659,72 @@ public class LSMTreeTest extends TestCase {
             it.next();
         
         assertEquals(4, i);
+        
+        tree.destroy();
+    }
+    
+    public void testInMemorySize() throws Exception {
+        
+        final DefaultByteRangeComparator comp = DefaultByteRangeComparator.getInstance();
+        LSMTree tree = new LSMTree(null, comp, COMPRESSION, 16, 1024 * 1024 * 512, MMAP, -1);
+        assertEquals(0, tree.getInMemorySize());
+        
+        // the size grows with each insertion and deletion
+        long size = 0;
+        for (int i = 0; i < 100; i++) {
+            tree.insert(("key" + i).getBytes(), new byte[1000]);
+            assertTrue(tree.getInMemorySize() > size);
+            size = tree.getInMemorySize();
+        }
+        assertTrue(size >= 100 * 1000);
+        
+        tree.delete("key0".getBytes());
+        assertTrue(tree.getInMemorySize() > size);
+        size = tree.getInMemorySize();
+        
+        // snapshots remain in memory until they have been written to disk
+        int snapId = tree.createSnapshot();
+        assertEquals(size, tree.getInMemorySize());
+        
+        tree.insert("key100".getBytes(), new byte[1000]);
+        long newSize = tree.getInMemorySize() - size;
+        assertTrue(newSize > 1000);
+        
+        tree.materializeSnapshot(SNAP_FILE, snapId);
+        tree.linkToSnapshot(SNAP_FILE);
+        assertEquals(newSize, tree.getInMemorySize());
+        
+        tree.destroy();
+        assertEquals(0, tree.getInMemorySize());
+    }
+    
+    private void assertContent(TreeMap<byte[], byte[]> expected, LSMTree tree) {
+        
+        byte[][] keys = new byte[4000][];
+        for (int i = 0; i < 4000; i++) {
+            keys[i] = ("key" + i).getBytes();
+            assertEquals(expected.get(keys[i]), tree.lookup(keys[i]));
+        }
+        
+        byte[][] values = tree.lookup(keys);
+        for (int i = 0; i < 4000; i++)
+            assertEquals(expected.get(keys[i]), values[i]);
+        
+        Iterator<Entry<byte[], byte[]>> it = tree.prefixLookup(new byte[0]);
+        for (Entry<byte[], byte[]> entry : expected.entrySet()) {
+            Entry<byte[], byte[]> next = it.next();
+            assertEquals(entry.getKey(), next.getKey());
+            assertEquals(entry.getValue(), next.getValue());
+        }
+        assertFalse(it.hasNext());
+        
+        it = tree.prefixLookup(new byte[0], false);
+        for (Entry<byte[], byte[]> entry : expected.descendingMap().entrySet()) {
+            Entry<byte[], byte[]> next = it.next();
+            assertEquals(entry.getKey(), next.getKey());
+            assertEquals(entry.getValue(), next.getValue());
+        }
+        assertFalse(it.hasNext());
     }
     
     private void assertEquals(byte[] expected, byte[] result) {
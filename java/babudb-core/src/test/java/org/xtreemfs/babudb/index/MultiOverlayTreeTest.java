@@ -9,6 +9,7 @@
 package org.xtreemfs.babudb.index;
 
 import java.util.Iterator;
+import java.util.Random;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.Map.Entry;
@@ -17,6 +18,7 @@ import junit.framework.TestCase;
 import junit.textui.TestRunner;
 
 import org.xtreemfs.babudb.index.DefaultByteRangeComparator;
+import org.xtreemfs.babudb.index.overlay.ArenaOverlayTree;
 import org.xtreemfs.babudb.index.overlay.MultiOverlayBufferTree;
 import org.xtreemfs.babudb.index.overlay.MultiOverlayStringTree;
 import org.xtreemfs.babudb.index.overlay.MultiOverlayTree;
@@ -392,6 +394,78 @@ public class MultiOverlayTreeTest extends TestCase {
         assertEquals(e, v);
     }
     
+    public void testArenaOverlayBufferTree() {
+        
+        final DefaultByteRangeComparator comp = DefaultByteRangeComparator.getInstance();
+        final byte[] nullValue = new byte[0];
+        final Random rnd = new Random(1);
+        
+        for (ArenaOverlayTree.Allocation arena : ArenaOverlayTree.Allocation.values()) {
+            
+            // perform the same random insertions, deletions and overlay
+            // creations on a skip list and an arena tree
+            MultiOverlayBufferTree expected = new MultiOverlayBufferTree(nullValue, comp);
+            MultiOverlayBufferTree tree = new MultiOverlayBufferTree(nullValue, comp, arena);
+            
+            for (int i = 0; i < 20000; i++) {
+                
+                byte[] key = String.format("key%05d", rnd.nextInt(5000)).getBytes();
+                if (rnd.nextInt(5) == 0) {
+                    expected.insert(key, null);
+                    tree.insert(key, null);
+                } else {
+                    // some values exceed the initial slab size
+                    byte[] val = new byte[i % 1000 == 0 ? 100 * 1024 : rnd.nextInt(64)];
+                    rnd.nextBytes(val);
+                    expected.insert(key, val);
+                    tree.insert(key, val);
+                }
+                
+                if (i % 5000 == 4999)
+                    assertEquals(expected.newOverlay(), tree.newOverlay());
+            }
+            
+            // compare point lookups in the current and all older overlays
+            for (int i = 0; i < 5100; i++) {
+                byte[] key = String.format("key%05d", i).getBytes();
+                assertEquals(expected.lookup(key), tree.lookup(key));
+                for (int snap = 0; snap < 4; snap++)
+                    assertEquals(expected.lookup(key, snap), tree.lookup(key, snap));
+            }
+            
+            // compare range lookups in both directions
+            byte[][] bounds = { null, "key01234".getBytes(), "key02".getBytes(), "kez".getBytes() };
+            for (byte[] from : bounds)
+                for (byte[] to : bounds)
+                    for (boolean ascending : new boolean[] { true, false }) {
+                        
+                        // skip inconsistent ranges
+                        if (from != null && to != null && comp.compare(from, to) * (ascending ? 1 : -1) > 0)
+                            continue;
+                        
+                        assertIterator(expected.rangeLookup(from, to, true, ascending), tree.rangeLookup(from,
+                            to, true, ascending));
+                        assertIterator(expected.rangeLookup(from, to, 2, false, ascending), tree.rangeLookup(
+                            from, to, 2, false, ascending));
+                    }
+            
+            assertIterator(expected.prefixLookup("key012".getBytes(), false, false), tree.prefixLookup(
+                "key012".getBytes(), false, false));
+        }
+    }
+    
+    private void assertIterator(Iterator<Entry<byte[], byte[]>> expected, Iterator<Entry<byte[], byte[]>> it) {
+        
+        while (expected.hasNext()) {
+            assertTrue(it.hasNext());
+            Entry<byte[], byte[]> next = expected.next();
+            Entry<byte[], byte[]> entry = it.next();
+            assertEquals(next.getKey(), entry.getKey());
+            assertEquals(next.getValue(), entry.getValue());
+        }
+        assertFalse(it.hasNext());
+    }
+    
     protected void assertEquals(byte[] expected, byte[] val) {
         
         if (expected == null && val == null)
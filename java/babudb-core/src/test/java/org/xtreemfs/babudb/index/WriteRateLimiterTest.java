@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2026, agent
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.babudb.index;
+
+import junit.framework.TestCase;
+import junit.textui.TestRunner;
+
+import org.xtreemfs.babudb.index.writer.WriteRateLimiter;
+
+public class WriteRateLimiterTest extends TestCase {
+
+    private static final int MAX_RATE = 1024 * 1024;
+
+    public void testRateLimit() {
+
+        WriteRateLimiter limiter = new WriteRateLimiter(MAX_RATE, 0);
+
+        // the initial burst of 100 ms is not throttled
+        long start = System.currentTimeMillis();
+        limiter.acquire(MAX_RATE / 20);
+        assertEquals(0L, limiter.getRuntimeState(WriteRateLimiter.RUNTIME_STATE_THROTTLED));
+
+        // writing another 400 ms worth of data must be throttled by ~350 ms
+        for (int i = 0; i < 8; i++)
+            limiter.acquire(MAX_RATE / 20);
+        long duration = System.currentTimeMillis() - start;
+
+        assertTrue("duration: " + duration, duration >= 300);
+        assertTrue("duration: " + duration, duration < 2000);
+        assertEquals((long) MAX_RATE / 20 * 9, limiter.getRuntimeState(WriteRateLimiter.RUNTIME_STATE_BYTES));
+        assertTrue((Long) limiter.getRuntimeState(WriteRateLimiter.RUNTIME_STATE_THROTTLED) >= 250);
+        assertEquals((long) MAX_RATE, limiter.getRate());
+    }
+
+    public void testAdjustment() throws Exception {
+
+        WriteRateLimiter limiter = new WriteRateLimiter(MAX_RATE, 1000);
+
+        // a slow sync halves the rate after the adjustment interval
+        Thread.sleep(110);
+        limiter.syncCompleted(5000);
+        assertEquals((long) MAX_RATE / 2, limiter.getRate());
+        assertEquals(1L, limiter.getRuntimeState(WriteRateLimiter.RUNTIME_STATE_DECREASES));
+
+        // fast syncs raise the rate again step by step
+        Thread.sleep(110);
+        limiter.syncCompleted(10);
+        assertEquals((long) MAX_RATE / 2 + MAX_RATE / 16, limiter.getRate());
+
+        for (int i = 0; i < 8; i++) {
+            Thread.sleep(110);
+            limiter.syncCompleted(10);
+        }
+        assertEquals((long) MAX_RATE, limiter.getRate());
+
+        // the rate does not drop below the min. rate
+        for (int i = 0; i < 8; i++) {
+            Thread.sleep(110);
+            limiter.syncCompleted(5000);
+        }
+        assertEquals((long) MAX_RATE / 64, limiter.getRate());
+        assertEquals(7L, limiter.getRuntimeState(WriteRateLimiter.RUNTIME_STATE_DECREASES));
+    }
+
+    public void testNoAdjustment() throws Exception {
+
+        WriteRateLimiter limiter = new WriteRateLimiter(MAX_RATE, 0);
+
+        Thread.sleep(110);
+        limiter.syncCompleted(1000000);
+        Thread.sleep(110);
+        limiter.syncCompleted(1000000);
+
+        assertEquals((long) MAX_RATE, limiter.getRate());
+        assertEquals(0L, limiter.getRuntimeState(WriteRateLimiter.RUNTIME_STATE_DECREASES));
+    }
+
+    public static void main(String[] args) {
+        TestRunner.run(WriteRateLimiterTest.class);
+    }
+
+}
@@ -11,8 +11,15 @@ package org.xtreemfs.babudb.log;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilenameFilter;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
 
 import junit.framework.TestCase;
 import junit.textui.TestRunner;
@@ -25,6 +32,7 @@ import org.junit.Test;
 import org.xtreemfs.babudb.log.DiskLogger.SyncMode;
 import org.xtreemfs.babudb.lsmdb.LSMDatabase;
 import org.xtreemfs.babudb.lsmdb.LSN;
+import org.xtreemfs.foundation.buffer.BufferPool;
 import org.xtreemfs.foundation.buffer.ReusableBuffer;
 import org.xtreemfs.foundation.logging.Logging;
 import org.xtreemfs.foundation.util.FSUtils;
@@ -417,6 +425,354 @@ public class DiskLoggerTest extends TestCase {
         
     }
     
+    @Test
+    public void testGroupCommit() throws Exception {
+        
+        final int numThreads = 8;
+        final int numEntries = 200;
+        
+        // replace the logger with one that group-commits batches of up to 4k
+        l.shutdown();
+        l.waitForShutdown();
+        l = new DiskLogger(testdir, new LSN(1, 1L), new LogOptions().setSyncMode(SyncMode.FDATASYNC).setBatching(
+            4096, 1000));
+        l.start();
+        l.waitForStartup();
+        
+        final AtomicInteger count = new AtomicInteger(0);
+        
+        final SyncListener sl = new SyncListener() {
+            
+            public void synced(LSN lsn) {
+                synchronized (count) {
+                    count.incrementAndGet();
+                    count.notifyAll();
+                }
+            }
+            
+            public void failed(Exception ex) {
+                fail("this should not happen");
+            }
+        };
+        
+        // concurrently append entries from multiple threads
+        Thread[] threads = new Thread[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            final int threadId = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < numEntries; j++) {
+                            String pl = "Entry " + threadId + "." + j;
+                            l.append(new LogEntry(ReusableBuffer.wrap(pl.getBytes()), sl,
+                                LogEntry.PAYLOAD_TYPE_INSERT));
+                        }
+                    } catch (InterruptedException exc) {
+                        fail(exc.getMessage());
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        
+        for (Thread thread : threads)
+            thread.join();
+        
+        synchronized (count) {
+            while (count.get() < numThreads * numEntries)
+                count.wait(1000);
+        }
+        
+        // multiple entries should have been written with a single sync
+        long[] batchSizes = (long[]) l.getRuntimeState("diskLogger.batchSizeHistogram");
+        long numBatches = 0;
+        for (long batches : batchSizes)
+            numBatches += batches;
+        assertTrue(numBatches < numThreads * numEntries);
+        
+        try {
+            l.lock();
+            l.switchLogFile(false);
+        } finally {
+            l.unlock();
+        }
+        
+        // check that all entries have been written in the order of their LSNs
+        int[] next = new int[numThreads];
+        long seqNo = 1;
+        DiskLogFile f = new DiskLogFile(testdir + "1.1.dbl");
+        while (f.hasNext()) {
+            LogEntry tmp = f.next();
+            assertEquals(seqNo++, tmp.getLogSequenceNo());
+            
+            String[] parts = new String(tmp.getPayload().array()).substring("Entry ".length()).split("\\.");
+            int threadId = Integer.parseInt(parts[0]);
+            assertEquals(next[threadId]++, Integer.parseInt(parts[1]));
+            tmp.free();
+        }
+        f.close();
+        
+        for (int i = 0; i < numThreads; i++)
+            assertEquals(numEntries, next[i]);
+    }
+    
+    @Test
+    public void testBoundedQueue() throws Exception {
+        
+        final int numThreads = 16;
+        final int numEntries = 100;
+        
+        // replace the logger with one that only queues two entries at a time
+        l.shutdown();
+        l.waitForShutdown();
+        l = new DiskLogger(testdir, new LSN(1, 1L), SyncMode.ASYNC, 0, 2);
+        l.start();
+        l.waitForStartup();
+        
+        final AtomicInteger count = new AtomicInteger(0);
+        
+        final SyncListener sl = new SyncListener() {
+            
+            public void synced(LSN lsn) {
+                synchronized (count) {
+                    count.incrementAndGet();
+                    count.notifyAll();
+                }
+            }
+            
+            public void failed(Exception ex) {
+                fail("this should not happen");
+            }
+        };
+        
+        // concurrently append entries from more threads than queue slots
+        Thread[] threads = new Thread[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < numEntries; j++)
+                            l.append(new LogEntry(ReusableBuffer.wrap("Entry".getBytes()), sl,
+                                LogEntry.PAYLOAD_TYPE_INSERT));
+                    } catch (InterruptedException exc) {
+                        fail(exc.getMessage());
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        
+        for (Thread thread : threads)
+            thread.join();
+        
+        synchronized (count) {
+            while (count.get() < numThreads * numEntries)
+                count.wait(1000);
+        }
+        
+        assertEquals(numThreads * numEntries, l.getLatestLSN().getSequenceNo());
+        
+        // appending to a logger that was shut down must fail
+        l.shutdown();
+        l.waitForShutdown();
+        try {
+            l.append(new LogEntry(ReusableBuffer.wrap("Entry".getBytes()), sl, LogEntry.PAYLOAD_TYPE_INSERT));
+            fail("append should have failed");
+        } catch (InterruptedException exc) {
+            // ok
+        }
+    }
+    
+    @Test
+    public void testConcurrentLanes() throws Exception {
+        
+        final int numThreads = 6;
+        final int numEntries = 200;
+        
+        // replace the logger with one that has three lanes that only queue
+        // two entries at a time, so that appends to all lanes overlap
+        l.shutdown();
+        l.waitForShutdown();
+        final String[] laneDirs = new String[] { testdir + "lane1/", testdir + "lane2/" };
+        l = new DiskLogger(testdir, new LSN(1, 1L), new LogOptions().setSyncMode(SyncMode.ASYNC).setMaxQueueLength(2)
+            .setLaneDirs(laneDirs));
+        l.start();
+        l.waitForStartup();
+        
+        final AtomicInteger count = new AtomicInteger(0);
+        
+        final SyncListener sl = new SyncListener() {
+            
+            public void synced(LSN lsn) {
+                synchronized (count) {
+                    count.incrementAndGet();
+                    count.notifyAll();
+                }
+            }
+            
+            public void failed(Exception ex) {
+                fail("this should not happen");
+            }
+        };
+        
+        // each thread appends the insertions of a different database
+        Thread[] threads = new Thread[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            final int laneKey = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < numEntries; j++) {
+                            LogEntry entry = new LogEntry(ReusableBuffer.wrap(("Entry" + laneKey).getBytes()), sl,
+                                LogEntry.PAYLOAD_TYPE_INSERT);
+                            entry.setLaneKey(laneKey);
+                            l.append(entry);
+                        }
+                    } catch (InterruptedException exc) {
+                        fail(exc.getMessage());
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        
+        for (Thread thread : threads)
+            thread.join();
+        
+        synchronized (count) {
+            while (count.get() < numThreads * numEntries)
+                count.wait(1000);
+        }
+        
+        assertEquals(numThreads * numEntries, l.getLatestLSN().getSequenceNo());
+        l.shutdown();
+        l.waitForShutdown();
+        
+        // the entries of all lanes have unique LSNs without gaps
+        File[][] logFiles = new File[laneDirs.length + 1][];
+        for (int i = 0; i < logFiles.length; i++) {
+            logFiles[i] = new File(i == 0 ? testdir : laneDirs[i - 1]).listFiles(new FilenameFilter() {
+                public boolean accept(File dir, String name) {
+                    return name.endsWith(".dbl");
+                }
+            });
+        }
+        
+        LaneLogIterator it = new LaneLogIterator(logFiles, null);
+        try {
+            for (int i = 1; i <= numThreads * numEntries; i++) {
+                assertTrue(it.hasNext());
+                LogEntry entry = it.next();
+                assertEquals(new LSN(1, i), entry.getLSN());
+                entry.free();
+            }
+            assertFalse(it.hasNext());
+        } finally {
+            it.destroy();
+        }
+    }
+    
+    @Test
+    public void testLaneWatermark() throws Exception {
+        
+        final List<LSN> acknowledged = new ArrayList<LSN>();
+        SyncListener sl = new SyncListener() {
+            
+            public void synced(LSN lsn) {
+                acknowledged.add(lsn);
+            }
+            
+            public void failed(Exception ex) {
+                fail("this should not happen");
+            }
+        };
+        
+        LaneWatermark watermark = new LaneWatermark(new AtomicLong(1L));
+        LogEntry[] entries = new LogEntry[4];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = new LogEntry(ReusableBuffer.wrap(("Entry" + i).getBytes()), sl, LogEntry.PAYLOAD_TYPE_INSERT);
+            entries[i].assignId(1, watermark.reserve());
+        }
+        
+        // durable entries wait for all entries with lower LSNs
+        watermark.synced(Arrays.asList(entries[3]));
+        watermark.synced(Arrays.asList(entries[1]));
+        assertTrue(acknowledged.isEmpty());
+        
+        // entries that do not require durability are not waited for
+        watermark.discard(entries[2]);
+        assertTrue(acknowledged.isEmpty());
+        
+        watermark.synced(Arrays.asList(entries[0]));
+        assertEquals(Arrays.asList(new LSN(1, 1L), new LSN(1, 2L), new LSN(1, 4L)), acknowledged);
+        assertTrue(watermark.isEmpty());
+        
+        // cancelled reservations are returned
+        assertEquals(5L, watermark.reserve());
+        watermark.cancel(5L);
+        assertTrue(watermark.reserve(5L));
+        assertFalse(watermark.reserve(7L));
+    }
+    
+    @Test
+    public void testLargeEntries() throws Exception {
+        
+        // entry sizes that make entries span the boundaries of the chunks
+        // read by DiskLogFile, including an entry larger than a chunk
+        final int[] sizes = { 100, DiskLogFile.CHUNK_SIZE - 200, 1000, DiskLogFile.CHUNK_SIZE + 5000, 10,
+            3 * 1024 * 1024, 20 };
+        
+        final AtomicInteger count = new AtomicInteger(0);
+        
+        SyncListener sl = new SyncListener() {
+            
+            public void synced(LSN lsn) {
+                synchronized (count) {
+                    count.incrementAndGet();
+                    count.notifyAll();
+                }
+            }
+            
+            public void failed(Exception ex) {
+                fail("this should not happen");
+            }
+        };
+        
+        for (int i = 0; i < sizes.length; i++) {
+            byte[] pl = new byte[sizes[i]];
+            for (int j = 0; j < pl.length; j++)
+                pl[j] = (byte) (i + j);
+            l.append(new LogEntry(ReusableBuffer.wrap(pl), sl, LogEntry.PAYLOAD_TYPE_INSERT));
+        }
+        
+        synchronized (count) {
+            while (count.get() < sizes.length)
+                count.wait(1000);
+        }
+        
+        try {
+            l.lock();
+            l.switchLogFile(false);
+        } finally {
+            l.unlock();
+        }
+        
+        DiskLogFile f = new DiskLogFile(testdir + "1.1.dbl");
+        for (int i = 0; i < sizes.length; i++) {
+            assertTrue(f.hasNext());
+            LogEntry tmp = f.next();
+            assertEquals(i + 1, tmp.getLogSequenceNo());
+            
+            ReusableBuffer pl = tmp.getPayload();
+            assertEquals(sizes[i], pl.remaining());
+            for (int j = 0; j < sizes[i]; j++)
+                assertEquals((byte) (i + j), pl.get());
+            tmp.free();
+        }
+        assertFalse(f.hasNext());
+        f.close();
+    }
+    
     @Test
     public void testSyncListener() throws Exception {
         
@@ -479,6 +835,245 @@ public class DiskLoggerTest extends TestCase {
         }
     }
     
+    @Test
+    public void testPreallocation() throws Exception {
+        
+        final int preallocSize = 64 * 1024;
+        
+        l.shutdown();
+        l.waitForShutdown();
+        FSUtils.delTree(new File(testdir));
+        
+        l = new DiskLogger(testdir, new LSN(1, 1L), new LogOptions().setSyncMode(SyncMode.FDATASYNC)
+            .setPreallocationSize(preallocSize));
+        l.start();
+        l.waitForStartup();
+        
+        final AtomicInteger count = new AtomicInteger(0);
+        
+        SyncListener sl = new SyncListener() {
+            
+            public void synced(LSN lsn) {
+                synchronized (count) {
+                    count.incrementAndGet();
+                    count.notifyAll();
+                }
+            }
+            
+            public void failed(Exception ex) {
+                fail("this should not happen");
+            }
+        };
+        
+        for (int i = 1; i <= 120; i++) {
+            
+            l.append(new LogEntry(ReusableBuffer.wrap(("Entry " + i).getBytes()), sl,
+                LogEntry.PAYLOAD_TYPE_INSERT));
+            
+            if (i == 100 || i == 110) {
+                
+                synchronized (count) {
+                    while (count.get() < i)
+                        count.wait(1000);
+                }
+                
+                // the log file has been preallocated
+                File logFile = new File(testdir + "1." + (i == 100 ? 1 : 101) + ".dbl");
+                assertEquals(preallocSize, logFile.length());
+                assertTrue(l.getLogFileSize() > 0);
+                assertTrue(l.getLogFileSize() < preallocSize);
+                
+                if (i == 110) {
+                    // recycle the first log file
+                    assertTrue(l.recycleLogFile(new File(testdir + "1.1.dbl")));
+                    assertFalse(new File(testdir + "1.1.dbl").exists());
+                }
+                
+                try {
+                    l.lock();
+                    l.switchLogFile(false);
+                } finally {
+                    l.unlock();
+                }
+            }
+        }
+        
+        synchronized (count) {
+            while (count.get() < 120)
+                count.wait(1000);
+        }
+        
+        // the last log file is the recycled one
+        assertEquals(1, l.getRuntimeState("diskLogger.reusedLogFileCount"));
+        assertEquals(preallocSize, new File(testdir + "1.111.dbl").length());
+        
+        l.shutdown();
+        l.waitForShutdown();
+        
+        // stale entries of the recycled log file must not be returned
+        File[] logFiles = new File(testdir).listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".dbl");
+            }
+        });
+        assertEquals(2, logFiles.length);
+        
+        DiskLogIterator it = new DiskLogIterator(logFiles, LSMDatabase.NO_DB_LSN);
+        for (int i = 101; i <= 120; i++) {
+            assertTrue(it.hasNext());
+            LogEntry next = it.next();
+            assertEquals("Entry " + i, new String(next.getPayload().array()));
+            next.free();
+        }
+        assertFalse(it.hasNext());
+        it.destroy();
+        
+        l = new DiskLogger(testdir, new LSN(1, 121L), SyncMode.FSYNC, 0, 0);
+        l.start();
+        l.waitForStartup();
+    }
+    
+    @Test
+    public void testMappedWrites() throws Exception {
+        
+        l.shutdown();
+        l.waitForShutdown();
+        FSUtils.delTree(new File(testdir));
+        
+        // use small windows, so that the entries span several windows and
+        // exceed the preallocated size
+        l = new DiskLogger(testdir, new LSN(1, 1L), new LogOptions().setSyncMode(SyncMode.FDATASYNC)
+            .setPreallocationSize(8 * 1024).setMappedWindowSize(1024));
+        l.start();
+        l.waitForStartup();
+        
+        final AtomicInteger count = new AtomicInteger(0);
+        
+        SyncListener sl = new SyncListener() {
+            
+            public void synced(LSN lsn) {
+                synchronized (count) {
+                    count.incrementAndGet();
+                    count.notifyAll();
+                }
+            }
+            
+            public void failed(Exception ex) {
+                fail("this should not happen");
+            }
+        };
+        
+        byte[] large = new byte[3000];
+        for (int i = 1; i <= 300; i++) {
+            
+            // an entry that is larger than a window
+            String payload = "Entry " + i + (i == 100 ? new String(large) : "");
+            l.append(new LogEntry(ReusableBuffer.wrap(payload.getBytes()), sl, LogEntry.PAYLOAD_TYPE_INSERT));
+            
+            if (i == 200) {
+                
+                synchronized (count) {
+                    while (count.get() < i)
+                        count.wait(1000);
+                }
+                
+                try {
+                    l.lock();
+                    l.switchLogFile(false);
+                } finally {
+                    l.unlock();
+                }
+            }
+        }
+        
+        synchronized (count) {
+            while (count.get() < 300)
+                count.wait(1000);
+        }
+        assertTrue(l.getLogFileSize() > 0);
+        
+        l.shutdown();
+        l.waitForShutdown();
+        
+        // the entries must be readable from the log files
+        File[] logFiles = new File(testdir).listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".dbl");
+            }
+        });
+        assertEquals(2, logFiles.length);
+        
+        // log files are not padded beyond the end of the log or the
+        // preallocated size by the mapped windows
+        long size = 0;
+        for (int i = 1; i <= 200; i++)
+            size += LogEntry.headerLength + ("Entry " + i + (i == 100 ? new String(large) : "")).length();
+        assertTrue(size > 8 * 1024);
+        assertEquals(size, new File(testdir + "1.1.dbl").length());
+        assertEquals(8 * 1024, new File(testdir + "1.201.dbl").length());
+        
+        DiskLogIterator it = new DiskLogIterator(logFiles, LSMDatabase.NO_DB_LSN);
+        for (int i = 1; i <= 300; i++) {
+            assertTrue(it.hasNext());
+            LogEntry next = it.next();
+            assertEquals(new LSN(1, i), next.getLSN());
+            assertEquals("Entry " + i + (i == 100 ? new String(large) : ""), new String(next.getPayload().array()));
+            next.free();
+        }
+        assertFalse(it.hasNext());
+        it.destroy();
+        
+        l = new DiskLogger(testdir, new LSN(1, 301L), SyncMode.FSYNC, 0, 0);
+        l.start();
+        l.waitForStartup();
+    }
+    
+    @Test
+    public void testSerialization() throws Exception {
+        
+        byte[] data = "Entry 1".getBytes();
+        ReusableBuffer payload = BufferPool.allocate(data.length);
+        payload.put(data);
+        payload.flip();
+        
+        LogEntry le = new LogEntry(payload, null, LogEntry.PAYLOAD_TYPE_INSERT);
+        le.assignId(1, 1L);
+        
+        // serialize the entry into a pooled buffer and from its parts
+        CRC32 csum = new CRC32();
+        ReusableBuffer buf = le.serialize(csum);
+        csum.reset();
+        assertEquals(le.getSerializedSize(), buf.remaining());
+        
+        ByteBuffer parts = ByteBuffer.allocate(le.getSerializedSize());
+        le.serializeHeader(parts, csum);
+        csum.reset();
+        parts.put(le.getPayload().getBuffer().duplicate());
+        le.serializeTrailer(parts);
+        parts.flip();
+        assertEquals(parts, buf.getBuffer());
+        assertEquals(data.length, le.getPayload().remaining());
+        
+        LogEntry copy = LogEntry.deserialize(buf, csum);
+        csum.reset();
+        assertEquals(new LSN(1, 1L), copy.getLSN());
+        assertEquals("Entry 1", new String(copy.getPayload().array()));
+        copy.free();
+        BufferPool.free(buf);
+        
+        // the checksum has to be recalculated for a new LSN
+        le.assignId(2, 5L);
+        buf = le.serialize(csum);
+        csum.reset();
+        copy = LogEntry.deserialize(buf, csum);
+        csum.reset();
+        assertEquals(new LSN(2, 5L), copy.getLSN());
+        copy.free();
+        BufferPool.free(buf);
+        
+        le.free();
+    }
+    
     private static void copyFile(File src, File dst) throws Exception {
         FileInputStream in = new FileInputStream(src);
         FileOutputStream out = new FileOutputStream(dst);
@@ -118,6 +118,18 @@ public class SnapshotTest extends TestCase {
         for (int i = 1; i < 4; i++)
             assertEquals("x", new String(snap2.lookup(0, ("Key" + i).getBytes(), null).get()));
         
+        // look up all keys at once
+        byte[][] keys = new byte[][] { "Key3".getBytes(), "Key1".getBytes(), "Key4".getBytes(),
+            "Key2".getBytes() };
+        byte[][] values = snap1.multiLookup(0, keys, null).get();
+        assertEquals("Value3", new String(values[0]));
+        assertEquals("Value1", new String(values[1]));
+        assertNull(values[2]);
+        assertEquals("Value2", new String(values[3]));
+        values = snap2.multiLookup(0, keys, null).get();
+        assertEquals("x", new String(values[0]));
+        assertNull(values[2]);
+        
         it = snap1.prefixLookup(0, "Key".getBytes(), null).get();
         for (int i = 1; i < 4; i++) {
             Entry<byte[], byte[]> next = it.next();
@@ -373,6 +373,12 @@ public class ReplicationConfig extends PluginConfig {
             		"setup e.g., to FDATASYNC.");
         }
 
+        if (babuDBConfig.getLogLanes() > 1) {
+            throw new IllegalArgumentException("Replication will not work properly if BabuDB " +
+                    "instances split their log into multiple lanes, as only the log in " +
+                    babuDBConfig.getDbLogDir() + " is replicated. Please set babudb.logLanes to 1.");
+        }
+
         if (log.equals(base)) {
             throw new IllegalArgumentException("It is not permitted by the replication plugin to" +
             		" store log and base files within the same directory. Please move either" +
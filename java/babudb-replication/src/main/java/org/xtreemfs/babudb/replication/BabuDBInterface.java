@@ -75,8 +75,10 @@ public class BabuDBInterface {
     public void appendToLocalPersistenceManager(LogEntry entry, DatabaseRequestListener<Object> listener) 
             throws BabuDBException {
         
-        Logging.logMessage(Logging.LEVEL_DEBUG, this, "Appending entry to logger: %s", 
-                new String(entry.getPayload().array()));
+        if (Logging.isDebug()) {
+            Logging.logMessage(Logging.LEVEL_DEBUG, this, "Appending entry to logger: %s", 
+                    new String(entry.getPayload().array()));
+        }
         
         BabuDBRequestResultImpl<Object> future = new BabuDBRequestResultImpl<Object>(dbs.getResponseManager());
         localTxnMan.makePersistent(entry.getPayload(), future);
@@ -25,6 +25,8 @@ import org.xtreemfs.babudb.api.exception.BabuDBException;
 import org.xtreemfs.babudb.api.exception.BabuDBException.ErrorCode;
 import org.xtreemfs.babudb.config.BabuDBConfig;
 import org.xtreemfs.babudb.config.ReplicationConfig;
+import org.xtreemfs.babudb.index.reader.BlockCache;
+import org.xtreemfs.babudb.index.writer.WriteRateLimiter;
 import org.xtreemfs.babudb.lsmdb.DBConfig;
 import org.xtreemfs.babudb.lsmdb.LSMDBWorker;
 import org.xtreemfs.babudb.lsmdb.LSN;
@@ -210,6 +212,22 @@ public class BabuDBProxy implements BabuDBInternal {
         return localBabuDB.getWorker(dbId);
     }
 
+    /* (non-Javadoc)
+     * @see org.xtreemfs.babudb.api.dev.BabuDBInternal#getBlockCache()
+     */
+    @Override
+    public BlockCache getBlockCache() {
+        return localBabuDB.getBlockCache();
+    }
+
+    /* (non-Javadoc)
+     * @see org.xtreemfs.babudb.api.dev.BabuDBInternal#getWriteRateLimiter()
+     */
+    @Override
+    public WriteRateLimiter getWriteRateLimiter() {
+        return localBabuDB.getWriteRateLimiter();
+    }
+
     /* (non-Javadoc)
      * @see org.xtreemfs.babudb.BabuDBInternal#getWorkerCount()
      */
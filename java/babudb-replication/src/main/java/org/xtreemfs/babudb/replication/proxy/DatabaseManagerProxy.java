@@ -18,6 +18,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 
 import org.xtreemfs.babudb.api.database.Database;
+import org.xtreemfs.babudb.api.database.DatabaseRequestResult;
 import org.xtreemfs.babudb.api.dev.DatabaseInternal;
 import org.xtreemfs.babudb.api.dev.DatabaseManagerInternal;
 import org.xtreemfs.babudb.api.dev.ResponseManagerInternal;
@@ -29,6 +30,7 @@ import org.xtreemfs.babudb.api.index.ByteRangeComparator;
 import org.xtreemfs.babudb.api.transaction.Transaction;
 import org.xtreemfs.babudb.api.transaction.TransactionListener;
 import org.xtreemfs.babudb.config.ReplicationConfig;
+import org.xtreemfs.babudb.log.DiskLogger.SyncMode;
 import org.xtreemfs.babudb.replication.ReplicationManager;
 import org.xtreemfs.babudb.replication.policy.Policy;
 import org.xtreemfs.babudb.replication.proxy.BabuDBProxy.RequestRerunner;
@@ -498,6 +500,30 @@ public class DatabaseManagerProxy implements DatabaseManagerInternal {
         localDBMan.executeTransaction(txn);
     }
 
+    /* (non-Javadoc)
+     * @see org.xtreemfs.babudb.api.DatabaseManager#executeTransactionAsync(org.xtreemfs.babudb.api.transaction.Transaction)
+     */
+    @Override
+    public DatabaseRequestResult<Object> executeTransactionAsync(Transaction txn) {
+        return localDBMan.executeTransactionAsync(txn);
+    }
+
+    /* (non-Javadoc)
+     * @see org.xtreemfs.babudb.api.DatabaseManager#executeTransaction(org.xtreemfs.babudb.api.transaction.Transaction, org.xtreemfs.babudb.log.DiskLogger.SyncMode)
+     */
+    @Override
+    public void executeTransaction(Transaction txn, SyncMode durability) throws BabuDBException {
+        localDBMan.executeTransaction(txn, durability);
+    }
+
+    /* (non-Javadoc)
+     * @see org.xtreemfs.babudb.api.DatabaseManager#executeTransactionAsync(org.xtreemfs.babudb.api.transaction.Transaction, org.xtreemfs.babudb.log.DiskLogger.SyncMode)
+     */
+    @Override
+    public DatabaseRequestResult<Object> executeTransactionAsync(Transaction txn, SyncMode durability) {
+        return localDBMan.executeTransactionAsync(txn, durability);
+    }
+
     /* (non-Javadoc)
      * @see org.xtreemfs.babudb.api.DatabaseManager#addTransactionListener(org.xtreemfs.babudb.api.transaction.TransactionListener)
      */
@@ -15,10 +15,13 @@ import org.xtreemfs.babudb.api.database.DatabaseRequestListener;
 import org.xtreemfs.babudb.api.database.DatabaseRequestResult;
 import org.xtreemfs.babudb.api.database.ResultSet;
 import org.xtreemfs.babudb.api.database.UserDefinedLookup;
+import org.xtreemfs.babudb.api.database.ValueView;
 import org.xtreemfs.babudb.api.dev.DatabaseInternal;
+import org.xtreemfs.babudb.api.dev.transaction.TransactionInternal;
 import org.xtreemfs.babudb.api.exception.BabuDBException;
 import org.xtreemfs.babudb.api.exception.BabuDBException.ErrorCode;
 import org.xtreemfs.babudb.api.index.ByteRangeComparator;
+import org.xtreemfs.babudb.log.DiskLogger.SyncMode;
 import org.xtreemfs.babudb.lsmdb.BabuDBInsertGroup;
 import org.xtreemfs.babudb.lsmdb.LSMDatabase;
 import org.xtreemfs.babudb.replication.policy.Policy;
@@ -122,6 +125,95 @@ public class DatabaseProxy implements DatabaseInternal {
         return result;
     }
 
+    /* (non-Javadoc)
+     * @see org.xtreemfs.babudb.api.database.DatabaseRO#lookupView(int, byte[], 
+     *          java.lang.Object)
+     */
+    @Override
+    public DatabaseRequestResult<ValueView> lookupView(int indexId, byte[] key, Object context) {
+        
+        final BabuDBRequestResultImpl<ValueView> result = 
+            new BabuDBRequestResultImpl<ValueView>(context, dbMan.getResponseManager());
+        
+        // values may have to be fetched from the master, so that views are
+        // created on copies of the values
+        lookup(indexId, key, context).registerListener(new DatabaseRequestListener<byte[]>() {
+            
+            @Override
+            public void finished(byte[] value, Object context) {
+                result.finished(value == null ? null : new ValueView(value));
+            }
+            
+            @Override
+            public void failed(BabuDBException error, Object context) {
+                result.failed(error);
+            }
+        });
+        
+        return result;
+    }
+    
+    /* (non-Javadoc)
+     * @see org.xtreemfs.babudb.api.database.DatabaseRO#multiLookup(int, byte[][], 
+     *          java.lang.Object)
+     */
+    @Override
+    public DatabaseRequestResult<byte[][]> multiLookup(final int indexId, final byte[][] keys, 
+            final Object context) {
+        
+        assert (keys != null);
+        
+        BabuDBRequestResultImpl<byte[][]> result = 
+            new BabuDBRequestResultImpl<byte[][]>(context, dbMan.getResponseManager());
+        
+        new ListenerWrapper<byte[][]>(result, new RequestOperation<byte[][]>() {
+
+            @Override
+            public void execute(ListenerWrapper<byte[][]> listener) {
+                InetSocketAddress master = null;
+                try {
+                    master = getServerToPerformAt(0);
+                    
+                    if (master == null) {
+                        localDB.multiLookup(indexId, keys, context).registerListener(listener);
+                    } else {
+                        dbMan.getClient().multiLookup(name, indexId, keys, master).registerListener(listener);
+                    }
+                } catch (BabuDBException e) {
+                    listener.failed(e);
+                }
+            }
+        }, dbMan.getRequestRerunner());
+        
+        return result;
+    }
+    
+    public DatabaseRequestResult<byte[][]> multiLookupNonblocking(int indexId, byte[][] keys, 
+            Object context) {
+        
+        assert (keys != null);
+        
+        InetSocketAddress master = null;
+        BabuDBRequestResultImpl<byte[][]> result = 
+            new BabuDBRequestResultImpl<byte[][]>(context, dbMan.getResponseManager());
+        
+        try {
+            master = getServerToPerformAt(-1);
+            
+            if (master == null) {
+                return localDB.multiLookup(indexId, keys, context);
+            }
+        } catch (BabuDBException e) {
+            result.failed(e);
+            return result;
+        } 
+        
+        dbMan.getClient().multiLookup(name, indexId, keys, master).registerListener(
+                new ListenerWrapper<byte[][]>(result));
+        
+        return result;
+    }
+
     /* (non-Javadoc)
      * @see org.xtreemfs.babudb.api.database.DatabaseRO#prefixLookup(int, 
      *          byte[], java.lang.Object)
@@ -450,9 +542,20 @@ public class DatabaseProxy implements DatabaseInternal {
     public DatabaseRequestResult<Object> singleInsert(int indexId, byte[] key, 
             byte[] value, Object context) {
         
+        return singleInsert(indexId, key, value, null, context);
+    }
+    
+    /* (non-Javadoc)
+     * @see org.xtreemfs.babudb.api.database.Database#singleInsert(int, byte[], 
+     *          byte[], org.xtreemfs.babudb.log.DiskLogger.SyncMode, java.lang.Object)
+     */
+    @Override
+    public DatabaseRequestResult<Object> singleInsert(int indexId, byte[] key, 
+            byte[] value, SyncMode durability, Object context) {
+        
         DatabaseInsertGroup irg = createInsertGroup();
         irg.addInsert(indexId, key, value);
-        return insert(irg, context);
+        return insert(irg, durability, context);
     }
     
     /* (non-Javadoc)
@@ -463,6 +566,17 @@ public class DatabaseProxy implements DatabaseInternal {
     public DatabaseRequestResult<Object> insert(DatabaseInsertGroup irg, Object context) {
         return insert((BabuDBInsertGroup) irg, context);
     }
+    
+    /* (non-Javadoc)
+     * @see org.xtreemfs.babudb.api.database.Database#insert(
+     *          org.xtreemfs.babudb.api.database.DatabaseInsertGroup, 
+     *          org.xtreemfs.babudb.log.DiskLogger.SyncMode, java.lang.Object)
+     */
+    @Override
+    public DatabaseRequestResult<Object> insert(DatabaseInsertGroup irg, SyncMode durability, 
+            Object context) {
+        return insert((BabuDBInsertGroup) irg, durability, context);
+    }
 
     /* (non-Javadoc)
      * @see org.xtreemfs.babudb.api.dev.DatabaseInternal#insert(
@@ -470,13 +584,26 @@ public class DatabaseProxy implements DatabaseInternal {
      */
     @Override
     public DatabaseRequestResult<Object> insert(BabuDBInsertGroup irg, Object context) {
+        return insert(irg, null, context);
+    }
+    
+    /* (non-Javadoc)
+     * @see org.xtreemfs.babudb.api.dev.DatabaseInternal#insert(
+     *          org.xtreemfs.babudb.lsmdb.BabuDBInsertGroup, 
+     *          org.xtreemfs.babudb.log.DiskLogger.SyncMode, java.lang.Object)
+     */
+    @Override
+    public DatabaseRequestResult<Object> insert(BabuDBInsertGroup irg, SyncMode durability, 
+            Object context) {
         
         BabuDBRequestResultImpl<Object> result = 
             new BabuDBRequestResultImpl<Object>(context, dbMan.getResponseManager());
         
         try {
-            dbMan.getTransactionManager().makePersistent(
-                    dbMan.createTransaction().insertRecordGroup(getName(), irg.getRecord()), result);
+            TransactionInternal txn = dbMan.createTransaction().insertRecordGroup(getName(), 
+                    irg.getRecord());
+            txn.setDurability(durability);
+            dbMan.getTransactionManager().makePersistent(txn, result);
         } catch (BabuDBException e) {
             result.failed(e);
         }
@@ -612,6 +739,28 @@ public class DatabaseProxy implements DatabaseInternal {
         }
     }
 
+    /* (non-Javadoc)
+     * @see org.xtreemfs.babudb.api.dev.DatabaseInternal#proceedWriteSnapshot(int, long, int[], int)
+     */
+    @Override
+    public void proceedWriteSnapshot(int viewId, long sequenceNo, int[] snapIds, int index) 
+            throws BabuDBException {
+        boolean permission = false;
+        try {
+            if (getServerToPerformAt(0) == null) {
+                permission = true;
+            }
+        } catch (BabuDBException be) {
+            /* ignored */
+        }
+        if (permission) {
+            localDB.proceedWriteSnapshot(viewId, sequenceNo, snapIds, index);
+        } else {
+            throw new UnsupportedOperationException("Internally manipulating a Database of a " 
+                    + "'not master' server is not supported by the replication plugin.");
+        }
+    }
+
     /* (non-Javadoc)
      * @see org.xtreemfs.babudb.api.dev.DatabaseInternal#proceedCleanupSnapshot(int, long)
      */
@@ -712,6 +861,27 @@ public class DatabaseProxy implements DatabaseInternal {
         }
     }
 
+    /* (non-Javadoc)
+     * @see org.xtreemfs.babudb.api.dev.DatabaseInternal#directMultiLookup(int, int, byte[][])
+     */
+    @Override
+    public byte[][] directMultiLookup(int indexId, int snapId, byte[][] keys) throws BabuDBException {
+        boolean permission = false;
+        try {
+            if (getServerToPerformAt(0) == null) {
+                permission = true;
+            }
+        } catch (BabuDBException be) {
+            /* ignored */
+        }
+        if (permission) {
+            return localDB.directMultiLookup(indexId, snapId, keys);
+        } else {
+            throw new UnsupportedOperationException("Internally manipulating a Database of a " 
+                    + "'not master' server is not supported by the replication plugin.");
+        }
+    }
+
     /* (non-Javadoc)
      * @see org.xtreemfs.babudb.api.dev.DatabaseInternal#directPrefixLookup(int, int, byte[], boolean)
      */
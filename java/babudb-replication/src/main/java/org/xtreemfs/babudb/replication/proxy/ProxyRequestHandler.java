@@ -14,6 +14,7 @@ import org.xtreemfs.babudb.replication.proxy.operations.GetDatabaseByIdOperation
 import org.xtreemfs.babudb.replication.proxy.operations.GetDatabaseByNameOperation;
 import org.xtreemfs.babudb.replication.proxy.operations.GetDatabasesOperation;
 import org.xtreemfs.babudb.replication.proxy.operations.LookupOperation;
+import org.xtreemfs.babudb.replication.proxy.operations.MultiLookupOperation;
 import org.xtreemfs.babudb.replication.proxy.operations.MakePersistentOperation;
 import org.xtreemfs.babudb.replication.proxy.operations.PrefixLookupOperation;
 import org.xtreemfs.babudb.replication.proxy.operations.PrefixLookupReverseOperation;
@@ -60,6 +61,9 @@ public class ProxyRequestHandler extends RequestHandler {
         op = new LookupOperation(dbs);
         operations.put(op.getProcedureId(), op);
         
+        op = new MultiLookupOperation(dbs);
+        operations.put(op.getProcedureId(), op);
+        
         op = new PrefixLookupOperation(dbs);
         operations.put(op.getProcedureId(), op);
         
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2026, agent
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+package org.xtreemfs.babudb.replication.proxy.operations;
+
+import org.xtreemfs.babudb.api.database.DatabaseRequestListener;
+import org.xtreemfs.babudb.api.exception.BabuDBException;
+import org.xtreemfs.babudb.pbrpc.GlobalTypes.MultiLookup;
+import org.xtreemfs.babudb.pbrpc.GlobalTypes.ValueList;
+import org.xtreemfs.babudb.pbrpc.RemoteAccessServiceConstants;
+import org.xtreemfs.babudb.replication.BabuDBInterface;
+import org.xtreemfs.babudb.replication.transmission.ErrorCode;
+import org.xtreemfs.babudb.replication.transmission.dispatcher.Operation;
+import org.xtreemfs.babudb.replication.transmission.dispatcher.Request;
+import org.xtreemfs.foundation.buffer.BufferPool;
+import org.xtreemfs.foundation.buffer.ReusableBuffer;
+import org.xtreemfs.foundation.logging.Logging;
+
+import com.google.protobuf.Message;
+
+/**
+ * Operation to handle a remote lookup of multiple keys at the server with 
+ * master privilege. The keys are transmitted as data, their lengths as part 
+ * of the request. The response contains the length of each value, or -1 for
+ * keys without a value, and the concatenated values as data.
+ *
+ * @author agent
+ */
+public class MultiLookupOperation extends Operation {
+
+    private final BabuDBInterface dbs;
+    
+    public MultiLookupOperation(BabuDBInterface dbs) {
+        this.dbs = dbs;
+    }
+    
+    /* (non-Javadoc)
+     * @see org.xtreemfs.babudb.replication.transmission.dispatcher.Operation#
+     *          getProcedureId()
+     */
+    @Override
+    public int getProcedureId() {
+        return RemoteAccessServiceConstants.PROC_ID_MLOOKUP;
+    }
+    
+    /* (non-Javadoc)
+     * @see org.xtreemfs.babudb.replication.transmission.dispatcher.Operation#
+     *          getDefaultRequest()
+     */
+    @Override
+    public Message getDefaultRequest() {
+        return MultiLookup.getDefaultInstance();
+    }
+
+    /* (non-Javadoc)
+     * @see org.xtreemfs.babudb.replication.transmission.dispatcher.Operation#
+     *          processRequest(org.xtreemfs.babudb.replication.transmission.dispatcher.Request)
+     */
+    @Override
+    public void processRequest(final Request rq) {
+        
+        MultiLookup req = (MultiLookup) rq.getRequestMessage();
+        ReusableBuffer data = rq.getData();
+        
+        byte[][] keys = new byte[req.getKeyLengthCount()][];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = new byte[req.getKeyLength(i)];
+            data.get(keys[i]);
+        }
+        
+        Logging.logMessage(Logging.LEVEL_DEBUG, this, "MultiLookupOperation:" +
+                "db %s, index %d, %d keys.", req.getDatabaseName(), req.getIndexId(), 
+                keys.length);
+        
+        try {
+            dbs.getDatabase(req.getDatabaseName()).multiLookupNonblocking(req.getIndexId(), keys, 
+                    null).registerListener(new DatabaseRequestListener<byte[][]>() {
+                
+                @Override
+                public void finished(byte[][] result, Object context) {
+                    ValueList.Builder r = ValueList.newBuilder();
+                    
+                    int size = 0;
+                    for (byte[] value : result) {
+                        r.addLength(value == null ? -1 : value.length);
+                        if (value != null) size += value.length;
+                    }
+                    
+                    // prepare the response
+                    ReusableBuffer data = BufferPool.allocate(size);
+                    for (byte[] value : result) {
+                        if (value != null) data.put(value);
+                    }
+                    data.flip();
+                    
+                    rq.sendSuccess(r.build(), data);
+                }
+                
+                @Override
+                public void failed(BabuDBException error, Object context) {
+                    rq.sendSuccess(ValueList.newBuilder().setErrorCode(
+                            ErrorCode.mapUserError(error)).build());
+                }
+            });
+        } catch (BabuDBException e) {
+            rq.sendSuccess(ValueList.newBuilder().setErrorCode(
+                    ErrorCode.mapUserError(e)).build());
+        }
+    }
+}
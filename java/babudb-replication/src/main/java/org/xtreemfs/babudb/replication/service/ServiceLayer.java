@@ -75,9 +75,6 @@ public class ServiceLayer extends Layer implements  ServiceToControlInterface, S
     /** interface to the underlying layer */
     private final TransmissionToServiceInterface transmissionInterface;
         
-    /** thread safe checksum object for serialization of LogEntries to replicate */
-    private final AtomicReference<CRC32>         checksum = new AtomicReference<CRC32>(new CRC32());
-        
     private final ReplicationConfig              config;
     
     /**
@@ -176,16 +173,12 @@ public class ServiceLayer extends Layer implements  ServiceToControlInterface, S
                     "BabuDB runs if it would be in non-replicated mode.");
         } else {
             
-            // serialize the LogEntry
-            ReusableBuffer payload = null;
-            synchronized(checksum) {
-                CRC32 csumAlgo = checksum.get();
-                try {
-                    payload = le.serialize(csumAlgo);
-                } finally {
-                    csumAlgo.reset();
-                }
-            }
+            // serialize the LogEntry once for all slaves; its checksum is
+            // only calculated if it is not known yet. Unlike the gathering
+            // write of the DiskLogger, this copies header, payload and
+            // trailer into a new buffer, since a request can only carry a
+            // single data buffer
+            ReusableBuffer payload = le.serialize(new CRC32());
             
             // send the LogEntry to the other servers
             for (final SlaveClient slave : slaves) {
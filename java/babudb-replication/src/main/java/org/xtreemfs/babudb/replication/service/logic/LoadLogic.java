@@ -145,7 +145,12 @@ public class LoadLogic extends Logic {
             
             // validate the informations
             final String fileName = fileData.file;
-            String parentName = new File(fileName).getParentFile().getName();
+            File parent = new File(fileName).getParentFile();
+            // files of delta runs are located in subdirectories of the
+            // snapshot directory
+            if (!LSMDatabase.isSnapshotFilename(parent.getName()) && parent.getParentFile() != null)
+                parent = parent.getParentFile();
+            String parentName = parent.getName();
             if (LSMDatabase.isSnapshotFilename(parentName)) {
                 if (lsn == null) {
                     lsn = LSMDatabase.getSnapshotLSNbyFilename(parentName);
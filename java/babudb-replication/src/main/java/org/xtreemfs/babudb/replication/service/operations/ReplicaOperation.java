@@ -146,12 +146,12 @@ public class ReplicaOperation extends Operation {
                           
                         // add the logEntry to result list
                         assert (le.getPayload().array().length > 0) : "Empty log-entries are not allowed!";
-                        ReusableBuffer buf = le.serialize(checksum);
+                        final int size = le.getSerializedSize();
                         
                         result.addLogEntries(org.xtreemfs.babudb.pbrpc.GlobalTypes.LogEntry
-                                .newBuilder().setLength(buf.remaining()));
+                                .newBuilder().setLength(size));
                         
-                        int newSize = resultPayLoad.position() + buf.remaining();
+                        int newSize = resultPayLoad.position() + size;
                         
                         if (!resultPayLoad.enlarge(newSize)) {
                             ReusableBuffer tmp = BufferPool.allocate(newSize);
@@ -159,19 +159,20 @@ public class ReplicaOperation extends Operation {
                             tmp.put(resultPayLoad);
                             BufferPool.free(resultPayLoad);
                             resultPayLoad = tmp;
-                            assert (resultPayLoad.remaining() >= buf.remaining()) :
+                            assert (resultPayLoad.remaining() >= size) :
                                 "the target buffer (" + resultPayLoad.remaining() + ") has " +
                                 "not enough space allocated to fetch the src buffer (" + 
-                                buf.remaining() + ")";
+                                size + ")";
                             
                         }
-                        assert (resultPayLoad.remaining() >= buf.remaining()) :
+                        assert (resultPayLoad.remaining() >= size) :
                             "the target buffer (" + resultPayLoad.remaining() + ") was not " +
-                            "correctly enlarged to fetch the src buffer (" + buf.remaining() +
+                            "correctly enlarged to fetch the src buffer (" + size +
                             "), newSize: " + newSize;
                         
-                        resultPayLoad.put(buf);
-                        BufferPool.free(buf);
+                        // serialize the entry directly into the result, reusing
+                        // the checksum read from the log file
+                        le.serialize(resultPayLoad.getBuffer(), checksum);
                         
                     } finally {
                         checksum.reset();
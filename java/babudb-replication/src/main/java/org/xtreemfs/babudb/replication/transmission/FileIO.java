@@ -82,7 +82,17 @@ public class FileIO implements FileIOInterface {
         
         File chnk = new File(fileName);
         String fName = chnk.getName();
-        String pName = chnk.getParentFile().getName();
+        File snapDir = chnk.getParentFile();
+        
+        // files of delta runs are located in subdirectories of the snapshot
+        // directory
+        if (!LSMDatabase.isSnapshotFilename(snapDir.getName()) && snapDir.getParentFile() != null
+            && LSMDatabase.isSnapshotFilename(snapDir.getParentFile().getName())) {
+            fName = snapDir.getName() + separator + fName;
+            snapDir = snapDir.getParentFile();
+        }
+        
+        String pName = snapDir.getName();
         File result;
         String baseDir = configuration.getBabuDBConfig().getBaseDir();
         
@@ -91,7 +101,7 @@ public class FileIO implements FileIOInterface {
             new File(baseDir + pName + separatorChar).mkdirs();
             // create the file if necessary
             result = new File(baseDir + 
-                         chnk.getParentFile().getParentFile().getName() +
+                         snapDir.getParentFile().getName() +
                          separatorChar +  pName + separator + fName);
             result.getParentFile().mkdirs();
             result.createNewFile();
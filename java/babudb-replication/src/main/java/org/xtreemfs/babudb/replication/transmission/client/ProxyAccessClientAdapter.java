@@ -20,6 +20,8 @@ import org.xtreemfs.babudb.api.database.ResultSet;
 import org.xtreemfs.babudb.pbrpc.GlobalTypes.Database;
 import org.xtreemfs.babudb.pbrpc.GlobalTypes.Databases;
 import org.xtreemfs.babudb.pbrpc.GlobalTypes.EntryMap;
+import org.xtreemfs.babudb.pbrpc.GlobalTypes.MultiLookup;
+import org.xtreemfs.babudb.pbrpc.GlobalTypes.ValueList;
 import org.xtreemfs.babudb.pbrpc.RemoteAccessServiceClient;
 import org.xtreemfs.babudb.pbrpc.GlobalTypes.ErrorCodeResponse;
 import org.xtreemfs.babudb.replication.proxy.DatabaseManagerProxy;
@@ -212,6 +214,79 @@ public class ProxyAccessClientAdapter extends RemoteAccessServiceClient
         }
     }
 
+    /* (non-Javadoc)
+     * @see org.xtreemfs.babudb.replication.proxy.ProxyAccessClient#multiLookup(
+     *     java.lang.String, int, byte[][], java.net.InetSocketAddress)
+     */
+    @Override
+    public ClientResponseFuture<byte[][], ValueList> multiLookup(String dbName, int indexId, 
+            final byte[][] keys, InetSocketAddress master) {
+
+        assert (master != null);
+        
+        // send the lengths of the keys with the request and the keys
+        // themselves as data
+        MultiLookup.Builder req = MultiLookup.newBuilder().setDatabaseName(dbName)
+                .setIndexId(indexId);
+        int size = 0;
+        for (byte[] key : keys) {
+            req.addKeyLength(key.length);
+            size += key.length;
+        }
+        
+        ReusableBuffer data = BufferPool.allocate(size);
+        for (byte[] key : keys) {
+            data.put(key);
+        }
+        data.flip();
+        
+        try {
+            RPCResponse<ValueList> result = mlookup(master, AUTHENTICATION, USER_CREDENTIALS, 
+                    req.build(), data);
+            
+            return new ClientResponseFuture<byte[][], ValueList>(result) {
+                
+                @Override
+                public byte[][] resolve(ValueList response, ReusableBuffer data)
+                        throws ErrorCodeException, IOException {
+                    
+                    if (response.getErrorCode() != 0) {
+                        throw new ErrorCodeException(response.getErrorCode());
+                    }
+                    try {
+                        assert (response.getLengthCount() == keys.length);
+                        
+                        byte[][] values = new byte[keys.length][];
+                        for (int i = 0; i < values.length; i++) {
+                            int length = response.getLength(i);
+                            
+                            // a negative length marks a key without a value
+                            if (length >= 0) {
+                                values[i] = new byte[length];
+                                data.get(values[i], 0, length);
+                            }
+                        }
+                        
+                        return values;
+                    } finally {
+                        if (data != null) BufferPool.free(data);
+                    }
+                }
+            };
+        } catch (final IOException e) {
+            return new ClientResponseFuture<byte[][], ValueList>(null) {
+                
+                @Override
+                public byte[][] resolve(ValueList response, ReusableBuffer data)
+                        throws ErrorCodeException, IOException {
+                    throw e;
+                }
+            };
+        } finally {
+            BufferPool.free(data);
+        }
+    }
+
     /* (non-Javadoc)
      * @see org.xtreemfs.babudb.replication.RemoteAccessClient#prefixLookup(
      *          java.lang.String, int, 
@@ -18,6 +18,8 @@ import org.xtreemfs.babudb.api.dev.SnapshotManagerInternal;
 import org.xtreemfs.babudb.api.dev.transaction.TransactionManagerInternal;
 import org.xtreemfs.babudb.api.exception.BabuDBException;
 import org.xtreemfs.babudb.config.BabuDBConfig;
+import org.xtreemfs.babudb.index.reader.BlockCache;
+import org.xtreemfs.babudb.index.writer.WriteRateLimiter;
 import org.xtreemfs.babudb.lsmdb.DBConfig;
 import org.xtreemfs.babudb.lsmdb.LSMDBWorker;
 import org.xtreemfs.babudb.lsmdb.LSN;
@@ -148,6 +150,26 @@ public class BabuDBMock implements BabuDBInternal {
 
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.xtreemfs.babudb.api.dev.BabuDBInternal#getBlockCache()
+     */
+    @Override
+    public BlockCache getBlockCache() {
+        return null;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.xtreemfs.babudb.api.dev.BabuDBInternal#getWriteRateLimiter()
+     */
+    @Override
+    public WriteRateLimiter getWriteRateLimiter() {
+        return null;
+    }
+
     /*
      * (non-Javadoc)
      * 
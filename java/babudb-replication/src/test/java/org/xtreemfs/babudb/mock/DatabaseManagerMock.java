@@ -14,6 +14,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.xtreemfs.babudb.api.database.Database;
+import org.xtreemfs.babudb.api.database.DatabaseRequestResult;
 import org.xtreemfs.babudb.api.dev.DatabaseInternal;
 import org.xtreemfs.babudb.api.dev.DatabaseManagerInternal;
 import org.xtreemfs.babudb.api.dev.transaction.TransactionInternal;
@@ -23,6 +24,7 @@ import org.xtreemfs.babudb.api.index.ByteRangeComparator;
 import org.xtreemfs.babudb.api.transaction.Transaction;
 import org.xtreemfs.babudb.api.transaction.TransactionListener;
 import org.xtreemfs.babudb.index.DefaultByteRangeComparator;
+import org.xtreemfs.babudb.log.DiskLogger.SyncMode;
 import org.xtreemfs.babudb.replication.proxy.DatabaseManagerProxy;
 import org.xtreemfs.foundation.logging.Logging;
 
@@ -61,6 +63,26 @@ public class DatabaseManagerMock extends DatabaseManagerProxy implements Databas
                 
             }
             
+            @Override
+            public DatabaseRequestResult<Object> executeTransactionAsync(Transaction txn) {
+                // TODO Auto-generated method stub
+                return null;
+            }
+            
+            @Override
+            public void executeTransaction(Transaction txn, SyncMode durability)
+                    throws BabuDBException {
+                // TODO Auto-generated method stub
+                
+            }
+            
+            @Override
+            public DatabaseRequestResult<Object> executeTransactionAsync(Transaction txn,
+                    SyncMode durability) {
+                // TODO Auto-generated method stub
+                return null;
+            }
+            
             @Override
             public void dumpAllDatabases(String destPath) throws BabuDBException,
                     IOException, InterruptedException {
@@ -404,6 +426,33 @@ public class DatabaseManagerMock extends DatabaseManagerProxy implements Databas
         
     }
 
+    /* (non-Javadoc)
+     * @see org.xtreemfs.babudb.api.DatabaseManager#executeTransactionAsync(org.xtreemfs.babudb.api.transaction.Transaction)
+     */
+    @Override
+    public DatabaseRequestResult<Object> executeTransactionAsync(Transaction txn) {
+        // TODO Auto-generated method stub
+        return null;
+    }
+
+    /* (non-Javadoc)
+     * @see org.xtreemfs.babudb.api.DatabaseManager#executeTransaction(org.xtreemfs.babudb.api.transaction.Transaction, org.xtreemfs.babudb.log.DiskLogger.SyncMode)
+     */
+    @Override
+    public void executeTransaction(Transaction txn, SyncMode durability) throws BabuDBException {
+        // TODO Auto-generated method stub
+        
+    }
+
+    /* (non-Javadoc)
+     * @see org.xtreemfs.babudb.api.DatabaseManager#executeTransactionAsync(org.xtreemfs.babudb.api.transaction.Transaction, org.xtreemfs.babudb.log.DiskLogger.SyncMode)
+     */
+    @Override
+    public DatabaseRequestResult<Object> executeTransactionAsync(Transaction txn, SyncMode durability) {
+        // TODO Auto-generated method stub
+        return null;
+    }
+
     /* (non-Javadoc)
      * @see org.xtreemfs.babudb.api.DatabaseManager#addTransactionListener(org.xtreemfs.babudb.api.transaction.TransactionListener)
      */
@@ -14,9 +14,11 @@ import org.xtreemfs.babudb.api.database.DatabaseInsertGroup;
 import org.xtreemfs.babudb.api.database.DatabaseRequestResult;
 import org.xtreemfs.babudb.api.database.ResultSet;
 import org.xtreemfs.babudb.api.database.UserDefinedLookup;
+import org.xtreemfs.babudb.api.database.ValueView;
 import org.xtreemfs.babudb.api.dev.DatabaseInternal;
 import org.xtreemfs.babudb.api.exception.BabuDBException;
 import org.xtreemfs.babudb.api.index.ByteRangeComparator;
+import org.xtreemfs.babudb.log.DiskLogger.SyncMode;
 import org.xtreemfs.babudb.lsmdb.BabuDBInsertGroup;
 import org.xtreemfs.babudb.lsmdb.LSMDatabase;
 import org.xtreemfs.babudb.snapshots.SnapshotConfig;
@@ -82,6 +84,20 @@ public class DatabaseMock implements DatabaseInternal {
         return null;
     }
 
+    @Override
+    public DatabaseRequestResult<Object> insert(DatabaseInsertGroup irg,
+            SyncMode durability, Object context) {
+        
+        return insert((BabuDBInsertGroup) irg, durability, context);
+    }
+
+    @Override
+    public DatabaseRequestResult<Object> singleInsert(int indexId, byte[] key,
+            byte[] value, SyncMode durability, Object context) {
+        // TODO Auto-generated method stub
+        return null;
+    }
+
     @Override
     public DatabaseRequestResult<byte[]> lookup(int indexId, byte[] key,
             Object context) {
@@ -89,6 +105,20 @@ public class DatabaseMock implements DatabaseInternal {
         return null;
     }
 
+    @Override
+    public DatabaseRequestResult<ValueView> lookupView(int indexId, byte[] key,
+            Object context) {
+        // TODO Auto-generated method stub
+        return null;
+    }
+
+    @Override
+    public DatabaseRequestResult<byte[][]> multiLookup(int indexId, byte[][] keys,
+            Object context) {
+        // TODO Auto-generated method stub
+        return null;
+    }
+
     @Override
     public DatabaseRequestResult<ResultSet<byte[], byte[]>> prefixLookup(
             int indexId, byte[] key, Object context) {
@@ -181,6 +211,16 @@ public class DatabaseMock implements DatabaseInternal {
         
     }
 
+    /* (non-Javadoc)
+     * @see org.xtreemfs.babudb.api.dev.DatabaseInternal#proceedWriteSnapshot(int, long, int[], int)
+     */
+    @Override
+    public void proceedWriteSnapshot(int viewId, long sequenceNo, int[] snapIds, int index)
+            throws BabuDBException {
+        // TODO Auto-generated method stub
+        
+    }
+
     /* (non-Javadoc)
      * @see org.xtreemfs.babudb.api.dev.DatabaseInternal#proceedCleanupSnapshot(int, long)
      */
@@ -226,6 +266,15 @@ public class DatabaseMock implements DatabaseInternal {
         return null;
     }
 
+    /* (non-Javadoc)
+     * @see org.xtreemfs.babudb.api.dev.DatabaseInternal#directMultiLookup(int, int, byte[][])
+     */
+    @Override
+    public byte[][] directMultiLookup(int indexId, int snapId, byte[][] keys) throws BabuDBException {
+        // TODO Auto-generated method stub
+        return null;
+    }
+
     /* (non-Javadoc)
      * @see org.xtreemfs.babudb.api.dev.DatabaseInternal#directPrefixLookup(int, int, byte[], boolean)
      */
@@ -254,4 +303,14 @@ public class DatabaseMock implements DatabaseInternal {
         // TODO Auto-generated method stub
         return null;
     }
+
+    /* (non-Javadoc)
+     * @see org.xtreemfs.babudb.api.dev.DatabaseInternal#insert(org.xtreemfs.babudb.lsmdb.BabuDBInsertGroup, org.xtreemfs.babudb.log.DiskLogger.SyncMode, java.lang.Object)
+     */
+    @Override
+    public DatabaseRequestResult<Object> insert(BabuDBInsertGroup irg, SyncMode durability, 
+            Object context) {
+        // TODO Auto-generated method stub
+        return null;
+    }
 }
\ No newline at end of file